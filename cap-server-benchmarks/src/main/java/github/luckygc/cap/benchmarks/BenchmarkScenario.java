@@ -0,0 +1,85 @@
+package github.luckygc.cap.benchmarks;
+
+import github.luckygc.cap.Cap;
+import github.luckygc.cap.CapBuilder;
+import github.luckygc.cap.CapProfile;
+import github.luckygc.cap.CapProtocol;
+import github.luckygc.cap.InstrumentationOptions;
+import github.luckygc.cap.RswKeyPair;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** 基准覆盖的 profile 与协议组合；名称即 JMH {@code scenario} 参数值。 */
+public enum BenchmarkScenario {
+    FORMAT1(CapProfile.DEFAULT, false),
+    FORMAT1_INSTRUMENTATION(CapProfile.DEFAULT, true),
+    STRICT_RSW(CapProfile.STRICT, false, CapProtocol.RSW),
+    STRICT_RSW_INSTRUMENTATION(
+            CapProfile.STRICT, false, CapProtocol.RSW, CapProtocol.INSTRUMENTATION),
+    STRICT_INSTRUMENTATION_RSW(
+            CapProfile.STRICT, false, CapProtocol.INSTRUMENTATION, CapProtocol.RSW),
+    STRICT_SHA256_POW(CapProfile.STRICT, false, CapProtocol.SHA256_POW),
+    STRICT_SHA256_POW_RSW_INSTRUMENTATION(
+            CapProfile.STRICT,
+            false,
+            CapProtocol.SHA256_POW,
+            CapProtocol.RSW,
+            CapProtocol.INSTRUMENTATION),
+    STRICT_SHA256_POW_RSW_INSTRUMENTATION_PARALLEL(
+            CapProfile.STRICT,
+            false,
+            CapProtocol.SHA256_POW,
+            CapProtocol.RSW,
+            CapProtocol.INSTRUMENTATION),
+    STRICT_INSTRUMENTATION_SHA256_POW(
+            CapProfile.STRICT, false, CapProtocol.INSTRUMENTATION, CapProtocol.SHA256_POW);
+
+    static final String SECRET = "cap-server-benchmark-secret-0123456789";
+    private static final int RSW_BITS = 2048;
+
+    private final CapProfile profile;
+    private final boolean format1Instrumentation;
+    private final List<CapProtocol> protocols;
+
+    BenchmarkScenario(
+            CapProfile profile, boolean format1Instrumentation, CapProtocol... protocols) {
+        this.profile = profile;
+        this.format1Instrumentation = format1Instrumentation;
+        this.protocols = List.of(protocols);
+    }
+
+    /** 按生产默认值构建；STRICT 复用同一 fork 内的 RSW 密钥，避免把素数搜索计入 setup 波动。 */
+    Cap build() {
+        CapBuilder builder = Cap.builder(SECRET).profile(profile);
+        if (profile == CapProfile.STRICT) {
+            builder.protocols(protocols.toArray(CapProtocol[]::new));
+            if (protocols.contains(CapProtocol.RSW)) {
+                builder.rswKeyPair(SharedRswKeyPair.KEY_PAIR);
+            }
+            if (name().endsWith("_PARALLEL")) {
+                builder.parallelProtocolGeneration(PartExecutor.EXECUTOR);
+            }
+        } else if (format1Instrumentation) {
+            builder.instrumentation(InstrumentationOptions.defaults());
+        }
+        return builder.build();
+    }
+
+    /** 并发场景共用的守护线程池，生命周期与 fork 相同。 */
+    private static final class PartExecutor {
+
+        private static final ExecutorService EXECUTOR =
+                Executors.newCachedThreadPool(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "cap-benchmark-part");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    private static final class SharedRswKeyPair {
+
+        private static final RswKeyPair KEY_PAIR = RswKeyPair.generate(RSW_BITS);
+    }
+}
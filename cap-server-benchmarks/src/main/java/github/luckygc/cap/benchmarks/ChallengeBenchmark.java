@@ -0,0 +1,40 @@
+package github.luckygc.cap.benchmarks;
+
+import github.luckygc.cap.Cap;
+import github.luckygc.cap.ChallengeResponse;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** 测量 {@link Cap#createChallenge()} 在各 profile 与协议组合下的开销。 */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChallengeBenchmark {
+
+    @Param public BenchmarkScenario scenario;
+
+    private Cap cap;
+
+    @Setup
+    public void setUp() {
+        cap = scenario.build();
+    }
+
+    @Benchmark
+    public ChallengeResponse createChallenge() {
+        return cap.createChallenge();
+    }
+}
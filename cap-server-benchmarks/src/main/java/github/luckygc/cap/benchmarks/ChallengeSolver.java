@@ -0,0 +1,135 @@
+package github.luckygc.cap.benchmarks;
+
+import github.luckygc.cap.ChallengeResponse;
+import github.luckygc.cap.RedeemRequest;
+import github.luckygc.cap.internal.crypto.EncryptedMetadataCodec;
+import github.luckygc.cap.internal.crypto.JwtCodec;
+import github.luckygc.cap.utils.RandomUtil;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 在 setup 阶段为 challenge 构造合法 redeem 请求。
+ *
+ * <p>instrumentation 没有 JavaScript 引擎可执行，因此与集成测试一样解密服务端认证元数据来构造 state；这只用于基准输入，不属于客户端协议。
+ */
+final class ChallengeSolver {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final JwtCodec jwt = new JwtCodec(BenchmarkScenario.SECRET);
+    private final EncryptedMetadataCodec metadata =
+            new EncryptedMetadataCodec(BenchmarkScenario.SECRET);
+
+    RedeemRequest solve(ChallengeResponse response) {
+        if (response instanceof ChallengeResponse.Format1 format1) {
+            return solveFormat1(format1);
+        }
+        return solveFormat2((ChallengeResponse.Format2) response);
+    }
+
+    private RedeemRequest solveFormat1(ChallengeResponse.Format1 response) {
+        int tokenState = RandomUtil.fnv1a(response.token());
+        List<@Nullable Object> solutions = new ArrayList<>(response.challenge().c());
+        for (int index = 0; index < response.challenge().c(); index++) {
+            int saltState = RandomUtil.fnv1aResume(tokenState, Integer.toString(index + 1));
+            int targetState = RandomUtil.fnv1aResume(saltState, "d");
+            solutions.add(
+                    solvePow(
+                            RandomUtil.prngFromHash(saltState, response.challenge().s()),
+                            RandomUtil.prngFromHash(targetState, response.challenge().d())));
+        }
+        RedeemRequest.@Nullable InstrumentationResult instrumentation = null;
+        if (response.instrumentation() != null) {
+            Map<String, @Nullable Object> meta =
+                    metadata.decryptFormat1((String) claims(response.token()).get("ei"))
+                            .orElseThrow();
+            instrumentation =
+                    new RedeemRequest.InstrumentationResult(
+                            (String) meta.get("id"), state(meta), System.currentTimeMillis());
+        }
+        return new RedeemRequest(response.token(), solutions, instrumentation, false, false);
+    }
+
+    private RedeemRequest solveFormat2(ChallengeResponse.Format2 response) {
+        List<?> expected =
+                (List<?>)
+                        metadata.decryptFormat2((String) claims(response.token()).get("ev"))
+                                .orElseThrow()
+                                .get("expected");
+        List<@Nullable Object> solutions = new ArrayList<>(response.challenges().size());
+        for (int index = 0; index < response.challenges().size(); index++) {
+            ChallengeResponse.ProtocolChallenge challenge = response.challenges().get(index);
+            Map<String, @Nullable Object> payload = challenge.payload();
+            switch (challenge.protocol()) {
+                case "sha256-pow" ->
+                        solutions.add(
+                                Map.of(
+                                        "nonce",
+                                        solvePow(
+                                                (String) payload.get("salt"),
+                                                (String) payload.get("target"))));
+                case "rsw" -> solutions.add(Map.of("y", solveRsw(payload)));
+                case "instrumentation" -> {
+                    Map<?, ?> meta = (Map<?, ?>) ((Map<?, ?>) expected.get(index)).get("instrMeta");
+                    solutions.add(
+                            Map.of("instr", Map.of("i", meta.get("id"), "state", state(meta))));
+                }
+                default -> throw new IllegalStateException("unknown protocol");
+            }
+        }
+        return new RedeemRequest(response.token(), solutions, null, false, false);
+    }
+
+    private Map<String, @Nullable Object> claims(String token) {
+        return jwt.verify(token).orElseThrow();
+    }
+
+    private static Map<String, @Nullable Object> state(Map<?, ?> meta) {
+        List<?> variables = (List<?>) meta.get("vars");
+        List<?> values = (List<?>) meta.get("expectedVals");
+        Map<String, @Nullable Object> state = new LinkedHashMap<>();
+        for (int index = 0; index < variables.size(); index++) {
+            state.put((String) variables.get(index), values.get(index));
+        }
+        return state;
+    }
+
+    private static String solveRsw(Map<String, @Nullable Object> payload) {
+        BigInteger modulus = new BigInteger((String) payload.get("N"), 16);
+        BigInteger value = new BigInteger((String) payload.get("x"), 16);
+        int t = ((Number) payload.get("t")).intValue();
+        for (int index = 0; index < t; index++) {
+            value = value.multiply(value).mod(modulus);
+        }
+        return value.toString(16);
+    }
+
+    private static long solvePow(String salt, String target) {
+        MessageDigest digest = sha256();
+        byte[] prefix = salt.getBytes(StandardCharsets.UTF_8);
+        for (long nonce = 0; ; nonce++) {
+            digest.update(prefix);
+            byte[] hash = digest.digest(Long.toString(nonce).getBytes(StandardCharsets.US_ASCII));
+            if (HEX.formatHex(hash).startsWith(target)) {
+                return nonce;
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package github.luckygc.cap.benchmarks;
+
+import github.luckygc.cap.InstrumentationOptions;
+import github.luckygc.cap.internal.instrumentation.InstrumentationGenerator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** 测量单次 instrumentation challenge 生成：脚本拼装、内置 transformer、raw Deflate 与 Base64。 */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    @Param({"0", "3"})
+    public int level;
+
+    @Param({"false", "true"})
+    public boolean blockAutomatedBrowsers;
+
+    private final InstrumentationGenerator generator = new InstrumentationGenerator();
+    private InstrumentationOptions options;
+
+    @Setup
+    public void setUp() {
+        options =
+                InstrumentationOptions.builder()
+                        .level(level)
+                        .blockAutomatedBrowsers(blockAutomatedBrowsers)
+                        .build();
+    }
+
+    @Benchmark
+    public InstrumentationGenerator.GeneratedInstrumentation generate() {
+        return generator.generate(options);
+    }
+}
@@ -0,0 +1,56 @@
+package github.luckygc.cap.benchmarks;
+
+import github.luckygc.cap.InstrumentationOptions;
+import github.luckygc.cap.InstrumentationTransformer;
+import github.luckygc.cap.internal.instrumentation.InstrumentationGenerator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** 按 level 单独测量内置 instrumentation transformer；输入为一次生成的含自动化检查的原始脚本。 */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstrumentationTransformBenchmark {
+
+    @Param({"1", "2", "3"})
+    public int level;
+
+    private final InstrumentationTransformer transformer =
+            InstrumentationGenerator.builtInTransformer();
+    private String script;
+
+    @Setup
+    public void setUp() {
+        String[] captured = new String[1];
+        new InstrumentationGenerator()
+                .generate(
+                        InstrumentationOptions.builder()
+                                .level(0)
+                                .blockAutomatedBrowsers(true)
+                                .transformer(
+                                        (raw, ignored) -> {
+                                            captured[0] = raw;
+                                            return raw;
+                                        })
+                                .build());
+        script = captured[0];
+    }
+
+    @Benchmark
+    public String transform() {
+        return transformer.transform(script, level);
+    }
+}
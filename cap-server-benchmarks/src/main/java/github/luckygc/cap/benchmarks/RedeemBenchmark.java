@@ -0,0 +1,76 @@
+package github.luckygc.cap.benchmarks;
+
+import github.luckygc.cap.Cap;
+import github.luckygc.cap.ChallengeOptions;
+import github.luckygc.cap.RedeemRequest;
+import github.luckygc.cap.RedeemResult;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 测量 {@link Cap#redeem(RedeemRequest)} 成功路径与伪造签名拒绝路径。
+ *
+ * <p>未配置 {@code NonceConsumer} 时 challenge 在 TTL 内可重复兑换，因此同一请求可在整个 trial 中复用。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedeemBenchmark {
+
+    @Param public BenchmarkScenario scenario;
+
+    private Cap cap;
+    private RedeemRequest solved;
+    private RedeemRequest forged;
+
+    @Setup
+    public void setUp() {
+        cap = scenario.build();
+        solved =
+                new ChallengeSolver()
+                        .solve(
+                                cap.createChallenge(
+                                        ChallengeOptions.builder()
+                                                .ttl(Duration.ofHours(24))
+                                                .build()));
+        String token = solved.token();
+        char last = token.charAt(token.length() - 1);
+        forged =
+                new RedeemRequest(
+                        token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A'),
+                        solved.solutions(),
+                        solved.instr(),
+                        solved.instrBlocked(),
+                        solved.instrTimeout());
+        if (!(cap.redeem(solved) instanceof RedeemResult.Success)) {
+            throw new IllegalStateException("benchmark solution was rejected");
+        }
+        if (cap.redeem(forged) instanceof RedeemResult.Success) {
+            throw new IllegalStateException("forged benchmark token was accepted");
+        }
+    }
+
+    @Benchmark
+    public RedeemResult redeem() {
+        return cap.redeem(solved);
+    }
+
+    @Benchmark
+    public RedeemResult redeemForgedToken() {
+        return cap.redeem(forged);
+    }
+}
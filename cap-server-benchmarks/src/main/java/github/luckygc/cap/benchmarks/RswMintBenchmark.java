@@ -0,0 +1,89 @@
+package github.luckygc.cap.benchmarks;
+
+import github.luckygc.cap.RswKeyPair;
+import github.luckygc.cap.internal.rsw.RswSupport;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 测量单次 RSW 铸造：{@code mint} 走 {@link RswSupport.RswMinter} 的固定底数预计算表，{@code modPowBaseline} 以 {@link
+ * BigInteger#modPow} 重算同样的四次 CRT 模幂，作为对照。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RswMintBenchmark {
+
+    @Param({"1024", "2048", "4096"})
+    public int bits;
+
+    private final SecureRandom random = new SecureRandom();
+    private RswSupport.RswMinter minter;
+    private BigInteger primeP;
+    private BigInteger primeQ;
+    private BigInteger pMinusOne;
+    private BigInteger qMinusOne;
+    private BigInteger generatorP;
+    private BigInteger generatorQ;
+    private BigInteger hP;
+    private BigInteger hQ;
+    private BigInteger qInverseModP;
+
+    @Setup
+    public void setUp() {
+        RswKeyPair keyPair = RswKeyPair.generate(bits);
+        minter = RswSupport.createMinter(keyPair, RswSupport.DEFAULT_T, random);
+        primeP = new BigInteger(keyPair.primeP());
+        primeQ = new BigInteger(keyPair.primeQ());
+        pMinusOne = primeP.subtract(BigInteger.ONE);
+        qMinusOne = primeQ.subtract(BigInteger.ONE);
+        BigInteger modulus = new BigInteger(keyPair.modulus());
+        BigInteger generator =
+                new BigInteger(keyPair.bits(), random)
+                        .mod(modulus.subtract(BigInteger.valueOf(3)))
+                        .add(BigInteger.TWO);
+        BigInteger t = BigInteger.valueOf(RswSupport.DEFAULT_T);
+        generatorP = generator.mod(primeP);
+        generatorQ = generator.mod(primeQ);
+        hP = generatorP.modPow(BigInteger.TWO.modPow(t, pMinusOne), primeP);
+        hQ = generatorQ.modPow(BigInteger.TWO.modPow(t, qMinusOne), primeQ);
+        qInverseModP = primeQ.modInverse(primeP);
+    }
+
+    @Benchmark
+    public RswSupport.MintedChallenge mint() {
+        return minter.mint();
+    }
+
+    @Benchmark
+    public BigInteger[] modPowBaseline() {
+        BigInteger r = new BigInteger(256, random);
+        BigInteger rP = r.mod(pMinusOne);
+        BigInteger rQ = r.mod(qMinusOne);
+        return new BigInteger[] {
+            crtCombine(generatorP.modPow(rP, primeP), generatorQ.modPow(rQ, primeQ)),
+            crtCombine(hP.modPow(rP, primeP), hQ.modPow(rQ, primeQ))
+        };
+    }
+
+    private BigInteger crtCombine(BigInteger residueP, BigInteger residueQ) {
+        BigInteger coefficient =
+                residueP.subtract(residueQ).mod(primeP).multiply(qInverseModP).mod(primeP);
+        return residueQ.add(primeQ.multiply(coefficient));
+    }
+}
@@ -0,0 +1,5 @@
+/** 驱动公开 {@link github.luckygc.cap.Cap} 门面的 JMH 基准；不属于发布 API。 */
+@NullMarked
+package github.luckygc.cap.benchmarks;
+
+import org.jspecify.annotations.NullMarked;
@@ -0,0 +1,426 @@
+package github.luckygc.cap.replay.jdbc;
+
+import github.luckygc.cap.BinaryNonceConsumer;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.sql.DataSource;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 把并发消费合并为一次多行写入的 JDBC 防重放消费者。
+ *
+ * <p>没有进行中的收集时，到达的调用方成为本批 leader，最多等待 {@code maxWait} 或凑满 {@code maxBatchSize} 条后取走全部请求，在一个连接上写入；
+ * 其余调用方只等待自己的结果，不占用连接。PostgreSQL 使用 {@code INSERT ... ON CONFLICT DO NOTHING RETURNING}
+ * 一条语句写入整批并按返回的 key 判定；MySQL / MariaDB 使用 {@code INSERT IGNORE} 的 JDBC batch，按每行 update count
+ * 判定，驱动合并 batch 后不再返回逐行计数（如 MySQL {@code rewriteBatchedStatements=true}）时整批 fail closed。{@code
+ * INSERT IGNORE} 会把重复键以外的行级错误降级为告警，对应行按重复处理。
+ *
+ * <p>同一批内的相同签名只写入一次，其余调用方得到与重放相同的 {@code false}。每批按 key 排序后绑定，所有 leader 以同一全序获取行锁，
+ * 签名重叠的并发批次不会因加锁顺序相反而死锁。写入失败时本批全部调用方收到 {@link SQLException}。表结构、{@link DataSource} 的独立连接要求与 TTL 语义同
+ * {@link JdbcNonceConsumer}；每次写入都在自动提交模式下完成，不切换事务状态。
+ *
+ * <p>按小时分区的表必须通过 {@link Builder#partitioned()} 启用分区模式：每个请求按 {@link JdbcNonceConsumer#partitioned}
+ * 的规则写入一到两个整点行，全部写入才返回 {@code true}。未启用时写入精确到期时刻，在主键包含 {@code expires_at} 的分区表上重放会被接受。
+ */
+public final class BatchingJdbcNonceConsumer implements BinaryNonceConsumer {
+    private static final String DEFAULT_TABLE = "cap_consumed_nonces";
+    private static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    private static final int MAXIMUM_BATCH_SIZE = 1_000;
+    private static final Duration DEFAULT_MAX_WAIT = Duration.ofMillis(2);
+    private static final Duration MAXIMUM_MAX_WAIT = Duration.ofSeconds(1);
+    private static final HexFormat HEX = HexFormat.of();
+    // 十六进制 key 为小写，字符串顺序与原始字节的无符号顺序一致；同一 key 的分区行再按整点排序。
+    private static final Comparator<Row> KEY_ORDER =
+            ((Comparator<Row>)
+                            (left, right) ->
+                                    left.owner.key instanceof byte[] leftRaw
+                                                    && right.owner.key instanceof byte[] rightRaw
+                                            ? Arrays.compareUnsigned(leftRaw, rightRaw)
+                                            : ((String) left.owner.key)
+                                                    .compareTo((String) right.owner.key))
+                    .thenComparing(row -> row.expiresAt);
+
+    private final DataSource dataSource;
+    private final JdbcDialect dialect;
+    private final JdbcKeyFormat keyFormat;
+    private final String tableName;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Clock clock;
+    private final boolean partitioned;
+    private final String rowInsertSql;
+    // 按行数缓存的多行写入语句，仅 PostgreSQL 使用。
+    private final AtomicReferenceArray<@Nullable String> returningSql;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition filled = lock.newCondition();
+    // 以下两个字段仅在 lock 内读写。
+    private List<Pending> pending = new ArrayList<>();
+    private boolean collecting;
+
+    private BatchingJdbcNonceConsumer(Builder builder) {
+        dataSource = builder.dataSource;
+        dialect = builder.dialect;
+        keyFormat = builder.keyFormat;
+        tableName = builder.tableName;
+        maxBatchSize = builder.maxBatchSize;
+        maxWaitNanos = builder.maxWait.toNanos();
+        clock = builder.clock;
+        partitioned = builder.partitioned;
+        rowInsertSql = dialect.conflictTolerantInsert(tableName, keyFormat.column());
+        returningSql = new AtomicReferenceArray<>(maxBatchSize + 1);
+    }
+
+    /** 使用默认表、{@link JdbcKeyFormat#HEX}、每批最多 64 条、最长等待 2 毫秒创建构建器。 */
+    public static Builder builder(DataSource dataSource, JdbcDialect dialect) {
+        return new Builder(dataSource, dialect);
+    }
+
+    @Override
+    public boolean consume(String signatureHex, Duration ttl) throws Exception {
+        Objects.requireNonNull(signatureHex);
+        Objects.requireNonNull(ttl);
+        if (keyFormat == JdbcKeyFormat.BINARY) {
+            return submit(HEX.parseHex(signatureHex), ttl);
+        }
+        return submit(signatureHex, ttl);
+    }
+
+    @Override
+    public boolean consume(byte[] signature, Duration ttl) throws Exception {
+        Objects.requireNonNull(signature);
+        Objects.requireNonNull(ttl);
+        if (keyFormat == JdbcKeyFormat.HEX) {
+            return submit(HEX.formatHex(signature), ttl);
+        }
+        return submit(signature.clone(), ttl);
+    }
+
+    private boolean submit(Object key, Duration ttl) throws Exception {
+        Pending request = new Pending(key, JdbcNonceConsumer.expiryRows(clock, ttl, partitioned));
+        @Nullable List<Pending> batch = null;
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            pending.add(request);
+            if (collecting) {
+                if (pending.size() >= maxBatchSize) {
+                    filled.signal();
+                }
+            } else {
+                collecting = true;
+                long remaining = maxWaitNanos;
+                while (pending.size() < maxBatchSize && remaining > 0) {
+                    try {
+                        remaining = filled.awaitNanos(remaining);
+                    } catch (InterruptedException exception) {
+                        // 已加入本批的调用方只能由 leader 完成，中断后立即写入并在返回前恢复中断标记。
+                        interrupted = true;
+                        break;
+                    }
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                collecting = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (batch != null) {
+            try {
+                flush(batch);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return request.await();
+    }
+
+    /** 同批相同签名只写一次；各行按 key 排序后按 maxBatchSize 分段写入，任一段失败时尚未完成的请求全部失败。 */
+    private void flush(List<Pending> batch) {
+        Map<Object, Pending> unique = new LinkedHashMap<>();
+        for (Pending request : batch) {
+            Pending first = unique.putIfAbsent(request.identity, request);
+            if (first != null) {
+                first.result.whenComplete(
+                        (claimed, failure) -> {
+                            if (failure != null) {
+                                request.result.completeExceptionally(failure);
+                            } else {
+                                request.result.complete(false);
+                            }
+                        });
+            }
+        }
+        List<Row> rows = new ArrayList<>();
+        for (Pending request : unique.values()) {
+            for (Instant expiresAt : request.rows) {
+                rows.add(new Row(request, expiresAt));
+            }
+        }
+        rows.sort(KEY_ORDER);
+        try {
+            for (int from = 0; from < rows.size(); from += maxBatchSize) {
+                List<Row> chunk = rows.subList(from, Math.min(rows.size(), from + maxBatchSize));
+                if (dialect == JdbcDialect.POSTGRESQL) {
+                    insertReturning(chunk);
+                } else {
+                    insertEachIgnoring(chunk);
+                }
+            }
+        } catch (Throwable failure) {
+            // Error 同样要完成全部请求，否则 follower 会永远阻塞在 await 上。
+            for (Pending request : unique.values()) {
+                request.result.completeExceptionally(failure);
+            }
+            if (failure instanceof Error error) {
+                throw error;
+            }
+        }
+    }
+
+    private void insertReturning(List<Row> chunk) throws SQLException {
+        Set<Object> claimed = new HashSet<>();
+        try (Connection connection = independentConnection();
+                PreparedStatement statement =
+                        connection.prepareStatement(returningSql(chunk.size()))) {
+            int index = 1;
+            for (Row row : chunk) {
+                bind(statement, index, row);
+                index += 2;
+            }
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    Object identity =
+                            keyFormat == JdbcKeyFormat.BINARY
+                                    ? ByteBuffer.wrap(result.getBytes(1))
+                                    : result.getString(1);
+                    claimed.add(
+                            partitioned
+                                    ? List.of(identity, result.getTimestamp(2).toInstant())
+                                    : identity);
+                }
+            }
+        }
+        for (Row row : chunk) {
+            row.owner.decide(
+                    claimed.contains(
+                            partitioned
+                                    ? List.of(row.owner.identity, row.expiresAt)
+                                    : row.owner.identity));
+        }
+    }
+
+    private void insertEachIgnoring(List<Row> chunk) throws SQLException {
+        int[] counts;
+        try (Connection connection = independentConnection();
+                PreparedStatement statement = connection.prepareStatement(rowInsertSql)) {
+            for (Row row : chunk) {
+                bind(statement, 1, row);
+                statement.addBatch();
+            }
+            counts = statement.executeBatch();
+        }
+        if (counts.length != chunk.size()) {
+            throw new SQLException("nonce batch update counts unavailable");
+        }
+        for (int count : counts) {
+            if (count != 0 && count != 1) {
+                throw new SQLException("nonce batch update counts unavailable");
+            }
+        }
+        for (int index = 0; index < counts.length; index++) {
+            chunk.get(index).owner.decide(counts[index] == 1);
+        }
+    }
+
+    private Connection independentConnection() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            if (!connection.getAutoCommit()) {
+                throw new SQLException("nonce connection must be independent");
+            }
+        } catch (SQLException failure) {
+            try {
+                connection.close();
+            } catch (SQLException closeFailure) {
+                failure.addSuppressed(closeFailure);
+            }
+            throw failure;
+        }
+        return connection;
+    }
+
+    private void bind(PreparedStatement statement, int index, Row row) throws SQLException {
+        if (row.owner.key instanceof byte[] raw) {
+            statement.setBytes(index, raw);
+        } else {
+            statement.setString(index, (String) row.owner.key);
+        }
+        statement.setTimestamp(index + 1, Timestamp.from(row.expiresAt));
+    }
+
+    private String returningSql(int rows) {
+        @Nullable String cached = returningSql.get(rows);
+        if (cached != null) {
+            return cached;
+        }
+        String column = keyFormat.column();
+        StringBuilder sql =
+                new StringBuilder("INSERT INTO ")
+                        .append(tableName)
+                        .append(" (")
+                        .append(column)
+                        .append(", expires_at) VALUES ");
+        for (int row = 0; row < rows; row++) {
+            sql.append(row == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        sql.append(" ON CONFLICT DO NOTHING RETURNING ").append(column);
+        if (partitioned) {
+            sql.append(", expires_at");
+        }
+        String built = sql.toString();
+        returningSql.set(rows, built);
+        return built;
+    }
+
+    /** 请求的一行写入；分区模式下一个请求可能有两行。 */
+    private record Row(Pending owner, Instant expiresAt) {}
+
+    /** 一个等待中的消费请求；identity 用于同批去重与匹配 RETURNING 结果。 */
+    private static final class Pending {
+        private final Object key;
+        private final Object identity;
+        private final Instant[] rows;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // 以下两个字段只由写入本批的 leader 读写。
+        private int undecided;
+        private boolean claimed = true;
+
+        private Pending(Object key, Instant[] rows) {
+            this.key = key;
+            identity = key instanceof byte[] raw ? ByteBuffer.wrap(raw) : key;
+            this.rows = rows;
+            undecided = rows.length;
+        }
+
+        /** 记录一行的写入结果；全部行都已判定后完成，任一行已存在即按重放处理。 */
+        private void decide(boolean inserted) {
+            claimed &= inserted;
+            if (--undecided == 0) {
+                result.complete(claimed);
+            }
+        }
+
+        private boolean await() throws Exception {
+            try {
+                return result.get();
+            } catch (ExecutionException exception) {
+                Throwable cause = exception.getCause();
+                if (cause instanceof SQLException failure) {
+                    // 同一异常会交给本批所有调用方，逐个包装以免并发修改 suppressed 链。
+                    throw new SQLException(
+                            failure.getMessage(),
+                            failure.getSQLState(),
+                            failure.getErrorCode(),
+                            failure);
+                }
+                if (cause instanceof RuntimeException failure) {
+                    throw new IllegalStateException("nonce batch failed", failure);
+                }
+                throw exception;
+            }
+        }
+    }
+
+    /** {@link BatchingJdbcNonceConsumer} 构建器。 */
+    public static final class Builder {
+        private final DataSource dataSource;
+        private final JdbcDialect dialect;
+        private String tableName = DEFAULT_TABLE;
+        private JdbcKeyFormat keyFormat = JdbcKeyFormat.HEX;
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        private Duration maxWait = DEFAULT_MAX_WAIT;
+        private Clock clock = Clock.systemUTC();
+        private boolean partitioned;
+
+        private Builder(DataSource dataSource, JdbcDialect dialect) {
+            this.dataSource = Objects.requireNonNull(dataSource);
+            this.dialect = Objects.requireNonNull(dialect);
+        }
+
+        /** 防重放表名，规则同 {@link JdbcNonceConsumer}；默认 {@code cap_consumed_nonces}。 */
+        public Builder tableName(String tableName) {
+            Objects.requireNonNull(tableName);
+            JdbcNonceConsumer.requireTableName(tableName);
+            this.tableName = tableName;
+            return this;
+        }
+
+        /** 主键列格式，默认 {@link JdbcKeyFormat#HEX}。 */
+        public Builder keyFormat(JdbcKeyFormat keyFormat) {
+            this.keyFormat = Objects.requireNonNull(keyFormat);
+            return this;
+        }
+
+        /** 单条语句最多写入的行数，允许范围为 1..1000，默认 64；凑满后 leader 不再等待。 */
+        public Builder maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1 || maxBatchSize > MAXIMUM_BATCH_SIZE) {
+                throw new IllegalArgumentException("maxBatchSize must be between 1 and 1000");
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /** leader 收集同批请求的最长等待，允许范围为 0..1 秒，默认 2 毫秒；为 0 时只合并 leader 取批前已到达的请求。 */
+        public Builder maxWait(Duration maxWait) {
+            Objects.requireNonNull(maxWait);
+            if (maxWait.isNegative() || maxWait.compareTo(MAXIMUM_MAX_WAIT) > 0) {
+                throw new IllegalArgumentException("maxWait must be between 0 and 1 second");
+            }
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        /**
+         * 面向按 {@code expires_at} 小时分区的表，写入规则与 TTL 限制同 {@link JdbcNonceConsumer#partitioned}；分区维护见
+         * {@link JdbcNoncePartitionMaintainer}。
+         */
+        public Builder partitioned() {
+            partitioned = true;
+            return this;
+        }
+
+        Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock);
+            return this;
+        }
+
+        public BatchingJdbcNonceConsumer build() {
+            return new BatchingJdbcNonceConsumer(this);
+        }
+    }
+}
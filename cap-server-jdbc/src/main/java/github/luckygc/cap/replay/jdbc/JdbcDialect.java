@@ -1,30 +1,106 @@
 package github.luckygc.cap.replay.jdbc;
 
 import java.sql.SQLException;
+import java.util.Collections;
 
-/** JDBC 重复键错误分类方言。 */
+/** JDBC 冲突容忍写入、分批过期清理语句与重复键错误分类方言。 */
 public enum JdbcDialect {
     POSTGRESQL {
+        @Override
+        String conflictTolerantInsert(String tableName, String keyColumn, int rows) {
+            return "INSERT INTO "
+                    + tableName
+                    + " ("
+                    + keyColumn
+                    + ", expires_at) VALUES "
+                    + rowPlaceholders(rows)
+                    + " ON CONFLICT DO NOTHING";
+        }
+
+        @Override
+        String deleteExpiredBatch(String tableName) {
+            return "DELETE FROM "
+                    + tableName
+                    + " WHERE ctid = ANY(ARRAY(SELECT ctid FROM "
+                    + tableName
+                    + " WHERE expires_at < ? ORDER BY expires_at LIMIT ?))";
+        }
+
         @Override
         boolean isDuplicateKey(SQLException exception) {
             return hasError(exception, "23505", 0, false);
         }
     },
     MYSQL {
+        @Override
+        String conflictTolerantInsert(String tableName, String keyColumn, int rows) {
+            return insertIgnore(tableName, keyColumn, rows);
+        }
+
+        @Override
+        String deleteExpiredBatch(String tableName) {
+            return deleteOrderedLimit(tableName);
+        }
+
         @Override
         boolean isDuplicateKey(SQLException exception) {
             return hasError(exception, "23000", 1062, true);
         }
     },
     MARIADB {
+        @Override
+        String conflictTolerantInsert(String tableName, String keyColumn, int rows) {
+            return insertIgnore(tableName, keyColumn, rows);
+        }
+
+        @Override
+        String deleteExpiredBatch(String tableName) {
+            return deleteOrderedLimit(tableName);
+        }
+
         @Override
         boolean isDuplicateKey(SQLException exception) {
             return hasError(exception, "23000", 1062, true);
         }
     };
 
+    /** 单行写入语句：主键冲突时不报错，update count 为 1 表示写入、0 表示已存在。 */
+    String conflictTolerantInsert(String tableName, String keyColumn) {
+        return conflictTolerantInsert(tableName, keyColumn, 1);
+    }
+
+    /** 多行写入语句：冲突行被跳过，update count 为实际写入行数。 */
+    abstract String conflictTolerantInsert(String tableName, String keyColumn, int rows);
+
+    /** 按 {@code expires_at} 索引顺序删除至多 {@code LIMIT} 行早于截止时刻的记录；参数依次为截止时刻与行数上限。 */
+    abstract String deleteExpiredBatch(String tableName);
+
+    /** 早于截止时刻的最早 {@code expires_at}，沿 {@code expires_at} 索引只读取一项；参数为截止时刻，没有记录时结果为 NULL。 */
+    String oldestExpired(String tableName) {
+        return "SELECT MIN(expires_at) FROM " + tableName + " WHERE expires_at < ?";
+    }
+
+    /** 冲突容忍语句仍可能抛出的重复键错误，例如 PostgreSQL 不能作为冲突仲裁的 DEFERRABLE 主键。 */
     abstract boolean isDuplicateKey(SQLException exception);
 
+    /** {@code INSERT IGNORE} 返回受影响行数，不受 {@code CLIENT_FOUND_ROWS} 影响。 */
+    private static String insertIgnore(String tableName, String keyColumn, int rows) {
+        return "INSERT IGNORE INTO "
+                + tableName
+                + " ("
+                + keyColumn
+                + ", expires_at) VALUES "
+                + rowPlaceholders(rows);
+    }
+
+    private static String rowPlaceholders(int rows) {
+        return String.join(", ", Collections.nCopies(rows, "(?, ?)"));
+    }
+
+    private static String deleteOrderedLimit(String tableName) {
+        return "DELETE FROM " + tableName + " WHERE expires_at < ? ORDER BY expires_at LIMIT ?";
+    }
+
     private static boolean hasError(
             SQLException exception, String sqlState, int errorCode, boolean matchErrorCode) {
         for (SQLException current = exception;
@@ -0,0 +1,22 @@
+package github.luckygc.cap.replay.jdbc;
+
+/** 防重放表主键列的保存格式。 */
+public enum JdbcKeyFormat {
+    /** {@code signature_hex} 列保存 64 字符小写十六进制签名，与既有表结构兼容。 */
+    HEX("signature_hex"),
+    /**
+     * {@code signature} 列保存 32 字节原始签名，PostgreSQL 使用 {@code bytea}，MySQL / MariaDB 使用 {@code
+     * BINARY(32)}；主键索引约为十六进制的一半。
+     */
+    BINARY("signature");
+
+    private final String column;
+
+    JdbcKeyFormat(String column) {
+        this.column = column;
+    }
+
+    String column() {
+        return column;
+    }
+}
@@ -1,6 +1,6 @@
 package github.luckygc.cap.replay.jdbc;
 
-import github.luckygc.cap.NonceConsumer;
+import github.luckygc.cap.BinaryNonceConsumer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -8,6 +8,7 @@ import java.sql.Timestamp;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HexFormat;
 import java.util.Objects;
 import java.util.regex.Pattern;
 import javax.sql.DataSource;
@@ -16,26 +17,38 @@ import javax.sql.DataSource;
  * 通过数据库唯一约束原子消费 challenge 签名。
  *
  * <p>{@link DataSource#getConnection()} 每次必须返回独立且初始 {@code autoCommit=true}
- * 的连接，不得返回事务感知代理绑定的共享连接。本消费者独立提交或回滚；仅在识别为重复键、安全回滚且恢复自动提交与关闭连接均成功时返回 {@code false}。其余 {@link
- * SQLException}（包括回滚、恢复自动提交或关闭资源失败）会传播给受信宿主，并按 JDBC 与 try-with-resources 的 suppression 语义保留已有异常链。
+ * 的连接，不得返回事务感知代理绑定的共享连接。每次消费只在自动提交模式下执行一条 {@link JdbcDialect#conflictTolerantInsert
+ * 冲突容忍写入}，不切换事务、不提交也不回滚：update count 为 1 返回 {@code true}，为 0（签名已存在）返回 {@code
+ * false}，其他值按失败处理。写入仍抛出可识别的重复键错误时同样返回 {@code false}；其余 {@link SQLException}（包括关闭资源失败）会传播给受信宿主，并按
+ * JDBC 与 try-with-resources 的 suppression 语义保留已有异常链。
+ *
+ * <p>主键列格式由 {@link JdbcKeyFormat} 决定，默认 {@link JdbcKeyFormat#HEX}；字符串与原始字节签名按表格式互相转换后写入。
+ *
+ * <p>{@link #partitioned} 创建的消费者面向按小时分区的表，分区维护见 {@link
+ * JdbcNoncePartitionMaintainer}。构造器创建的消费者写入精确到期时刻， 不得用于主键为 {@code (signature, expires_at)}
+ * 的分区表：同一签名每次消费的到期时刻不同，主键不冲突，重放会被接受。
  */
-public final class JdbcNonceConsumer implements NonceConsumer {
+public final class JdbcNonceConsumer implements BinaryNonceConsumer {
     private static final String DEFAULT_TABLE = "cap_consumed_nonces";
     private static final Duration MIN_TTL = Duration.ofMillis(1);
     private static final Duration MAX_TTL = Duration.ofHours(24);
     private static final Pattern TABLE_NAME =
             Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)*");
+    private static final HexFormat HEX = HexFormat.of();
 
     private final DataSource dataSource;
     private final JdbcDialect dialect;
+    private final JdbcKeyFormat keyFormat;
     private final String insertSql;
+    // 分区模式跨小时边界时写入两行，仅 partitioned 为 true 时使用。
+    private final String pairInsertSql;
+    private final boolean partitioned;
     private final Clock clock;
 
     /**
      * 使用默认表创建消费者。{@link DataSource#getConnection()} 每次必须返回独立且初始 {@code autoCommit=true}
-     * 的连接，不得返回事务感知代理绑定的共享连接；本消费者独立提交或回滚。仅在识别为重复键、安全回滚且恢复自动提交与关闭连接均成功时返回 {@code false}。其余 {@link
-     * SQLException}（包括回滚、恢复自动提交或关闭资源失败）会传播给受信宿主，并按 JDBC 与 try-with-resources 的 suppression
-     * 语义保留已有异常链。
+     * 的连接，不得返回事务感知代理绑定的共享连接；本消费者以单条自动提交语句写入。签名已存在时返回 {@code false}，其余 {@link
+     * SQLException}（包括关闭资源失败）会传播给受信宿主，并按 JDBC 与 try-with-resources 的 suppression 语义保留已有异常链。
      */
     public JdbcNonceConsumer(DataSource dataSource, JdbcDialect dialect) {
         this(dataSource, dialect, DEFAULT_TABLE);
@@ -43,94 +56,164 @@ public final class JdbcNonceConsumer implements NonceConsumer {
 
     /**
      * 使用指定表创建消费者。{@link DataSource#getConnection()} 每次必须返回独立且初始 {@code autoCommit=true}
-     * 的连接，不得返回事务感知代理绑定的共享连接；本消费者独立提交或回滚。仅在识别为重复键、安全回滚且恢复自动提交与关闭连接均成功时返回 {@code false}。其余 {@link
-     * SQLException}（包括回滚、恢复自动提交或关闭资源失败）会传播给受信宿主，并按 JDBC 与 try-with-resources 的 suppression
-     * 语义保留已有异常链。
+     * 的连接，不得返回事务感知代理绑定的共享连接；本消费者以单条自动提交语句写入。签名已存在时返回 {@code false}，其余 {@link
+     * SQLException}（包括关闭资源失败）会传播给受信宿主，并按 JDBC 与 try-with-resources 的 suppression 语义保留已有异常链。
      */
     public JdbcNonceConsumer(DataSource dataSource, JdbcDialect dialect, String tableName) {
-        this(dataSource, dialect, tableName, Clock.systemUTC());
+        this(dataSource, dialect, tableName, JdbcKeyFormat.HEX);
+    }
+
+    /** 使用指定表与主键列格式创建消费者；连接、事务与异常语义同其他构造器。 */
+    public JdbcNonceConsumer(
+            DataSource dataSource, JdbcDialect dialect, String tableName, JdbcKeyFormat keyFormat) {
+        this(dataSource, dialect, tableName, keyFormat, Clock.systemUTC());
     }
 
     JdbcNonceConsumer(DataSource dataSource, JdbcDialect dialect, String tableName, Clock clock) {
+        this(dataSource, dialect, tableName, JdbcKeyFormat.HEX, clock);
+    }
+
+    JdbcNonceConsumer(
+            DataSource dataSource,
+            JdbcDialect dialect,
+            String tableName,
+            JdbcKeyFormat keyFormat,
+            Clock clock) {
+        this(dataSource, dialect, tableName, keyFormat, clock, false);
+    }
+
+    private JdbcNonceConsumer(
+            DataSource dataSource,
+            JdbcDialect dialect,
+            String tableName,
+            JdbcKeyFormat keyFormat,
+            Clock clock,
+            boolean partitioned) {
         this.dataSource = Objects.requireNonNull(dataSource);
         this.dialect = Objects.requireNonNull(dialect);
         Objects.requireNonNull(tableName);
+        this.keyFormat = Objects.requireNonNull(keyFormat);
         this.clock = Objects.requireNonNull(clock);
-        if (!TABLE_NAME.matcher(tableName).matches()) {
-            throw new IllegalArgumentException("invalid nonce table name");
-        }
-        insertSql = "INSERT INTO " + tableName + " (signature_hex, expires_at) VALUES (?, ?)";
+        requireTableName(tableName);
+        insertSql = dialect.conflictTolerantInsert(tableName, keyFormat.column());
+        pairInsertSql = dialect.conflictTolerantInsert(tableName, keyFormat.column(), 2);
+        this.partitioned = partitioned;
+    }
+
+    /**
+     * 为按 {@code expires_at} 小时分区的表创建消费者；连接、事务与异常语义同构造器。
+     *
+     * <p>分区表主键必须包含 {@code expires_at}，因此这里写入的不是精确到期时刻，而是到期所在小时的结束时刻。到期时刻距小时边界不足 30
+     * 秒时，同一条语句同时写入相邻两个小时的行，全部写入才返回 {@code true}：同一签名的两次消费计算出的到期时刻只相差两次读钟的间隔，
+     * 所写行集合必然相交，因此至多一次成功。目标分区不存在时写入失败或按重放拒绝，TTL 超过 24 小时时抛出 {@link IllegalArgumentException}，均为
+     * fail closed。
+     */
+    public static JdbcNonceConsumer partitioned(
+            DataSource dataSource, JdbcDialect dialect, String tableName, JdbcKeyFormat keyFormat) {
+        return partitioned(dataSource, dialect, tableName, keyFormat, Clock.systemUTC());
+    }
+
+    static JdbcNonceConsumer partitioned(
+            DataSource dataSource,
+            JdbcDialect dialect,
+            String tableName,
+            JdbcKeyFormat keyFormat,
+            Clock clock) {
+        return new JdbcNonceConsumer(dataSource, dialect, tableName, keyFormat, clock, true);
     }
 
     @Override
     public boolean consume(String signatureHex, Duration ttl) throws Exception {
         Objects.requireNonNull(signatureHex);
         Objects.requireNonNull(ttl);
-        Instant expiresAt = expiresAt(ttl);
+        if (keyFormat == JdbcKeyFormat.BINARY) {
+            return insert(HEX.parseHex(signatureHex), ttl);
+        }
+        return insert(signatureHex, ttl);
+    }
+
+    @Override
+    public boolean consume(byte[] signature, Duration ttl) throws Exception {
+        Objects.requireNonNull(signature);
+        Objects.requireNonNull(ttl);
+        if (keyFormat == JdbcKeyFormat.HEX) {
+            return insert(HEX.formatHex(signature), ttl);
+        }
+        return insert(signature, ttl);
+    }
+
+    /** key 为十六进制字符串或原始字节，与表的主键列格式一致。 */
+    private boolean insert(Object key, Duration ttl) throws SQLException {
+        Instant[] rows = expiryRows(clock, ttl, partitioned);
         try (Connection connection = dataSource.getConnection()) {
             if (!connection.getAutoCommit()) {
                 throw new SQLException("nonce connection must be independent");
             }
-            connection.setAutoCommit(false);
-            SQLException primaryFailure = null;
             SQLException duplicateCandidate = null;
-            try {
-                try {
-                    try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
-                        statement.setString(1, signatureHex);
-                        statement.setTimestamp(2, Timestamp.from(expiresAt));
-                        try {
-                            statement.executeUpdate();
-                        } catch (SQLException failure) {
-                            duplicateCandidate = failure;
-                            throw failure;
-                        }
-                    }
-                } catch (SQLException failure) {
-                    primaryFailure = failure;
-                    rollbackOrSuppress(connection, failure);
-                    if (failure == duplicateCandidate
-                            && dialect.isDuplicateKey(failure)
-                            && failure.getSuppressed().length == 0) {
-                        return false;
+            try (PreparedStatement statement =
+                    connection.prepareStatement(rows.length == 1 ? insertSql : pairInsertSql)) {
+                for (int row = 0; row < rows.length; row++) {
+                    int index = row * 2 + 1;
+                    if (key instanceof byte[] raw) {
+                        statement.setBytes(index, raw);
+                    } else {
+                        statement.setString(index, (String) key);
                     }
-                    throw failure;
+                    statement.setTimestamp(index + 1, Timestamp.from(rows[row]));
                 }
+                int updateCount;
                 try {
-                    connection.commit();
+                    updateCount = statement.executeUpdate();
                 } catch (SQLException failure) {
-                    primaryFailure = failure;
-                    rollbackOrSuppress(connection, failure);
+                    duplicateCandidate = failure;
                     throw failure;
                 }
-                return true;
-            } finally {
-                try {
-                    connection.setAutoCommit(true);
-                } catch (SQLException restoreFailure) {
-                    if (primaryFailure != null) {
-                        primaryFailure.addSuppressed(restoreFailure);
-                        throw primaryFailure;
-                    }
-                    throw restoreFailure;
+                if (updateCount == rows.length) {
+                    return true;
+                }
+                // 分区模式下部分写入说明与先前的消费共享了某一行，同样按重放处理。
+                if (updateCount >= 0 && updateCount < rows.length) {
+                    return false;
+                }
+                throw new SQLException("unexpected nonce insert update count");
+            } catch (SQLException failure) {
+                if (failure == duplicateCandidate
+                        && dialect.isDuplicateKey(failure)
+                        && failure.getSuppressed().length == 0) {
+                    return false;
                 }
+                throw failure;
             }
         }
     }
 
-    private Instant expiresAt(Duration ttl) {
+    static void requireTableName(String tableName) {
+        if (!TABLE_NAME.matcher(tableName).matches()) {
+            throw new IllegalArgumentException("invalid nonce table name");
+        }
+    }
+
+    /**
+     * 一次消费写入的 {@code expires_at}：普通表为精确到期时刻，分区表为 {@link JdbcNoncePartitionMaintainer#expiryBuckets}
+     * 的整点。
+     */
+    static Instant[] expiryRows(Clock clock, Duration ttl, boolean partitioned) {
+        if (!partitioned) {
+            return new Instant[] {expiresAt(clock, ttl)};
+        }
+        if (ttl.compareTo(MAX_TTL) > 0) {
+            // 截断后的到期时刻随消费时刻漂移，分区行不再稳定相交。
+            throw new IllegalArgumentException("partitioned nonce ttl exceeds 24 hours");
+        }
+        return JdbcNoncePartitionMaintainer.expiryBuckets(expiresAt(clock, ttl));
+    }
+
+    /** TTL 截断到 1 毫秒..24 小时后的到期时刻。 */
+    static Instant expiresAt(Clock clock, Duration ttl) {
         Duration effectiveTtl = ttl.compareTo(MIN_TTL) < 0 ? MIN_TTL : ttl;
         if (effectiveTtl.compareTo(MAX_TTL) > 0) {
             effectiveTtl = MAX_TTL;
         }
         return clock.instant().plus(effectiveTtl);
     }
-
-    private static void rollbackOrSuppress(Connection connection, SQLException failure) {
-        try {
-            connection.rollback();
-        } catch (SQLException rollbackFailure) {
-            failure.addSuppressed(rollbackFailure);
-        }
-    }
 }
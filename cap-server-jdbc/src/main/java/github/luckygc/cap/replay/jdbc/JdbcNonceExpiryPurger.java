@@ -0,0 +1,348 @@
+package github.luckygc.cap.replay.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.sql.DataSource;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 分批删除防重放表中过期记录的可选清理器。
+ *
+ * <p>每批在一个自动提交连接上执行一条有界删除，只删除 {@code expires_at} 早于“当前时刻减去时钟偏差余量”的至多 {@code batchSize} 行：PostgreSQL
+ * 先按 {@code expires_at} 索引取出 {@code ctid} 再按 {@code ctid} 删除，MySQL / MariaDB 使用 {@code DELETE ...
+ * ORDER BY expires_at LIMIT}。每条语句持锁时间与 WAL / binlog 体积都有上界，不会像无界 {@code DELETE} 那样阻塞写入路径。
+ *
+ * <p>批间隔按本批删除行数自适应：删满一批说明仍有积压，按 {@code minDelay} 尽快继续；删除为 0 时按 {@code maxDelay} 空闲等待；
+ * 介于两者之间时按删除比例线性插值。间隔不短于本批执行耗时，使清理占用的数据库时间不超过一半。失败时按 {@code maxDelay} 重试。
+ *
+ * <p>删满一批时在同一连接上再沿索引查询剩余最早的过期 {@code expires_at}，以其距当前时刻的时长报告积压程度；未删满时表中已没有早于截止时刻的记录，不再查询。
+ *
+ * <p>调度由宿主提供的 {@link ScheduledExecutorService} 执行，同一清理器任一时刻至多一批在运行；{@link #close()} 只停止后续批次，不关闭
+ * executor。表名、{@link DataSource} 的独立连接要求与 {@link JdbcNonceConsumer} 相同；分区表模式应删除分区而不是使用本清理器。
+ */
+public final class JdbcNonceExpiryPurger implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdbcNonceExpiryPurger.class);
+    private static final String DEFAULT_TABLE = "cap_consumed_nonces";
+    private static final int DEFAULT_BATCH_SIZE = 1_000;
+    private static final int MAXIMUM_BATCH_SIZE = 100_000;
+    private static final Duration MINIMUM_SKEW_MARGIN = Duration.ofMinutes(1);
+    private static final Duration MAXIMUM_SKEW_MARGIN = Duration.ofHours(24);
+    private static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(50);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofMinutes(1);
+    private static final Duration MAXIMUM_DELAY = Duration.ofHours(1);
+
+    private final DataSource dataSource;
+    private final ScheduledExecutorService scheduler;
+    private final String deleteSql;
+    private final String oldestExpiredSql;
+    private final int batchSize;
+    private final Duration skewMargin;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final Listener listener;
+    private final Clock clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    // 以下三个字段仅在 lock 内读写。
+    private @Nullable Future<?> next;
+    private boolean started;
+    private boolean closed;
+    // 批次串行执行，前一批重新调度后一批，由 executor 提供 happens-before。
+    private long totalDeleted;
+
+    private JdbcNonceExpiryPurger(Builder builder) {
+        if (builder.minDelay.compareTo(builder.maxDelay) > 0) {
+            throw new IllegalArgumentException("minDelay must not exceed maxDelay");
+        }
+        dataSource = builder.dataSource;
+        scheduler = builder.scheduler;
+        deleteSql = builder.dialect.deleteExpiredBatch(builder.tableName);
+        oldestExpiredSql = builder.dialect.oldestExpired(builder.tableName);
+        batchSize = builder.batchSize;
+        skewMargin = builder.skewMargin;
+        minDelayNanos = builder.minDelay.toNanos();
+        maxDelayNanos = builder.maxDelay.toNanos();
+        listener = builder.listener;
+        clock = builder.clock;
+    }
+
+    /**
+     * 使用默认表、每批最多 1000 行、一分钟时钟偏差余量、批间隔 50 毫秒..1 分钟创建构建器。
+     *
+     * @param scheduler 宿主管理生命周期的调度器；清理器不会关闭它
+     */
+    public static Builder builder(
+            DataSource dataSource, JdbcDialect dialect, ScheduledExecutorService scheduler) {
+        return new Builder(dataSource, dialect, scheduler);
+    }
+
+    /** 立即调度第一批；只能调用一次，关闭后不能再启动。 */
+    public void start() {
+        lock.lock();
+        try {
+            if (started || closed) {
+                throw new IllegalStateException("purger already started or closed");
+            }
+            started = true;
+            next = scheduler.schedule(this::run, 0, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 停止调度后续批次；正在执行的一批会完成，但不会再被重新调度。 */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            if (next != null) {
+                next.cancel(false);
+                next = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        long delayNanos = purgeBatch();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            next = scheduler.schedule(this::run, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException rejected) {
+            // 宿主已关闭调度器，清理随之停止。
+            closed = true;
+            next = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 执行一批删除并通知监听器，返回距下一批的纳秒数。 */
+    long purgeBatch() {
+        long startedAt = System.nanoTime();
+        Purged purged;
+        try {
+            purged = purgeExpired();
+        } catch (SQLException | RuntimeException failure) {
+            LOGGER.warn("CAP nonce purge failed: type={}", failure.getClass().getName());
+            notifyListener(() -> listener.batchFailed(failure));
+            return maxDelayNanos;
+        }
+        long latencyNanos = System.nanoTime() - startedAt;
+        int deleted = purged.deleted();
+        totalDeleted += deleted;
+        long delayNanos = nextDelayNanos(deleted, latencyNanos);
+        BatchEvent event =
+                new BatchEvent(
+                        deleted,
+                        deleted == batchSize,
+                        purged.backlogAge(),
+                        Duration.ofNanos(latencyNanos),
+                        Duration.ofNanos(delayNanos),
+                        totalDeleted);
+        LOGGER.debug(
+                "CAP nonce purge batch: deleted={}, backlogged={}, backlogAge={}, latency={},"
+                        + " nextDelay={}, totalDeleted={}",
+                event.deleted(),
+                event.backlogged(),
+                event.backlogAge(),
+                event.latency(),
+                event.nextDelay(),
+                event.totalDeleted());
+        notifyListener(() -> listener.batchCompleted(event));
+        return delayNanos;
+    }
+
+    private Purged purgeExpired() throws SQLException {
+        Instant now = clock.instant();
+        Timestamp cutoff = Timestamp.from(now.minus(skewMargin));
+        try (Connection connection = dataSource.getConnection()) {
+            if (!connection.getAutoCommit()) {
+                throw new SQLException("nonce connection must be independent");
+            }
+            int deleted = deleteExpired(connection, cutoff);
+            if (deleted < batchSize) {
+                return new Purged(deleted, Duration.ZERO);
+            }
+            @Nullable Timestamp oldest = oldestExpired(connection, cutoff);
+            Duration backlogAge =
+                    oldest == null ? Duration.ZERO : Duration.between(oldest.toInstant(), now);
+            return new Purged(deleted, backlogAge.isNegative() ? Duration.ZERO : backlogAge);
+        }
+    }
+
+    private int deleteExpired(Connection connection, Timestamp cutoff) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(deleteSql)) {
+            statement.setTimestamp(1, cutoff);
+            statement.setInt(2, batchSize);
+            int deleted = statement.executeUpdate();
+            if (deleted < 0 || deleted > batchSize) {
+                throw new SQLException("unexpected nonce purge update count");
+            }
+            return deleted;
+        }
+    }
+
+    private @Nullable Timestamp oldestExpired(Connection connection, Timestamp cutoff)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(oldestExpiredSql)) {
+            statement.setTimestamp(1, cutoff);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getTimestamp(1) : null;
+            }
+        }
+    }
+
+    private long nextDelayNanos(int deleted, long latencyNanos) {
+        double idle = (double) (batchSize - deleted) / batchSize;
+        long paced = minDelayNanos + (long) ((maxDelayNanos - minDelayNanos) * idle);
+        return Math.max(paced, Math.min(latencyNanos, maxDelayNanos));
+    }
+
+    private static void notifyListener(Runnable call) {
+        try {
+            call.run();
+        } catch (RuntimeException exception) {
+            LOGGER.warn("CAP nonce purge listener failed: type={}", exception.getClass().getName());
+        }
+    }
+
+    /** 接收清理批次指标；在宿主调度器线程上同步调用，异常会被隔离。 */
+    public interface Listener {
+
+        default void batchCompleted(BatchEvent event) {}
+
+        /** 本批失败；清理器会在 {@code maxDelay} 后重试。 */
+        default void batchFailed(Exception failure) {}
+    }
+
+    /**
+     * 一批清理的结果。
+     *
+     * @param deleted 本批删除行数
+     * @param backlogged 本批删满 {@code batchSize}，表中很可能仍有过期积压
+     * @param backlogAge 本批之后剩余最早过期记录的 {@code expires_at} 距当前时刻的时长；没有积压时为 0
+     * @param latency 本批获取连接、执行删除与积压查询的耗时
+     * @param nextDelay 距下一批的间隔
+     * @param totalDeleted 自创建以来累计删除行数
+     */
+    public record BatchEvent(
+            int deleted,
+            boolean backlogged,
+            Duration backlogAge,
+            Duration latency,
+            Duration nextDelay,
+            long totalDeleted) {
+
+        public BatchEvent {
+            Objects.requireNonNull(backlogAge, "backlogAge");
+            Objects.requireNonNull(latency, "latency");
+            Objects.requireNonNull(nextDelay, "nextDelay");
+        }
+    }
+
+    private record Purged(int deleted, Duration backlogAge) {}
+
+    /** {@link JdbcNonceExpiryPurger} 构建器。 */
+    public static final class Builder {
+        private final DataSource dataSource;
+        private final JdbcDialect dialect;
+        private final ScheduledExecutorService scheduler;
+        private String tableName = DEFAULT_TABLE;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private Duration skewMargin = MINIMUM_SKEW_MARGIN;
+        private Duration minDelay = DEFAULT_MIN_DELAY;
+        private Duration maxDelay = DEFAULT_MAX_DELAY;
+        private Listener listener = new Listener() {};
+        private Clock clock = Clock.systemUTC();
+
+        private Builder(
+                DataSource dataSource, JdbcDialect dialect, ScheduledExecutorService scheduler) {
+            this.dataSource = Objects.requireNonNull(dataSource);
+            this.dialect = Objects.requireNonNull(dialect);
+            this.scheduler = Objects.requireNonNull(scheduler);
+        }
+
+        /** 防重放表名，规则同 {@link JdbcNonceConsumer}；默认 {@code cap_consumed_nonces}。 */
+        public Builder tableName(String tableName) {
+            Objects.requireNonNull(tableName);
+            JdbcNonceConsumer.requireTableName(tableName);
+            this.tableName = tableName;
+            return this;
+        }
+
+        /** 单条删除语句最多删除的行数，允许范围为 1..100000，默认 1000。 */
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1 || batchSize > MAXIMUM_BATCH_SIZE) {
+                throw new IllegalArgumentException("batchSize must be between 1 and 100000");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /** 过期时刻之后仍保留记录的时钟偏差余量，允许范围为 1 分钟..24 小时，默认 1 分钟；只能按已验证的偏差上界增大。 */
+        public Builder skewMargin(Duration skewMargin) {
+            Objects.requireNonNull(skewMargin);
+            if (skewMargin.compareTo(MINIMUM_SKEW_MARGIN) < 0
+                    || skewMargin.compareTo(MAXIMUM_SKEW_MARGIN) > 0) {
+                throw new IllegalArgumentException(
+                        "skewMargin must be between 1 minute and 24 hours");
+            }
+            this.skewMargin = skewMargin;
+            return this;
+        }
+
+        /** 删满一批后的间隔，允许范围为 0..1 小时，默认 50 毫秒；不得大于 {@link #maxDelay}。 */
+        public Builder minDelay(Duration minDelay) {
+            this.minDelay = requireDelay(minDelay, "minDelay");
+            return this;
+        }
+
+        /** 没有过期记录或失败后的间隔，允许范围为 0..1 小时，默认 1 分钟。 */
+        public Builder maxDelay(Duration maxDelay) {
+            this.maxDelay = requireDelay(maxDelay, "maxDelay");
+            return this;
+        }
+
+        /** 批次指标监听器，默认忽略。 */
+        public Builder listener(Listener listener) {
+            this.listener = Objects.requireNonNull(listener);
+            return this;
+        }
+
+        Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock);
+            return this;
+        }
+
+        public JdbcNonceExpiryPurger build() {
+            return new JdbcNonceExpiryPurger(this);
+        }
+
+        private static Duration requireDelay(Duration delay, String name) {
+            Objects.requireNonNull(delay);
+            if (delay.isNegative() || delay.compareTo(MAXIMUM_DELAY) > 0) {
+                throw new IllegalArgumentException(name + " must be between 0 and 1 hour");
+            }
+            return delay;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package github.luckygc.cap.replay.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 维护按 {@code expires_at} 小时分区的防重放表：预建即将写入的分区，删除已整体过期的分区。
+ *
+ * <p>配合 {@link JdbcNonceConsumer#partitioned} 使用，表中 {@code expires_at} 只存放整点。每个分区只容纳一个整点 {@code E}，
+ * 分区名以 {@code E} 的 UTC 小时结尾：PostgreSQL 为声明式范围分区 {@code <table>_pyyyyMMddHH}，MySQL / MariaDB 为
+ * {@code RANGE (UNIX_TIMESTAMP(expires_at))} 下的 {@code pyyyyMMddHH}。清理只删除分区，不逐行删除，也不产生索引维护开销。
+ *
+ * <p>{@link #maintain()} 预建从新写入可能落入的最早整点到 {@code horizon}（默认 30 小时，至少覆盖 24 小时最长 TTL
+ * 加边界余量）内缺失的分区，并删除满足 {@code E + skewMargin <= now} 的分区。宿主应至少每小时调用一次；{@code horizon} 超出 26
+ * 小时的部分是维护中断时的缓冲。MySQL / MariaDB 只能在末尾追加分区，表必须带有一个不会被删除的初始分区，见存储文档中的 DDL。
+ */
+public final class JdbcNoncePartitionMaintainer {
+    private static final String DEFAULT_TABLE = "cap_consumed_nonces";
+    private static final Duration BOUNDARY_TOLERANCE = Duration.ofSeconds(30);
+    private static final long HOUR_MILLIS = Duration.ofHours(1).toMillis();
+    private static final Duration MINIMUM_SKEW_MARGIN = Duration.ofMinutes(1);
+    private static final Duration MAXIMUM_SKEW_MARGIN = Duration.ofHours(24);
+    private static final Duration MINIMUM_HORIZON = Duration.ofHours(26);
+    private static final Duration DEFAULT_HORIZON = Duration.ofHours(30);
+    private static final Duration MAXIMUM_HORIZON = Duration.ofDays(7);
+    private static final int POSTGRESQL_IDENTIFIER_LENGTH = 63;
+    private static final DateTimeFormatter PARTITION_HOUR =
+            DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC);
+    private static final Pattern PARTITION_SUFFIX = Pattern.compile("p(\\d{10})");
+
+    private final DataSource dataSource;
+    private final JdbcDialect dialect;
+    private final String tableName;
+    private final @Nullable String schema;
+    private final String baseName;
+    private final Duration skewMargin;
+    private final Duration horizon;
+    private final Clock clock;
+
+    private JdbcNoncePartitionMaintainer(Builder builder) {
+        dataSource = builder.dataSource;
+        dialect = builder.dialect;
+        tableName = builder.tableName;
+        int dot = tableName.lastIndexOf('.');
+        schema = dot < 0 ? null : tableName.substring(0, dot);
+        baseName = tableName.substring(dot + 1);
+        if (dialect == JdbcDialect.POSTGRESQL
+                && baseName.length() + 12 > POSTGRESQL_IDENTIFIER_LENGTH) {
+            throw new IllegalArgumentException("nonce table name too long for partitions");
+        }
+        skewMargin = builder.skewMargin;
+        horizon = builder.horizon;
+        clock = builder.clock;
+    }
+
+    /** 使用默认表、一分钟时钟偏差余量与 30 小时预建范围创建构建器。 */
+    public static Builder builder(DataSource dataSource, JdbcDialect dialect) {
+        return new Builder(dataSource, dialect);
+    }
+
+    /**
+     * 预建缺失分区并删除已过期分区；先建后删，两步都在自动提交连接上逐条执行。
+     *
+     * @return 本次新建与删除的分区名
+     */
+    public Result maintain() throws SQLException {
+        Instant now = clock.instant();
+        // 新写入的最早整点：到期时刻至少为当前时刻，减去边界余量后向上取整。
+        long first = ceilHour(now.minus(BOUNDARY_TOLERANCE).toEpochMilli());
+        long last = ceilHour(now.plus(horizon).toEpochMilli());
+        try (Connection connection = dataSource.getConnection()) {
+            if (!connection.getAutoCommit()) {
+                throw new SQLException("nonce connection must be independent");
+            }
+            TreeMap<Instant, String> existing = partitions(connection);
+            List<Instant> missing = new ArrayList<>();
+            for (long end = first; end <= last; end += HOUR_MILLIS) {
+                Instant bucket = Instant.ofEpochMilli(end);
+                // MySQL / MariaDB 的分区区间首尾相接，低于已有最大分区的整点已被后继分区覆盖。
+                boolean covered =
+                        dialect != JdbcDialect.POSTGRESQL
+                                && !existing.isEmpty()
+                                && bucket.isBefore(existing.lastKey());
+                if (!existing.containsKey(bucket) && !covered) {
+                    missing.add(bucket);
+                }
+            }
+            List<String> created = create(connection, missing);
+            List<String> expired = new ArrayList<>();
+            for (Map.Entry<Instant, String> partition : existing.entrySet()) {
+                if (!partition.getKey().plus(skewMargin).isAfter(now)) {
+                    expired.add(partition.getValue());
+                }
+            }
+            drop(connection, expired);
+            return new Result(created, expired);
+        }
+    }
+
+    /**
+     * 分区模式下一次消费写入的整点：到期时刻前后 30 秒所在小时的结束时刻，去重后为一个或两个。
+     *
+     * <p>同一签名两次消费的到期时刻相差远小于 30 秒，两段区间必然重叠，重叠点所在整点同时出现在两次写入中。
+     */
+    static Instant[] expiryBuckets(Instant expiresAt) {
+        long low = ceilHour(expiresAt.minus(BOUNDARY_TOLERANCE).toEpochMilli());
+        long high = ceilHour(expiresAt.plus(BOUNDARY_TOLERANCE).toEpochMilli());
+        if (low == high) {
+            return new Instant[] {Instant.ofEpochMilli(low)};
+        }
+        return new Instant[] {Instant.ofEpochMilli(low), Instant.ofEpochMilli(high)};
+    }
+
+    private static long ceilHour(long epochMillis) {
+        return -Math.floorDiv(-epochMillis, HOUR_MILLIS) * HOUR_MILLIS;
+    }
+
+    /** 按整点排序的已有分区；名称不符合命名规则的分区（如 MySQL 初始分区）不参与维护。 */
+    private TreeMap<Instant, String> partitions(Connection connection) throws SQLException {
+        TreeMap<Instant, String> partitions = new TreeMap<>();
+        String prefix =
+                dialect == JdbcDialect.POSTGRESQL ? baseName.toLowerCase(Locale.ROOT) + "_" : "";
+        try (PreparedStatement statement = connection.prepareStatement(partitionQuery())) {
+            if (dialect == JdbcDialect.POSTGRESQL) {
+                statement.setString(1, tableName);
+            } else {
+                if (schema == null) {
+                    statement.setNull(1, Types.VARCHAR);
+                } else {
+                    statement.setString(1, schema);
+                }
+                statement.setString(2, baseName);
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    String name = rows.getString(1);
+                    if (name == null || !name.startsWith(prefix)) {
+                        continue;
+                    }
+                    Instant bucket = bucket(name.substring(prefix.length()));
+                    if (bucket != null) {
+                        partitions.put(bucket, name);
+                    }
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private String partitionQuery() {
+        if (dialect == JdbcDialect.POSTGRESQL) {
+            return "SELECT c.relname FROM pg_catalog.pg_inherits i"
+                    + " JOIN pg_catalog.pg_class c ON c.oid = i.inhrelid"
+                    + " WHERE i.inhparent = CAST(? AS regclass)";
+        }
+        return "SELECT PARTITION_NAME FROM information_schema.PARTITIONS"
+                + " WHERE TABLE_SCHEMA = COALESCE(?, DATABASE()) AND TABLE_NAME = ?";
+    }
+
+    private static @Nullable Instant bucket(String suffix) {
+        Matcher matcher = PARTITION_SUFFIX.matcher(suffix);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String hour = matcher.group(1);
+        try {
+            return LocalDateTime.of(
+                            Integer.parseInt(hour.substring(0, 4)),
+                            Integer.parseInt(hour.substring(4, 6)),
+                            Integer.parseInt(hour.substring(6, 8)),
+                            Integer.parseInt(hour.substring(8, 10)),
+                            0)
+                    .toInstant(ZoneOffset.UTC);
+        } catch (DateTimeException invalid) {
+            return null;
+        }
+    }
+
+    private List<String> create(Connection connection, List<Instant> buckets) throws SQLException {
+        List<String> created = new ArrayList<>();
+        if (buckets.isEmpty()) {
+            return created;
+        }
+        try (Statement statement = connection.createStatement()) {
+            if (dialect == JdbcDialect.POSTGRESQL) {
+                for (Instant bucket : buckets) {
+                    String name = partitionName(bucket);
+                    statement.executeUpdate(
+                            "CREATE TABLE IF NOT EXISTS "
+                                    + qualified(name)
+                                    + " PARTITION OF "
+                                    + tableName
+                                    + " FOR VALUES FROM ('"
+                                    + bucket
+                                    + "') TO ('"
+                                    + bucket.plusMillis(HOUR_MILLIS)
+                                    + "')");
+                    created.add(name);
+                }
+                return created;
+            }
+            StringBuilder sql =
+                    new StringBuilder("ALTER TABLE ").append(tableName).append(" ADD PARTITION (");
+            for (Instant bucket : buckets) {
+                String name = partitionName(bucket);
+                if (!created.isEmpty()) {
+                    sql.append(", ");
+                }
+                sql.append("PARTITION ")
+                        .append(name)
+                        .append(" VALUES LESS THAN (")
+                        .append(bucket.getEpochSecond() + HOUR_MILLIS / 1_000)
+                        .append(')');
+                created.add(name);
+            }
+            statement.executeUpdate(sql.append(')').toString());
+        }
+        return created;
+    }
+
+    private void drop(Connection connection, List<String> names) throws SQLException {
+        if (names.isEmpty()) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            if (dialect == JdbcDialect.POSTGRESQL) {
+                for (String name : names) {
+                    statement.executeUpdate("DROP TABLE IF EXISTS " + qualified(name));
+                }
+                return;
+            }
+            statement.executeUpdate(
+                    "ALTER TABLE " + tableName + " DROP PARTITION " + String.join(", ", names));
+        }
+    }
+
+    private String partitionName(Instant bucket) {
+        String suffix = "p" + PARTITION_HOUR.format(bucket);
+        if (dialect != JdbcDialect.POSTGRESQL) {
+            return suffix;
+        }
+        return baseName.toLowerCase(Locale.ROOT) + "_" + suffix;
+    }
+
+    private String qualified(String partition) {
+        return schema == null ? partition : schema + "." + partition;
+    }
+
+    /**
+     * 一次维护的结果。
+     *
+     * @param created 新建的分区名，不含 schema
+     * @param dropped 删除的分区名，不含 schema
+     */
+    public record Result(List<String> created, List<String> dropped) {
+
+        public Result {
+            created = List.copyOf(created);
+            dropped = List.copyOf(dropped);
+        }
+    }
+
+    /** {@link JdbcNoncePartitionMaintainer} 构建器。 */
+    public static final class Builder {
+        private final DataSource dataSource;
+        private final JdbcDialect dialect;
+        private String tableName = DEFAULT_TABLE;
+        private Duration skewMargin = MINIMUM_SKEW_MARGIN;
+        private Duration horizon = DEFAULT_HORIZON;
+        private Clock clock = Clock.systemUTC();
+
+        private Builder(DataSource dataSource, JdbcDialect dialect) {
+            this.dataSource = Objects.requireNonNull(dataSource);
+            this.dialect = Objects.requireNonNull(dialect);
+        }
+
+        /** 分区父表名，规则同 {@link JdbcNonceConsumer}；默认 {@code cap_consumed_nonces}。 */
+        public Builder tableName(String tableName) {
+            Objects.requireNonNull(tableName);
+            JdbcNonceConsumer.requireTableName(tableName);
+            this.tableName = tableName;
+            return this;
+        }
+
+        /** 分区整点之后仍保留分区的时钟偏差余量，允许范围为 1 分钟..24 小时，默认 1 分钟；只能按已验证的偏差上界增大。 */
+        public Builder skewMargin(Duration skewMargin) {
+            Objects.requireNonNull(skewMargin);
+            if (skewMargin.compareTo(MINIMUM_SKEW_MARGIN) < 0
+                    || skewMargin.compareTo(MAXIMUM_SKEW_MARGIN) > 0) {
+                throw new IllegalArgumentException(
+                        "skewMargin must be between 1 minute and 24 hours");
+            }
+            this.skewMargin = skewMargin;
+            return this;
+        }
+
+        /** 从当前时刻起预建分区的范围，允许范围为 26 小时..7 天，默认 30 小时。 */
+        public Builder horizon(Duration horizon) {
+            Objects.requireNonNull(horizon);
+            if (horizon.compareTo(MINIMUM_HORIZON) < 0 || horizon.compareTo(MAXIMUM_HORIZON) > 0) {
+                throw new IllegalArgumentException("horizon must be between 26 hours and 7 days");
+            }
+            this.horizon = horizon;
+            return this;
+        }
+
+        Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock);
+            return this;
+        }
+
+        public JdbcNoncePartitionMaintainer build() {
+            return new JdbcNoncePartitionMaintainer(this);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package github.luckygc.cap.replay.jdbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("JDBC 合并写入防重放测试")
+class BatchingJdbcNonceConsumerTest {
+    private static final Duration TTL = Duration.ofSeconds(30);
+
+    @Test
+    @DisplayName("PostgreSQL 并发调用合并为一条 RETURNING 语句并逐个返回结果")
+    void coalescesConcurrentCallsIntoOneReturningStatement() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.existing.add("b");
+        BatchingJdbcNonceConsumer consumer =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.POSTGRESQL)
+                        .maxBatchSize(4)
+                        .maxWait(Duration.ofSeconds(1))
+                        .build();
+
+        List<Boolean> results = consumeConcurrently(consumer, List.of("a", "b", "c", "d"));
+
+        assertThat(results).containsExactly(true, false, true, true);
+        assertThat(jdbc.connections).hasValue(1);
+        assertThat(jdbc.preparedSql)
+                .containsExactly(
+                        "INSERT INTO cap_consumed_nonces (signature_hex, expires_at) VALUES "
+                                + "(?, ?), (?, ?), (?, ?), (?, ?) "
+                                + "ON CONFLICT DO NOTHING RETURNING signature_hex");
+    }
+
+    @Test
+    @DisplayName("同批相同签名只写入一次，其余调用方得到重放结果")
+    void claimsDuplicateWithinBatchOnce() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        BatchingJdbcNonceConsumer consumer =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.POSTGRESQL)
+                        .maxBatchSize(3)
+                        .maxWait(Duration.ofSeconds(1))
+                        .build();
+
+        List<Boolean> results = consumeConcurrently(consumer, List.of("same", "same", "same"));
+
+        assertThat(results).containsExactlyInAnyOrder(true, false, false);
+        assertThat(jdbc.preparedSql).singleElement().asString().contains("VALUES (?, ?) ON");
+    }
+
+    @Test
+    @DisplayName("MySQL 使用 INSERT IGNORE batch 并按逐行 update count 判定")
+    void mapsPerRowUpdateCountsOnMysql() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.existing.add("c");
+        BatchingJdbcNonceConsumer consumer =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.MYSQL)
+                        .tableName("tenant_a.cap_consumed_nonces")
+                        .maxBatchSize(3)
+                        .maxWait(Duration.ofSeconds(1))
+                        .build();
+
+        List<Boolean> results = consumeConcurrently(consumer, List.of("a", "b", "c"));
+
+        assertThat(results).containsExactly(true, true, false);
+        assertThat(jdbc.connections).hasValue(1);
+        assertThat(jdbc.preparedSql)
+                .containsExactly(
+                        "INSERT IGNORE INTO tenant_a.cap_consumed_nonces (signature_hex, expires_at) VALUES (?, ?)");
+        assertThat(consumer.consume("a", TTL)).isFalse();
+    }
+
+    @Test
+    @DisplayName("驱动不返回逐行计数时整批 fail closed")
+    void failsClosedWithoutPerRowUpdateCounts() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.batchCount = Statement.SUCCESS_NO_INFO;
+        BatchingJdbcNonceConsumer consumer =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.MARIADB)
+                        .maxWait(Duration.ZERO)
+                        .build();
+
+        assertThatThrownBy(() -> consumer.consume("a", TTL))
+                .isInstanceOf(SQLException.class)
+                .hasMessage("nonce batch update counts unavailable");
+    }
+
+    @Test
+    @DisplayName("二进制主键按原始字节绑定并匹配返回的 key")
+    void bindsRawBytesForBinaryKeyFormat() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        BatchingJdbcNonceConsumer consumer =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.POSTGRESQL)
+                        .keyFormat(JdbcKeyFormat.BINARY)
+                        .maxWait(Duration.ZERO)
+                        .build();
+        byte[] signature = new byte[32];
+        signature[5] = 9;
+
+        assertThat(consumer.consume(signature, TTL)).isTrue();
+        assertThat(consumer.consume(signature.clone(), TTL)).isFalse();
+        assertThat(jdbc.existing).containsExactly(ByteBuffer.wrap(signature));
+        assertThat(jdbc.preparedSql.get(0))
+                .isEqualTo(
+                        "INSERT INTO cap_consumed_nonces (signature, expires_at) VALUES (?, ?) "
+                                + "ON CONFLICT DO NOTHING RETURNING signature");
+    }
+
+    @Test
+    @DisplayName("每批按 key 的无符号字节序绑定，重叠批次以同一顺序加锁")
+    void bindsRowsInKeyOrder() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        BatchingJdbcNonceConsumer consumer =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.MYSQL)
+                        .maxBatchSize(4)
+                        .maxWait(Duration.ofSeconds(1))
+                        .build();
+
+        consumeConcurrently(consumer, List.of("ff", "0a", "80", "7f"));
+
+        assertThat(jdbc.boundKeys).containsExactly("0a", "7f", "80", "ff");
+
+        RecordingJdbc binary = new RecordingJdbc();
+        BatchingJdbcNonceConsumer binaryConsumer =
+                BatchingJdbcNonceConsumer.builder(binary.dataSource(), JdbcDialect.POSTGRESQL)
+                        .keyFormat(JdbcKeyFormat.BINARY)
+                        .maxBatchSize(4)
+                        .maxWait(Duration.ofSeconds(1))
+                        .build();
+
+        consumeConcurrently(binaryConsumer, List.of("ff", "0a", "80", "7f"));
+
+        assertThat(binary.boundKeys)
+                .extracting(key -> ((ByteBuffer) key).get(0) & 0xff)
+                .containsExactly(0x0a, 0x7f, 0x80, 0xff);
+    }
+
+    @Test
+    @DisplayName("分区模式按整点写入每个请求的全部行，任一行已存在即按重放拒绝")
+    void writesExpiryBucketsInPartitionedMode() throws Exception {
+        Instant hour = Instant.parse("2026-07-15T11:00:00Z");
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.compositeKey = true;
+        BatchingJdbcNonceConsumer consumer =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.POSTGRESQL)
+                        .partitioned()
+                        .maxBatchSize(4)
+                        .maxWait(Duration.ofSeconds(1))
+                        .clock(Clock.fixed(hour.minusSeconds(20), ZoneOffset.UTC))
+                        .build();
+
+        assertThat(consumeConcurrently(consumer, List.of("b", "a"))).containsExactly(true, true);
+        assertThat(jdbc.preparedSql)
+                .containsExactly(
+                        "INSERT INTO cap_consumed_nonces (signature_hex, expires_at) VALUES "
+                                + "(?, ?), (?, ?), (?, ?), (?, ?) "
+                                + "ON CONFLICT DO NOTHING RETURNING signature_hex, expires_at");
+        assertThat(jdbc.boundKeys).containsExactly("a", "a", "b", "b");
+        assertThat(jdbc.boundExpiresAt)
+                .extracting(Timestamp::toInstant)
+                .containsExactly(hour, hour.plusSeconds(3_600), hour, hour.plusSeconds(3_600));
+
+        BatchingJdbcNonceConsumer earlier =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.POSTGRESQL)
+                        .partitioned()
+                        .maxWait(Duration.ZERO)
+                        .clock(Clock.fixed(hour.minusSeconds(600), ZoneOffset.UTC))
+                        .build();
+        assertThat(earlier.consume("a", TTL)).isFalse();
+        assertThat(earlier.consume("c", TTL)).isTrue();
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> earlier.consume("d", Duration.ofHours(25)))
+                .withMessage("partitioned nonce ttl exceeds 24 hours");
+
+        RecordingJdbc mysql = new RecordingJdbc();
+        mysql.compositeKey = true;
+        mysql.existing.add(List.of("a", Timestamp.from(hour)));
+        BatchingJdbcNonceConsumer batch =
+                BatchingJdbcNonceConsumer.builder(mysql.dataSource(), JdbcDialect.MYSQL)
+                        .partitioned()
+                        .maxBatchSize(2)
+                        .maxWait(Duration.ofSeconds(1))
+                        .clock(Clock.fixed(hour.minusSeconds(20), ZoneOffset.UTC))
+                        .build();
+
+        assertThat(consumeConcurrently(batch, List.of("a", "b"))).containsExactly(false, true);
+        assertThat(mysql.connections).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("写入失败时本批所有调用方收到 SQLException")
+    void propagatesFailureToWholeBatch() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.executeFailure = new SQLException("database unavailable", "08006");
+        BatchingJdbcNonceConsumer consumer =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.POSTGRESQL)
+                        .maxBatchSize(2)
+                        .maxWait(Duration.ofSeconds(1))
+                        .build();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (String key : List.of("a", "b")) {
+                results.add(executor.submit(() -> consumer.consume(key, TTL)));
+            }
+            for (Future<Boolean> result : results) {
+                assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(SQLException.class)
+                        .hasRootCause(jdbc.executeFailure);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(jdbc.closedConnections).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("驱动抛出 Error 时 leader 重新抛出，同批 follower 不会永久阻塞")
+    void completesFollowersWhenDriverThrowsError() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.executeError = new OutOfMemoryError("driver buffer");
+        BatchingJdbcNonceConsumer consumer =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.MYSQL)
+                        .maxBatchSize(2)
+                        .maxWait(Duration.ofSeconds(1))
+                        .build();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (String key : List.of("a", "b")) {
+                results.add(executor.submit(() -> consumer.consume(key, TTL)));
+            }
+            for (Future<Boolean> result : results) {
+                assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                        .isInstanceOf(ExecutionException.class)
+                        .hasRootCause(jdbc.executeError);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(jdbc.closedConnections).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("非独立连接被拒绝，配置必须在受支持范围内")
+    void rejectsSharedConnectionsAndInvalidSettings() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.autoCommit = false;
+        BatchingJdbcNonceConsumer consumer =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.POSTGRESQL)
+                        .maxWait(Duration.ZERO)
+                        .build();
+
+        assertThatThrownBy(() -> consumer.consume("a", TTL))
+                .isInstanceOf(SQLException.class)
+                .hasMessage("nonce connection must be independent");
+        assertThat(jdbc.closedConnections).hasValue(1);
+        BatchingJdbcNonceConsumer.Builder builder =
+                BatchingJdbcNonceConsumer.builder(jdbc.dataSource(), JdbcDialect.POSTGRESQL);
+        assertThatIllegalArgumentException().isThrownBy(() -> builder.maxBatchSize(0));
+        assertThatIllegalArgumentException().isThrownBy(() -> builder.maxBatchSize(1_001));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> builder.maxWait(Duration.ofMillis(-1)));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> builder.maxWait(Duration.ofSeconds(2)));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> builder.tableName("a;drop"))
+                .withMessage("invalid nonce table name");
+    }
+
+    /** 所有调用方就绪后同时消费，按输入顺序返回结果。 */
+    private static List<Boolean> consumeConcurrently(
+            BatchingJdbcNonceConsumer consumer, List<String> keys) throws Exception {
+        CountDownLatch ready = new CountDownLatch(keys.size());
+        ExecutorService executor = Executors.newFixedThreadPool(keys.size());
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (String key : keys) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    ready.countDown();
+                                    ready.await();
+                                    return consumer.consume(key, TTL);
+                                }));
+            }
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -37,4 +37,24 @@ class JdbcDialectTest {
 
         assertThat(JdbcDialect.POSTGRESQL.isDuplicateKey(wrapper)).isTrue();
     }
+
+    @Test
+    @DisplayName("冲突容忍写入按方言生成且不依赖异常判定重复")
+    void buildsConflictTolerantInsert() {
+        assertThat(
+                        JdbcDialect.POSTGRESQL.conflictTolerantInsert(
+                                "cap_consumed_nonces", "signature"))
+                .isEqualTo(
+                        "INSERT INTO cap_consumed_nonces (signature, expires_at) VALUES (?, ?)"
+                                + " ON CONFLICT DO NOTHING");
+        assertThat(JdbcDialect.MYSQL.conflictTolerantInsert("cap_consumed_nonces", "signature_hex"))
+                .isEqualTo(
+                        "INSERT IGNORE INTO cap_consumed_nonces (signature_hex, expires_at) VALUES (?, ?)");
+        assertThat(
+                        JdbcDialect.MARIADB.conflictTolerantInsert(
+                                "cap_consumed_nonces", "signature_hex"))
+                .isEqualTo(
+                        JdbcDialect.MYSQL.conflictTolerantInsert(
+                                "cap_consumed_nonces", "signature_hex"));
+    }
 }
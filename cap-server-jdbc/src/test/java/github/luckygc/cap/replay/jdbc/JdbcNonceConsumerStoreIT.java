@@ -6,9 +6,16 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Stream;
 import javax.sql.DataSource;
 import org.junit.jupiter.api.DisplayName;
@@ -36,6 +43,29 @@ class JdbcNonceConsumerStoreIT {
                     + CONSTRAINT_FAILURE_SIGNATURE
                     + "'))";
 
+    private static final String POSTGRESQL_CREATE_BINARY_TABLE =
+            "CREATE TABLE cap_consumed_nonces_binary ("
+                    + "signature BYTEA PRIMARY KEY, "
+                    + "expires_at TIMESTAMP WITH TIME ZONE NOT NULL)";
+    private static final String MYSQL_CREATE_BINARY_TABLE =
+            "CREATE TABLE cap_consumed_nonces_binary ("
+                    + "signature BINARY(32) PRIMARY KEY, "
+                    + "expires_at TIMESTAMP(6) NOT NULL)";
+
+    private static final String POSTGRESQL_CREATE_PARTITIONED_TABLE =
+            "CREATE TABLE cap_consumed_nonces_partitioned ("
+                    + "signature_hex VARCHAR(64) NOT NULL, "
+                    + "expires_at TIMESTAMP WITH TIME ZONE NOT NULL, "
+                    + "PRIMARY KEY (signature_hex, expires_at)) "
+                    + "PARTITION BY RANGE (expires_at)";
+    private static final String MYSQL_CREATE_PARTITIONED_TABLE =
+            "CREATE TABLE cap_consumed_nonces_partitioned ("
+                    + "signature_hex VARCHAR(64) CHARACTER SET ascii COLLATE ascii_bin NOT NULL, "
+                    + "expires_at TIMESTAMP NOT NULL, "
+                    + "PRIMARY KEY (signature_hex, expires_at)) "
+                    + "PARTITION BY RANGE (UNIX_TIMESTAMP(expires_at)) "
+                    + "(PARTITION p_initial VALUES LESS THAN (0))";
+
     @TestFactory
     @DisplayName("三种数据库均保持原子消费与错误分类")
     Stream<DynamicTest> databasesPreserveAtomicConsumptionAndErrorClassification() {
@@ -67,8 +97,141 @@ class JdbcNonceConsumerStoreIT {
         assertThat(concurrentResults(consumer, signature)).containsExactlyInAnyOrder(successes());
         assertThat(consumer.consume(signature, TTL)).isFalse();
         assertThat(consumer.consume(syntheticSignature(), TTL)).isTrue();
-        assertThatThrownBy(() -> consumer.consume(CONSTRAINT_FAILURE_SIGNATURE, TTL))
-                .isInstanceOf(SQLException.class);
+        if (dialect == JdbcDialect.POSTGRESQL) {
+            assertThatThrownBy(() -> consumer.consume(CONSTRAINT_FAILURE_SIGNATURE, TTL))
+                    .isInstanceOf(SQLException.class);
+        } else {
+            assertThat(failsClosed(consumer, CONSTRAINT_FAILURE_SIGNATURE)).isTrue();
+        }
+
+        JdbcNonceConsumer binary =
+                new JdbcNonceConsumer(
+                        dataSource, dialect, "cap_consumed_nonces_binary", JdbcKeyFormat.BINARY);
+        String binarySignature = syntheticSignature();
+
+        assertThat(concurrentResults(binary, binarySignature))
+                .containsExactlyInAnyOrder(successes());
+        assertThat(binary.consume(HexFormat.of().parseHex(binarySignature), TTL)).isFalse();
+
+        BatchingJdbcNonceConsumer batching =
+                BatchingJdbcNonceConsumer.builder(dataSource, dialect)
+                        .maxWait(Duration.ofMillis(20))
+                        .build();
+        String batchedSignature = syntheticSignature();
+
+        assertThat(
+                        StoreIntegrationSupport.runConcurrently(
+                                CONCURRENCY, () -> batching.consume(batchedSignature, TTL)))
+                .containsExactlyInAnyOrder(successes());
+        assertThat(batching.consume(signature, TTL)).isFalse();
+
+        verifyPurger(dataSource, dialect, signature);
+        verifyPartitions(dataSource, dialect);
+    }
+
+    private static void verifyPartitions(DataSource dataSource, JdbcDialect dialect)
+            throws Exception {
+        JdbcNoncePartitionMaintainer.Result initial =
+                JdbcNoncePartitionMaintainer.builder(dataSource, dialect)
+                        .tableName("cap_consumed_nonces_partitioned")
+                        .build()
+                        .maintain();
+        assertThat(initial.created()).hasSizeGreaterThanOrEqualTo(30);
+
+        JdbcNonceConsumer partitioned =
+                JdbcNonceConsumer.partitioned(
+                        dataSource, dialect, "cap_consumed_nonces_partitioned", JdbcKeyFormat.HEX);
+        String signature = syntheticSignature();
+        assertThat(concurrentResults(partitioned, signature))
+                .containsExactlyInAnyOrder(successes());
+
+        // 到期时刻恰在整点时写入相邻两个分区，稍后的再次消费仍被拒绝。
+        Instant now = Instant.now();
+        Instant nextHour = now.truncatedTo(ChronoUnit.HOURS).plus(Duration.ofHours(1));
+        String boundarySignature = syntheticSignature();
+        assertThat(partitioned.consume(boundarySignature, Duration.between(now, nextHour)))
+                .isTrue();
+        assertThat(
+                        partitioned.consume(
+                                boundarySignature,
+                                Duration.between(Instant.now(), nextHour).plusSeconds(5)))
+                .isFalse();
+
+        BatchingJdbcNonceConsumer batching =
+                BatchingJdbcNonceConsumer.builder(dataSource, dialect)
+                        .tableName("cap_consumed_nonces_partitioned")
+                        .partitioned()
+                        .maxWait(Duration.ofMillis(20))
+                        .build();
+        String batchedSignature = syntheticSignature();
+        assertThat(
+                        StoreIntegrationSupport.runConcurrently(
+                                CONCURRENCY, () -> batching.consume(batchedSignature, TTL)))
+                .containsExactlyInAnyOrder(successes());
+        assertThat(batching.consume(boundarySignature, Duration.between(Instant.now(), nextHour)))
+                .isFalse();
+
+        JdbcNoncePartitionMaintainer.Result later =
+                JdbcNoncePartitionMaintainer.builder(dataSource, dialect)
+                        .tableName("cap_consumed_nonces_partitioned")
+                        .clock(Clock.offset(Clock.systemUTC(), Duration.ofDays(2)))
+                        .build()
+                        .maintain();
+        assertThat(later.dropped()).containsAll(initial.created());
+    }
+
+    private static void verifyPurger(
+            DataSource dataSource, JdbcDialect dialect, String liveSignature) throws Exception {
+        JdbcNonceConsumer expired =
+                new JdbcNonceConsumer(
+                        dataSource,
+                        dialect,
+                        "cap_consumed_nonces",
+                        Clock.offset(Clock.systemUTC(), Duration.ofHours(-2)));
+        for (int index = 0; index < 25; index++) {
+            assertThat(expired.consume(syntheticSignature(), TTL)).isTrue();
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            List<JdbcNonceExpiryPurger.BatchEvent> events = new ArrayList<>();
+            JdbcNonceExpiryPurger purger =
+                    JdbcNonceExpiryPurger.builder(dataSource, dialect, scheduler)
+                            .batchSize(10)
+                            .listener(
+                                    new JdbcNonceExpiryPurger.Listener() {
+                                        @Override
+                                        public void batchCompleted(
+                                                JdbcNonceExpiryPurger.BatchEvent event) {
+                                            events.add(event);
+                                        }
+                                    })
+                            .build();
+            for (int batch = 0; batch < 4; batch++) {
+                purger.purgeBatch();
+            }
+
+            assertThat(events)
+                    .extracting(JdbcNonceExpiryPurger.BatchEvent::deleted)
+                    .containsExactly(10, 10, 5, 0);
+            // 过期记录写于两小时前、TTL 五分钟，剩余积压的 expires_at 约在一小时五十五分钟前。
+            assertThat(events.get(0).backlogAge()).isGreaterThan(Duration.ofHours(1));
+            assertThat(events.get(1).backlogAge()).isGreaterThan(Duration.ofHours(1));
+            assertThat(events.get(2).backlogAge()).isZero();
+            assertThat(events.get(3).backlogAge()).isZero();
+            assertThat(new JdbcNonceConsumer(dataSource, dialect).consume(liveSignature, TTL))
+                    .isFalse();
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /** {@code INSERT IGNORE} 可能把 CHECK 失败降级为告警；此时按重放拒绝，而不是抛出。 */
+    private static boolean failsClosed(JdbcNonceConsumer consumer, String signature) {
+        try {
+            return !consumer.consume(signature, TTL);
+        } catch (Exception failure) {
+            return failure instanceof SQLException;
+        }
     }
 
     private static DataSource availableDataSource(String url) {
@@ -86,6 +249,16 @@ class JdbcNonceConsumerStoreIT {
                 Statement statement = connection.createStatement()) {
             statement.executeUpdate("DROP TABLE IF EXISTS cap_consumed_nonces");
             statement.executeUpdate(createTable(dialect));
+            statement.executeUpdate("DROP TABLE IF EXISTS cap_consumed_nonces_binary");
+            statement.executeUpdate(
+                    dialect == JdbcDialect.POSTGRESQL
+                            ? POSTGRESQL_CREATE_BINARY_TABLE
+                            : MYSQL_CREATE_BINARY_TABLE);
+            statement.executeUpdate("DROP TABLE IF EXISTS cap_consumed_nonces_partitioned");
+            statement.executeUpdate(
+                    dialect == JdbcDialect.POSTGRESQL
+                            ? POSTGRESQL_CREATE_PARTITIONED_TABLE
+                            : MYSQL_CREATE_PARTITIONED_TABLE);
         }
     }
 
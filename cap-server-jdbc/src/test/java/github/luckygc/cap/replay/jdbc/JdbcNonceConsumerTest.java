@@ -13,6 +13,7 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.HexFormat;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -48,7 +49,8 @@ class JdbcNonceConsumerTest {
         assertThat(consumer.consume("signature", Duration.ofSeconds(30))).isTrue();
         assertThat(jdbc.sql)
                 .isEqualTo(
-                        "INSERT INTO cap_consumed_nonces (signature_hex, expires_at) VALUES (?, ?)");
+                        "INSERT INTO cap_consumed_nonces (signature_hex, expires_at) VALUES (?, ?)"
+                                + " ON CONFLICT DO NOTHING");
     }
 
     @Test
@@ -62,7 +64,48 @@ class JdbcNonceConsumerTest {
         assertThat(consumer.consume("signature", Duration.ofSeconds(30))).isTrue();
         assertThat(jdbc.sql)
                 .isEqualTo(
-                        "INSERT INTO tenant_a.cap_consumed_nonces (signature_hex, expires_at) VALUES (?, ?)");
+                        "INSERT INTO tenant_a.cap_consumed_nonces (signature_hex, expires_at) VALUES (?, ?)"
+                                + " ON CONFLICT DO NOTHING");
+    }
+
+    @Test
+    @DisplayName("二进制主键列按原始字节绑定，十六进制签名先解码")
+    void bindsRawBytesForBinaryKeyFormat() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        JdbcNonceConsumer consumer =
+                new JdbcNonceConsumer(
+                        jdbc.dataSource(),
+                        JdbcDialect.POSTGRESQL,
+                        "cap_consumed_nonces",
+                        JdbcKeyFormat.BINARY);
+        byte[] signature = new byte[32];
+        signature[0] = 1;
+        signature[31] = (byte) 0xff;
+
+        assertThat(consumer.consume(signature, Duration.ofSeconds(30))).isTrue();
+        assertThat(jdbc.sql)
+                .isEqualTo(
+                        "INSERT INTO cap_consumed_nonces (signature, expires_at) VALUES (?, ?)"
+                                + " ON CONFLICT DO NOTHING");
+        assertThat(jdbc.signatureBytes).isEqualTo(signature);
+        assertThat(jdbc.calls).contains("setBytes").doesNotContain("setString");
+
+        assertThat(consumer.consume(HexFormat.of().formatHex(signature), Duration.ofSeconds(30)))
+                .isTrue();
+        assertThat(jdbc.signatureBytes).isEqualTo(signature);
+    }
+
+    @Test
+    @DisplayName("十六进制主键列把原始签名格式化为小写十六进制")
+    void formatsRawBytesForHexKeyFormat() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        JdbcNonceConsumer consumer = new JdbcNonceConsumer(jdbc.dataSource(), JdbcDialect.MYSQL);
+        byte[] signature = new byte[32];
+        signature[0] = (byte) 0xab;
+
+        assertThat(consumer.consume(signature, Duration.ofSeconds(30))).isTrue();
+        assertThat(jdbc.signature).isEqualTo("ab" + "00".repeat(31));
+        assertThat(jdbc.calls).contains("setString").doesNotContain("setBytes");
     }
 
     @Test
@@ -81,8 +124,8 @@ class JdbcNonceConsumerTest {
     }
 
     @Test
-    @DisplayName("成功插入后提交、恢复并关闭独立连接")
-    void commitsAndRestoresSuccessfulInsert() throws Exception {
+    @DisplayName("自动提交模式下单条语句写入并关闭独立连接")
+    void insertsWithSingleAutoCommitStatement() throws Exception {
         RecordingJdbc jdbc = new RecordingJdbc();
         JdbcNonceConsumer consumer =
                 new JdbcNonceConsumer(
@@ -94,25 +137,48 @@ class JdbcNonceConsumerTest {
         assertThat(consumer.consume("signature", Duration.ofSeconds(30))).isTrue();
         assertThat(jdbc.signature).isEqualTo("signature");
         assertThat(jdbc.expiresAt).isEqualTo(Timestamp.from(Instant.parse("2026-07-15T00:00:30Z")));
-        assertThat(jdbc.committed).isTrue();
         assertThat(jdbc.autoCommit).isTrue();
         assertThat(jdbc.closed).isTrue();
         assertThat(jdbc.calls)
                 .containsExactly(
                         "getAutoCommit",
-                        "setAutoCommit(false)",
                         "prepareStatement",
                         "setString",
                         "setTimestamp",
                         "executeUpdate",
                         "statement.close",
-                        "commit",
-                        "setAutoCommit(true)",
                         "connection.close");
-        assertThat(jdbc.callCount("commit")).isOne();
-        assertThat(jdbc.callCount("rollback")).isZero();
+    }
+
+    @Test
+    @DisplayName("三种方言的冲突写入 update count 为 0 时返回重放且不抛异常")
+    void returnsFalseWhenConflictTolerantInsertAffectsNoRow() throws Exception {
+        for (JdbcDialect dialect : JdbcDialect.values()) {
+            RecordingJdbc jdbc = new RecordingJdbc();
+            jdbc.updateCount = 0;
+            JdbcNonceConsumer consumer = new JdbcNonceConsumer(jdbc.dataSource(), dialect);
+
+            assertThat(consumer.consume("signature", Duration.ofSeconds(30))).isFalse();
+            assertThat(jdbc.sql)
+                    .isEqualTo(
+                            dialect.conflictTolerantInsert("cap_consumed_nonces", "signature_hex"));
+            assertThat(jdbc.callCount("executeUpdate")).isOne();
+            assertThat(jdbc.closed).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("无法解释的 update count 必须 fail closed")
+    void unexpectedUpdateCountFailsClosed() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.updateCount = 2;
+        JdbcNonceConsumer consumer = new JdbcNonceConsumer(jdbc.dataSource(), JdbcDialect.MYSQL);
+
+        assertThatThrownBy(() -> consumer.consume("signature", Duration.ofSeconds(30)))
+                .isInstanceOf(SQLException.class)
+                .hasMessage("unexpected nonce insert update count");
         assertThat(jdbc.callCount("statement.close")).isOne();
-        assertThat(jdbc.callCount("connection.close")).isOne();
+        assertThat(jdbc.closed).isTrue();
     }
 
     @Test
@@ -147,7 +213,6 @@ class JdbcNonceConsumerTest {
         assertFailureIsRethrown(jdbc, JdbcDialect.POSTGRESQL, failure);
         assertThat(jdbc.callCount("executeUpdate")).isOne();
         assertThat(jdbc.callCount("statement.close")).isOne();
-        assertThat(jdbc.callCount("commit")).isZero();
     }
 
     @Test
@@ -165,18 +230,12 @@ class JdbcNonceConsumerTest {
                 .isSameAs(duplicate);
         assertThat(duplicate.getSuppressed()).containsExactly(closeFailure);
         assertThat(jdbc.calls)
-                .containsSubsequence(
-                        "executeUpdate",
-                        "statement.close",
-                        "rollback",
-                        "setAutoCommit(true)",
-                        "connection.close");
-        assertThat(jdbc.callCount("commit")).isZero();
+                .containsSubsequence("executeUpdate", "statement.close", "connection.close");
     }
 
     @Test
-    @DisplayName("connection close 失败原样抛出且不掩盖已提交事实")
-    void rethrowsConnectionCloseFailureAfterCommit() {
+    @DisplayName("connection close 失败原样抛出且不掩盖已写入事实")
+    void rethrowsConnectionCloseFailureAfterInsert() {
         RecordingJdbc jdbc = new RecordingJdbc();
         SQLException closeFailure = new SQLException("connection close", "23505", 0);
         jdbc.connectionCloseFailure = closeFailure;
@@ -185,10 +244,8 @@ class JdbcNonceConsumerTest {
 
         assertThat(catchThrowable(() -> consumer.consume("signature", Duration.ofSeconds(30))))
                 .isSameAs(closeFailure);
-        assertThat(jdbc.committed).isTrue();
-        assertThat(jdbc.autoCommit).isTrue();
+        assertThat(jdbc.callCount("executeUpdate")).isOne();
         assertThat(jdbc.closed).isTrue();
-        assertThat(jdbc.callCount("commit")).isOne();
         assertThat(jdbc.callCount("connection.close")).isOne();
     }
 
@@ -208,137 +265,26 @@ class JdbcNonceConsumerTest {
     }
 
     @Test
-    @DisplayName("三种方言的重复键均回滚并返回重放")
-    void rollsBackDuplicateKeyAndReturnsFalse() throws Exception {
+    @DisplayName("冲突容忍语句仍抛出重复键时三种方言均返回重放")
+    void returnsFalseForDuplicateKeyFailure() throws Exception {
         for (JdbcDialect dialect : JdbcDialect.values()) {
             RecordingJdbc jdbc = new RecordingJdbc();
             jdbc.executeFailure = duplicateFailure(dialect);
             JdbcNonceConsumer consumer = new JdbcNonceConsumer(jdbc.dataSource(), dialect);
 
             assertThat(consumer.consume("signature", Duration.ofSeconds(30))).isFalse();
-            assertThat(jdbc.rolledBack).isTrue();
-            assertThat(jdbc.autoCommit).isTrue();
             assertThat(jdbc.closed).isTrue();
         }
     }
 
     @Test
-    @DisplayName("非重复约束错误回滚后原样抛出")
-    void rollsBackAndRethrowsUnrelatedConstraintFailure() {
+    @DisplayName("非重复约束错误原样抛出")
+    void rethrowsUnrelatedConstraintFailure() {
         RecordingJdbc jdbc = new RecordingJdbc();
         SQLException failure = new SQLException("constraint", "23000", 1048);
         jdbc.executeFailure = failure;
-        JdbcNonceConsumer consumer = new JdbcNonceConsumer(jdbc.dataSource(), JdbcDialect.MYSQL);
-
-        assertThat(catchThrowable(() -> consumer.consume("signature", Duration.ofSeconds(30))))
-                .isSameAs(failure);
-        assertThat(jdbc.rolledBack).isTrue();
-        assertThat(jdbc.autoCommit).isTrue();
-        assertThat(jdbc.closed).isTrue();
-    }
-
-    @Test
-    @DisplayName("提交失败回滚并抛出而不分类为重放")
-    void rollsBackAndRethrowsCommitFailure() {
-        RecordingJdbc jdbc = new RecordingJdbc();
-        SQLException failure = new SQLException("commit", "23505", 0);
-        jdbc.commitFailure = failure;
-        JdbcNonceConsumer consumer =
-                new JdbcNonceConsumer(jdbc.dataSource(), JdbcDialect.POSTGRESQL);
 
-        assertThat(catchThrowable(() -> consumer.consume("signature", Duration.ofSeconds(30))))
-                .isSameAs(failure);
-        assertThat(jdbc.rolledBack).isTrue();
-        assertThat(jdbc.committed).isFalse();
-        assertThat(jdbc.autoCommit).isTrue();
-        assertThat(jdbc.closed).isTrue();
-    }
-
-    @Test
-    @DisplayName("重复键回滚失败时保留主异常并禁止重放结果")
-    void suppressesRollbackFailureOntoDuplicateInsertFailure() {
-        RecordingJdbc jdbc = new RecordingJdbc();
-        SQLException failure = new SQLException("duplicate", "23505", 0);
-        SQLException rollbackFailure = new SQLException("rollback");
-        jdbc.executeFailure = failure;
-        jdbc.rollbackFailure = rollbackFailure;
-        JdbcNonceConsumer consumer =
-                new JdbcNonceConsumer(jdbc.dataSource(), JdbcDialect.POSTGRESQL);
-
-        assertThat(catchThrowable(() -> consumer.consume("signature", Duration.ofSeconds(30))))
-                .isSameAs(failure);
-        assertThat(failure.getSuppressed()).containsExactly(rollbackFailure);
-        assertThat(jdbc.autoCommit).isTrue();
-        assertThat(jdbc.closed).isTrue();
-    }
-
-    @Test
-    @DisplayName("提交回滚失败时保留提交异常和 suppressed")
-    void suppressesRollbackFailureOntoCommitFailure() {
-        RecordingJdbc jdbc = new RecordingJdbc();
-        SQLException failure = new SQLException("commit");
-        SQLException rollbackFailure = new SQLException("rollback");
-        jdbc.commitFailure = failure;
-        jdbc.rollbackFailure = rollbackFailure;
-        JdbcNonceConsumer consumer =
-                new JdbcNonceConsumer(jdbc.dataSource(), JdbcDialect.POSTGRESQL);
-
-        assertThat(catchThrowable(() -> consumer.consume("signature", Duration.ofSeconds(30))))
-                .isSameAs(failure);
-        assertThat(failure.getSuppressed()).containsExactly(rollbackFailure);
-        assertThat(jdbc.autoCommit).isTrue();
-        assertThat(jdbc.closed).isTrue();
-    }
-
-    @Test
-    @DisplayName("提交成功后的恢复失败仍然抛出")
-    void throwsRestoreFailureAfterSuccessfulCommit() {
-        RecordingJdbc jdbc = new RecordingJdbc();
-        SQLException restoreFailure = new SQLException("restore");
-        jdbc.restoreFailure = restoreFailure;
-        JdbcNonceConsumer consumer =
-                new JdbcNonceConsumer(jdbc.dataSource(), JdbcDialect.POSTGRESQL);
-
-        assertThat(catchThrowable(() -> consumer.consume("signature", Duration.ofSeconds(30))))
-                .isSameAs(restoreFailure);
-        assertThat(jdbc.committed).isTrue();
-        assertThat(jdbc.autoCommit).isFalse();
-        assertThat(jdbc.closed).isTrue();
-    }
-
-    @Test
-    @DisplayName("主异常发生后恢复失败作为 suppressed 保留")
-    void suppressesRestoreFailureOntoPrimaryFailure() {
-        RecordingJdbc jdbc = new RecordingJdbc();
-        SQLException failure = new SQLException("constraint", "23000", 1048);
-        SQLException restoreFailure = new SQLException("restore");
-        jdbc.executeFailure = failure;
-        jdbc.restoreFailure = restoreFailure;
-        JdbcNonceConsumer consumer = new JdbcNonceConsumer(jdbc.dataSource(), JdbcDialect.MYSQL);
-
-        assertThat(catchThrowable(() -> consumer.consume("signature", Duration.ofSeconds(30))))
-                .isSameAs(failure);
-        assertThat(failure.getSuppressed()).containsExactly(restoreFailure);
-        assertThat(jdbc.rolledBack).isTrue();
-        assertThat(jdbc.closed).isTrue();
-    }
-
-    @Test
-    @DisplayName("重复键恢复失败时 fail closed 并保留主异常")
-    void restoreFailurePreventsReplayResult() {
-        RecordingJdbc jdbc = new RecordingJdbc();
-        SQLException failure = new SQLException("duplicate", "23505", 0);
-        SQLException restoreFailure = new SQLException("restore");
-        jdbc.executeFailure = failure;
-        jdbc.restoreFailure = restoreFailure;
-        JdbcNonceConsumer consumer =
-                new JdbcNonceConsumer(jdbc.dataSource(), JdbcDialect.POSTGRESQL);
-
-        assertThat(catchThrowable(() -> consumer.consume("signature", Duration.ofSeconds(30))))
-                .isSameAs(failure);
-        assertThat(failure.getSuppressed()).containsExactly(restoreFailure);
-        assertThat(jdbc.rolledBack).isTrue();
-        assertThat(jdbc.closed).isTrue();
+        assertFailureIsRethrown(jdbc, JdbcDialect.MYSQL, failure);
     }
 
     @Test
@@ -369,6 +315,72 @@ class JdbcNonceConsumerTest {
                 .isEqualTo(Timestamp.from(Instant.parse("2026-07-16T00:00:00Z")));
     }
 
+    @Test
+    @DisplayName("分区模式写入到期所在整点，靠近整点边界时同时写入相邻两小时")
+    void partitionedModeWritesHourBuckets() throws Exception {
+        RecordingJdbc midHour = new RecordingJdbc();
+        JdbcNonceConsumer midHourConsumer =
+                JdbcNonceConsumer.partitioned(
+                        midHour.dataSource(),
+                        JdbcDialect.POSTGRESQL,
+                        "cap_consumed_nonces",
+                        JdbcKeyFormat.HEX,
+                        FIXED_CLOCK);
+
+        assertThat(midHourConsumer.consume("signature", Duration.ofMinutes(30))).isTrue();
+        assertThat(midHour.sql)
+                .isEqualTo(
+                        "INSERT INTO cap_consumed_nonces (signature_hex, expires_at) VALUES (?, ?)"
+                                + " ON CONFLICT DO NOTHING");
+        assertThat(midHour.boundExpiresAt)
+                .containsExactly(Timestamp.from(Instant.parse("2026-07-15T01:00:00Z")));
+
+        RecordingJdbc boundary = new RecordingJdbc();
+        boundary.updateCount = 2;
+        JdbcNonceConsumer boundaryConsumer =
+                JdbcNonceConsumer.partitioned(
+                        boundary.dataSource(),
+                        JdbcDialect.MYSQL,
+                        "cap_consumed_nonces",
+                        JdbcKeyFormat.HEX,
+                        FIXED_CLOCK);
+
+        assertThat(boundaryConsumer.consume("signature", Duration.ofSeconds(3_590))).isTrue();
+        assertThat(boundary.sql)
+                .isEqualTo(
+                        "INSERT IGNORE INTO cap_consumed_nonces (signature_hex, expires_at)"
+                                + " VALUES (?, ?), (?, ?)");
+        assertThat(boundary.boundExpiresAt)
+                .containsExactly(
+                        Timestamp.from(Instant.parse("2026-07-15T01:00:00Z")),
+                        Timestamp.from(Instant.parse("2026-07-15T02:00:00Z")));
+        assertThat(boundary.callCount("setString")).isEqualTo(2);
+
+        boundary.updateCount = 1;
+        assertThat(boundaryConsumer.consume("signature", Duration.ofSeconds(3_590))).isFalse();
+        boundary.updateCount = 3;
+        assertThatThrownBy(() -> boundaryConsumer.consume("signature", Duration.ofSeconds(3_590)))
+                .isInstanceOf(SQLException.class)
+                .hasMessage("unexpected nonce insert update count");
+    }
+
+    @Test
+    @DisplayName("分区模式拒绝超过 24 小时的 TTL 而不截断")
+    void partitionedModeRejectsTtlBeyondMaximum() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        JdbcNonceConsumer consumer =
+                JdbcNonceConsumer.partitioned(
+                        jdbc.dataSource(),
+                        JdbcDialect.POSTGRESQL,
+                        "cap_consumed_nonces",
+                        JdbcKeyFormat.HEX);
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> consumer.consume("signature", Duration.ofHours(25)))
+                .withMessage("partitioned nonce ttl exceeds 24 hours");
+        assertThat(jdbc.calls).isEmpty();
+    }
+
     private static SQLException duplicateFailure(JdbcDialect dialect) {
         return dialect == JdbcDialect.POSTGRESQL
                 ? new SQLException("duplicate", "23505", 0)
@@ -393,10 +405,7 @@ class JdbcNonceConsumerTest {
 
         assertThat(catchThrowable(() -> consumer.consume("signature", Duration.ofSeconds(30))))
                 .isSameAs(failure);
-        assertThat(jdbc.rolledBack).isTrue();
-        assertThat(jdbc.autoCommit).isTrue();
         assertThat(jdbc.closed).isTrue();
-        assertThat(jdbc.callCount("rollback")).isOne();
         assertThat(jdbc.callCount("connection.close")).isOne();
     }
 }
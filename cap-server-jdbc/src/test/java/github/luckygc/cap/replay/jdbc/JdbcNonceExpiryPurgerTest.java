@@ -0,0 +1,271 @@
+package github.luckygc.cap.replay.jdbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("JDBC 过期清理测试")
+class JdbcNonceExpiryPurgerTest {
+    private static final Clock FIXED_CLOCK =
+            Clock.fixed(Instant.parse("2026-07-15T00:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    @DisplayName("按方言执行有界删除并保留一分钟时钟偏差余量")
+    void deletesBoundedBatchWithSkewMargin() {
+        for (JdbcDialect dialect : JdbcDialect.values()) {
+            RecordingJdbc jdbc = new RecordingJdbc();
+            jdbc.updateCount = 0;
+            JdbcNonceExpiryPurger purger =
+                    JdbcNonceExpiryPurger.builder(jdbc.dataSource(), dialect, unusedScheduler())
+                            .tableName("tenant_a.cap_consumed_nonces")
+                            .batchSize(500)
+                            .clock(FIXED_CLOCK)
+                            .build();
+
+            purger.purgeBatch();
+
+            assertThat(jdbc.sql)
+                    .isEqualTo(dialect.deleteExpiredBatch("tenant_a.cap_consumed_nonces"));
+            assertThat(jdbc.expiresAt)
+                    .isEqualTo(Timestamp.from(Instant.parse("2026-07-14T23:59:00Z")));
+            assertThat(jdbc.limit).isEqualTo(500);
+            assertThat(jdbc.calls)
+                    .containsExactly(
+                            "getAutoCommit",
+                            "prepareStatement",
+                            "setTimestamp",
+                            "setInt",
+                            "executeUpdate",
+                            "statement.close",
+                            "connection.close");
+        }
+        assertThat(JdbcDialect.POSTGRESQL.deleteExpiredBatch("cap_consumed_nonces"))
+                .isEqualTo(
+                        "DELETE FROM cap_consumed_nonces WHERE ctid = ANY(ARRAY(SELECT ctid FROM"
+                                + " cap_consumed_nonces WHERE expires_at < ? ORDER BY expires_at"
+                                + " LIMIT ?))");
+        assertThat(JdbcDialect.MYSQL.deleteExpiredBatch("cap_consumed_nonces"))
+                .isEqualTo(
+                        "DELETE FROM cap_consumed_nonces WHERE expires_at < ? ORDER BY expires_at"
+                                + " LIMIT ?");
+    }
+
+    @Test
+    @DisplayName("删满一批时在同一连接上查询最早过期记录并报告积压时长")
+    void reportsBacklogAgeAfterFullBatch() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.updateCount = 10;
+        jdbc.queryRows =
+                List.<@Nullable Object[]>of(
+                        new Object[] {Timestamp.from(Instant.parse("2026-07-14T22:00:00Z"))});
+        List<JdbcNonceExpiryPurger.BatchEvent> events = new CopyOnWriteArrayList<>();
+        JdbcNonceExpiryPurger purger =
+                JdbcNonceExpiryPurger.builder(
+                                jdbc.dataSource(), JdbcDialect.MYSQL, unusedScheduler())
+                        .batchSize(10)
+                        .clock(FIXED_CLOCK)
+                        .listener(
+                                new JdbcNonceExpiryPurger.Listener() {
+                                    @Override
+                                    public void batchCompleted(
+                                            JdbcNonceExpiryPurger.BatchEvent event) {
+                                        events.add(event);
+                                    }
+                                })
+                        .build();
+
+        purger.purgeBatch();
+        jdbc.queryRows = List.<@Nullable Object[]>of(new Object[] {null});
+        purger.purgeBatch();
+
+        assertThat(jdbc.preparedSql)
+                .containsExactly(
+                        JdbcDialect.MYSQL.deleteExpiredBatch("cap_consumed_nonces"),
+                        "SELECT MIN(expires_at) FROM cap_consumed_nonces WHERE expires_at < ?",
+                        JdbcDialect.MYSQL.deleteExpiredBatch("cap_consumed_nonces"),
+                        "SELECT MIN(expires_at) FROM cap_consumed_nonces WHERE expires_at < ?");
+        assertThat(jdbc.boundExpiresAt)
+                .containsOnly(Timestamp.from(Instant.parse("2026-07-14T23:59:00Z")));
+        assertThat(jdbc.calls.subList(0, 11))
+                .containsExactly(
+                        "getAutoCommit",
+                        "prepareStatement",
+                        "setTimestamp",
+                        "setInt",
+                        "executeUpdate",
+                        "statement.close",
+                        "prepareStatement",
+                        "setTimestamp",
+                        "executeQuery",
+                        "resultSet.close",
+                        "statement.close");
+        assertThat(events)
+                .extracting(JdbcNonceExpiryPurger.BatchEvent::backlogAge)
+                .containsExactly(Duration.ofHours(2), Duration.ZERO);
+    }
+
+    @Test
+    @DisplayName("按本批删除行数在最短与最长间隔之间调整节奏并报告积压")
+    void pacesByRowsDeleted() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        List<JdbcNonceExpiryPurger.BatchEvent> events = new CopyOnWriteArrayList<>();
+        JdbcNonceExpiryPurger purger =
+                JdbcNonceExpiryPurger.builder(
+                                jdbc.dataSource(), JdbcDialect.POSTGRESQL, unusedScheduler())
+                        .batchSize(100)
+                        .minDelay(Duration.ofSeconds(1))
+                        .maxDelay(Duration.ofSeconds(11))
+                        .listener(
+                                new JdbcNonceExpiryPurger.Listener() {
+                                    @Override
+                                    public void batchCompleted(
+                                            JdbcNonceExpiryPurger.BatchEvent event) {
+                                        events.add(event);
+                                    }
+                                })
+                        .build();
+
+        jdbc.updateCount = 100;
+        assertThat(purger.purgeBatch()).isEqualTo(Duration.ofSeconds(1).toNanos());
+        jdbc.updateCount = 50;
+        assertThat(purger.purgeBatch()).isEqualTo(Duration.ofSeconds(6).toNanos());
+        jdbc.updateCount = 0;
+        assertThat(purger.purgeBatch()).isEqualTo(Duration.ofSeconds(11).toNanos());
+
+        assertThat(events)
+                .extracting(JdbcNonceExpiryPurger.BatchEvent::deleted)
+                .containsExactly(100, 50, 0);
+        assertThat(events)
+                .extracting(JdbcNonceExpiryPurger.BatchEvent::backlogged)
+                .containsExactly(true, false, false);
+        assertThat(events)
+                .extracting(JdbcNonceExpiryPurger.BatchEvent::backlogAge)
+                .containsExactly(Duration.ZERO, Duration.ZERO, Duration.ZERO);
+        assertThat(events)
+                .extracting(JdbcNonceExpiryPurger.BatchEvent::totalDeleted)
+                .containsExactly(100L, 150L, 150L);
+        assertThat(events.get(0).nextDelay()).isEqualTo(Duration.ofSeconds(1));
+        assertThat(events.get(0).latency().isNegative()).isFalse();
+    }
+
+    @Test
+    @DisplayName("失败与共享连接按最长间隔重试，监听器异常被隔离")
+    void retriesFailuresAfterMaxDelay() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.executeFailure = new SQLException("lock timeout");
+        List<Exception> failures = new CopyOnWriteArrayList<>();
+        JdbcNonceExpiryPurger.Listener listener =
+                new JdbcNonceExpiryPurger.Listener() {
+                    @Override
+                    public void batchFailed(Exception failure) {
+                        failures.add(failure);
+                        throw new IllegalStateException("listener");
+                    }
+                };
+        JdbcNonceExpiryPurger purger =
+                JdbcNonceExpiryPurger.builder(
+                                jdbc.dataSource(), JdbcDialect.MYSQL, unusedScheduler())
+                        .maxDelay(Duration.ofSeconds(30))
+                        .listener(listener)
+                        .build();
+
+        assertThat(purger.purgeBatch()).isEqualTo(Duration.ofSeconds(30).toNanos());
+        assertThat(failures).containsExactly(jdbc.executeFailure);
+        assertThat(jdbc.closed).isTrue();
+
+        RecordingJdbc shared = new RecordingJdbc();
+        shared.autoCommit = false;
+        JdbcNonceExpiryPurger sharedPurger =
+                JdbcNonceExpiryPurger.builder(
+                                shared.dataSource(), JdbcDialect.MYSQL, unusedScheduler())
+                        .listener(listener)
+                        .build();
+
+        assertThat(sharedPurger.purgeBatch()).isEqualTo(Duration.ofMinutes(1).toNanos());
+        assertThat(failures.get(1)).hasMessage("nonce connection must be independent");
+        assertThat(shared.sql).isNull();
+    }
+
+    @Test
+    @DisplayName("在宿主调度器上运行，关闭后不再调度且不关闭调度器")
+    void runsOnHostSchedulerUntilClosed() throws Exception {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        jdbc.updateCount = 0;
+        CountDownLatch batches = new CountDownLatch(3);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            JdbcNonceExpiryPurger purger =
+                    JdbcNonceExpiryPurger.builder(
+                                    jdbc.dataSource(), JdbcDialect.POSTGRESQL, scheduler)
+                            .minDelay(Duration.ZERO)
+                            .maxDelay(Duration.ofMillis(1))
+                            .listener(
+                                    new JdbcNonceExpiryPurger.Listener() {
+                                        @Override
+                                        public void batchCompleted(
+                                                JdbcNonceExpiryPurger.BatchEvent event) {
+                                            batches.countDown();
+                                        }
+                                    })
+                            .build();
+
+            purger.start();
+            assertThat(batches.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThatIllegalStateException().isThrownBy(purger::start);
+            scheduler.submit(purger::close).get(10, TimeUnit.SECONDS);
+            long executed = jdbc.callCount("executeUpdate");
+            scheduler.schedule(() -> {}, 20, TimeUnit.MILLISECONDS).get(10, TimeUnit.SECONDS);
+
+            assertThat(jdbc.callCount("executeUpdate")).isEqualTo(executed);
+            assertThat(scheduler.isShutdown()).isFalse();
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("拒绝缩短时钟偏差余量与越界参数")
+    void rejectsInvalidSettings() {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        JdbcNonceExpiryPurger.Builder builder =
+                JdbcNonceExpiryPurger.builder(
+                        jdbc.dataSource(), JdbcDialect.POSTGRESQL, unusedScheduler());
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> builder.skewMargin(Duration.ofSeconds(59)))
+                .withMessage("skewMargin must be between 1 minute and 24 hours");
+        assertThatIllegalArgumentException().isThrownBy(() -> builder.batchSize(0));
+        assertThatIllegalArgumentException().isThrownBy(() -> builder.batchSize(100_001));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> builder.minDelay(Duration.ofMillis(-1)));
+        assertThatIllegalArgumentException().isThrownBy(() -> builder.tableName("nonces; DROP"));
+        assertThatIllegalArgumentException()
+                .isThrownBy(
+                        () ->
+                                builder.minDelay(Duration.ofMinutes(2))
+                                        .maxDelay(Duration.ofMinutes(1))
+                                        .build())
+                .withMessage("minDelay must not exceed maxDelay");
+    }
+
+    /** 直接调用 {@code purgeBatch} 的测试不会触发调度。 */
+    private static ScheduledExecutorService unusedScheduler() {
+        return Executors.newSingleThreadScheduledExecutor();
+    }
+}
@@ -0,0 +1,169 @@
+package github.luckygc.cap.replay.jdbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("JDBC 分区维护测试")
+class JdbcNoncePartitionMaintainerTest {
+    private static final Clock CLOCK =
+            Clock.fixed(Instant.parse("2026-07-15T10:20:00Z"), ZoneOffset.UTC);
+
+    @Test
+    @DisplayName("PostgreSQL 逐个预建缺失的整点分区并删除整体过期的分区")
+    void maintainsPostgresqlPartitions() throws Exception {
+        RecordingJdbc jdbc =
+                catalog(
+                        "cap_consumed_nonces_p2026071509",
+                        "cap_consumed_nonces_p2026071510",
+                        "cap_consumed_nonces_p2026071511",
+                        "cap_consumed_nonces_archive");
+        JdbcNoncePartitionMaintainer maintainer =
+                JdbcNoncePartitionMaintainer.builder(jdbc.dataSource(), JdbcDialect.POSTGRESQL)
+                        .tableName("tenant_a.cap_consumed_nonces")
+                        .horizon(Duration.ofHours(26))
+                        .clock(CLOCK)
+                        .build();
+
+        JdbcNoncePartitionMaintainer.Result result = maintainer.maintain();
+
+        assertThat(jdbc.parameters).containsExactly("tenant_a.cap_consumed_nonces");
+        assertThat(result.created())
+                .hasSize(26)
+                .startsWith("cap_consumed_nonces_p2026071512")
+                .endsWith("cap_consumed_nonces_p2026071613");
+        assertThat(result.dropped())
+                .containsExactly(
+                        "cap_consumed_nonces_p2026071509", "cap_consumed_nonces_p2026071510");
+        assertThat(jdbc.ddl.get(0))
+                .isEqualTo(
+                        "CREATE TABLE IF NOT EXISTS tenant_a.cap_consumed_nonces_p2026071512"
+                                + " PARTITION OF tenant_a.cap_consumed_nonces FOR VALUES FROM"
+                                + " ('2026-07-15T12:00:00Z') TO ('2026-07-15T13:00:00Z')");
+        assertThat(jdbc.ddl.subList(26, 28))
+                .containsExactly(
+                        "DROP TABLE IF EXISTS tenant_a.cap_consumed_nonces_p2026071509",
+                        "DROP TABLE IF EXISTS tenant_a.cap_consumed_nonces_p2026071510");
+        assertThat(jdbc.closed).isTrue();
+    }
+
+    @Test
+    @DisplayName("MySQL 只在末尾追加分区，初始分区不参与维护")
+    void maintainsMysqlPartitions() throws Exception {
+        RecordingJdbc jdbc = catalog("p_initial", "p2026071509", "p2026071512");
+        JdbcNoncePartitionMaintainer maintainer =
+                JdbcNoncePartitionMaintainer.builder(jdbc.dataSource(), JdbcDialect.MYSQL)
+                        .horizon(Duration.ofHours(26))
+                        .clock(CLOCK)
+                        .build();
+
+        JdbcNoncePartitionMaintainer.Result result = maintainer.maintain();
+
+        assertThat(jdbc.parameters).containsExactly(null, "cap_consumed_nonces");
+        assertThat(result.created()).hasSize(25).startsWith("p2026071513").endsWith("p2026071613");
+        assertThat(result.dropped()).containsExactly("p2026071509");
+        assertThat(jdbc.ddl).hasSize(2);
+        assertThat(jdbc.ddl.get(0))
+                .startsWith(
+                        "ALTER TABLE cap_consumed_nonces ADD PARTITION (PARTITION p2026071513"
+                                + " VALUES LESS THAN ("
+                                + Instant.parse("2026-07-15T14:00:00Z").getEpochSecond()
+                                + "), PARTITION p2026071514");
+        assertThat(jdbc.ddl.get(1))
+                .isEqualTo("ALTER TABLE cap_consumed_nonces DROP PARTITION p2026071509");
+    }
+
+    @Test
+    @DisplayName("整点分区已齐全且均未过期时不执行 DDL")
+    void skipsDdlWhenUpToDate() throws Exception {
+        List<String> names = new ArrayList<>();
+        for (int hour = 11; hour <= 37; hour++) {
+            Instant bucket = Instant.parse("2026-07-15T00:00:00Z").plus(Duration.ofHours(hour));
+            names.add("p" + bucket.toString().substring(0, 13).replaceAll("[-T]", ""));
+        }
+        RecordingJdbc jdbc = catalog(names.toArray(String[]::new));
+        JdbcNoncePartitionMaintainer maintainer =
+                JdbcNoncePartitionMaintainer.builder(jdbc.dataSource(), JdbcDialect.MARIADB)
+                        .horizon(Duration.ofHours(26))
+                        .clock(CLOCK)
+                        .build();
+
+        JdbcNoncePartitionMaintainer.Result result = maintainer.maintain();
+
+        assertThat(result.created()).isEmpty();
+        assertThat(result.dropped()).isEmpty();
+        assertThat(jdbc.ddl).isEmpty();
+    }
+
+    @Test
+    @DisplayName("同一签名的两次到期时刻只差毫秒级时写入的整点必然相交")
+    void expiryBucketsOfNearbyAttemptsIntersect() {
+        Instant hour = Instant.parse("2026-07-15T11:00:00Z");
+        for (long offset = -45_000; offset <= 45_000; offset += 250) {
+            Instant first = hour.plusMillis(offset);
+            for (long jitter : new long[] {1, 17, 999, 5_000}) {
+                List<Instant> a = Arrays.asList(JdbcNoncePartitionMaintainer.expiryBuckets(first));
+                List<Instant> b =
+                        Arrays.asList(
+                                JdbcNoncePartitionMaintainer.expiryBuckets(
+                                        first.plusMillis(jitter)));
+
+                assertThat(a).containsAnyElementsOf(b);
+                assertThat(a).allMatch(bucket -> bucket.getEpochSecond() % 3_600 == 0);
+                assertThat(a.get(a.size() - 1)).isAfterOrEqualTo(first);
+            }
+        }
+        assertThat(JdbcNoncePartitionMaintainer.expiryBuckets(hour.minusSeconds(600)))
+                .containsExactly(hour);
+        assertThat(JdbcNoncePartitionMaintainer.expiryBuckets(hour.minusSeconds(10)))
+                .containsExactly(hour, hour.plusSeconds(3_600));
+    }
+
+    @Test
+    @DisplayName("拒绝共享连接、缩短余量、过短预建范围与过长表名")
+    void rejectsInvalidSettings() {
+        RecordingJdbc shared = catalog();
+        shared.autoCommit = false;
+        JdbcNoncePartitionMaintainer maintainer =
+                JdbcNoncePartitionMaintainer.builder(shared.dataSource(), JdbcDialect.POSTGRESQL)
+                        .build();
+        assertThatThrownBy(maintainer::maintain)
+                .isInstanceOf(SQLException.class)
+                .hasMessage("nonce connection must be independent");
+        assertThat(shared.ddl).isEmpty();
+
+        JdbcNoncePartitionMaintainer.Builder builder =
+                JdbcNoncePartitionMaintainer.builder(shared.dataSource(), JdbcDialect.POSTGRESQL);
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> builder.skewMargin(Duration.ofSeconds(30)));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> builder.horizon(Duration.ofHours(25)))
+                .withMessage("horizon must be between 26 hours and 7 days");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> builder.tableName("n".repeat(52)).build())
+                .withMessage("nonce table name too long for partitions");
+    }
+
+    /** 目录查询依次返回给定分区名的 JDBC 替身。 */
+    private static RecordingJdbc catalog(String... partitions) {
+        RecordingJdbc jdbc = new RecordingJdbc();
+        List<@Nullable Object[]> rows = new ArrayList<>();
+        for (String partition : partitions) {
+            rows.add(new Object[] {partition});
+        }
+        jdbc.queryRows = rows;
+        return jdbc;
+    }
+}
@@ -2,35 +2,70 @@ package github.luckygc.cap.replay.jdbc;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.sql.DataSource;
 import org.jspecify.annotations.Nullable;
 
+/**
+ * 记录调用序列的 JDBC 替身。
+ *
+ * <p>{@code executeUpdate} 返回 {@link #updateCount}；{@code executeBatch} 与 {@code INSERT ...
+ * RETURNING} 查询按 {@link #existing} 模拟主键唯一约束，{@link #compositeKey} 为 true 时主键为 {@code (key,
+ * expires_at)}；其他查询返回 {@link #queryRows}；{@code createStatement} 执行的 DDL 记入 {@link #ddl}。
+ */
 final class RecordingJdbc {
     boolean autoCommit = true;
-    boolean committed;
-    boolean rolledBack;
     boolean closed;
-    final List<String> calls = new ArrayList<>();
+    final List<String> calls = Collections.synchronizedList(new ArrayList<>());
     @Nullable String sql;
+    final List<String> preparedSql = Collections.synchronizedList(new ArrayList<>());
     @Nullable String signature;
+    byte @Nullable [] signatureBytes;
     @Nullable Timestamp expiresAt;
+    final List<Timestamp> boundExpiresAt = Collections.synchronizedList(new ArrayList<>());
+
+    /** 依次绑定的签名，原始字节包装为 {@link ByteBuffer}。 */
+    final List<Object> boundKeys = Collections.synchronizedList(new ArrayList<>());
+
+    /** 依次绑定的字符串与 NULL 参数。 */
+    final List<@Nullable String> parameters = Collections.synchronizedList(new ArrayList<>());
+
+    @Nullable Integer limit;
     @Nullable SQLException prepareFailure;
     @Nullable SQLException signatureBindFailure;
     @Nullable SQLException expiresAtBindFailure;
-    @Nullable SQLException executeFailure;
+    volatile @Nullable SQLException executeFailure;
+    volatile @Nullable Error executeError;
     @Nullable SQLException statementCloseFailure;
-    @Nullable SQLException commitFailure;
-    @Nullable SQLException rollbackFailure;
-    @Nullable SQLException restoreFailure;
     @Nullable SQLException connectionCloseFailure;
+    int updateCount = 1;
+    final Set<Object> existing = Collections.synchronizedSet(new HashSet<>());
+    boolean compositeKey;
+
+    /** 非 null 时 {@code executeBatch} 的每行计数都取此值。 */
+    volatile @Nullable Integer batchCount;
+
+    List<@Nullable Object[]> queryRows = List.of();
+    final List<String> ddl = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger closedConnections = new AtomicInteger();
 
     long callCount(String call) {
         return calls.stream().filter(call::equals).count();
@@ -43,6 +78,7 @@ final class RecordingJdbc {
     private Object invokeDataSource(Method method, @Nullable Object[] arguments) throws Throwable {
         if (method.getName().equals("getConnection")
                 && (arguments == null || arguments.length == 0)) {
+            connections.incrementAndGet();
             return proxy(Connection.class, this::invokeConnection);
         }
         throw new SQLFeatureNotSupportedException(method.getName());
@@ -51,108 +87,104 @@ final class RecordingJdbc {
     private Object invokeConnection(Method method, @Nullable Object[] arguments) throws Throwable {
         return switch (method.getName()) {
             case "getAutoCommit" -> getAutoCommit();
-            case "setAutoCommit" -> setAutoCommit((boolean) Objects.requireNonNull(arguments)[0]);
             case "prepareStatement" -> prepare((String) Objects.requireNonNull(arguments)[0]);
-            case "commit" -> commit();
-            case "rollback" -> rollback();
+            case "createStatement" -> createStatement();
             case "close" -> closeConnection();
             case "isClosed" -> closed;
             default -> throw new SQLFeatureNotSupportedException(method.getName());
         };
     }
 
-    private Object invokeStatement(Method method, @Nullable Object[] arguments) throws Throwable {
-        return switch (method.getName()) {
-            case "setString" -> setSignature((String) Objects.requireNonNull(arguments)[1]);
-            case "setTimestamp" -> setExpiresAt((Timestamp) Objects.requireNonNull(arguments)[1]);
-            case "executeUpdate" -> execute();
-            case "close" -> closeStatement();
-            default -> throw new SQLFeatureNotSupportedException(method.getName());
-        };
-    }
-
     private boolean getAutoCommit() {
         calls.add("getAutoCommit");
         return autoCommit;
     }
 
-    private @Nullable Object setAutoCommit(boolean value) throws SQLException {
-        calls.add("setAutoCommit(" + value + ")");
-        if (value && restoreFailure != null) {
-            throw restoreFailure;
-        }
-        autoCommit = value;
-        return null;
-    }
-
     private PreparedStatement prepare(String actualSql) throws SQLException {
         calls.add("prepareStatement");
         if (prepareFailure != null) {
             throw prepareFailure;
         }
         sql = actualSql;
-        return proxy(PreparedStatement.class, this::invokeStatement);
+        preparedSql.add(actualSql);
+        return proxy(PreparedStatement.class, new RecordingStatement(actualSql)::invoke);
     }
 
-    private @Nullable Object commit() throws SQLException {
-        calls.add("commit");
-        if (commitFailure != null) {
-            throw commitFailure;
-        }
-        committed = true;
-        return null;
-    }
-
-    private @Nullable Object rollback() throws SQLException {
-        calls.add("rollback");
-        if (rollbackFailure != null) {
-            throw rollbackFailure;
-        }
-        rolledBack = true;
-        return null;
+    private Statement createStatement() {
+        calls.add("createStatement");
+        return proxy(
+                Statement.class,
+                (method, arguments) ->
+                        switch (method.getName()) {
+                            case "executeUpdate" -> {
+                                ddl.add((String) Objects.requireNonNull(arguments)[0]);
+                                yield 0;
+                            }
+                            case "close" -> null;
+                            default -> throw new SQLFeatureNotSupportedException(method.getName());
+                        });
     }
 
     private @Nullable Object closeConnection() throws SQLException {
         calls.add("connection.close");
         closed = true;
+        closedConnections.incrementAndGet();
         if (connectionCloseFailure != null) {
             throw connectionCloseFailure;
         }
         return null;
     }
 
-    private @Nullable Object setSignature(String value) throws SQLException {
-        calls.add("setString");
-        if (signatureBindFailure != null) {
-            throw signatureBindFailure;
+    private void throwExecuteFailure() throws SQLException {
+        Error error = executeError;
+        if (error != null) {
+            throw error;
+        }
+        SQLException failure = executeFailure;
+        if (failure != null) {
+            throw failure;
         }
-        signature = value;
-        return null;
     }
 
-    private @Nullable Object setExpiresAt(Timestamp value) throws SQLException {
-        calls.add("setTimestamp");
-        if (expiresAtBindFailure != null) {
-            throw expiresAtBindFailure;
-        }
-        expiresAt = value;
-        return null;
+    /** 按当前主键模式写入一行，返回是否为新行。 */
+    private boolean insert(Object key, @Nullable Timestamp rowExpiresAt) {
+        return existing.add(
+                compositeKey ? List.of(key, Objects.requireNonNull(rowExpiresAt)) : key);
     }
 
-    private int execute() throws SQLException {
-        calls.add("executeUpdate");
-        if (executeFailure != null) {
-            throw executeFailure;
-        }
-        return 1;
+    private static Object keyOf(Object value) {
+        return value instanceof byte[] raw ? ByteBuffer.wrap(raw) : value;
     }
 
-    private @Nullable Object closeStatement() throws SQLException {
-        calls.add("statement.close");
-        if (statementCloseFailure != null) {
-            throw statementCloseFailure;
-        }
-        return null;
+    private static ResultSet resultSet(List<@Nullable Object[]> rows, Runnable onClose) {
+        Iterator<@Nullable Object[]> iterator = rows.iterator();
+        Object[][] current = new Object[1][];
+        return proxy(
+                ResultSet.class,
+                (method, arguments) -> {
+                    int column =
+                            arguments != null
+                                            && arguments.length == 1
+                                            && arguments[0] instanceof Integer index
+                                    ? index - 1
+                                    : -1;
+                    return switch (method.getName()) {
+                        case "next" -> {
+                            boolean hasNext = iterator.hasNext();
+                            if (hasNext) {
+                                current[0] = iterator.next();
+                            }
+                            yield hasNext;
+                        }
+                        case "getString", "getTimestamp" -> current[0][column];
+                        case "getBytes" -> ((ByteBuffer) current[0][column]).array();
+                        case "close" -> {
+                            onClose.run();
+                            yield null;
+                        }
+                        default -> throw new SQLFeatureNotSupportedException(method.getName());
+                    };
+                });
     }
 
     private static <T> T proxy(Class<T> type, MethodCall call) {
@@ -167,4 +199,151 @@ final class RecordingJdbc {
     private interface MethodCall {
         @Nullable Object invoke(Method method, @Nullable Object[] arguments) throws Throwable;
     }
+
+    /** 单条预编译语句；参数与 batch 行只属于本语句，多个 leader 并发写入时互不干扰。 */
+    private final class RecordingStatement {
+        private final String statementSql;
+        private final Map<Integer, @Nullable Object> bound = new TreeMap<>();
+        private final List<Map<Integer, @Nullable Object>> batch = new ArrayList<>();
+
+        private RecordingStatement(String statementSql) {
+            this.statementSql = statementSql;
+        }
+
+        private @Nullable Object invoke(Method method, @Nullable Object[] arguments)
+                throws Throwable {
+            return switch (method.getName()) {
+                case "setString" ->
+                        setSignature(
+                                (int) Objects.requireNonNull(arguments)[0], (String) arguments[1]);
+                case "setBytes" ->
+                        setSignatureBytes(
+                                (int) Objects.requireNonNull(arguments)[0], (byte[]) arguments[1]);
+                case "setNull" -> setNull((int) Objects.requireNonNull(arguments)[0]);
+                case "setTimestamp" ->
+                        setExpiresAt(
+                                (int) Objects.requireNonNull(arguments)[0],
+                                (Timestamp) arguments[1]);
+                case "setInt" -> setLimit((int) Objects.requireNonNull(arguments)[1]);
+                case "addBatch" -> addBatch();
+                case "executeUpdate" -> execute();
+                case "executeBatch" -> executeBatch();
+                case "executeQuery" -> executeQuery();
+                case "close" -> closeStatement();
+                default -> throw new SQLFeatureNotSupportedException(method.getName());
+            };
+        }
+
+        private @Nullable Object setSignature(int index, String value) throws SQLException {
+            calls.add("setString");
+            if (signatureBindFailure != null) {
+                throw signatureBindFailure;
+            }
+            signature = value;
+            parameters.add(value);
+            boundKeys.add(value);
+            bound.put(index, value);
+            return null;
+        }
+
+        private @Nullable Object setSignatureBytes(int index, byte[] value) throws SQLException {
+            calls.add("setBytes");
+            if (signatureBindFailure != null) {
+                throw signatureBindFailure;
+            }
+            signatureBytes = value;
+            boundKeys.add(ByteBuffer.wrap(value));
+            bound.put(index, value);
+            return null;
+        }
+
+        private @Nullable Object setNull(int index) {
+            calls.add("setNull");
+            parameters.add(null);
+            bound.put(index, null);
+            return null;
+        }
+
+        private @Nullable Object setExpiresAt(int index, Timestamp value) throws SQLException {
+            calls.add("setTimestamp");
+            if (expiresAtBindFailure != null) {
+                throw expiresAtBindFailure;
+            }
+            expiresAt = value;
+            boundExpiresAt.add(value);
+            bound.put(index, value);
+            return null;
+        }
+
+        private @Nullable Object setLimit(int value) {
+            calls.add("setInt");
+            limit = value;
+            return null;
+        }
+
+        private @Nullable Object addBatch() {
+            calls.add("addBatch");
+            batch.add(new TreeMap<>(bound));
+            bound.clear();
+            return null;
+        }
+
+        private int execute() throws SQLException {
+            calls.add("executeUpdate");
+            throwExecuteFailure();
+            return updateCount;
+        }
+
+        private int[] executeBatch() throws SQLException {
+            calls.add("executeBatch");
+            throwExecuteFailure();
+            int[] counts = new int[batch.size()];
+            for (int row = 0; row < counts.length; row++) {
+                Map<Integer, @Nullable Object> values = batch.get(row);
+                Integer configured = batchCount;
+                counts[row] =
+                        configured != null
+                                ? configured
+                                : insert(
+                                                keyOf(Objects.requireNonNull(values.get(1))),
+                                                (Timestamp) values.get(2))
+                                        ? 1
+                                        : 0;
+            }
+            return counts;
+        }
+
+        /**
+         * {@code INSERT ... RETURNING} 按 (key, expires_at) 参数对逐行写入并返回新行；其他查询返回 {@link #queryRows}。
+         */
+        private ResultSet executeQuery() throws SQLException {
+            calls.add("executeQuery");
+            throwExecuteFailure();
+            Runnable onClose = () -> calls.add("resultSet.close");
+            if (!statementSql.startsWith("INSERT")) {
+                return resultSet(queryRows, onClose);
+            }
+            boolean returnsExpiresAt = statementSql.endsWith(", expires_at");
+            List<@Nullable Object[]> inserted = new ArrayList<>();
+            for (int index = 1; bound.containsKey(index); index += 2) {
+                Object key = keyOf(Objects.requireNonNull(bound.get(index)));
+                Timestamp rowExpiresAt = (Timestamp) bound.get(index + 1);
+                if (insert(key, rowExpiresAt)) {
+                    inserted.add(
+                            returnsExpiresAt
+                                    ? new Object[] {key, rowExpiresAt}
+                                    : new Object[] {key});
+                }
+            }
+            return resultSet(inserted, onClose);
+        }
+
+        private @Nullable Object closeStatement() throws SQLException {
+            calls.add("statement.close");
+            if (statementCloseFailure != null) {
+                throw statementCloseFailure;
+            }
+            return null;
+        }
+    }
 }
@@ -1,20 +1,33 @@
 package github.luckygc.cap.replay.redis;
 
-import github.luckygc.cap.NonceConsumer;
+import github.luckygc.cap.BinaryNonceConsumer;
 import io.lettuce.core.SetArgs;
 import io.lettuce.core.api.sync.RedisStringCommands;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.Objects;
 import org.jspecify.annotations.Nullable;
 
-/** 使用 Lettuce 同步命令原子消费 challenge 签名。 */
-public final class LettuceNonceConsumer implements NonceConsumer {
+/**
+ * 使用 Lettuce 同步命令原子消费 challenge 签名。
+ *
+ * <p>构造器使用字符串 commands，key 为前缀加 64 字符十六进制签名；{@link #binary(RedisStringCommands)} 使用 {@code
+ * ByteArrayCodec} 连接的 commands，key 为前缀的 UTF-8 字节加 32 字节原始签名，key 长度约减半。两种 key 互不相通，切换时旧 key 最多在
+ * challenge TTL 内失去防重放。
+ */
+public final class LettuceNonceConsumer implements BinaryNonceConsumer {
     private static final String DEFAULT_KEY_PREFIX = "cap:nonce:";
     private static final Duration MIN_TTL = Duration.ofMillis(1);
     private static final Duration MAX_TTL = Duration.ofHours(24);
+    private static final byte[] VALUE = {'1'};
+    private static final HexFormat HEX = HexFormat.of();
 
-    private final SetNxPxCommand command;
+    private final @Nullable SetNxPxCommand command;
+    private final @Nullable BinarySetNxPxCommand binaryCommand;
     private final String keyPrefix;
+    private final byte[] keyPrefixBytes;
 
     /** 使用默认 key 前缀创建消费者；命令、连接、连接池及超时配置的生命周期均由调用方管理。 */
     public LettuceNonceConsumer(RedisStringCommands<String, String> commands) {
@@ -30,19 +43,66 @@ public final class LettuceNonceConsumer implements NonceConsumer {
     }
 
     LettuceNonceConsumer(SetNxPxCommand command, String keyPrefix) {
-        this.command = Objects.requireNonNull(command);
+        this(Objects.requireNonNull(command), null, keyPrefix);
+    }
+
+    private LettuceNonceConsumer(
+            @Nullable SetNxPxCommand command,
+            @Nullable BinarySetNxPxCommand binaryCommand,
+            String keyPrefix) {
+        this.command = command;
+        this.binaryCommand = binaryCommand;
         Objects.requireNonNull(keyPrefix);
         if (keyPrefix.isEmpty()) {
             throw new IllegalArgumentException("keyPrefix must not be empty");
         }
         this.keyPrefix = keyPrefix;
+        keyPrefixBytes = keyPrefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** 使用默认 key 前缀创建原始字节 key 的消费者；commands 来自 {@code ByteArrayCodec} 连接，生命周期均由调用方管理。 */
+    public static LettuceNonceConsumer binary(RedisStringCommands<byte[], byte[]> commands) {
+        return binary(commands, DEFAULT_KEY_PREFIX);
+    }
+
+    /** 使用指定 key 前缀创建原始字节 key 的消费者；commands 来自 {@code ByteArrayCodec} 连接，生命周期均由调用方管理。 */
+    public static LettuceNonceConsumer binary(
+            RedisStringCommands<byte[], byte[]> commands, String keyPrefix) {
+        Objects.requireNonNull(commands);
+        return binary(
+                (key, ttlMillis) -> commands.set(key, VALUE, SetArgs.Builder.nx().px(ttlMillis)),
+                keyPrefix);
+    }
+
+    static LettuceNonceConsumer binary(BinarySetNxPxCommand binaryCommand, String keyPrefix) {
+        return new LettuceNonceConsumer(null, Objects.requireNonNull(binaryCommand), keyPrefix);
     }
 
     @Override
     public boolean consume(String signatureHex, Duration ttl) throws Exception {
         Objects.requireNonNull(signatureHex);
         Objects.requireNonNull(ttl);
-        @Nullable String response = command.set(keyPrefix + signatureHex, ttlMillis(ttl));
+        SetNxPxCommand stringCommand = command;
+        if (stringCommand == null) {
+            return consume(HEX.parseHex(signatureHex), ttl);
+        }
+        return claimed(stringCommand.set(keyPrefix + signatureHex, ttlMillis(ttl)));
+    }
+
+    @Override
+    public boolean consume(byte[] signature, Duration ttl) throws Exception {
+        Objects.requireNonNull(signature);
+        Objects.requireNonNull(ttl);
+        BinarySetNxPxCommand rawCommand = binaryCommand;
+        if (rawCommand == null) {
+            return consume(HEX.formatHex(signature), ttl);
+        }
+        byte[] key = Arrays.copyOf(keyPrefixBytes, keyPrefixBytes.length + signature.length);
+        System.arraycopy(signature, 0, key, keyPrefixBytes.length, signature.length);
+        return claimed(rawCommand.set(key, ttlMillis(ttl)));
+    }
+
+    private static boolean claimed(@Nullable String response) {
         if (response == null) {
             return false;
         }
@@ -66,3 +126,8 @@ public final class LettuceNonceConsumer implements NonceConsumer {
 interface SetNxPxCommand {
     @Nullable String set(String key, long ttlMillis);
 }
+
+@FunctionalInterface
+interface BinarySetNxPxCommand {
+    @Nullable String set(byte[] key, long ttlMillis);
+}
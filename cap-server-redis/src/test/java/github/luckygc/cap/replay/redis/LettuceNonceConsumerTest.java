@@ -10,9 +10,11 @@ import io.lettuce.core.api.sync.RedisStringCommands;
 import io.lettuce.core.codec.StringCodec;
 import io.lettuce.core.protocol.CommandArgs;
 import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.HexFormat;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.DisplayName;
@@ -53,6 +55,54 @@ class LettuceNonceConsumerTest {
         assertThat(commandArgs.toCommandString()).isEqualTo("PX 1500 NX");
     }
 
+    @Test
+    @DisplayName("二进制 commands 以前缀字节加原始签名为 key")
+    @SuppressWarnings("unchecked")
+    void shouldUseRawSignatureBytesWithBinaryCommands() throws Exception {
+        AtomicReference<Object[]> invocationArguments = new AtomicReference<>();
+        RedisStringCommands<byte[], byte[]> commands =
+                (RedisStringCommands<byte[], byte[]>)
+                        (RedisStringCommands<?, ?>)
+                                redisCommandsReturning("OK", invocationArguments);
+        LettuceNonceConsumer consumer = LettuceNonceConsumer.binary(commands);
+        byte[] signature = new byte[32];
+        signature[0] = (byte) 0xfe;
+        signature[31] = 7;
+        byte[] expectedKey = new byte[10 + 32];
+        System.arraycopy("cap:nonce:".getBytes(StandardCharsets.UTF_8), 0, expectedKey, 0, 10);
+        System.arraycopy(signature, 0, expectedKey, 10, 32);
+
+        assertThat(consumer.consume(signature, Duration.ofMillis(1500))).isTrue();
+        Object[] arguments = invocationArguments.get();
+        assertThat((byte[]) arguments[0]).isEqualTo(expectedKey);
+        assertThat((byte[]) arguments[1]).isEqualTo(new byte[] {'1'});
+        CommandArgs<String, String> commandArgs = new CommandArgs<>(StringCodec.UTF8);
+        ((SetArgs) arguments[2]).build(commandArgs);
+        assertThat(commandArgs.toCommandString()).isEqualTo("PX 1500 NX");
+
+        assertThat(consumer.consume(HexFormat.of().formatHex(signature), Duration.ofSeconds(1)))
+                .isTrue();
+        assertThat((byte[]) invocationArguments.get()[0]).isEqualTo(expectedKey);
+    }
+
+    @Test
+    @DisplayName("字符串 commands 把原始签名格式化为十六进制 key")
+    void shouldFormatRawSignatureWithStringCommands() throws Exception {
+        AtomicReference<String> key = new AtomicReference<>();
+        LettuceNonceConsumer consumer =
+                new LettuceNonceConsumer(
+                        (actualKey, actualTtl) -> {
+                            key.set(actualKey);
+                            return "OK";
+                        },
+                        "custom:");
+        byte[] signature = new byte[32];
+        signature[0] = (byte) 0xab;
+
+        assertThat(consumer.consume(signature, Duration.ofSeconds(1))).isTrue();
+        assertThat(key).hasValue("custom:ab" + "00".repeat(31));
+    }
+
     @Test
     @DisplayName("亚毫秒 TTL 向上取整并拼接自定义前缀")
     void shouldCeilSubMillisecondTtlAndUseCustomPrefix() throws Exception {
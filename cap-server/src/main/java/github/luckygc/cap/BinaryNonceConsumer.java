@@ -0,0 +1,25 @@
+package github.luckygc.cap;
+
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * 以 32 字节原始签名为 key 原子消费 challenge JWT 签名的扩展点。
+ *
+ * <p>{@link Cap} 检测到该接口时直接传入解码后的签名，不再逐次格式化十六进制；存储可以用原始字节作为 key，索引约为十六进制的一半。
+ */
+public interface BinaryNonceConsumer extends NonceConsumer {
+
+    /**
+     * 在 redeem 调用线程同步消费签名。签名固定为 32 字节，实现不得修改传入数组。
+     *
+     * <p>同一 {@link Cap} 可被并发调用，因此自定义实现必须是可信且线程安全的；可能的阻塞、外部副作用和分布式原子性由调用方负责。
+     */
+    boolean consume(byte[] signature, Duration ttl) throws Exception;
+
+    /** 把十六进制签名解码后按原始字节消费，与 {@link #consume(byte[], Duration)} 共享同一份状态。 */
+    @Override
+    default boolean consume(String signatureHex, Duration ttl) throws Exception {
+        return consume(HexFormat.of().parseHex(signatureHex), ttl);
+    }
+}
@@ -1,10 +1,17 @@
 package github.luckygc.cap;
 
+import github.luckygc.cap.internal.ChallengePool;
 import github.luckygc.cap.internal.DefaultCap;
+import github.luckygc.cap.internal.GuardedTransformer;
+import github.luckygc.cap.internal.crypto.RswKeyCodec;
+import github.luckygc.cap.internal.protocol.Format2Protocol;
 import github.luckygc.cap.internal.rsw.RswSupport;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import org.jspecify.annotations.Nullable;
 
 public final class CapBuilder {
@@ -16,11 +23,18 @@ public final class CapBuilder {
     private int challengeCount = 50;
     private int challengeSize = 32;
     private int difficulty = 4;
+    private boolean derivedPowSalts;
+    private boolean compactMetadata;
+    private ChallengePool.@Nullable Settings challengePool;
+    private @Nullable Executor protocolPartExecutor;
     private CapProtocol[] protocols = {CapProtocol.RSW, CapProtocol.INSTRUMENTATION};
     private @Nullable RswKeyPair rswKeyPair;
+    private @Nullable String rswKeyPem;
+    private DefaultCap.@Nullable RswKeyGeneration rswKeyGeneration;
     private int rswIterations = RswSupport.DEFAULT_T;
     private InstrumentationOptions instrumentation = InstrumentationOptions.defaults();
     private boolean instrumentationConfigured;
+    private GuardedTransformer.@Nullable Settings transformerExecution;
     private @Nullable NonceConsumer nonceConsumer;
     private @Nullable TokenSigner tokenSigner;
     private CapEventListener eventListener = new CapEventListener() {};
@@ -51,6 +65,53 @@ public final class CapBuilder {
         return this;
     }
 
+    /**
+     * STRICT 模式下由单个种子派生 sha256-pow salt。
+     *
+     * <p>启用后加密元数据只保存种子与参数，challenge token 大小不再随 challenge 数量增长；兑换时按种子重新展开 salt。下发给 widget 的
+     * salt/target 格式不变。启用后签发的 token 无法由上游 capjs-core 兑换。默认关闭。
+     */
+    public CapBuilder derivedPowSalts(boolean enabled) {
+        this.derivedPowSalts = enabled;
+        return this;
+    }
+
+    /**
+     * STRICT 模式下使用紧凑二进制布局编码加密元数据。
+     *
+     * <p>元数据只由本服务端读取，二进制布局直接保存原始 RSW y 字节和打包整数，token 明显变短，兑换时无需 JSON 解析。启用后签发的 token 无法由上游
+     * capjs-core 兑换；已签发的 JSON 布局 token 仍可兑换。默认关闭。
+     */
+    public CapBuilder compactMetadata(boolean enabled) {
+        this.compactMetadata = enabled;
+        return this;
+    }
+
+    /**
+     * STRICT 模式下由后台 executor 预生成 challenge 材料。
+     *
+     * <p>RSW 铸造、instrumentation 脚本生成与压缩、sha256-pow salt 在后台完成并放入最多 {@code capacity} 份的有界池；{@link
+     * Cap#createChallenge} 只写入本次的有效期、scope 与 extra，再加密元数据并签名。剩余份数不大于 {@code lowWatermark}
+     * 时提交一次补充任务，池空时回退为调用线程内联生成，不会阻塞。签发的 token 与未启用时完全相同。executor 的生命周期由调用方管理，自定义 instrumentation
+     * transformer 会在该 executor 上执行。补充计数通过 {@link CapEventListener#challengePoolRefilled} 上报。默认关闭。
+     */
+    public CapBuilder challengePool(int capacity, int lowWatermark, Executor executor) {
+        this.challengePool = new ChallengePool.Settings(capacity, lowWatermark, executor);
+        return this;
+    }
+
+    /**
+     * STRICT 模式下在 {@code executor} 上并发生成单个 challenge 的各协议部分。
+     *
+     * <p>sha256-pow salt、RSW 铸造与 instrumentation 脚本在加密元数据之前互不依赖：第一个协议在调用线程生成，其余协议各提交一个任务，单个
+     * challenge 的生成耗时从各协议之和降为其中最大值。结果按配置顺序拼装，与顺序生成的输出格式完全相同；任一部分失败时抛出配置顺序中第一个失败部分的异常。executor
+     * 拒绝任务时该部分回退为调用线程生成。 可以使用虚拟线程 executor，生命周期由调用方管理。配置了 {@link #challengePool} 时同样作用于后台补充。默认关闭。
+     */
+    public CapBuilder parallelProtocolGeneration(Executor executor) {
+        this.protocolPartExecutor = Objects.requireNonNull(executor, "executor");
+        return this;
+    }
+
     public CapBuilder protocols(CapProtocol... protocols) {
         if (protocols == null) {
             throw new IllegalArgumentException("protocols must not be null");
@@ -67,6 +128,38 @@ public final class CapBuilder {
 
     public CapBuilder rswKeyPair(RswKeyPair keyPair) {
         this.rswKeyPair = Objects.requireNonNull(keyPair, "keyPair");
+        rswKeyPem = null;
+        return this;
+    }
+
+    /**
+     * 使用 {@link RswKeyPair#toPem(String)} 导出的 RSW 密钥，替代 {@link #rswKeyPair}。
+     *
+     * <p>{@link #build()} 用本构建器的 secret 校验完整性标签，通过后直接由素因子构建 minter，不再重复素性测试，适合多实例启动时加载同一把密钥。secret
+     * 不匹配或内容被改动时 {@link #build()} 抛出 {@link IllegalArgumentException}。
+     */
+    public CapBuilder rswKeyPem(String pem) {
+        this.rswKeyPem = Objects.requireNonNull(pem, "pem");
+        rswKeyPair = null;
+        return this;
+    }
+
+    /** 等同于 {@link #backgroundRswKeyGeneration(Executor, Consumer)}，不接收生成的密钥。 */
+    public CapBuilder backgroundRswKeyGeneration(Executor executor) {
+        return backgroundRswKeyGeneration(executor, keyPair -> {});
+    }
+
+    /**
+     * STRICT 模式下未提供 {@link #rswKeyPair} 或 {@link #rswKeyPem} 时，在后台生成 2048 位 RSW 密钥，而不是在 {@link
+     * #build()} 中同步生成。
+     *
+     * <p>密钥就绪前签发的 challenge 以 sha256-pow 代替 RSW（已配置 sha256-pow 时直接去掉 RSW），就绪后切换到完整协议列表；切换前签发的
+     * challenge 仍可兑换。生成失败时记录警告日志并继续使用临时协议。{@code onGenerated} 在 executor 线程调用，适合用 {@link
+     * RswKeyPair#toPem(String)} 持久化密钥供下次启动经 {@link #rswKeyPem} 直接加载。executor 的生命周期由调用方管理。默认关闭。
+     */
+    public CapBuilder backgroundRswKeyGeneration(
+            Executor executor, Consumer<RswKeyPair> onGenerated) {
+        this.rswKeyGeneration = new DefaultCap.RswKeyGeneration(2048, executor, onGenerated);
         return this;
     }
 
@@ -79,7 +172,8 @@ public final class CapBuilder {
      * 配置 instrumentation；其中的自定义 transformer 必须是可信同步代码。
      *
      * <p>自定义 transformer 可见完整脚本及 nonce 相关内容，并在 challenge 调用线程执行；同一 {@link Cap}
-     * 可被并发调用，实现必须线程安全。其阻塞和外部副作用由调用方负责；本库不提供超时、内存隔离或 JVM sandbox，仅校验异常、返回值和输出大小。
+     * 可被并发调用，实现必须线程安全。其阻塞和外部副作用由调用方负责；未配置 {@link #transformerExecution} 时不提供超时，本库也不提供内存隔离或 JVM
+     * sandbox，仅校验异常、返回值和输出大小。
      */
     public CapBuilder instrumentation(InstrumentationOptions options) {
         this.instrumentation = Objects.requireNonNull(options, "options");
@@ -87,6 +181,21 @@ public final class CapBuilder {
         return this;
     }
 
+    /**
+     * 将自定义 instrumentation transformer 移到独立 executor 上限时执行。
+     *
+     * <p>同时执行的调用不超过 {@code maxConcurrency}，超时后仍在运行的调用继续计数。生成线程最多等待 {@code timeout}；超时、并发已满或
+     * executor 拒绝任务时不再等待，改用内置 transformer 按 {@code fallbackLevel} 转换同一脚本，超时的任务会被中断。自定义 transformer
+     * 抛出的异常照常导致生成失败。 每次调用的结果与累计计数通过 {@link CapEventListener#instrumentationTransformed} 上报。使用内置
+     * transformer 时不生效。executor 应为有界的专用线程池，生命周期由调用方管理。默认关闭。
+     */
+    public CapBuilder transformerExecution(
+            Executor executor, int maxConcurrency, Duration timeout, int fallbackLevel) {
+        this.transformerExecution =
+                new GuardedTransformer.Settings(executor, maxConcurrency, timeout, fallbackLevel);
+        return this;
+    }
+
     /**
      * 配置原子 nonce consumer 以启用防重放。
      *
@@ -125,9 +234,16 @@ public final class CapBuilder {
         if (profile == CapProfile.STRICT && selectedProtocols.isEmpty()) {
             selectedProtocols = List.of(CapProtocol.RSW);
         }
-        @Nullable RswKeyPair selectedRswKeyPair = null;
+        RswKeyCodec.@Nullable Decoded selectedRswKey = null;
         if (profile == CapProfile.STRICT && selectedProtocols.contains(CapProtocol.RSW)) {
-            selectedRswKeyPair = rswKeyPair == null ? RswKeyPair.generate(2048) : rswKeyPair;
+            if (rswKeyPem != null) {
+                selectedRswKey =
+                        RswKeyCodec.decode(rswKeyPem, new String(secret, StandardCharsets.UTF_8));
+            } else if (rswKeyPair != null) {
+                selectedRswKey = RswSupport.key(rswKeyPair);
+            } else if (rswKeyGeneration == null) {
+                selectedRswKey = RswSupport.key(RswKeyPair.generate(2048));
+            }
         }
         InstrumentationOptions strictInstrumentation =
                 instrumentationConfigured
@@ -145,10 +261,15 @@ public final class CapBuilder {
                 challengeCount,
                 challengeSize,
                 difficulty,
-                selectedRswKeyPair,
+                new Format2Protocol.MetadataOptions(derivedPowSalts, compactMetadata),
+                challengePool,
+                protocolPartExecutor,
+                selectedRswKey,
+                profile == CapProfile.STRICT ? rswKeyGeneration : null,
                 rswIterations,
                 profile == CapProfile.DEFAULT && instrumentationConfigured ? instrumentation : null,
                 strictInstrumentation,
+                transformerExecution,
                 nonceConsumer,
                 tokenSigner,
                 eventListener);
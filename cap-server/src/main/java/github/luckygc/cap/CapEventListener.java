@@ -8,6 +8,8 @@ import java.util.Objects;
  * 接收不含敏感协议数据的同步事件。
  *
  * <p>事件在 create/redeem 调用线程分发；同一 {@link Cap} 可被并发调用，因此自定义实现必须是可信且线程安全的。监听器异常会被隔离，但其阻塞和外部副作用由调用方负责。
+ * {@link #challengePoolRefilled} 例外，它在 challenge 池的后台 executor 线程分发；{@link
+ * #instrumentationTransformed} 在生成脚本的线程分发，启用 challenge 池时可能是池的 executor 线程。
  */
 public interface CapEventListener {
 
@@ -17,6 +19,12 @@ public interface CapEventListener {
 
     default void redeemFailed(FailureEvent event) {}
 
+    /** 一轮 challenge 池后台补充结束；仅在配置了 {@link CapBuilder#challengePool} 时触发。 */
+    default void challengePoolRefilled(ChallengePoolEvent event) {}
+
+    /** 一次受限 transformer 调用结束；仅在配置了 {@link CapBuilder#transformerExecution} 时触发。 */
+    default void instrumentationTransformed(TransformerEvent event) {}
+
     record ChallengeEvent(int format, List<CapProtocol> protocols, Duration duration) {
 
         public ChallengeEvent {
@@ -41,4 +49,52 @@ public interface CapEventListener {
             Objects.requireNonNull(duration, "duration");
         }
     }
+
+    /**
+     * challenge 池计数快照；除 {@code available} 外均为自创建以来的累计值。
+     *
+     * @param available 当前可用的预生成份数
+     * @param capacity 池容量
+     * @param hits 直接取用预生成材料的 challenge 数
+     * @param misses 池空后回退为内联生成的 challenge 数
+     * @param generated 后台生成的材料份数
+     * @param failures 后台生成失败或补充任务被拒绝的次数
+     */
+    record ChallengePoolEvent(
+            int available, int capacity, long hits, long misses, long generated, long failures) {}
+
+    /**
+     * 受限 transformer 单次调用结果及自创建以来的累计计数。
+     *
+     * @param outcome 本次调用结果
+     * @param duration 本次调用在生成线程上的耗时，含回退转换
+     * @param completed 自定义 transformer 在截止时间内返回的次数
+     * @param timedOut 超过截止时间后回退的次数
+     * @param saturated 并发上限已满而直接回退的次数
+     * @param rejected executor 拒绝任务后回退的次数
+     * @param failed 自定义 transformer 抛出异常或等待被中断的次数
+     */
+    record TransformerEvent(
+            TransformerOutcome outcome,
+            Duration duration,
+            long completed,
+            long timedOut,
+            long saturated,
+            long rejected,
+            long failed) {
+
+        public TransformerEvent {
+            Objects.requireNonNull(outcome, "outcome");
+            Objects.requireNonNull(duration, "duration");
+        }
+    }
+
+    /** 受限 transformer 调用结果；除 {@code COMPLETED} 与 {@code FAILED} 外都已回退到内置 transformer。 */
+    enum TransformerOutcome {
+        COMPLETED,
+        TIMED_OUT,
+        SATURATED,
+        REJECTED,
+        FAILED
+    }
 }
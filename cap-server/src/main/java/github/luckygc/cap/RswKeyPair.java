@@ -1,10 +1,16 @@
 package github.luckygc.cap;
 
+import github.luckygc.cap.internal.crypto.RswKeyCodec;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.Objects;
 
-/** RSW 使用的 RSA 风格模数与素因子。十进制字段适合直接持久化。 */
+/**
+ * RSW 使用的 RSA 风格模数与素因子。十进制字段适合直接持久化。
+ *
+ * <p>构造时对两个素因子做素性测试，4096 位以上的密钥需要数秒；多实例启动时可改用 {@link #toPem(String)} 导出的文本配合 {@link
+ * CapBuilder#rswKeyPem(String)} 加载。
+ */
 public record RswKeyPair(int bits, String modulus, String primeP, String primeQ) {
 
     private static final int MIN_BITS = 1024;
@@ -34,6 +40,17 @@ public record RswKeyPair(int bits, String modulus, String primeP, String primeQ)
         primeQ = parsedPrimeQ.toString();
     }
 
+    /**
+     * 导出为 PEM 风格文本，由 {@link CapBuilder#rswKeyPem(String)} 导入。文本包含素因子明文，应与 secret
+     * 同等保管；标签只防篡改，不提供机密性。
+     *
+     * @param secret 服务端 secret，至少 16 个 UTF-8 字节
+     */
+    public String toPem(String secret) {
+        Objects.requireNonNull(secret, "secret");
+        return RswKeyCodec.encode(bits, new BigInteger(primeP), new BigInteger(primeQ), secret);
+    }
+
     /** 生成指定偶数位数的密钥对；生成开销较高，调用方应持久化并复用结果。 */
     public static RswKeyPair generate(int bits) {
         return generate(bits, new SecureRandom());
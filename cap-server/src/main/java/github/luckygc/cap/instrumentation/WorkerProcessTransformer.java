@@ -0,0 +1,434 @@
+package github.luckygc.cap.instrumentation;
+
+import github.luckygc.cap.InstrumentationTransformer;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 把 instrumentation 脚本交给常驻 worker 进程池转换，适合 Node.js 混淆器等外部工具；进程启动成本只在首次使用和重启时支付。
+ *
+ * <p>worker 通过 stdin/stdout 交换帧，每帧为 4 字节大端长度加正文。请求正文依次为 4 字节请求 id、1 字节操作（{@code 'T'} 转换、{@code 'P'}
+ * 健康检查）、1 字节 level 与 UTF-8 脚本；响应正文依次为相同请求 id、1 字节状态（0 成功，其他失败）与 UTF-8 结果。同一 worker
+ * 可同时处理多个请求，响应顺序不限。
+ *
+ * <p>每个 worker 的未完成请求数有上限；所有 worker 满载时调用线程最多等待 timeout，仍无空位即失败。worker
+ * 退出、输出非法帧、停止读取请求或响应超时时，其未完成请求全部失败， 进程被终止，下次选中该槽位时重启；两次启动间隔不少于 restartBackoff，退避期内的槽位被跳过，由其余 worker
+ * 承接调用。{@link #checkHealth()} 向每个 worker 发送健康检查，调度由调用方负责。worker 的 stderr 默认丢弃，避免脚本内容进入日志。不再使用时调用
+ * {@link #close()} 终止全部进程。
+ */
+public final class WorkerProcessTransformer implements InstrumentationTransformer, AutoCloseable {
+
+    private static final int MAX_RESPONSE_BYTES = 1_048_576;
+    private static final byte OP_TRANSFORM = 'T';
+    private static final byte OP_PING = 'P';
+    private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+    private final List<String> command;
+    private final @Nullable File directory;
+    private final ProcessBuilder.Redirect errorRedirect;
+    private final int maxInFlight;
+    private final long timeoutNanos;
+    private final long restartBackoffNanos;
+    private final Slot[] slots;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile boolean closed;
+
+    private WorkerProcessTransformer(Builder builder) {
+        command = builder.command;
+        directory = builder.directory;
+        errorRedirect = builder.errorRedirect;
+        maxInFlight = builder.maxInFlight;
+        timeoutNanos = builder.timeout.toNanos();
+        restartBackoffNanos = builder.restartBackoff.toNanos();
+        slots = new Slot[builder.workers];
+        for (int index = 0; index < slots.length; index++) {
+            slots[index] = new Slot();
+        }
+    }
+
+    /** 以给定命令（程序及参数）启动 worker。 */
+    public static Builder builder(List<String> command) {
+        return new Builder(command);
+    }
+
+    @Override
+    public String transform(String script, int level) {
+        Objects.requireNonNull(script, "script");
+        long deadline = System.nanoTime() + timeoutNanos;
+        Worker worker = acquire(deadline);
+        try {
+            return worker.call(
+                    OP_TRANSFORM, level, script.getBytes(StandardCharsets.UTF_8), deadline);
+        } finally {
+            worker.permits.release();
+        }
+    }
+
+    /**
+     * 向每个 worker 发送一次健康检查；尚未启动或已退出的 worker 先按退避间隔启动，未在 timeout 内正确响应的进程被终止，下次使用时重启。
+     *
+     * @return 通过检查的 worker 数
+     */
+    public int checkHealth() {
+        int healthy = 0;
+        for (Slot slot : slots) {
+            try {
+                Worker worker = slot.worker();
+                if (worker == null) {
+                    continue;
+                }
+                worker.call(OP_PING, 0, new byte[0], System.nanoTime() + timeoutNanos);
+                healthy++;
+            } catch (IllegalStateException exception) {
+                if (closed) {
+                    throw exception;
+                }
+            }
+        }
+        return healthy;
+    }
+
+    /** 终止全部 worker，未完成的调用随即失败；之后的调用抛出 {@link IllegalStateException}。 */
+    @Override
+    public void close() {
+        closed = true;
+        for (Slot slot : slots) {
+            slot.close();
+        }
+    }
+
+    /**
+     * 轮询选出有空位的 worker 并占用一个额度，跳过处于重启退避期的槽位；全部满载时在首个可用 worker 上等待，等到的 worker 已退出则重新选择；全部槽位都在退避期内时
+     * 等到最早可重启的时刻。截止时间前仍无法占用时失败。
+     */
+    private Worker acquire(long deadline) {
+        while (true) {
+            int start = Math.floorMod(next.getAndIncrement(), slots.length);
+            @Nullable Worker candidate = null;
+            long restartAt = deadline;
+            for (int offset = 0; offset < slots.length; offset++) {
+                Slot slot = slots[(start + offset) % slots.length];
+                Worker worker = slot.worker();
+                if (worker == null) {
+                    long slotRestartAt = slot.restartAt();
+                    if (slotRestartAt - restartAt < 0) {
+                        restartAt = slotRestartAt;
+                    }
+                    continue;
+                }
+                if (worker.permits.tryAcquire()) {
+                    return worker;
+                }
+                if (candidate == null) {
+                    candidate = worker;
+                }
+            }
+            if (candidate == null) {
+                awaitRestart(restartAt, deadline);
+                continue;
+            }
+            Worker worker = candidate;
+            try {
+                if (!worker.permits.tryAcquire(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new IllegalStateException("instrumentation worker pool saturated");
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "instrumentation worker wait interrupted", exception);
+            }
+            if (worker.alive) {
+                return worker;
+            }
+            worker.permits.release();
+        }
+    }
+
+    private static void awaitRestart(long restartAt, long deadline) {
+        long now = System.nanoTime();
+        if (deadline - now <= 0) {
+            throw new IllegalStateException("instrumentation worker restarting");
+        }
+        LockSupport.parkNanos(Math.max(1, Math.min(deadline - now, restartAt - now)));
+        if (Thread.interrupted()) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("instrumentation worker wait interrupted");
+        }
+    }
+
+    private Worker start() {
+        ProcessBuilder builder = new ProcessBuilder(command).redirectError(errorRedirect);
+        if (directory != null) {
+            builder.directory(directory);
+        }
+        try {
+            return new Worker(builder.start());
+        } catch (IOException exception) {
+            throw new IllegalStateException("failed to start instrumentation worker", exception);
+        }
+    }
+
+    /** 固定槽位，持有当前 worker 并负责按退避间隔重启。 */
+    private final class Slot {
+
+        private @Nullable Worker worker;
+        private long startedAt;
+        private boolean started;
+
+        /** 返回存活的 worker，必要时重启；仍在重启退避期内时返回 {@code null}。 */
+        synchronized @Nullable Worker worker() {
+            if (closed) {
+                throw new IllegalStateException("instrumentation worker pool closed");
+            }
+            Worker current = worker;
+            if (current != null && current.alive) {
+                return current;
+            }
+            long now = System.nanoTime();
+            if (started && now - startedAt < restartBackoffNanos) {
+                return null;
+            }
+            started = true;
+            startedAt = now;
+            Worker restarted = start();
+            worker = restarted;
+            return restarted;
+        }
+
+        /** 退避期结束、允许再次启动进程的时刻。 */
+        synchronized long restartAt() {
+            return startedAt + restartBackoffNanos;
+        }
+
+        synchronized void close() {
+            Worker current = worker;
+            if (current != null) {
+                current.fail();
+            }
+            worker = null;
+        }
+    }
+
+    /**
+     * 单个 worker 进程；请求成帧后由专用写线程按序写入，响应由专用读线程按 id 分发。调用方只在截止时间内等待响应，worker 停止读取 stdin
+     * 导致写入阻塞时同样按超时终止进程， 阻塞的写入随管道关闭失败，其他调用方不会排在它后面无限等待。
+     */
+    private final class Worker {
+
+        private final Process process;
+        private final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+        private final Thread writer;
+        private final Semaphore permits = new Semaphore(maxInFlight);
+        private final Map<Integer, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+        private final AtomicInteger ids = new AtomicInteger();
+        private volatile boolean alive = true;
+
+        Worker(Process process) {
+            this.process = process;
+            int sequence = THREAD_SEQUENCE.incrementAndGet();
+            Thread reader =
+                    new Thread(this::readResponses, "cap-instrumentation-worker-" + sequence);
+            reader.setDaemon(true);
+            writer = new Thread(this::writeRequests, "cap-instrumentation-writer-" + sequence);
+            writer.setDaemon(true);
+            reader.start();
+            writer.start();
+        }
+
+        String call(byte operation, int level, byte[] payload, long deadline) {
+            int id = ids.incrementAndGet();
+            byte[] frame =
+                    ByteBuffer.allocate(10 + payload.length)
+                            .putInt(6 + payload.length)
+                            .putInt(id)
+                            .put(operation)
+                            .put((byte) level)
+                            .put(payload)
+                            .array();
+            CompletableFuture<String> response = new CompletableFuture<>();
+            pending.put(id, response);
+            // 失败时先置 alive 再清理 pending，这里复查可避免请求在清理之后挂入。
+            if (!alive) {
+                pending.remove(id);
+                throw new IllegalStateException("instrumentation worker unavailable");
+            }
+            frames.add(frame);
+            try {
+                return response.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException exception) {
+                pending.remove(id);
+                fail();
+                throw new IllegalStateException("instrumentation worker timed out", exception);
+            } catch (ExecutionException exception) {
+                throw new IllegalStateException(
+                        "instrumentation worker failed", exception.getCause());
+            } catch (InterruptedException exception) {
+                pending.remove(id);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        "instrumentation worker wait interrupted", exception);
+            }
+        }
+
+        /** 队列中没有后续帧时才 flush，突发请求合并为一次管道写入。 */
+        private void writeRequests() {
+            try (OutputStream output = new BufferedOutputStream(process.getOutputStream())) {
+                while (alive) {
+                    output.write(frames.take());
+                    if (frames.isEmpty()) {
+                        output.flush();
+                    }
+                }
+            } catch (IOException | InterruptedException exception) {
+                // 管道关闭或 fail 中断写线程，worker 均已不可用。
+            } finally {
+                fail();
+            }
+        }
+
+        private void readResponses() {
+            try (DataInputStream input =
+                    new DataInputStream(new BufferedInputStream(process.getInputStream()))) {
+                while (true) {
+                    int length = input.readInt();
+                    if (length < 5 || length > MAX_RESPONSE_BYTES) {
+                        throw new IOException("invalid worker frame length");
+                    }
+                    int id = input.readInt();
+                    int status = input.readUnsignedByte();
+                    byte[] body = input.readNBytes(length - 5);
+                    if (body.length != length - 5) {
+                        throw new EOFException("truncated worker frame");
+                    }
+                    CompletableFuture<String> response = pending.remove(id);
+                    if (response == null) {
+                        continue;
+                    }
+                    if (status == 0) {
+                        response.complete(new String(body, StandardCharsets.UTF_8));
+                    } else {
+                        response.completeExceptionally(
+                                new IllegalStateException(
+                                        "instrumentation worker reported failure"));
+                    }
+                }
+            } catch (IOException exception) {
+                // EOF 或非法帧都视为 worker 不可用。
+            } finally {
+                fail();
+            }
+        }
+
+        /** 标记不可用、终止进程并让全部未完成请求失败。 */
+        void fail() {
+            alive = false;
+            process.destroyForcibly();
+            writer.interrupt();
+            IllegalStateException exited =
+                    new IllegalStateException("instrumentation worker exited");
+            for (Integer id : pending.keySet()) {
+                CompletableFuture<String> response = pending.remove(id);
+                if (response != null) {
+                    response.completeExceptionally(exited);
+                }
+            }
+        }
+    }
+
+    public static final class Builder {
+
+        private final List<String> command;
+        private int workers = 2;
+        private int maxInFlight = 4;
+        private Duration timeout = Duration.ofSeconds(5);
+        private Duration restartBackoff = Duration.ofSeconds(1);
+        private @Nullable File directory;
+        private ProcessBuilder.Redirect errorRedirect = ProcessBuilder.Redirect.DISCARD;
+
+        private Builder(List<String> command) {
+            Objects.requireNonNull(command, "command");
+            if (command.isEmpty()) {
+                throw new IllegalArgumentException("command must not be empty");
+            }
+            this.command = List.copyOf(command);
+        }
+
+        /** 常驻 worker 进程数，默认 2。 */
+        public Builder workers(int workers) {
+            if (workers < 1 || workers > 64) {
+                throw new IllegalArgumentException("workers must be between 1 and 64");
+            }
+            this.workers = workers;
+            return this;
+        }
+
+        /** 单个 worker 同时未完成的请求上限，默认 4。 */
+        public Builder maxInFlightPerWorker(int maxInFlight) {
+            if (maxInFlight < 1 || maxInFlight > 1024) {
+                throw new IllegalArgumentException(
+                        "maxInFlightPerWorker must be between 1 and 1024");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /** 单次调用从排队到收到响应的上限，默认 5 秒；超时的 worker 会被终止并重启。 */
+        public Builder timeout(Duration timeout) {
+            Objects.requireNonNull(timeout, "timeout");
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+            this.timeout = timeout;
+            return this;
+        }
+
+        /** 同一槽位两次启动进程的最小间隔，默认 1 秒，避免崩溃循环；间隔内该槽位被跳过，全部槽位都在间隔内时调用方最多等待 timeout。 */
+        public Builder restartBackoff(Duration restartBackoff) {
+            Objects.requireNonNull(restartBackoff, "restartBackoff");
+            if (restartBackoff.isNegative()) {
+                throw new IllegalArgumentException("restartBackoff must not be negative");
+            }
+            this.restartBackoff = restartBackoff;
+            return this;
+        }
+
+        public Builder directory(File directory) {
+            this.directory = Objects.requireNonNull(directory, "directory");
+            return this;
+        }
+
+        /** worker stderr 的去向，默认丢弃。 */
+        public Builder errorRedirect(ProcessBuilder.Redirect errorRedirect) {
+            this.errorRedirect = Objects.requireNonNull(errorRedirect, "errorRedirect");
+            return this;
+        }
+
+        /** 创建 transformer；worker 在首次使用时启动。 */
+        public WorkerProcessTransformer build() {
+            return new WorkerProcessTransformer(this);
+        }
+    }
+}
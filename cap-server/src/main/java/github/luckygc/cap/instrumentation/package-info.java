@@ -0,0 +1,4 @@
+@NullMarked
+package github.luckygc.cap.instrumentation;
+
+import org.jspecify.annotations.NullMarked;
@@ -55,6 +55,33 @@ public final class CapEvents {
         notifyListener(() -> listener.redeemFailed(event));
     }
 
+    public void challengePoolRefilled(CapEventListener.ChallengePoolEvent event) {
+        LOGGER.debug(
+                "CAP challenge pool refilled: available={}, capacity={}, hits={}, misses={},"
+                        + " generated={}, failures={}",
+                event.available(),
+                event.capacity(),
+                event.hits(),
+                event.misses(),
+                event.generated(),
+                event.failures());
+        notifyListener(() -> listener.challengePoolRefilled(event));
+    }
+
+    public void transformerCompleted(CapEventListener.TransformerEvent event) {
+        LOGGER.debug(
+                "CAP instrumentation transformed: outcome={}, duration={}, completed={},"
+                        + " timedOut={}, saturated={}, rejected={}, failed={}",
+                event.outcome(),
+                event.duration(),
+                event.completed(),
+                event.timedOut(),
+                event.saturated(),
+                event.rejected(),
+                event.failed());
+        notifyListener(() -> listener.instrumentationTransformed(event));
+    }
+
     public void warn(Warning warning, Throwable exception) {
         Objects.requireNonNull(warning, "warning");
         Objects.requireNonNull(exception, "exception");
@@ -84,7 +111,8 @@ public final class CapEvents {
         NONCE_CONSUMER_FAILURE("nonce consumer failed"),
         RSW_FAILURE("RSW operation failed"),
         INSTRUMENTATION_FAILURE("instrumentation generation failed"),
-        TOKEN_SIGNER_FAILURE("token signer failed");
+        TOKEN_SIGNER_FAILURE("token signer failed"),
+        CHALLENGE_POOL_FAILURE("challenge pool refill failed");
 
         private final String message;
 
@@ -0,0 +1,142 @@
+package github.luckygc.cap.internal;
+
+import github.luckygc.cap.CapEventListener;
+import github.luckygc.cap.internal.CapEvents.Warning;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 由后台 executor 填充的有界 challenge 材料池。
+ *
+ * <p>{@link #poll()} 从不阻塞：池空时返回 {@code null}，由调用方在请求线程内联生成。剩余数量降到低水位时提交一次补充任务，同一时刻最多只有一个补充任务在
+ * executor 上运行；补充任务失败或被拒绝时只记录警告，下一次低水位 poll 会再次尝试。{@link #stop()} 后不再提交补充任务，正在运行的补充任务在生成完当前一份后退出。
+ *
+ * @param <T> 材料类型，每份材料只会被取出一次
+ */
+public final class ChallengePool<T> {
+
+    private final int capacity;
+    private final int lowWatermark;
+    private final Executor executor;
+    private final Supplier<T> factory;
+    private final CapEvents events;
+    private final Queue<T> available = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private volatile boolean stopped;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    ChallengePool(Settings settings, Supplier<T> factory, CapEvents events) {
+        Objects.requireNonNull(settings, "settings");
+        capacity = settings.capacity();
+        lowWatermark = settings.lowWatermark();
+        executor = settings.executor();
+        this.factory = Objects.requireNonNull(factory, "factory");
+        this.events = Objects.requireNonNull(events, "events");
+        scheduleRefill();
+    }
+
+    /** 取出一份预生成材料；池空时返回 {@code null}。 */
+    @Nullable T poll() {
+        @Nullable T material = available.poll();
+        int remaining;
+        if (material == null) {
+            misses.increment();
+            remaining = size.get();
+        } else {
+            hits.increment();
+            remaining = size.decrementAndGet();
+        }
+        if (remaining <= lowWatermark) {
+            scheduleRefill();
+        }
+        return material;
+    }
+
+    /** 当前计数快照。 */
+    CapEventListener.ChallengePoolEvent snapshot() {
+        return new CapEventListener.ChallengePoolEvent(
+                Math.max(0, size.get()),
+                capacity,
+                hits.sum(),
+                misses.sum(),
+                generated.sum(),
+                failures.sum());
+    }
+
+    /** 停止补充并丢弃剩余材料；之后 {@link #poll()} 始终返回 {@code null}。 */
+    void stop() {
+        stopped = true;
+        available.clear();
+        size.set(0);
+    }
+
+    private void scheduleRefill() {
+        if (stopped || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::refill);
+        } catch (RejectedExecutionException exception) {
+            refilling.set(false);
+            failures.increment();
+            events.warn(Warning.CHALLENGE_POOL_FAILURE, exception);
+        }
+    }
+
+    private void refill() {
+        try {
+            while (!stopped && size.get() < capacity) {
+                T material = factory.get();
+                available.add(material);
+                size.incrementAndGet();
+                generated.increment();
+            }
+        } catch (RuntimeException exception) {
+            failures.increment();
+            events.warn(Warning.CHALLENGE_POOL_FAILURE, exception);
+        } finally {
+            refilling.set(false);
+        }
+        if (stopped) {
+            available.clear();
+            size.set(0);
+            return;
+        }
+        events.challengePoolRefilled(snapshot());
+    }
+
+    /**
+     * 材料池配置。
+     *
+     * @param capacity 最多保留的材料份数
+     * @param lowWatermark 剩余份数不大于该值时触发后台补充
+     * @param executor 执行补充任务的 executor，生命周期由调用方管理
+     */
+    public record Settings(int capacity, int lowWatermark, Executor executor) {
+
+        public static final int MAX_CAPACITY = 10_000;
+
+        public Settings {
+            if (capacity < 1 || capacity > MAX_CAPACITY) {
+                throw new IllegalArgumentException("challenge pool capacity must be 1-10000");
+            }
+            if (lowWatermark < 0 || lowWatermark >= capacity) {
+                throw new IllegalArgumentException(
+                        "challenge pool low watermark must be 0 to capacity - 1");
+            }
+            Objects.requireNonNull(executor, "executor");
+        }
+    }
+}
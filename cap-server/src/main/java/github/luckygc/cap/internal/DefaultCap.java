@@ -1,5 +1,6 @@
 package github.luckygc.cap.internal;
 
+import github.luckygc.cap.BinaryNonceConsumer;
 import github.luckygc.cap.Cap;
 import github.luckygc.cap.CapEventListener;
 import github.luckygc.cap.CapProtocol;
@@ -14,6 +15,10 @@ import github.luckygc.cap.RswKeyPair;
 import github.luckygc.cap.TokenSigner;
 import github.luckygc.cap.internal.CapEvents.Warning;
 import github.luckygc.cap.internal.crypto.JwtCodec;
+import github.luckygc.cap.internal.crypto.RswKeyCodec;
+import github.luckygc.cap.internal.instrumentation.InstrumentationGenerator;
+import github.luckygc.cap.internal.json.ChallengeClaims;
+import github.luckygc.cap.internal.json.Format2Claims;
 import github.luckygc.cap.internal.protocol.Format1Protocol;
 import github.luckygc.cap.internal.protocol.Format2Protocol;
 import github.luckygc.cap.internal.protocol.ProtocolFailure;
@@ -21,21 +26,28 @@ import github.luckygc.cap.internal.rsw.RswSupport;
 import github.luckygc.cap.internal.token.DefaultTokenSigner;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import org.jspecify.annotations.Nullable;
 
 /** 默认线程安全 Cap 门面；该 internal 类型不属于受支持的公开 API。 */
 public final class DefaultCap implements Cap {
 
+    private static final HexFormat HEX = HexFormat.of();
+
     private final int format;
     private final List<CapProtocol> protocols;
     private final List<CapProtocol> format1Protocols;
     private final ChallengeOptions challengeDefaults;
     private final RedeemOptions redeemDefaults;
     private final @Nullable Format1Protocol format1;
-    private final @Nullable Format2Protocol format2;
+    // 后台生成 RSW 密钥期间先使用不含 RSW 的临时状态，密钥就绪后整体替换。
+    private volatile @Nullable Format2State format2;
     private final JwtCodec jwt;
     private final @Nullable NonceConsumer nonceConsumer;
     private final @Nullable TokenSigner tokenSigner;
@@ -51,10 +63,15 @@ public final class DefaultCap implements Cap {
             int challengeCount,
             int challengeSize,
             int difficulty,
-            @Nullable RswKeyPair rswKeyPair,
+            Format2Protocol.MetadataOptions format2Metadata,
+            ChallengePool.@Nullable Settings challengePoolSettings,
+            @Nullable Executor protocolPartExecutor,
+            RswKeyCodec.@Nullable Decoded rswKey,
+            @Nullable RswKeyGeneration rswKeyGeneration,
             int rswIterations,
             @Nullable InstrumentationOptions format1Instrumentation,
             InstrumentationOptions format2Instrumentation,
+            GuardedTransformer.@Nullable Settings transformerExecution,
             @Nullable NonceConsumer configuredNonceConsumer,
             @Nullable TokenSigner tokenSigner,
             CapEventListener eventListener) {
@@ -66,35 +83,112 @@ public final class DefaultCap implements Cap {
                         : List.of(CapProtocol.SHA256_POW, CapProtocol.INSTRUMENTATION);
         this.challengeDefaults = Objects.requireNonNull(challengeDefaults, "challengeDefaults");
         this.redeemDefaults = Objects.requireNonNull(redeemDefaults, "redeemDefaults");
+        events = new CapEvents(eventListener);
+        @Nullable InstrumentationOptions format1Options =
+                format1Instrumentation == null
+                        ? null
+                        : guarded(format1Instrumentation, transformerExecution);
+        InstrumentationOptions format2Options =
+                guarded(format2Instrumentation, transformerExecution);
         format1 =
                 format == 1
                         ? new Format1Protocol(
-                                secret,
-                                challengeCount,
-                                challengeSize,
-                                difficulty,
-                                format1Instrumentation)
-                        : null;
-        format2 =
-                format == 2
-                        ? new Format2Protocol(
-                                secret,
-                                protocols,
-                                challengeCount,
-                                challengeSize,
-                                difficulty,
-                                protocols.contains(CapProtocol.RSW)
-                                        ? RswSupport.createMinter(
-                                                Objects.requireNonNull(rswKeyPair, "rswKeyPair"),
-                                                rswIterations)
-                                        : null,
-                                format2Instrumentation)
+                                secret, challengeCount, challengeSize, difficulty, format1Options)
                         : null;
         jwt = new JwtCodec(secret);
         nonceConsumer = configuredNonceConsumer;
         this.tokenSigner = tokenSigner;
         defaultTokenSigner = new DefaultTokenSigner();
-        events = new CapEvents(eventListener);
+        if (format != 2) {
+            format2 = null;
+        } else {
+            Function<RswKeyCodec.@Nullable Decoded, Format2State> states =
+                    key -> {
+                        List<CapProtocol> active =
+                                key == null && this.protocols.contains(CapProtocol.RSW)
+                                        ? withoutRsw(this.protocols)
+                                        : this.protocols;
+                        Format2Protocol protocol =
+                                new Format2Protocol(
+                                        secret,
+                                        active,
+                                        challengeCount,
+                                        challengeSize,
+                                        difficulty,
+                                        format2Metadata,
+                                        key == null
+                                                ? null
+                                                : RswSupport.createMinter(key, rswIterations),
+                                        format2Options,
+                                        protocolPartExecutor);
+                        return new Format2State(
+                                active,
+                                protocol,
+                                challengePoolSettings == null
+                                        ? null
+                                        : new ChallengePool<>(
+                                                challengePoolSettings, protocol::prepare, events));
+                    };
+            if (!this.protocols.contains(CapProtocol.RSW)) {
+                format2 = states.apply(null);
+            } else if (rswKey != null || rswKeyGeneration == null) {
+                format2 = states.apply(Objects.requireNonNull(rswKey, "rswKey"));
+            } else {
+                format2 = states.apply(null);
+                rswKeyGeneration.executor().execute(() -> installRswKey(rswKeyGeneration, states));
+            }
+        }
+    }
+
+    /** 在后台线程生成密钥并切换到完整协议，切换前停止临时材料池的补充；失败时保留临时协议并记录警告。 */
+    private void installRswKey(
+            RswKeyGeneration generation,
+            Function<RswKeyCodec.@Nullable Decoded, Format2State> states) {
+        RswKeyPair keyPair;
+        try {
+            keyPair = RswKeyPair.generate(generation.bits());
+            Format2State installed = states.apply(RswSupport.key(keyPair));
+            Format2State interim = Objects.requireNonNull(format2, "format2");
+            if (interim.pool() != null) {
+                interim.pool().stop();
+            }
+            format2 = installed;
+        } catch (RuntimeException exception) {
+            events.warn(Warning.RSW_FAILURE, exception);
+            return;
+        }
+        try {
+            generation.onGenerated().accept(keyPair);
+        } catch (RuntimeException exception) {
+            events.warn(Warning.RSW_FAILURE, exception);
+        }
+    }
+
+    /** 配置了受限执行时，把自定义 transformer 包装为带截止时间与并发上限的版本。 */
+    private InstrumentationOptions guarded(
+            InstrumentationOptions options, GuardedTransformer.@Nullable Settings settings) {
+        if (settings == null
+                || options.transformer() == InstrumentationGenerator.builtInTransformer()) {
+            return options;
+        }
+        return InstrumentationOptions.builder()
+                .level(options.level())
+                .blockAutomatedBrowsers(options.blockAutomatedBrowsers())
+                .transformer(new GuardedTransformer(options.transformer(), settings, events))
+                .build();
+    }
+
+    /** 将 RSW 原位替换为 sha256-pow（已配置时直接去掉），保证临时期间仍有工作量证明。 */
+    private static List<CapProtocol> withoutRsw(List<CapProtocol> protocols) {
+        List<CapProtocol> interim = new ArrayList<>(protocols.size());
+        for (CapProtocol protocol : protocols) {
+            if (protocol != CapProtocol.RSW) {
+                interim.add(protocol);
+            } else if (!protocols.contains(CapProtocol.SHA256_POW)) {
+                interim.add(CapProtocol.SHA256_POW);
+            }
+        }
+        return List.copyOf(interim);
     }
 
     @Override
@@ -109,7 +203,7 @@ public final class DefaultCap implements Cap {
         try {
             ChallengeResponse response =
                     format == 2
-                            ? Objects.requireNonNull(format2, "format2").generate(options)
+                            ? generateFormat2(options)
                             : Objects.requireNonNull(format1, "format1").generate(options);
             events.challengeCreated(format, eventProtocols(), elapsed(started));
             return response;
@@ -119,6 +213,16 @@ public final class DefaultCap implements Cap {
         }
     }
 
+    /** 优先使用池中的预生成材料，池空或未配置时在调用线程内联生成。 */
+    private ChallengeResponse generateFormat2(ChallengeOptions options) {
+        Format2State state = Objects.requireNonNull(format2, "format2");
+        Format2Protocol.@Nullable Material material =
+                state.pool() == null ? null : state.pool().poll();
+        return material == null
+                ? state.protocol().generate(options)
+                : state.protocol().generate(options, material);
+    }
+
     @Override
     public RedeemResult redeem(@Nullable RedeemRequest request) {
         return redeem(request, redeemDefaults);
@@ -128,17 +232,25 @@ public final class DefaultCap implements Cap {
     public RedeemResult redeem(@Nullable RedeemRequest request, RedeemOptions options) {
         Objects.requireNonNull(options, "options");
         long started = System.nanoTime();
-        int requestFormat = requestFormat(request);
-        List<CapProtocol> requestProtocols = requestFormat == 2 ? protocols : format1Protocols;
+        // token 只验证一次：格式分派、scope、过期与协议验证共用同一份 claims。
+        @Nullable ChallengeClaims claims =
+                request == null ? null : jwt.verifyClaims(request.token()).orElse(null);
+        int requestFormat = requestFormat(claims);
+        @Nullable Format2State state = format2;
+        List<CapProtocol> requestProtocols =
+                requestFormat != 2
+                        ? format1Protocols
+                        : state == null ? protocols : state.protocols();
         Object validation;
-        if (requestFormat == 2 && format2 != null) {
-            validation = format2.validate(request, options.expectedScope());
+        if (request == null) {
+            validation = new ProtocolFailure("invalid_body", false, null);
+        } else if (requestFormat == 2 && state != null) {
+            // 校验只依赖加密元数据中的预期条目，切换前签发的临时 challenge 切换后仍可兑换。
+            validation = state.protocol().validate(request, claims, options.expectedScope());
         } else if (requestFormat == 1 && format1 != null) {
-            validation = format1.validate(request, options.expectedScope());
+            validation = format1.validate(request, claims, options.expectedScope());
         } else {
-            validation =
-                    new ProtocolFailure(
-                            request == null ? "invalid_body" : "invalid_token", false, null);
+            validation = new ProtocolFailure("invalid_token", false, null);
         }
         if (validation instanceof ProtocolFailure failure) {
             return failure(requestFormat, requestProtocols, failure, started);
@@ -151,7 +263,12 @@ public final class DefaultCap implements Cap {
                             Math.max(1L, validated.expires() - System.currentTimeMillis()));
             final boolean claimed;
             try {
-                claimed = nonceConsumer.consume(validated.signatureHex(), remaining);
+                // 二进制 consumer 直接接收解码后的签名，只有字符串 consumer 才格式化十六进制。
+                claimed =
+                        nonceConsumer instanceof BinaryNonceConsumer binary
+                                ? binary.consume(validated.signature(), remaining)
+                                : nonceConsumer.consume(
+                                        HEX.formatHex(validated.signature()), remaining);
             } catch (Exception exception) {
                 events.warn(Warning.NONCE_CONSUMER_FAILURE, exception);
                 return failure(
@@ -212,19 +329,16 @@ public final class DefaultCap implements Cap {
         return result;
     }
 
-    private int requestFormat(@Nullable RedeemRequest request) {
-        if (request == null) {
-            return format;
-        }
-        @Nullable Map<String, @Nullable Object> payload = jwt.verify(request.token()).orElse(null);
-        if (payload == null) {
+    private int requestFormat(@Nullable ChallengeClaims claims) {
+        if (claims == null) {
             return format;
         }
-        return Long.valueOf(2L).equals(payload.get("f")) ? 2 : 1;
+        return claims instanceof Format2Claims ? 2 : 1;
     }
 
     private List<CapProtocol> eventProtocols() {
-        return format == 2 ? protocols : format1Protocols;
+        @Nullable Format2State state = format2;
+        return format != 2 ? format1Protocols : state == null ? protocols : state.protocols();
     }
 
     private RedeemResult.Failure failure(
@@ -242,17 +356,37 @@ public final class DefaultCap implements Cap {
     private static Validated validated(Object validation) {
         if (validation instanceof Format1Protocol.Validated value) {
             return new Validated(
-                    value.scope(), value.issuedAt(), value.expires(), value.signatureHex());
+                    value.scope(), value.issuedAt(), value.expires(), value.signature());
         }
         Format2Protocol.Validated value = (Format2Protocol.Validated) validation;
-        return new Validated(
-                value.scope(), value.issuedAt(), value.expires(), value.signatureHex());
+        return new Validated(value.scope(), value.issuedAt(), value.expires(), value.signature());
     }
 
     private static Duration elapsed(long started) {
         return Duration.ofNanos(Math.max(0L, System.nanoTime() - started));
     }
 
+    /**
+     * 后台 RSW 密钥生成配置。
+     *
+     * @param bits 模数位数
+     * @param executor 执行一次性生成任务的 executor，生命周期由调用方管理
+     * @param onGenerated 密钥就绪并生效后调用，通常用于持久化
+     */
+    public record RswKeyGeneration(int bits, Executor executor, Consumer<RswKeyPair> onGenerated) {
+
+        public RswKeyGeneration {
+            Objects.requireNonNull(executor, "executor");
+            Objects.requireNonNull(onGenerated, "onGenerated");
+        }
+    }
+
+    /** 同时生效的协议列表、协议实现与其材料池。 */
+    private record Format2State(
+            List<CapProtocol> protocols,
+            Format2Protocol protocol,
+            @Nullable ChallengePool<Format2Protocol.Material> pool) {}
+
     private record Validated(
-            @Nullable String scope, long issuedAt, long expires, String signatureHex) {}
+            @Nullable String scope, long issuedAt, long expires, byte[] signature) {}
 }
@@ -0,0 +1,150 @@
+package github.luckygc.cap.internal;
+
+import github.luckygc.cap.CapEventListener;
+import github.luckygc.cap.CapEventListener.TransformerOutcome;
+import github.luckygc.cap.InstrumentationTransformer;
+import github.luckygc.cap.internal.instrumentation.InstrumentationGenerator;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在独立 executor 上限时执行自定义 transformer。
+ *
+ * <p>进行中的调用数受信号量限制，许可在 transformer 真正返回后才释放，超时后仍未结束的调用继续占用许可。许可耗尽、executor 拒绝或超过截止时间时，改用内置
+ * transformer 按回退 level 转换同一脚本，调用线程不再等待；超时的任务会被中断。自定义 transformer 抛出的异常照常向上传播。每次调用后通过 {@link
+ * CapEvents#transformerCompleted} 上报结果与累计计数。
+ */
+public final class GuardedTransformer implements InstrumentationTransformer {
+
+    private final InstrumentationTransformer delegate;
+    private final Executor executor;
+    private final long timeoutNanos;
+    private final int fallbackLevel;
+    private final Semaphore permits;
+    private final CapEvents events;
+    private final InstrumentationTransformer fallback =
+            InstrumentationGenerator.builtInTransformer();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder saturated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    GuardedTransformer(InstrumentationTransformer delegate, Settings settings, CapEvents events) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        Objects.requireNonNull(settings, "settings");
+        executor = settings.executor();
+        timeoutNanos = settings.timeout().toNanos();
+        fallbackLevel = settings.fallbackLevel();
+        permits = new Semaphore(settings.maxConcurrency());
+        this.events = Objects.requireNonNull(events, "events");
+    }
+
+    @Override
+    public String transform(String script, int level) {
+        long started = System.nanoTime();
+        if (!permits.tryAcquire()) {
+            return fallback(script, TransformerOutcome.SATURATED, saturated, started);
+        }
+        FutureTask<String> task =
+                new FutureTask<>(() -> delegate.transform(script, level)) {
+                    @Override
+                    public void run() {
+                        // 排队期间已取消的任务 run 直接返回，许可同样在这里归还。
+                        try {
+                            super.run();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException exception) {
+            permits.release();
+            return fallback(script, TransformerOutcome.REJECTED, rejected, started);
+        }
+        try {
+            String transformed = task.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            record(TransformerOutcome.COMPLETED, completed, started);
+            return transformed;
+        } catch (TimeoutException exception) {
+            task.cancel(true);
+            return fallback(script, TransformerOutcome.TIMED_OUT, timedOut, started);
+        } catch (ExecutionException exception) {
+            record(TransformerOutcome.FAILED, failed, started);
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("instrumentation transformer failed", cause);
+        } catch (InterruptedException exception) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            record(TransformerOutcome.FAILED, failed, started);
+            throw new IllegalStateException("instrumentation transformer interrupted", exception);
+        }
+    }
+
+    /** 当前计数快照。 */
+    CapEventListener.TransformerEvent snapshot(TransformerOutcome outcome, Duration duration) {
+        return new CapEventListener.TransformerEvent(
+                outcome,
+                duration,
+                completed.sum(),
+                timedOut.sum(),
+                saturated.sum(),
+                rejected.sum(),
+                failed.sum());
+    }
+
+    private String fallback(
+            String script, TransformerOutcome outcome, LongAdder counter, long started) {
+        String transformed = fallback.transform(script, fallbackLevel);
+        record(outcome, counter, started);
+        return transformed;
+    }
+
+    private void record(TransformerOutcome outcome, LongAdder counter, long started) {
+        counter.increment();
+        events.transformerCompleted(
+                snapshot(outcome, Duration.ofNanos(System.nanoTime() - started)));
+    }
+
+    /**
+     * 受限执行配置。
+     *
+     * @param executor 执行自定义 transformer 的 executor，生命周期由调用方管理
+     * @param maxConcurrency 同时在 executor 上执行的最大调用数
+     * @param timeout 单次调用的等待上限
+     * @param fallbackLevel 回退到内置 transformer 时使用的 level
+     */
+    public record Settings(
+            Executor executor, int maxConcurrency, Duration timeout, int fallbackLevel) {
+
+        public Settings {
+            Objects.requireNonNull(executor, "executor");
+            if (maxConcurrency < 1) {
+                throw new IllegalArgumentException("transformer max concurrency must be positive");
+            }
+            Objects.requireNonNull(timeout, "timeout");
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException("transformer timeout must be positive");
+            }
+            if (fallbackLevel < 0 || fallbackLevel > 3) {
+                throw new IllegalArgumentException("fallback level must be between 0 and 3");
+            }
+        }
+    }
+}
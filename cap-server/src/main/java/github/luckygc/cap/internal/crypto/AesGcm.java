@@ -0,0 +1,55 @@
+package github.luckygc.cap.internal.crypto;
+
+import java.security.GeneralSecurityException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 绑定单个派生密钥的 AES-256-GCM。
+ *
+ * <p>每个池化 {@link Cipher} 只见过同一把密钥，provider 可复用已展开的轮密钥；GCM 每次调用都以新 IV 重新 {@code
+ * init}，因此实例在任何异常后仍可安全归还。
+ */
+final class AesGcm {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private final SecretKeySpec key;
+    private final int tagBits;
+    private final PrimitivePool<Cipher> pool;
+
+    AesGcm(byte[] key, int tagBits) {
+        this.key = new SecretKeySpec(key, "AES");
+        this.tagBits = tagBits;
+        pool = new PrimitivePool<>(AesGcm::newCipher);
+    }
+
+    /** 返回 ciphertext 后接认证 tag。 */
+    byte[] encrypt(byte[] iv, byte[] plaintext) throws GeneralSecurityException {
+        return run(Cipher.ENCRYPT_MODE, iv, plaintext);
+    }
+
+    /** 输入为 ciphertext 后接认证 tag；认证失败抛出 {@link GeneralSecurityException}。 */
+    byte[] decrypt(byte[] iv, byte[] ciphertextAndTag) throws GeneralSecurityException {
+        return run(Cipher.DECRYPT_MODE, iv, ciphertextAndTag);
+    }
+
+    private byte[] run(int mode, byte[] iv, byte[] input) throws GeneralSecurityException {
+        Cipher cipher = pool.acquire();
+        try {
+            cipher.init(mode, key, new GCMParameterSpec(tagBits, iv));
+            return cipher.doFinal(input);
+        } finally {
+            pool.release(cipher);
+        }
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("运行环境不支持 AES-256-GCM", exception);
+        }
+    }
+}
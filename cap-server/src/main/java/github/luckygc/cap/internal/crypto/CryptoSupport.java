@@ -2,7 +2,6 @@ package github.luckygc.cap.internal.crypto;
 
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.Base64;
 import java.util.HexFormat;
@@ -31,13 +30,10 @@ final class CryptoSupport {
     }
 
     static byte[] sha256(byte[] value) {
-        try {
-            return MessageDigest.getInstance("SHA-256").digest(value);
-        } catch (GeneralSecurityException exception) {
-            throw new IllegalStateException("运行环境缺少 SHA-256", exception);
-        }
+        return Sha256.digest(value);
     }
 
+    /** 一次性 HMAC，仅用于构造期派生密钥和测试；请求路径使用预绑定密钥的 {@link HmacSha256}。 */
     static byte[] hmacSha256(byte[] key, byte[] value) {
         try {
             Mac mac = Mac.getInstance("HmacSHA256");
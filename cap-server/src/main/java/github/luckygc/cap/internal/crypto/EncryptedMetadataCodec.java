@@ -6,9 +6,6 @@ import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
-import javax.crypto.Cipher;
-import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 import org.jspecify.annotations.Nullable;
 
 /** 使用 AES-256-GCM 保护协议元数据。 */
@@ -20,7 +17,8 @@ public final class EncryptedMetadataCodec {
     private static final byte[] FORMAT_1_INFO = CryptoSupport.utf8("cap:enc-v1");
     private static final byte[] FORMAT_2_INFO = CryptoSupport.utf8("cap:fmt2-v1");
 
-    private final byte[] secret;
+    private final AesGcm format1;
+    private final AesGcm format2;
     private final SecureRandom random;
     private final ProtocolJsonCodec jsonCodec;
 
@@ -30,37 +28,51 @@ public final class EncryptedMetadataCodec {
 
     /** 使用调用方随机源，供内部协议组合器和确定性互操作测试注入。 */
     public EncryptedMetadataCodec(String secret, SecureRandom random) {
-        this.secret = CryptoSupport.secretBytes(secret);
+        byte[] secretBytes = CryptoSupport.secretBytes(secret);
+        this.format1 = new AesGcm(CryptoSupport.hmacSha256(secretBytes, FORMAT_1_INFO), TAG_BITS);
+        this.format2 = new AesGcm(CryptoSupport.hmacSha256(secretBytes, FORMAT_2_INFO), TAG_BITS);
         this.random = random;
         this.jsonCodec = new ProtocolJsonCodec();
     }
 
     /** 加密 Format 1 instrumentation 元数据。 */
     public String encryptFormat1(Map<String, @Nullable Object> metadata) {
-        return encrypt(metadata, FORMAT_1_INFO);
+        return encrypt(metadata, format1);
     }
 
     /** 解密 Format 1 instrumentation 元数据。 */
     public Optional<Map<String, @Nullable Object>> decryptFormat1(String encrypted) {
-        return decrypt(encrypted, FORMAT_1_INFO);
+        return decrypt(encrypted, format1);
     }
 
     /** 使用固定 info 派生密钥，加密 Format 2 expected 元数据。 */
     public String encryptFormat2(Map<String, @Nullable Object> metadata) {
-        return encrypt(metadata, FORMAT_2_INFO);
+        return encrypt(metadata, format2);
     }
 
     /** 使用固定 info 派生密钥，解密 Format 2 expected 元数据。 */
     public Optional<Map<String, @Nullable Object>> decryptFormat2(String encrypted) {
-        return decrypt(encrypted, FORMAT_2_INFO);
+        return decrypt(encrypted, format2);
     }
 
-    private String encrypt(Map<String, @Nullable Object> metadata, byte[] info) {
+    /** 加密调用方已编码的 Format 2 明文，供不使用 JSON 布局的服务端专用元数据使用。 */
+    public String encryptFormat2(byte[] plaintext) {
+        return encrypt(plaintext, format2);
+    }
+
+    /** 解密 Format 2 元数据并返回原始明文，由调用方按首字节区分布局。 */
+    public Optional<byte[]> decryptFormat2Bytes(String encrypted) {
+        return decryptBytes(encrypted, format2);
+    }
+
+    private String encrypt(Map<String, @Nullable Object> metadata, AesGcm cipher) {
+        return encrypt(jsonCodec.writeObject(metadata), cipher);
+    }
+
+    private String encrypt(byte[] plaintext, AesGcm cipher) {
         byte[] iv = CryptoSupport.randomBytes(random, IV_BYTES);
         try {
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            cipher.init(Cipher.ENCRYPT_MODE, key(info), new GCMParameterSpec(TAG_BITS, iv));
-            byte[] ciphertextAndTag = cipher.doFinal(jsonCodec.writeObject(metadata));
+            byte[] ciphertextAndTag = cipher.encrypt(iv, plaintext);
             int ciphertextLength = ciphertextAndTag.length - TAG_BYTES;
             byte[] wire = new byte[IV_BYTES + TAG_BYTES + ciphertextLength];
             System.arraycopy(iv, 0, wire, 0, IV_BYTES);
@@ -72,7 +84,15 @@ public final class EncryptedMetadataCodec {
         }
     }
 
-    private Optional<Map<String, @Nullable Object>> decrypt(String encrypted, byte[] info) {
+    private Optional<Map<String, @Nullable Object>> decrypt(String encrypted, AesGcm cipher) {
+        try {
+            return decryptBytes(encrypted, cipher).map(jsonCodec::readObject);
+        } catch (IllegalArgumentException exception) {
+            return Optional.empty();
+        }
+    }
+
+    private Optional<byte[]> decryptBytes(String encrypted, AesGcm cipher) {
         try {
             byte[] wire = CryptoSupport.decodeBase64Url(encrypted);
             if (wire.length < IV_BYTES + TAG_BYTES) {
@@ -83,15 +103,9 @@ public final class EncryptedMetadataCodec {
             byte[] ciphertextAndTag = new byte[ciphertextLength + TAG_BYTES];
             System.arraycopy(wire, IV_BYTES + TAG_BYTES, ciphertextAndTag, 0, ciphertextLength);
             System.arraycopy(wire, IV_BYTES, ciphertextAndTag, ciphertextLength, TAG_BYTES);
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            cipher.init(Cipher.DECRYPT_MODE, key(info), new GCMParameterSpec(TAG_BITS, iv));
-            return Optional.of(jsonCodec.readObject(cipher.doFinal(ciphertextAndTag)));
+            return Optional.of(cipher.decrypt(iv, ciphertextAndTag));
         } catch (GeneralSecurityException | IllegalArgumentException exception) {
             return Optional.empty();
         }
     }
-
-    private SecretKeySpec key(byte[] info) {
-        return new SecretKeySpec(CryptoSupport.hmacSha256(secret, info), "AES");
-    }
 }
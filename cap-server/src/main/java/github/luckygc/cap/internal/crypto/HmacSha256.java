@@ -0,0 +1,63 @@
+package github.luckygc.cap.internal.crypto;
+
+import java.security.GeneralSecurityException;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 绑定单个密钥的 HMAC-SHA256。
+ *
+ * <p>构造时完成 provider 查找与 ipad/opad 密钥调度，并保存一个已初始化模板；池空时克隆模板，克隆不可用时才重新初始化。{@code doFinal}
+ * 会把实例恢复为已绑定密钥的初始状态，因此可直接归还复用。
+ */
+public final class HmacSha256 {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final Mac template;
+    private final PrimitivePool<Mac> pool;
+
+    public HmacSha256(byte[] key) {
+        this.key = new SecretKeySpec(key, ALGORITHM);
+        template = initialize(this.key);
+        pool = new PrimitivePool<>(this::newMac);
+    }
+
+    /** 计算完整输入的 MAC。 */
+    public byte[] mac(byte[] value) {
+        return mac(value, 0, value.length);
+    }
+
+    /** 计算输入区间的 MAC。 */
+    public byte[] mac(byte[] value, int offset, int length) {
+        Mac mac = pool.acquire();
+        try {
+            mac.update(value, offset, length);
+            return mac.doFinal();
+        } catch (RuntimeException exception) {
+            mac.reset();
+            throw exception;
+        } finally {
+            pool.release(mac);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            return (Mac) template.clone();
+        } catch (CloneNotSupportedException exception) {
+            return initialize(key);
+        }
+    }
+
+    private static Mac initialize(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("运行环境缺少 HmacSHA256", exception);
+        }
+    }
+}
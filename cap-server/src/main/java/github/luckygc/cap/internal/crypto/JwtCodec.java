@@ -1,5 +1,7 @@
 package github.luckygc.cap.internal.crypto;
 
+import github.luckygc.cap.internal.json.ChallengeClaims;
+import github.luckygc.cap.internal.json.ClaimsDecoder;
 import github.luckygc.cap.internal.json.ProtocolJsonCodec;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
@@ -14,16 +16,19 @@ public final class JwtCodec {
             "{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8);
     private static final String HEADER_SEGMENT = CryptoSupport.encodeBase64Url(HEADER_JSON);
     private static final Map<String, Object> EXPECTED_HEADER = Map.of("alg", "HS256", "typ", "JWT");
+    // 32 字节 HMAC-SHA256 的无填充 Base64URL 长度。
+    private static final int SIGNATURE_SEGMENT_LENGTH = 43;
 
-    private final byte[] secret;
+    private final HmacSha256 hmac;
     private final ProtocolJsonCodec jsonCodec;
+    private final ClaimsDecoder claimsDecoder = new ClaimsDecoder();
 
     public JwtCodec(String secret) {
         this(secret, new ProtocolJsonCodec());
     }
 
     JwtCodec(String secret, ProtocolJsonCodec jsonCodec) {
-        this.secret = CryptoSupport.secretBytes(secret);
+        this.hmac = new HmacSha256(CryptoSupport.secretBytes(secret));
         this.jsonCodec = jsonCodec;
     }
 
@@ -33,8 +38,7 @@ public final class JwtCodec {
         String signingInput = HEADER_SEGMENT + "." + payloadSegment;
         String signature =
                 CryptoSupport.encodeBase64Url(
-                        CryptoSupport.hmacSha256(
-                                secret, signingInput.getBytes(StandardCharsets.US_ASCII)));
+                        hmac.mac(signingInput.getBytes(StandardCharsets.US_ASCII)));
         String token = signingInput + "." + signature;
         if (token.length() > ProtocolJsonCodec.MAX_INPUT_BYTES) {
             throw new IllegalArgumentException("JWT 超过大小限制");
@@ -42,40 +46,59 @@ public final class JwtCodec {
         return token;
     }
 
-    /** 验证 JWT，任何不可信输入错误都安全返回 empty。 */
+    /** 验证 JWT，任何不可信输入错误都安全返回 empty；结构错误在计算 MAC 前拒绝。 */
     public Optional<Map<String, @Nullable Object>> verify(String token) {
-        if (!isAcceptableInput(token)) {
+        try {
+            byte @Nullable [] payload = verifiedPayload(token);
+            return payload == null ? Optional.empty() : Optional.of(jsonCodec.readObject(payload));
+        } catch (IllegalArgumentException exception) {
+            return Optional.empty();
+        }
+    }
+
+    /** 验证 JWT 并将 payload 直接解码为类型化 claims；未知字段、重复字段同样返回 empty。 */
+    public Optional<ChallengeClaims> verifyClaims(String token) {
+        try {
+            byte @Nullable [] payload = verifiedPayload(token);
+            return payload == null ? Optional.empty() : Optional.of(claimsDecoder.decode(payload));
+        } catch (IllegalArgumentException exception) {
             return Optional.empty();
         }
+    }
+
+    private byte @Nullable [] verifiedPayload(String token) {
+        if (!isAcceptableInput(token)) {
+            return null;
+        }
         int firstDot = token.indexOf('.');
         int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
         if (firstDot <= 0
                 || secondDot <= firstDot + 1
                 || secondDot == token.length() - 1
-                || token.indexOf('.', secondDot + 1) >= 0) {
-            return Optional.empty();
+                || token.indexOf('.', secondDot + 1) >= 0
+                || token.length() - secondDot - 1 != SIGNATURE_SEGMENT_LENGTH) {
+            return null;
         }
-        String headerSegment = token.substring(0, firstDot);
-        String payloadSegment = token.substring(firstDot + 1, secondDot);
-        String signatureSegment = token.substring(secondDot + 1);
-        try {
-            Map<String, @Nullable Object> header =
-                    jsonCodec.readObject(CryptoSupport.decodeBase64Url(headerSegment));
-            if (!EXPECTED_HEADER.equals(header)) {
-                return Optional.empty();
-            }
-            byte[] suppliedSignature = CryptoSupport.decodeBase64Url(signatureSegment);
-            String signingInput = token.substring(0, secondDot);
-            byte[] expectedSignature =
-                    CryptoSupport.hmacSha256(
-                            secret, signingInput.getBytes(StandardCharsets.US_ASCII));
-            if (!MessageDigest.isEqual(expectedSignature, suppliedSignature)) {
-                return Optional.empty();
-            }
-            return Optional.of(jsonCodec.readObject(CryptoSupport.decodeBase64Url(payloadSegment)));
-        } catch (IllegalArgumentException exception) {
-            return Optional.empty();
+        if (!isExpectedHeader(token, firstDot)) {
+            return null;
+        }
+        byte[] suppliedSignature = CryptoSupport.decodeBase64Url(token.substring(secondDot + 1));
+        String signingInput = token.substring(0, secondDot);
+        byte[] expectedSignature = hmac.mac(signingInput.getBytes(StandardCharsets.US_ASCII));
+        if (!MessageDigest.isEqual(expectedSignature, suppliedSignature)) {
+            return null;
+        }
+        return CryptoSupport.decodeBase64Url(token.substring(firstDot + 1, secondDot));
+    }
+
+    private boolean isExpectedHeader(String token, int firstDot) {
+        // 本库签发的 header 总是规范段，直接比较可跳过 JSON 解析；其余写法仍按字段语义判定。
+        if (firstDot == HEADER_SEGMENT.length() && token.startsWith(HEADER_SEGMENT)) {
+            return true;
         }
+        Map<String, @Nullable Object> header =
+                jsonCodec.readObject(CryptoSupport.decodeBase64Url(token.substring(0, firstDot)));
+        return EXPECTED_HEADER.equals(header);
     }
 
     static boolean isAcceptableInput(CharSequence value) {
@@ -0,0 +1,77 @@
+package github.luckygc.cap.internal.crypto;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 有界无锁的 JCA 实例池。
+ *
+ * <p>除 JCA 实例外，也用于其他可复用的请求路径缓冲区。不使用 ThreadLocal：虚拟线程数量不受限，按线程缓存会让实例数随并发请求线性增长。也不使用 {@code
+ * synchronized}，避免在 JDK 21 下钉住 carrier 线程。池空时新建实例，归还时池满则交给 GC，因此池大小只限制保留量而不限制并发。
+ */
+public final class PrimitivePool<T> {
+
+    private static final int MAX_SLOTS = 64;
+
+    private final AtomicReferenceArray<@Nullable T> slots;
+    private final Supplier<T> factory;
+
+    public PrimitivePool(Supplier<T> factory) {
+        this(factory, Math.min(MAX_SLOTS, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    PrimitivePool(Supplier<T> factory, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.factory = Objects.requireNonNull(factory, "factory");
+        slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /** 取出空闲实例；池空时新建。调用方独占返回值直到 {@link #release(Object)}。 */
+    public T acquire() {
+        int length = slots.length();
+        int start = ThreadLocalRandom.current().nextInt(length);
+        for (int offset = 0; offset < length; offset++) {
+            int index = (start + offset) % length;
+            if (slots.get(index) != null) {
+                @Nullable T value = slots.getAndSet(index, null);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * 归还已恢复为初始状态的实例；池满时丢弃。
+     *
+     * @return 实例是否进入池；为 {@code false} 时调用方负责释放实例持有的本地资源
+     */
+    public boolean release(T value) {
+        Objects.requireNonNull(value, "value");
+        int length = slots.length();
+        int start = ThreadLocalRandom.current().nextInt(length);
+        for (int offset = 0; offset < length; offset++) {
+            int index = (start + offset) % length;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int idle() {
+        int idle = 0;
+        for (int index = 0; index < slots.length(); index++) {
+            if (slots.get(index) != null) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+}
@@ -0,0 +1,153 @@
+package github.luckygc.cap.internal.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * RSW 密钥对的 PEM 风格导出格式。
+ *
+ * <p>正文为 Base64（每行 64 字符），解码后依次为：4 字节魔数 {@code CRSW}、1 字节版本 {@code 0x01}、2 字节 bits、2 字节长度加 primeP
+ * 大端字节、2 字节长度加 primeQ 大端字节，最后是 32 字节 HMAC-SHA256 标签。标签密钥由服务端 secret 派生，因此只有持有同一 secret
+ * 的进程能生成可通过校验的导出文本；校验通过的素因子被视为此前已验证过的素数，导入时不再重复素性测试。
+ */
+public final class RswKeyCodec {
+
+    private static final String BEGIN = "-----BEGIN CAP RSW KEY PAIR-----";
+    private static final String END = "-----END CAP RSW KEY PAIR-----";
+    private static final byte[] MAGIC = {'C', 'R', 'S', 'W'};
+    private static final int VERSION = 1;
+    private static final int TAG_BYTES = 32;
+    private static final int MAX_PRIME_BYTES = 8192 / Byte.SIZE;
+    private static final int MAX_ENCODED_BYTES =
+            MAGIC.length + 1 + 2 + 2 * (2 + MAX_PRIME_BYTES + 1) + TAG_BYTES;
+    private static final byte[] TAG_INFO = CryptoSupport.utf8("cap:rsw-key-v1");
+
+    private RswKeyCodec() {}
+
+    /**
+     * 已确认为素数的 RSW 素因子：来自完整性校验通过的导出文本，或来自已做素性测试的 {@code RswKeyPair}。
+     *
+     * <p>构造时只做结构校验，不重复素性测试。
+     */
+    public record Decoded(int bits, BigInteger primeP, BigInteger primeQ) {
+
+        public Decoded {
+            if (bits < 1024 || bits > 8192 || bits % 2 != 0) {
+                throw new IllegalArgumentException("RSW key pair export is malformed");
+            }
+            if (primeP.signum() <= 0
+                    || primeQ.signum() <= 0
+                    || primeP.equals(primeQ)
+                    || primeP.multiply(primeQ).bitLength() != bits) {
+                throw new IllegalArgumentException("RSW key pair export is malformed");
+            }
+        }
+
+        public BigInteger modulus() {
+            return primeP.multiply(primeQ);
+        }
+    }
+
+    public static String encode(int bits, BigInteger primeP, BigInteger primeQ, String secret) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(MAX_ENCODED_BYTES);
+        output.writeBytes(MAGIC);
+        output.write(VERSION);
+        writeShort(output, bits);
+        writeMagnitude(output, primeP);
+        writeMagnitude(output, primeQ);
+        output.writeBytes(tag(secret, output.toByteArray()));
+        String body =
+                Base64.getMimeEncoder(64, new byte[] {'\n'}).encodeToString(output.toByteArray());
+        return BEGIN + "\n" + body + "\n" + END + "\n";
+    }
+
+    /** 校验标签并解析；格式错误或标签不匹配时抛出 {@link IllegalArgumentException}。 */
+    public static Decoded decode(String text, String secret) {
+        String trimmed = text.strip();
+        if (!trimmed.startsWith(BEGIN) || !trimmed.endsWith(END)) {
+            throw new IllegalArgumentException("RSW key pair export is malformed");
+        }
+        String body = trimmed.substring(BEGIN.length(), trimmed.length() - END.length());
+        if (body.length() > MAX_ENCODED_BYTES * 2) {
+            throw new IllegalArgumentException("RSW key pair export is malformed");
+        }
+        byte[] encoded;
+        try {
+            encoded = Base64.getMimeDecoder().decode(body.strip());
+        } catch (IllegalArgumentException exception) {
+            throw new IllegalArgumentException("RSW key pair export is malformed", exception);
+        }
+        if (encoded.length <= TAG_BYTES || encoded.length > MAX_ENCODED_BYTES) {
+            throw new IllegalArgumentException("RSW key pair export is malformed");
+        }
+        int contentLength = encoded.length - TAG_BYTES;
+        byte[] expected = tag(secret, Arrays.copyOf(encoded, contentLength));
+        byte[] actual = Arrays.copyOfRange(encoded, contentLength, encoded.length);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new IllegalArgumentException("RSW key pair export integrity check failed");
+        }
+        Reader reader = new Reader(encoded, contentLength);
+        if (!Arrays.equals(reader.bytes(MAGIC.length), MAGIC) || reader.read() != VERSION) {
+            throw new IllegalArgumentException("RSW key pair export version is unsupported");
+        }
+        int bits = reader.readShort();
+        BigInteger primeP = new BigInteger(1, reader.bytes(reader.readShort()));
+        BigInteger primeQ = new BigInteger(1, reader.bytes(reader.readShort()));
+        if (reader.position != contentLength) {
+            throw new IllegalArgumentException("RSW key pair export is malformed");
+        }
+        return new Decoded(bits, primeP, primeQ);
+    }
+
+    private static byte[] tag(String secret, byte[] content) {
+        byte[] key = CryptoSupport.hmacSha256(CryptoSupport.secretBytes(secret), TAG_INFO);
+        return CryptoSupport.hmacSha256(key, content);
+    }
+
+    private static void writeShort(ByteArrayOutputStream output, int value) {
+        output.write(value >>> 8);
+        output.write(value);
+    }
+
+    private static void writeMagnitude(ByteArrayOutputStream output, BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        int offset = bytes[0] == 0 && bytes.length > 1 ? 1 : 0;
+        writeShort(output, bytes.length - offset);
+        output.write(bytes, offset, bytes.length - offset);
+    }
+
+    private static final class Reader {
+
+        private final byte[] source;
+        private final int limit;
+        private int position;
+
+        private Reader(byte[] source, int limit) {
+            this.source = source;
+            this.limit = limit;
+        }
+
+        int read() {
+            if (position >= limit) {
+                throw new IllegalArgumentException("RSW key pair export is truncated");
+            }
+            return source[position++] & 0xff;
+        }
+
+        int readShort() {
+            return read() << 8 | read();
+        }
+
+        byte[] bytes(int length) {
+            if (length > limit - position) {
+                throw new IllegalArgumentException("RSW key pair export is truncated");
+            }
+            byte[] value = Arrays.copyOfRange(source, position, position + length);
+            position += length;
+            return value;
+        }
+    }
+}
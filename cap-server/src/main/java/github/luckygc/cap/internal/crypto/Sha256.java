@@ -0,0 +1,41 @@
+package github.luckygc.cap.internal.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/** 共享的 SHA-256 摘要池，请求路径不再执行 provider 查找。 */
+public final class Sha256 {
+
+    private static final PrimitivePool<MessageDigest> POOL = new PrimitivePool<>(Sha256::create);
+
+    private Sha256() {}
+
+    /** 计算完整输入的摘要。 */
+    public static byte[] digest(byte[] value) {
+        MessageDigest digest = POOL.acquire();
+        try {
+            return digest.digest(value);
+        } finally {
+            release(digest);
+        }
+    }
+
+    /** 借出一个已重置的摘要实例；调用方必须在 finally 中 {@link #release(MessageDigest)}。 */
+    public static MessageDigest acquire() {
+        return POOL.acquire();
+    }
+
+    /** 重置并归还 {@link #acquire()} 借出的实例。 */
+    public static void release(MessageDigest digest) {
+        digest.reset();
+        POOL.release(digest);
+    }
+
+    private static MessageDigest create() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("运行环境缺少 SHA-256", exception);
+        }
+    }
+}
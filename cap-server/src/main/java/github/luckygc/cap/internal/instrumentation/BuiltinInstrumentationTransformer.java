@@ -1,17 +1,22 @@
 package github.luckygc.cap.internal.instrumentation;
 
 import github.luckygc.cap.InstrumentationTransformer;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import github.luckygc.cap.internal.crypto.PrimitivePool;
+import java.util.Arrays;
 
-/** 仅转换库生成的无注释、无模板字面量脚本，避免通用 JavaScript minifier 的语法歧义。 */
+/**
+ * 仅转换库生成的无注释、无模板字面量脚本，避免通用 JavaScript minifier 的语法歧义。
+ *
+ * <p>level 1 删除换行及其后的空白；level 2 将所有引号字符串收进脚本开头的字符串表；level 3 两者兼做。一次顺序扫描同时完成字符串表改写与空白压缩，字面量只记录区间，
+ * 去重用区间哈希加 {@link String#regionMatches}，不截取子串也不使用正则。
+ */
 final class BuiltinInstrumentationTransformer implements InstrumentationTransformer {
 
     static final BuiltinInstrumentationTransformer INSTANCE =
             new BuiltinInstrumentationTransformer();
 
+    private static final PrimitivePool<Rewriter> REWRITERS = new PrimitivePool<>(Rewriter::new);
+
     private BuiltinInstrumentationTransformer() {}
 
     @Override
@@ -19,87 +24,223 @@ final class BuiltinInstrumentationTransformer implements InstrumentationTransfor
         if (level == 0) {
             return script;
         }
-        if (level == 1) {
-            return compactKnownTemplate(script);
+        Rewriter rewriter = REWRITERS.acquire();
+        try {
+            return rewriter.rewrite(script, level >= 2, level != 2);
+        } finally {
+            rewriter.recycle();
         }
-        String tabled = tableStrings(script);
-        return level == 2 ? tabled : compactKnownTemplate(tabled);
     }
 
-    private static String compactKnownTemplate(String script) {
-        return script.replaceAll("\\n\\s*", "");
-    }
+    /**
+     * 单次转换独占的输出缓冲区与字面量表。
+     *
+     * <p>压缩语义与 {@code replaceAll("\\n\\s*", "")} 逐字符一致：换行与其后连续的 {@code [ \t\n\x0B\f\r]}
+     * 全部删除，字符串内部与字符串表条目同样适用。
+     */
+    private static final class Rewriter {
+
+        private static final int RETAINED_LIMIT = 65_536;
+        private static final int INITIAL_LITERALS = 256;
+
+        private final StringBuilder body = new StringBuilder(32_768);
+        private final StringBuilder output = new StringBuilder(32_768);
+        // 按首次出现顺序保存去重后的字面量区间（含引号），下标即字符串表下标。
+        private int[] starts = new int[INITIAL_LITERALS];
+        private int[] ends = new int[INITIAL_LITERALS];
+        private int[] hashes = new int[INITIAL_LITERALS];
+        // 开放寻址表，值为字面量下标加一，0 表示空槽。
+        private int[] buckets = new int[INITIAL_LITERALS * 2];
+        private int count;
+        private boolean compact;
+        private boolean skipping;
+        private int nextNewline;
+
+        String rewrite(String script, boolean table, boolean compact) {
+            this.compact = compact;
+            if (!table) {
+                return compacted(script);
+            }
+            String tableName = "_T" + Integer.toUnsignedString(script.hashCode(), 36);
+            resetCompaction();
+            int length = script.length();
+            int cursor = 0;
+            for (int index = 0; index < length; index++) {
+                char quote = script.charAt(index);
+                if (quote != '\'' && quote != '"') {
+                    continue;
+                }
+                int hash = quote;
+                int end = -1;
+                boolean escaped = false;
+                for (int scan = index + 1; scan < length; scan++) {
+                    char character = script.charAt(scan);
+                    hash = 31 * hash + character;
+                    if (escaped) {
+                        escaped = false;
+                    } else if (character == '\\') {
+                        escaped = true;
+                    } else if (character == quote) {
+                        end = scan + 1;
+                        break;
+                    }
+                }
+                if (end < 0) {
+                    throw new IllegalStateException("生成的 instrumentation 含未结束字符串");
+                }
+                int literal = intern(script, index, end, hash);
+                emit(body, script, cursor, index);
+                boolean objectKey = nextNonWhitespace(script, end) == ':';
+                // 替换文本以非空白字符开头，会结束任何进行中的空白压缩。
+                skipping = false;
+                if (objectKey) {
+                    body.append('[');
+                }
+                body.append(tableName).append('[').append(literal).append(']');
+                if (objectKey) {
+                    body.append(']');
+                }
+                cursor = end;
+                index = end - 1;
+            }
+            if (count == 0) {
+                return compacted(script);
+            }
+            emit(body, script, cursor, length);
 
-    private static String tableStrings(String script) {
-        Map<String, Integer> indices = new LinkedHashMap<>();
-        List<Literal> literals = new ArrayList<>();
-        for (int index = 0; index < script.length(); index++) {
-            char character = script.charAt(index);
-            if (character != '\'' && character != '"') {
-                continue;
+            resetCompaction();
+            output.append("var ").append(tableName).append("=[");
+            for (int literal = 0; literal < count; literal++) {
+                if (literal > 0) {
+                    output.append(',');
+                }
+                emit(output, script, starts[literal], ends[literal]);
             }
-            int end = quotedEnd(script, index, character);
-            String quoted = script.substring(index, end + 1);
-            indices.computeIfAbsent(quoted, ignored -> indices.size());
-            literals.add(new Literal(index, end + 1, quoted));
-            index = end;
+            output.append("];").append(body);
+            return output.toString();
         }
-        if (literals.isEmpty()) {
-            return script;
+
+        private String compacted(String script) {
+            if (!compact || script.indexOf('\n') < 0) {
+                return script;
+            }
+            resetCompaction();
+            emit(output, script, 0, script.length());
+            return output.toString();
         }
-        String tableName = "_T" + Integer.toUnsignedString(script.hashCode(), 36);
-        StringBuilder transformed = new StringBuilder(script.length() + indices.size() * 8);
-        transformed.append("var ").append(tableName).append("=[");
-        String separator = "";
-        for (String quoted : indices.keySet()) {
-            transformed.append(separator).append(quoted);
-            separator = ",";
+
+        private void resetCompaction() {
+            skipping = false;
+            nextNewline = -1;
         }
-        transformed.append("];");
-        int cursor = 0;
-        for (Literal literal : literals) {
-            transformed.append(script, cursor, literal.start());
-            boolean objectKey = nextNonWhitespace(script, literal.end()) == ':';
-            if (objectKey) {
-                transformed.append('[');
+
+        /** 追加 {@code source[start, end)}；启用压缩时按状态删除换行及其后空白。同一阶段内的调用区间必须递增。 */
+        private void emit(StringBuilder target, String source, int start, int end) {
+            if (!compact) {
+                target.append(source, start, end);
+                return;
             }
-            transformed
-                    .append(tableName)
-                    .append('[')
-                    .append(indices.get(literal.quoted()))
-                    .append(']');
-            if (objectKey) {
-                transformed.append(']');
+            int index = start;
+            while (index < end) {
+                if (skipping) {
+                    if (isPatternWhitespace(source.charAt(index))) {
+                        index++;
+                        continue;
+                    }
+                    skipping = false;
+                }
+                if (nextNewline < index) {
+                    int found = source.indexOf('\n', index);
+                    nextNewline = found < 0 ? source.length() : found;
+                }
+                int stop = Math.min(nextNewline, end);
+                target.append(source, index, stop);
+                index = stop;
+                if (stop < end) {
+                    skipping = true;
+                    index++;
+                }
             }
-            cursor = literal.end();
         }
-        transformed.append(script, cursor, script.length());
-        return transformed.toString();
-    }
 
-    private static char nextNonWhitespace(String script, int start) {
-        for (int index = start; index < script.length(); index++) {
-            if (!Character.isWhitespace(script.charAt(index))) {
-                return script.charAt(index);
+        private int intern(String script, int start, int end, int hash) {
+            int mask = buckets.length - 1;
+            int slot = spread(hash) & mask;
+            int length = end - start;
+            while (buckets[slot] != 0) {
+                int literal = buckets[slot] - 1;
+                if (hashes[literal] == hash
+                        && ends[literal] - starts[literal] == length
+                        && script.regionMatches(starts[literal], script, start, length)) {
+                    return literal;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                hashes = Arrays.copyOf(hashes, count * 2);
             }
+            int literal = count++;
+            starts[literal] = start;
+            ends[literal] = end;
+            hashes[literal] = hash;
+            buckets[slot] = literal + 1;
+            if (count * 2 > buckets.length) {
+                rehash(buckets.length * 2);
+            }
+            return literal;
         }
-        return '\0';
-    }
 
-    private static int quotedEnd(String script, int start, char quote) {
-        boolean escaped = false;
-        for (int index = start + 1; index < script.length(); index++) {
-            char character = script.charAt(index);
-            if (escaped) {
-                escaped = false;
-            } else if (character == '\\') {
-                escaped = true;
-            } else if (character == quote) {
-                return index;
+        private void rehash(int size) {
+            buckets = new int[size];
+            int mask = size - 1;
+            for (int literal = 0; literal < count; literal++) {
+                int slot = spread(hashes[literal]) & mask;
+                while (buckets[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                buckets[slot] = literal + 1;
             }
         }
-        throw new IllegalStateException("生成的 instrumentation 含未结束字符串");
-    }
 
-    private record Literal(int start, int end, String quoted) {}
+        /** 恢复初始状态并归还到池；单次超大脚本撑大的缓冲区直接丢弃。 */
+        void recycle() {
+            if (body.capacity() > RETAINED_LIMIT
+                    || output.capacity() > RETAINED_LIMIT
+                    || starts.length > INITIAL_LITERALS * 4) {
+                return;
+            }
+            body.setLength(0);
+            output.setLength(0);
+            if (count > 0) {
+                Arrays.fill(buckets, 0);
+            }
+            count = 0;
+            REWRITERS.release(this);
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        /** {@code \s} 在非 Unicode 模式下的字符集。 */
+        private static boolean isPatternWhitespace(char character) {
+            return character == ' '
+                    || character == '\n'
+                    || character == '\t'
+                    || character == '\r'
+                    || character == '\f'
+                    || character == '\u000B';
+        }
+
+        private static char nextNonWhitespace(String script, int start) {
+            for (int index = start; index < script.length(); index++) {
+                if (!Character.isWhitespace(script.charAt(index))) {
+                    return script.charAt(index);
+                }
+            }
+            return '\0';
+        }
+    }
 }
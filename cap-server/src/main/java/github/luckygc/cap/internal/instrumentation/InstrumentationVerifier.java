@@ -48,20 +48,33 @@ public final class InstrumentationVerifier {
         if (metadata == null) {
             return failure("missing_meta");
         }
-        if (!(id instanceof String suppliedId) || !suppliedId.equals(metadata.id())) {
+        List<Integer> expectedVals = metadata.expectedVals();
+        int[] expected = new int[expectedVals.size()];
+        for (int index = 0; index < expected.length; index++) {
+            expected[index] = expectedVals.get(index);
+        }
+        return verify(metadata.id(), metadata.vars(), expected, id, actual);
+    }
+
+    /** 按原始 int 预期值验证 wire payload，供已解码出元数据字段的 Format 2 兑换路径使用。 */
+    public VerificationResult verify(
+            String metadataId,
+            List<String> variables,
+            int[] expected,
+            @Nullable Object id,
+            @Nullable Map<String, @Nullable Object> actual) {
+        if (!(id instanceof String suppliedId) || !suppliedId.equals(metadataId)) {
             return failure("id_mismatch");
         }
         if (actual == null || actual.size() > MAX_STATE_ENTRIES) {
             return failure("invalid_state");
         }
-        List<String> variables = metadata.vars();
-        List<Integer> expected = metadata.expectedVals();
-        if (!validMetadata(metadata.id(), variables, expected)) {
+        if (!validMetadata(metadataId, variables, expected)) {
             return failure("invalid_meta");
         }
         for (int index = 0; index < variables.size(); index++) {
             @Nullable Object value = actual.get(variables.get(index));
-            if (!sameInteger(value, expected.get(index))) {
+            if (!sameInteger(value, expected[index])) {
                 return failure("failed_challenge");
             }
         }
@@ -91,11 +104,10 @@ public final class InstrumentationVerifier {
         return verify(metadata, output);
     }
 
-    private static boolean validMetadata(
-            String id, List<String> variables, List<Integer> expected) {
+    private static boolean validMetadata(String id, List<String> variables, int[] expected) {
         if (!id.matches("[0-9a-f]{32}")
                 || variables.size() != EXPECTED_VARIABLES
-                || expected.size() != EXPECTED_VARIABLES) {
+                || expected.length != EXPECTED_VARIABLES) {
             return false;
         }
         for (String variable : variables) {
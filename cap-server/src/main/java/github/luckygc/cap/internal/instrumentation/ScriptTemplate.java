@@ -0,0 +1,113 @@
+package github.luckygc.cap.internal.instrumentation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的脚本模板。
+ *
+ * <p>接受 {@link String#formatted} 语法的子集：{@code %N$s}、{@code %N$d} 与 {@code
+ * %%}。模板在类加载时切分为字面量段与带类型的槽位，填充时直接追加到 {@link StringBuilder}，不再逐次解析格式串。{@code %d} 槽位接受 {@link
+ * Integer} 或 {@link Long}，按 ASCII 十进制输出且不受默认 locale 影响；{@code %s} 槽位接受 {@link
+ * CharSequence}。构造后只读，可被多线程共享。
+ */
+final class ScriptTemplate {
+
+    private final String[] literals;
+    private final int[] slots;
+    private final boolean[] numeric;
+    private final int arity;
+    private final int literalLength;
+
+    private ScriptTemplate(String[] literals, int[] slots, boolean[] numeric) {
+        this.literals = literals;
+        this.slots = slots;
+        this.numeric = numeric;
+        int highest = 0;
+        for (int slot : slots) {
+            highest = Math.max(highest, slot + 1);
+        }
+        arity = highest;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        literalLength = length;
+    }
+
+    static ScriptTemplate compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<Boolean> numeric = new ArrayList<>();
+        StringBuilder literal = new StringBuilder(pattern.length());
+        int index = 0;
+        while (index < pattern.length()) {
+            char character = pattern.charAt(index);
+            if (character != '%') {
+                literal.append(character);
+                index++;
+                continue;
+            }
+            if (index + 1 < pattern.length() && pattern.charAt(index + 1) == '%') {
+                literal.append('%');
+                index += 2;
+                continue;
+            }
+            int digits = index + 1;
+            while (digits < pattern.length() && Character.isDigit(pattern.charAt(digits))) {
+                digits++;
+            }
+            if (digits == index + 1
+                    || digits + 1 >= pattern.length()
+                    || pattern.charAt(digits) != '$'
+                    || (pattern.charAt(digits + 1) != 's' && pattern.charAt(digits + 1) != 'd')) {
+                throw new IllegalArgumentException("unsupported template placeholder at " + index);
+            }
+            int argument = Integer.parseInt(pattern, index + 1, digits, 10) - 1;
+            if (argument < 0) {
+                throw new IllegalArgumentException("template arguments are 1-based");
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slots.add(argument);
+            numeric.add(pattern.charAt(digits + 1) == 'd');
+            index = digits + 2;
+        }
+        literals.add(literal.toString());
+        int[] slotArray = new int[slots.size()];
+        boolean[] numericArray = new boolean[slots.size()];
+        for (int slot = 0; slot < slotArray.length; slot++) {
+            slotArray[slot] = slots.get(slot);
+            numericArray[slot] = numeric.get(slot);
+        }
+        return new ScriptTemplate(literals.toArray(String[]::new), slotArray, numericArray);
+    }
+
+    /** 按槽位追加模板内容；参数个数与类型必须与编译时的占位符一致。 */
+    void append(StringBuilder output, Object... arguments) {
+        if (arguments.length != arity) {
+            throw new IllegalArgumentException("template expects " + arity + " arguments");
+        }
+        output.append(literals[0]);
+        for (int slot = 0; slot < slots.length; slot++) {
+            Object argument = arguments[slots[slot]];
+            if (numeric[slot] && argument instanceof Integer number) {
+                output.append(number.intValue());
+            } else if (numeric[slot] && argument instanceof Long number) {
+                output.append(number.longValue());
+            } else if (!numeric[slot] && argument instanceof CharSequence text) {
+                output.append(text);
+            } else {
+                throw new IllegalArgumentException("template argument type mismatch");
+            }
+            output.append(literals[slot + 1]);
+        }
+    }
+
+    /** 填充为独立字符串；用于需要先打乱顺序再拼接的检查片段。 */
+    String format(Object... arguments) {
+        StringBuilder output = new StringBuilder(literalLength + 32 * slots.length);
+        append(output, arguments);
+        return output.toString();
+    }
+}
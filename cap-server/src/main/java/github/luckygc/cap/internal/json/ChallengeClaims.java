@@ -0,0 +1,26 @@
+package github.luckygc.cap.internal.json;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 已通过 MAC 验证的 challenge JWT payload 的类型化视图，由 {@link ClaimsDecoder} 直接从字节流解码。
+ *
+ * <p>类型错误不在解码时拒绝，而是记录在 {@link #wellFormed()} 等标志中，使兑换端仍能按 scope、过期、token 结构的既有顺序返回失败原因。
+ */
+public sealed interface ChallengeClaims permits Format1Claims, Format2Claims {
+
+    /** {@code sk}；缺失、为 null 或不是字符串时为 {@code null}。 */
+    @Nullable String scope();
+
+    /** {@code exp} 毫秒时间戳；缺失或不是整数时为 0。 */
+    long expires();
+
+    /** {@code exp} 存在且非 null，但不是整数。 */
+    boolean expiresMalformed();
+
+    /** {@code iat} 毫秒时间戳；缺失或不是整数时为 0。 */
+    long issuedAt();
+
+    /** 本格式验证所需的全部字段均存在且类型正确。 */
+    boolean wellFormed();
+}
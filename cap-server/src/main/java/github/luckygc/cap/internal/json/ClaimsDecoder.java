@@ -0,0 +1,263 @@
+package github.luckygc.cap.internal.json;
+
+import org.jspecify.annotations.Nullable;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.ObjectReadContext;
+import tools.jackson.core.StreamReadFeature;
+import tools.jackson.core.json.JsonFactory;
+
+/**
+ * 将 challenge JWT payload 流式解码为 {@link Format1Claims} 或 {@link Format2Claims}。
+ *
+ * <p>字段直接写入基本类型局部状态，不构造中间 Map 或 List；{@code x} 只做结构校验后跳过。深度、节点数、字符串长度与总字节限制和 {@link
+ * ProtocolJsonCodec} 相同。未知字段、重复字段与不属于最终格式的字段都在解码时拒绝，字段类型错误则保留在结果标志中，由兑换端按既有失败顺序处理。
+ */
+public final class ClaimsDecoder {
+
+    private static final JsonFactory CLAIMS_FACTORY =
+            ProtocolJsonCodec.JSON_FACTORY
+                    .rebuild()
+                    .enable(StreamReadFeature.STRICT_DUPLICATE_DETECTION)
+                    .build();
+
+    private static final int FORMAT = 1;
+    private static final int NONCE = 1 << 1;
+    private static final int COUNT = 1 << 2;
+    private static final int SIZE = 1 << 3;
+    private static final int DIFFICULTY = 1 << 4;
+    private static final int EXPIRES = 1 << 5;
+    private static final int ISSUED_AT = 1 << 6;
+    private static final int SCOPE = 1 << 7;
+    private static final int EXTRA = 1 << 8;
+    private static final int ENCRYPTED_INSTRUMENTATION = 1 << 9;
+    private static final int ENCRYPTED_EXPECTED = 1 << 10;
+    private static final int FORMAT1_FIELDS =
+            NONCE
+                    | COUNT
+                    | SIZE
+                    | DIFFICULTY
+                    | EXPIRES
+                    | ISSUED_AT
+                    | SCOPE
+                    | EXTRA
+                    | ENCRYPTED_INSTRUMENTATION;
+    private static final int FORMAT2_FIELDS =
+            FORMAT | NONCE | EXPIRES | ISSUED_AT | SCOPE | EXTRA | ENCRYPTED_EXPECTED;
+
+    /** 解码一个 claims 对象；结构错误、超限、未知或重复字段抛出 {@link IllegalArgumentException}。 */
+    public ChallengeClaims decode(byte[] encoded) {
+        if (encoded.length > ProtocolJsonCodec.MAX_INPUT_BYTES) {
+            throw new IllegalArgumentException("协议 JSON 超过大小限制");
+        }
+        try (JsonParser parser = CLAIMS_FACTORY.createParser(ObjectReadContext.empty(), encoded)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("协议 JSON 顶层必须是对象");
+            }
+            ChallengeClaims claims = new Reader(parser).read();
+            if (parser.nextToken() != null) {
+                throw new IllegalArgumentException("协议 JSON 包含多余内容");
+            }
+            return claims;
+        } catch (JacksonException exception) {
+            throw new IllegalArgumentException("无法解析协议 JSON", exception);
+        }
+    }
+
+    private static int field(String name) {
+        return switch (name) {
+            case "f" -> FORMAT;
+            case "n" -> NONCE;
+            case "c" -> COUNT;
+            case "s" -> SIZE;
+            case "d" -> DIFFICULTY;
+            case "exp" -> EXPIRES;
+            case "iat" -> ISSUED_AT;
+            case "sk" -> SCOPE;
+            case "x" -> EXTRA;
+            case "ei" -> ENCRYPTED_INSTRUMENTATION;
+            case "ev" -> ENCRYPTED_EXPECTED;
+            default -> throw new IllegalArgumentException("claims 包含未知字段");
+        };
+    }
+
+    /** 单次解码的可变状态；整数字段以 {@code valid} 位图记录是否为整数。 */
+    private static final class Reader {
+
+        private final JsonParser parser;
+        private int nodes;
+        private int seen;
+        private int valid;
+        private int malformed;
+        private long format;
+        private long count;
+        private long size;
+        private long difficulty;
+        private long expires;
+        private long issuedAt;
+        private @Nullable String scope;
+        private @Nullable String encryptedInstrumentation;
+        private @Nullable String encryptedExpected;
+
+        private Reader(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        private ChallengeClaims read() throws JacksonException {
+            addNode();
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+                if (parser.currentToken() != JsonToken.PROPERTY_NAME) {
+                    throw new IllegalArgumentException("JSON 对象字段无效");
+                }
+                int field = field(parser.currentName());
+                if ((seen & field) != 0) {
+                    throw new IllegalArgumentException("JSON 对象包含重复字段");
+                }
+                seen |= field;
+                if (parser.nextToken() == null) {
+                    throw new IllegalArgumentException("JSON 对象字段缺少值");
+                }
+                readField(field);
+            }
+            return (seen & FORMAT) != 0 ? format2() : format1();
+        }
+
+        private void readField(int field) throws JacksonException {
+            switch (field) {
+                case FORMAT -> format = integer(field);
+                case COUNT -> count = integer(field);
+                case SIZE -> size = integer(field);
+                case DIFFICULTY -> difficulty = integer(field);
+                case EXPIRES -> expires = integer(field);
+                case ISSUED_AT -> issuedAt = integer(field);
+                case SCOPE -> scope = string(field);
+                case ENCRYPTED_INSTRUMENTATION -> encryptedInstrumentation = string(field);
+                case ENCRYPTED_EXPECTED -> encryptedExpected = string(field);
+                case NONCE -> string(field);
+                default -> skip(2);
+            }
+        }
+
+        private Format1Claims format1() {
+            if ((seen & ~FORMAT1_FIELDS) != 0) {
+                throw new IllegalArgumentException("claims 包含 Format 2 字段");
+            }
+            int integers = COUNT | SIZE | DIFFICULTY | ISSUED_AT;
+            boolean wellFormed = (valid & integers) == integers && (malformed & SCOPE) == 0;
+            return new Format1Claims(
+                    expires,
+                    (malformed & EXPIRES) != 0,
+                    issuedAt,
+                    count,
+                    size,
+                    difficulty,
+                    scope,
+                    encryptedInstrumentation,
+                    (malformed & ENCRYPTED_INSTRUMENTATION) != 0,
+                    wellFormed);
+        }
+
+        private Format2Claims format2() {
+            if ((valid & FORMAT) == 0 || format != 2 || (seen & ~FORMAT2_FIELDS) != 0) {
+                throw new IllegalArgumentException("claims 格式无效");
+            }
+            int required = NONCE | EXPIRES | ISSUED_AT | ENCRYPTED_EXPECTED;
+            boolean wellFormed = (valid & required) == required && (malformed & SCOPE) == 0;
+            return new Format2Claims(
+                    expires,
+                    (malformed & EXPIRES) != 0,
+                    issuedAt,
+                    scope,
+                    encryptedExpected,
+                    wellFormed);
+        }
+
+        /** 读取整数字段；超出 long 或非整数时返回 0 并记录类型错误，null 视为缺失。 */
+        private long integer(int field) throws JacksonException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT
+                    && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                addNode();
+                valid |= field;
+                return parser.getLongValue();
+            }
+            if (token != JsonToken.VALUE_NULL) {
+                malformed |= field;
+            }
+            skip(2);
+            return 0;
+        }
+
+        /** 读取字符串字段；非字符串时返回 {@code null} 并记录类型错误，null 视为缺失。 */
+        private @Nullable String string(int field) throws JacksonException {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                addNode();
+                String value = parser.getString();
+                checkString(value.length());
+                valid |= field;
+                return value;
+            }
+            if (parser.currentToken() != JsonToken.VALUE_NULL) {
+                malformed |= field;
+            }
+            skip(2);
+            return null;
+        }
+
+        /** 按 {@link ProtocolJsonCodec} 的限制校验并跳过一个值，不物化任何内容。 */
+        private void skip(int depth) throws JacksonException {
+            addNode();
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.START_OBJECT) {
+                checkDepth(depth);
+                while (parser.nextToken() != JsonToken.END_OBJECT) {
+                    if (parser.currentToken() != JsonToken.PROPERTY_NAME) {
+                        throw new IllegalArgumentException("JSON 对象字段无效");
+                    }
+                    checkString(parser.currentName().length());
+                    if (parser.nextToken() == null) {
+                        throw new IllegalArgumentException("JSON 对象字段缺少值");
+                    }
+                    skip(depth + 1);
+                }
+            } else if (token == JsonToken.START_ARRAY) {
+                checkDepth(depth);
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == null) {
+                        throw new IllegalArgumentException("JSON 数组未结束");
+                    }
+                    skip(depth + 1);
+                }
+            } else if (token == JsonToken.VALUE_STRING) {
+                checkString(parser.getStringLength());
+            } else if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                parser.getDecimalValue();
+            } else if (token != JsonToken.VALUE_NUMBER_INT
+                    && token != JsonToken.VALUE_TRUE
+                    && token != JsonToken.VALUE_FALSE
+                    && token != JsonToken.VALUE_NULL) {
+                throw new IllegalArgumentException("不支持的 JSON token");
+            }
+        }
+
+        private void addNode() {
+            nodes++;
+            if (nodes > ProtocolJsonCodec.MAX_NODES) {
+                throw new IllegalArgumentException("协议 JSON 节点过多");
+            }
+        }
+
+        private static void checkDepth(int depth) {
+            if (depth > ProtocolJsonCodec.MAX_DEPTH) {
+                throw new IllegalArgumentException("协议 JSON 嵌套过深");
+            }
+        }
+
+        private static void checkString(int length) {
+            if (length > ProtocolJsonCodec.MAX_STRING_LENGTH) {
+                throw new IllegalArgumentException("协议 JSON 字符串过长");
+            }
+        }
+    }
+}
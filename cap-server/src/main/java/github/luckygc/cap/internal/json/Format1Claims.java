@@ -0,0 +1,22 @@
+package github.luckygc.cap.internal.json;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * capjs-core Format 1 challenge claims。
+ *
+ * <p>{@code wellFormed} 覆盖 {@code c}、{@code s}、{@code d}、{@code iat} 为整数以及 {@code sk}
+ * 为字符串或缺失；{@code ei} 类型错误单独记录，兑换时在 PoW 验证之后返回 instr_corrupted。
+ */
+public record Format1Claims(
+        long expires,
+        boolean expiresMalformed,
+        long issuedAt,
+        long count,
+        long size,
+        long difficulty,
+        @Nullable String scope,
+        @Nullable String encryptedInstrumentation,
+        boolean instrumentationMalformed,
+        boolean wellFormed)
+        implements ChallengeClaims {}
@@ -0,0 +1,18 @@
+package github.luckygc.cap.internal.json;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * capjs-core Format 2 challenge claims，仅在 {@code f} 为整数 2 时产生。
+ *
+ * <p>{@code wellFormed} 覆盖 {@code n}、{@code ev} 为字符串，{@code exp}、{@code iat} 为整数以及 {@code sk}
+ * 为字符串或缺失。
+ */
+public record Format2Claims(
+        long expires,
+        boolean expiresMalformed,
+        long issuedAt,
+        @Nullable String scope,
+        @Nullable String encryptedExpected,
+        boolean wellFormed)
+        implements ChallengeClaims {}
@@ -21,12 +21,12 @@ import tools.jackson.core.json.JsonFactory;
 public final class ProtocolJsonCodec {
 
     public static final int MAX_INPUT_BYTES = 65_536;
-    private static final int MAX_DEPTH = 32;
-    private static final int MAX_NODES = 10_000;
-    private static final int MAX_STRING_LENGTH = 16_384;
+    static final int MAX_DEPTH = 32;
+    static final int MAX_NODES = 10_000;
+    static final int MAX_STRING_LENGTH = 16_384;
     // 数字 token 不另设低于整个协议输入的限制；实际可用长度仍受 JSON 语法和总字节限制。
     private static final int MAX_NUMBER_LENGTH = MAX_INPUT_BYTES;
-    private static final JsonFactory JSON_FACTORY =
+    static final JsonFactory JSON_FACTORY =
             JsonFactory.builder()
                     .streamReadConstraints(
                             StreamReadConstraints.builder()
@@ -0,0 +1,204 @@
+package github.luckygc.cap.internal.protocol;
+
+import github.luckygc.cap.internal.instrumentation.InstrumentationGenerator.GeneratedInstrumentation;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Format 2 加密元数据中的一项预期解答。
+ *
+ * <p>JSON 布局与上游 capjs-core 相同，二进制布局见 {@link ExpectedMetadataCodec}；两者都先解码为本类型，再由 {@link
+ * Format2Protocol} 按同一顺序验证。
+ */
+sealed interface ExpectedEntry {
+
+    int MAX_PROTOCOL_MAP_ENTRIES = 16;
+
+    /** 本项对应的 solution 数量。 */
+    default int solutionCount() {
+        return 1;
+    }
+
+    /** 单个 sha256-pow challenge。 */
+    record Pow(String salt, String target) implements ExpectedEntry {}
+
+    /** 由种子按序展开的一组 sha256-pow challenge。 */
+    record DerivedPow(byte[] seed, int count, int size, String target) implements ExpectedEntry {
+
+        @Override
+        public int solutionCount() {
+            return count;
+        }
+    }
+
+    /** RSW 预期 y，固定宽度小写 hex。 */
+    record Rsw(String y) implements ExpectedEntry {}
+
+    /** instrumentation 元数据；预期值保存为 {@code int[]}，兑换时逐个按原始类型比较。 */
+    record Instrumentation(
+            String id,
+            long expires,
+            int[] expectedVals,
+            List<String> vars,
+            boolean blockAutomatedBrowsers)
+            implements ExpectedEntry {
+
+        static Instrumentation of(GeneratedInstrumentation generated) {
+            int[] values = new int[generated.expectedVals().size()];
+            for (int index = 0; index < values.length; index++) {
+                values[index] = generated.expectedVals().get(index);
+            }
+            return new Instrumentation(
+                    generated.id(),
+                    generated.expires(),
+                    values,
+                    generated.vars(),
+                    generated.blockAutomatedBrowsers());
+        }
+
+        /** 过期时间与 token 一致，签名时才确定。 */
+        Instrumentation withExpires(long expires) {
+            return new Instrumentation(id, expires, expectedVals, vars, blockAutomatedBrowsers);
+        }
+    }
+
+    /** 损坏的 instrumentation 元数据，兑换时返回 instr_corrupted。 */
+    record CorruptedInstrumentation() implements ExpectedEntry {}
+
+    /** 无法识别的条目，兑换时返回 invalid_solution。 */
+    record Invalid() implements ExpectedEntry {}
+
+    /** 转为与上游一致的 JSON 对象，字段顺序固定。 */
+    static Map<String, @Nullable Object> toJson(ExpectedEntry entry) {
+        Map<String, @Nullable Object> json = new LinkedHashMap<>();
+        if (entry instanceof Pow pow) {
+            json.put("protocol", "sha256-pow");
+            json.put("salt", pow.salt());
+            json.put("target", pow.target());
+        } else if (entry instanceof DerivedPow derived) {
+            json.put("protocol", "sha256-pow");
+            json.put("seed", HexFormat.of().formatHex(derived.seed()));
+            json.put("count", derived.count());
+            json.put("size", derived.size());
+            json.put("target", derived.target());
+        } else if (entry instanceof Rsw rsw) {
+            json.put("protocol", "rsw");
+            json.put("y", rsw.y());
+        } else if (entry instanceof Instrumentation instrumentation) {
+            List<Integer> expectedVals = new ArrayList<>(instrumentation.expectedVals().length);
+            for (int value : instrumentation.expectedVals()) {
+                expectedVals.add(value);
+            }
+            Map<String, @Nullable Object> meta = new LinkedHashMap<>();
+            meta.put("id", instrumentation.id());
+            meta.put("expectedVals", expectedVals);
+            meta.put("vars", instrumentation.vars());
+            meta.put("blockAutomatedBrowsers", instrumentation.blockAutomatedBrowsers());
+            meta.put("expires", instrumentation.expires());
+            json.put("protocol", "instrumentation");
+            json.put("instrMeta", meta);
+        } else {
+            throw new IllegalArgumentException("expected entry cannot be encoded");
+        }
+        return json;
+    }
+
+    /** 解析 JSON 条目；结构错误不抛出，而是映射为兑换时对应的失败类型。 */
+    static ExpectedEntry fromJson(@Nullable Object value) {
+        if (!(value instanceof Map<?, ?> expected)
+                || expected.size() > MAX_PROTOCOL_MAP_ENTRIES
+                || !(expected.get("protocol") instanceof String protocol)) {
+            return new Invalid();
+        }
+        return switch (protocol) {
+            case "sha256-pow" -> powFromJson(expected);
+            case "rsw" -> expected.get("y") instanceof String y ? new Rsw(y) : new Invalid();
+            case "instrumentation" -> instrumentationFromJson(expected.get("instrMeta"));
+            default -> new Invalid();
+        };
+    }
+
+    private static ExpectedEntry powFromJson(Map<?, ?> expected) {
+        if (expected.get("seed") instanceof String seedHex) {
+            @Nullable DerivedPow derived = derivedPowFromJson(expected, seedHex);
+            if (derived != null) {
+                return derived;
+            }
+        }
+        if (!(expected.get("salt") instanceof String salt)
+                || !(expected.get("target") instanceof String target)) {
+            return new Invalid();
+        }
+        return new Pow(salt, target);
+    }
+
+    private static @Nullable DerivedPow derivedPowFromJson(Map<?, ?> expected, String seedHex) {
+        @Nullable Long count = Format2Protocol.protocolInteger(expected.get("count"));
+        @Nullable Long size = Format2Protocol.protocolInteger(expected.get("size"));
+        if (seedHex.length() != PowSaltStream.SEED_BYTES * 2
+                || count == null
+                || count < 1
+                || count > Format2Protocol.MAX_COUNT
+                || size == null
+                || size < 1
+                || size > Format2Protocol.MAX_SIZE
+                || !(expected.get("target") instanceof String target)) {
+            return null;
+        }
+        try {
+            return new DerivedPow(
+                    HexFormat.of().parseHex(seedHex), count.intValue(), size.intValue(), target);
+        } catch (IllegalArgumentException exception) {
+            return null;
+        }
+    }
+
+    private static ExpectedEntry instrumentationFromJson(@Nullable Object value) {
+        if (!(value instanceof Map<?, ?> metadata)
+                || metadata.size() > MAX_PROTOCOL_MAP_ENTRIES
+                || !(metadata.get("id") instanceof String id)
+                || !(metadata.get("blockAutomatedBrowsers") instanceof Boolean blocked)) {
+            return new CorruptedInstrumentation();
+        }
+        @Nullable Long expires = Format2Protocol.protocolInteger(metadata.get("expires"));
+        int @Nullable [] expected = intArray(metadata.get("expectedVals"));
+        @Nullable List<String> variables = stringList(metadata.get("vars"));
+        if (expires == null || expected == null || variables == null) {
+            return new CorruptedInstrumentation();
+        }
+        return new Instrumentation(id, expires, expected, variables, blocked);
+    }
+
+    private static int @Nullable [] intArray(@Nullable Object value) {
+        if (!(value instanceof List<?> values) || values.size() > MAX_PROTOCOL_MAP_ENTRIES) {
+            return null;
+        }
+        int[] result = new int[values.size()];
+        for (int index = 0; index < result.length; index++) {
+            @Nullable Long integer = Format2Protocol.protocolInteger(values.get(index));
+            if (integer == null || integer < Integer.MIN_VALUE || integer > Integer.MAX_VALUE) {
+                return null;
+            }
+            result[index] = integer.intValue();
+        }
+        return result;
+    }
+
+    private static @Nullable List<String> stringList(@Nullable Object value) {
+        if (!(value instanceof List<?> values) || values.size() > MAX_PROTOCOL_MAP_ENTRIES) {
+            return null;
+        }
+        List<String> result = new ArrayList<>(values.size());
+        for (@Nullable Object element : values) {
+            if (!(element instanceof String string)) {
+                return null;
+            }
+            result.add(string);
+        }
+        return List.copyOf(result);
+    }
+}
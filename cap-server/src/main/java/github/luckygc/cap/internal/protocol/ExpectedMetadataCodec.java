@@ -0,0 +1,246 @@
+package github.luckygc.cap.internal.protocol;
+
+import github.luckygc.cap.internal.json.ProtocolJsonCodec;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Format 2 {@code ev} 明文的紧凑二进制布局。
+ *
+ * <p>该布局仅由本服务端生成和读取，上游 capjs-core 无法兑换使用它的 token。明文首字节为版本号 {@code 0x01}，不可能是 JSON 对象起始字符，因此解码端可与
+ * JSON 布局共存。之后依次为：
+ *
+ * <pre>
+ * varint 条目数
+ * 每个条目：1 字节标签 + 负载
+ *   0x01 sha256-pow       bytes salt, string target
+ *   0x02 派生 sha256-pow  32 字节种子, varint count, varint size, string target
+ *   0x03 rsw              bytes y（大端，固定宽度）
+ *   0x04 instrumentation  string id, varint expires, 1 字节 blockAutomatedBrowsers,
+ *                         varint n + n 个 zigzag varint expectedVals,
+ *                         varint n + n 个 string vars
+ * </pre>
+ *
+ * <p>varint 为无符号 LEB128；{@code bytes} 与 {@code string} 为 varint 长度前缀加原始字节，字符串使用 UTF-8。salt 与 y 按小写
+ * hex 还原，与 JSON 布局下的取值逐字符一致。
+ */
+final class ExpectedMetadataCodec {
+
+    static final byte VERSION = 0x01;
+
+    private static final int TAG_POW = 0x01;
+    private static final int TAG_DERIVED_POW = 0x02;
+    private static final int TAG_RSW = 0x03;
+    private static final int TAG_INSTRUMENTATION = 0x04;
+    private static final int MAX_ENTRIES = 10_000;
+    private static final int MAX_BYTES_LENGTH = 16_384;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private ExpectedMetadataCodec() {}
+
+    /** 判断解密后的明文是否为二进制布局。 */
+    static boolean isBinary(byte[] plaintext) {
+        return plaintext.length > 0 && plaintext[0] == VERSION;
+    }
+
+    static byte[] encode(List<ExpectedEntry> entries) {
+        Writer writer = new Writer();
+        writer.write(VERSION);
+        writer.varint(entries.size());
+        for (ExpectedEntry entry : entries) {
+            if (entry instanceof ExpectedEntry.Pow pow) {
+                writer.write(TAG_POW);
+                writer.bytes(HEX.parseHex(pow.salt()));
+                writer.string(pow.target());
+            } else if (entry instanceof ExpectedEntry.DerivedPow derived) {
+                writer.write(TAG_DERIVED_POW);
+                writer.write(derived.seed(), 0, PowSaltStream.SEED_BYTES);
+                writer.varint(derived.count());
+                writer.varint(derived.size());
+                writer.string(derived.target());
+            } else if (entry instanceof ExpectedEntry.Rsw rsw) {
+                writer.write(TAG_RSW);
+                writer.bytes(HEX.parseHex(rsw.y()));
+            } else if (entry instanceof ExpectedEntry.Instrumentation metadata) {
+                writer.write(TAG_INSTRUMENTATION);
+                writer.string(metadata.id());
+                writer.varint(metadata.expires());
+                writer.write(metadata.blockAutomatedBrowsers() ? 1 : 0);
+                writer.varint(metadata.expectedVals().length);
+                for (int value : metadata.expectedVals()) {
+                    writer.varint(Integer.toUnsignedLong(value << 1 ^ value >> 31));
+                }
+                writer.varint(metadata.vars().size());
+                for (String variable : metadata.vars()) {
+                    writer.string(variable);
+                }
+            } else {
+                throw new IllegalArgumentException("expected entry cannot be encoded");
+            }
+        }
+        byte[] encoded = writer.toByteArray();
+        if (encoded.length > ProtocolJsonCodec.MAX_INPUT_BYTES) {
+            throw new IllegalArgumentException("expected 元数据超过大小限制");
+        }
+        return encoded;
+    }
+
+    /** 解码二进制布局；任何越界、未知标签或多余字节都返回 {@code null}。 */
+    static @Nullable List<ExpectedEntry> decode(byte[] encoded) {
+        if (!isBinary(encoded) || encoded.length > ProtocolJsonCodec.MAX_INPUT_BYTES) {
+            return null;
+        }
+        Reader reader = new Reader(encoded, 1);
+        try {
+            int count = reader.count(MAX_ENTRIES);
+            List<ExpectedEntry> entries = new ArrayList<>(count);
+            for (int index = 0; index < count; index++) {
+                entries.add(readEntry(reader));
+            }
+            return reader.exhausted() ? entries : null;
+        } catch (IllegalArgumentException exception) {
+            return null;
+        }
+    }
+
+    private static ExpectedEntry readEntry(Reader reader) {
+        int tag = reader.read();
+        return switch (tag) {
+            case TAG_POW -> new ExpectedEntry.Pow(HEX.formatHex(reader.bytes()), reader.string());
+            case TAG_DERIVED_POW -> {
+                byte[] seed = reader.fixed(PowSaltStream.SEED_BYTES);
+                int count = reader.count(Format2Protocol.MAX_COUNT);
+                int size = reader.count(Format2Protocol.MAX_SIZE);
+                if (count < 1 || size < 1) {
+                    throw new IllegalArgumentException("派生 sha256-pow 参数无效");
+                }
+                yield new ExpectedEntry.DerivedPow(seed, count, size, reader.string());
+            }
+            case TAG_RSW -> new ExpectedEntry.Rsw(HEX.formatHex(reader.bytes()));
+            case TAG_INSTRUMENTATION -> {
+                String id = reader.string();
+                long expires = reader.varint();
+                int blocked = reader.read();
+                if (blocked > 1) {
+                    throw new IllegalArgumentException("布尔值无效");
+                }
+                int valueCount = reader.count(ExpectedEntry.MAX_PROTOCOL_MAP_ENTRIES);
+                int[] values = new int[valueCount];
+                for (int index = 0; index < valueCount; index++) {
+                    long zigzag = reader.varint();
+                    if (zigzag >>> 32 != 0) {
+                        throw new IllegalArgumentException("整数超出范围");
+                    }
+                    int raw = (int) zigzag;
+                    values[index] = raw >>> 1 ^ -(raw & 1);
+                }
+                int variableCount = reader.count(ExpectedEntry.MAX_PROTOCOL_MAP_ENTRIES);
+                String[] variables = new String[variableCount];
+                for (int index = 0; index < variableCount; index++) {
+                    variables[index] = reader.string();
+                }
+                yield new ExpectedEntry.Instrumentation(
+                        id, expires, values, Arrays.asList(variables), blocked == 1);
+            }
+            default -> throw new IllegalArgumentException("未知的 expected 标签");
+        };
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        private Writer() {
+            super(256);
+        }
+
+        void varint(long value) {
+            long remaining = value;
+            while ((remaining & ~0x7fL) != 0) {
+                write((int) (remaining & 0x7f) | 0x80);
+                remaining >>>= 7;
+            }
+            write((int) remaining);
+        }
+
+        void bytes(byte[] value) {
+            varint(value.length);
+            write(value, 0, value.length);
+        }
+
+        void string(String value) {
+            bytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] source;
+        private int position;
+
+        private Reader(byte[] source, int position) {
+            this.source = source;
+            this.position = position;
+        }
+
+        int read() {
+            if (position >= source.length) {
+                throw new IllegalArgumentException("expected 元数据被截断");
+            }
+            return source[position++] & 0xff;
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                int next = read();
+                value |= (long) (next & 0x7f) << shift;
+                if ((next & 0x80) == 0) {
+                    if (value < 0) {
+                        throw new IllegalArgumentException("varint 超出范围");
+                    }
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("varint 过长");
+        }
+
+        int count(int maximum) {
+            long value = varint();
+            if (value > maximum) {
+                throw new IllegalArgumentException("长度超出限制");
+            }
+            return (int) value;
+        }
+
+        byte[] fixed(int length) {
+            if (source.length - position < length) {
+                throw new IllegalArgumentException("expected 元数据被截断");
+            }
+            byte[] value = Arrays.copyOfRange(source, position, position + length);
+            position += length;
+            return value;
+        }
+
+        byte[] bytes() {
+            return fixed(count(MAX_BYTES_LENGTH));
+        }
+
+        String string() {
+            int length = count(MAX_BYTES_LENGTH);
+            if (source.length - position < length) {
+                throw new IllegalArgumentException("expected 元数据被截断");
+            }
+            String value = new String(source, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        boolean exhausted() {
+            return position == source.length;
+        }
+    }
+}
@@ -9,13 +9,12 @@ import github.luckygc.cap.internal.crypto.JwtCodec;
 import github.luckygc.cap.internal.instrumentation.InstrumentationGenerator;
 import github.luckygc.cap.internal.instrumentation.InstrumentationGenerator.GeneratedInstrumentation;
 import github.luckygc.cap.internal.instrumentation.InstrumentationVerifier;
+import github.luckygc.cap.internal.json.ChallengeClaims;
+import github.luckygc.cap.internal.json.Format1Claims;
 import github.luckygc.cap.utils.RandomUtil;
-import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
-import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.time.Clock;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.HexFormat;
 import java.util.LinkedHashMap;
@@ -155,7 +154,31 @@ public final class Format1Protocol {
                 expectedScope,
                 request.instr(),
                 request.instrBlocked(),
-                request.instrTimeout());
+                request.instrTimeout(),
+                null,
+                false);
+    }
+
+    /**
+     * 使用调用方已由同一 secret 验证的 claims 验证请求，避免再次计算 MAC 与解析 payload。
+     *
+     * @param claims {@link JwtCodec#verifyClaims(String)} 的结果；为 {@code null} 表示 token 未通过验证
+     */
+    public ValidationResult validate(
+            RedeemRequest request,
+            @Nullable ChallengeClaims claims,
+            @Nullable String expectedScope) {
+        Objects.requireNonNull(request, "request");
+        return validateComponents(
+                true,
+                request.token(),
+                request.solutions(),
+                expectedScope,
+                request.instr(),
+                request.instrBlocked(),
+                request.instrTimeout(),
+                claims,
+                true);
     }
 
     ValidationResult validateComponents(
@@ -164,7 +187,15 @@ public final class Format1Protocol {
             @Nullable Object solutionsValue,
             @Nullable String expectedScope) {
         return validateComponents(
-                validBody, tokenValue, solutionsValue, expectedScope, null, false, false);
+                validBody,
+                tokenValue,
+                solutionsValue,
+                expectedScope,
+                null,
+                false,
+                false,
+                null,
+                false);
     }
 
     private ValidationResult validateComponents(
@@ -174,7 +205,9 @@ public final class Format1Protocol {
             @Nullable String expectedScope,
             RedeemRequest.@Nullable InstrumentationResult instrumentation,
             boolean instrumentationBlocked,
-            boolean instrumentationTimeout) {
+            boolean instrumentationTimeout,
+            @Nullable ChallengeClaims verifiedClaims,
+            boolean verified) {
         if (!validBody) {
             return failure("invalid_body");
         }
@@ -185,35 +218,29 @@ public final class Format1Protocol {
             return failure("missing_solutions");
         }
 
-        Map<String, @Nullable Object> payload = jwt.verify(token).orElse(null);
-        if (payload == null) {
+        @Nullable ChallengeClaims claims =
+                verified ? verifiedClaims : jwt.verifyClaims(token).orElse(null);
+        if (claims == null) {
             return failure("invalid_token");
         }
         if (expectedScope != null
                 && !expectedScope.isEmpty()
-                && !expectedScope.equals(payload.get("sk"))) {
+                && !expectedScope.equals(claims.scope())) {
             return failure("scope_mismatch");
         }
 
-        @Nullable Long expires = protocolInteger(payload.get("exp"));
-        if (expires == null || expires == 0 || expires < clock.millis()) {
+        // Format 1 把缺失与非整数的 exp 都视为过期，解码器对两者均给出 0。
+        long expires = claims.expires();
+        if (expires == 0 || expires < clock.millis()) {
             return failure("expired");
         }
-        @Nullable Long payloadCount = protocolInteger(payload.get("c"));
-        @Nullable Long payloadSize = protocolInteger(payload.get("s"));
-        @Nullable Long payloadDifficulty = protocolInteger(payload.get("d"));
-        @Nullable Long issuedAt = protocolInteger(payload.get("iat"));
-        @Nullable Object scopeValue = payload.get("sk");
-        if (issuedAt == null
-                || scopeValue != null && !(scopeValue instanceof String)
-                || payloadCount == null
-                || payloadSize == null
-                || payloadDifficulty == null
-                || !parametersInRange(payloadCount, payloadSize, payloadDifficulty)) {
+        if (!(claims instanceof Format1Claims payload)
+                || !payload.wellFormed()
+                || !parametersInRange(payload.count(), payload.size(), payload.difficulty())) {
             return failure("invalid_token");
         }
 
-        int expectedCount = payloadCount.intValue();
+        int expectedCount = (int) payload.count();
         if (solutions.size() != expectedCount) {
             return failure("invalid_solutions");
         }
@@ -227,22 +254,28 @@ public final class Format1Protocol {
         }
 
         int tokenState = RandomUtil.fnv1a(token);
-        int challengeSize = payloadSize.intValue();
-        int challengeDifficulty = payloadDifficulty.intValue();
-        for (int index = 0; index < expectedCount; index++) {
-            int saltState = RandomUtil.fnv1aResume(tokenState, Integer.toString(index + 1));
-            int targetState = RandomUtil.fnv1aResume(saltState, "d");
-            String salt = RandomUtil.prngFromHash(saltState, challengeSize);
-            String target = RandomUtil.prngFromHash(targetState, challengeDifficulty);
-            if (!sha256Hex(salt + solutionStrings[index]).startsWith(target)) {
-                return failure("invalid_solution");
+        int challengeSize = (int) payload.size();
+        int challengeDifficulty = (int) payload.difficulty();
+        byte[] target = new byte[challengeDifficulty];
+        try (PowVerifier pow = new PowVerifier()) {
+            byte[] salt = pow.saltBuffer(challengeSize);
+            for (int index = 0; index < expectedCount; index++) {
+                int saltState = RandomUtil.fnv1aResume(tokenState, index + 1);
+                int targetState = RandomUtil.fnv1aResume(saltState, "d");
+                RandomUtil.prngFromHash(saltState, salt, 0, challengeSize);
+                RandomUtil.prngFromHash(targetState, target, 0, challengeDifficulty);
+                if (!pow.verify(
+                        challengeSize, solutionStrings[index], target, challengeDifficulty)) {
+                    return failure("invalid_solution");
+                }
             }
         }
 
-        if (payload.get("ei") != null) {
-            if (!(payload.get("ei") instanceof String encrypted)) {
-                return instrumentationFailure("instr_corrupted");
-            }
+        if (payload.instrumentationMalformed()) {
+            return instrumentationFailure("instr_corrupted");
+        }
+        @Nullable String encrypted = payload.encryptedInstrumentation();
+        if (encrypted != null) {
             Map<String, @Nullable Object> metadata =
                     encryptedMetadata.decryptFormat1(encrypted).orElse(null);
             GeneratedInstrumentation generated = instrumentationMetadata(metadata);
@@ -270,27 +303,7 @@ public final class Format1Protocol {
             }
         }
 
-        @Nullable String scope = scopeValue instanceof String value ? value : null;
-        return new Validated(scope, issuedAt, expires, signatureHex(token));
-    }
-
-    private static @Nullable Long protocolInteger(@Nullable Object value) {
-        if (value instanceof Byte number) {
-            return number.longValue();
-        }
-        if (value instanceof Short number) {
-            return number.longValue();
-        }
-        if (value instanceof Integer number) {
-            return number.longValue();
-        }
-        if (value instanceof Long number) {
-            return number;
-        }
-        if (value instanceof BigInteger number && number.bitLength() < Long.SIZE) {
-            return number.longValue();
-        }
-        return null;
+        return new Validated(payload.scope(), payload.issuedAt(), expires, signature(token));
     }
 
     private static @Nullable String numberText(@Nullable Object value) {
@@ -315,22 +328,10 @@ public final class Format1Protocol {
                 && difficulty <= MAX_DIFFICULTY;
     }
 
-    static String sha256Hex(String value) {
-        return HEX.formatHex(sha256Bytes(value));
-    }
-
-    static byte[] sha256Bytes(String value) {
-        try {
-            return MessageDigest.getInstance("SHA-256")
-                    .digest(value.getBytes(StandardCharsets.UTF_8));
-        } catch (GeneralSecurityException exception) {
-            throw new IllegalStateException("运行环境缺少 SHA-256", exception);
-        }
-    }
-
-    static String signatureHex(String token) {
+    /** JWT 签名段解码后的原始字节，直接作为防重放 key。 */
+    static byte[] signature(String token) {
         int lastDot = token.lastIndexOf('.');
-        return HEX.formatHex(Base64.getUrlDecoder().decode(token.substring(lastDot + 1)));
+        return Base64.getUrlDecoder().decode(token.substring(lastDot + 1));
     }
 
     private static ProtocolFailure failure(String reason) {
@@ -350,13 +351,13 @@ public final class Format1Protocol {
                 || !(metadata.get("blockAutomatedBrowsers") instanceof Boolean blocked)) {
             return null;
         }
-        @Nullable Long expires = protocolInteger(metadata.get("expires"));
+        @Nullable Long expires = Format2Protocol.protocolInteger(metadata.get("expires"));
         if (expires == null) {
             return null;
         }
         List<Integer> expected = new java.util.ArrayList<>(expectedValues.size());
         for (Object value : expectedValues) {
-            @Nullable Long integer = protocolInteger(value);
+            @Nullable Long integer = Format2Protocol.protocolInteger(value);
             if (integer == null || integer < Integer.MIN_VALUE || integer > Integer.MAX_VALUE) {
                 return null;
             }
@@ -376,7 +377,22 @@ public final class Format1Protocol {
     public sealed interface ValidationResult permits Validated, ProtocolFailure {}
 
     /** 已验证且可进入统一兑换后处理的数据。 */
-    public record Validated(
-            @Nullable String scope, long issuedAt, long expires, String signatureHex)
-            implements ValidationResult {}
+    public record Validated(@Nullable String scope, long issuedAt, long expires, byte[] signature)
+            implements ValidationResult {
+
+        /** 签名按内容比较。 */
+        @Override
+        public boolean equals(@Nullable Object other) {
+            return other instanceof Validated that
+                    && Objects.equals(scope, that.scope)
+                    && issuedAt == that.issuedAt
+                    && expires == that.expires
+                    && Arrays.equals(signature, that.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(scope, issuedAt, expires, Arrays.hashCode(signature));
+        }
+    }
 }
@@ -10,26 +10,33 @@ import github.luckygc.cap.internal.crypto.JwtCodec;
 import github.luckygc.cap.internal.instrumentation.InstrumentationGenerator;
 import github.luckygc.cap.internal.instrumentation.InstrumentationGenerator.GeneratedInstrumentation;
 import github.luckygc.cap.internal.instrumentation.InstrumentationVerifier;
+import github.luckygc.cap.internal.json.ChallengeClaims;
+import github.luckygc.cap.internal.json.Format2Claims;
+import github.luckygc.cap.internal.json.ProtocolJsonCodec;
 import github.luckygc.cap.internal.rsw.RswSupport;
 import github.luckygc.cap.internal.rsw.RswSupport.MintedChallenge;
-import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HexFormat;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import org.jspecify.annotations.Nullable;
 
 /** capjs-core Format 2 的有序多协议 challenge 生成与验证。 */
 public final class Format2Protocol {
 
-    private static final int MAX_COUNT = 1000;
-    private static final int MAX_SIZE = 256;
+    static final int MAX_COUNT = 1000;
+    static final int MAX_SIZE = 256;
     private static final int MAX_DIFFICULTY = 16;
     private static final int MAX_PROTOCOL_MAP_ENTRIES = 16;
     private static final HexFormat HEX = HexFormat.of();
@@ -40,12 +47,16 @@ public final class Format2Protocol {
     private final int count;
     private final int size;
     private final int difficulty;
+    private final boolean derivedPowSalts;
+    private final boolean compactMetadata;
+    private final ProtocolJsonCodec jsonCodec = new ProtocolJsonCodec();
     private final RswSupport.@Nullable RswMinter rswMinter;
     private final InstrumentationOptions instrumentationOptions;
     private final InstrumentationGenerator instrumentationGenerator;
     private final InstrumentationVerifier instrumentationVerifier;
     private final Clock clock;
     private final SecureRandom random;
+    private final @Nullable Executor partExecutor;
 
     /** 使用调用方配置的协议顺序和协议组件。 */
     public Format2Protocol(
@@ -62,10 +73,61 @@ public final class Format2Protocol {
                 count,
                 size,
                 difficulty,
+                MetadataOptions.DEFAULT,
+                rswMinter,
+                instrumentationOptions);
+    }
+
+    /** 使用调用方配置的协议顺序、协议组件和服务端专用元数据布局。 */
+    public Format2Protocol(
+            String secret,
+            List<CapProtocol> protocols,
+            int count,
+            int size,
+            int difficulty,
+            MetadataOptions metadataOptions,
+            RswSupport.@Nullable RswMinter rswMinter,
+            InstrumentationOptions instrumentationOptions) {
+        this(
+                secret,
+                protocols,
+                count,
+                size,
+                difficulty,
+                metadataOptions,
+                rswMinter,
+                instrumentationOptions,
+                null);
+    }
+
+    /**
+     * 在 {@code partExecutor} 非空时并发生成各协议部分。
+     *
+     * <p>第一个协议在调用线程生成，其余协议各提交一个任务，全部完成后按配置顺序拼装；任一部分失败时，按配置顺序抛出第一个失败部分的原始异常并取消其余任务，与顺序生成一致。executor
+     * 拒绝任务时该部分回退为调用线程生成。
+     */
+    public Format2Protocol(
+            String secret,
+            List<CapProtocol> protocols,
+            int count,
+            int size,
+            int difficulty,
+            MetadataOptions metadataOptions,
+            RswSupport.@Nullable RswMinter rswMinter,
+            InstrumentationOptions instrumentationOptions,
+            @Nullable Executor partExecutor) {
+        this(
+                secret,
+                protocols,
+                count,
+                size,
+                difficulty,
+                metadataOptions,
                 rswMinter,
                 instrumentationOptions,
                 Clock.systemUTC(),
-                new SecureRandom());
+                new SecureRandom(),
+                partExecutor);
     }
 
     Format2Protocol(
@@ -78,6 +140,56 @@ public final class Format2Protocol {
             InstrumentationOptions instrumentationOptions,
             Clock clock,
             SecureRandom random) {
+        this(
+                secret,
+                protocols,
+                count,
+                size,
+                difficulty,
+                MetadataOptions.DEFAULT,
+                rswMinter,
+                instrumentationOptions,
+                clock,
+                random);
+    }
+
+    Format2Protocol(
+            String secret,
+            List<CapProtocol> protocols,
+            int count,
+            int size,
+            int difficulty,
+            MetadataOptions metadataOptions,
+            RswSupport.@Nullable RswMinter rswMinter,
+            InstrumentationOptions instrumentationOptions,
+            Clock clock,
+            SecureRandom random) {
+        this(
+                secret,
+                protocols,
+                count,
+                size,
+                difficulty,
+                metadataOptions,
+                rswMinter,
+                instrumentationOptions,
+                clock,
+                random,
+                null);
+    }
+
+    Format2Protocol(
+            String secret,
+            List<CapProtocol> protocols,
+            int count,
+            int size,
+            int difficulty,
+            MetadataOptions metadataOptions,
+            RswSupport.@Nullable RswMinter rswMinter,
+            InstrumentationOptions instrumentationOptions,
+            Clock clock,
+            SecureRandom random,
+            @Nullable Executor partExecutor) {
         this.protocols = validatedProtocols(protocols, rswMinter);
         if (this.protocols.contains(CapProtocol.SHA256_POW)) {
             validatePowParameters(count, size, difficulty);
@@ -85,11 +197,15 @@ public final class Format2Protocol {
         this.count = count;
         this.size = size;
         this.difficulty = difficulty;
+        Objects.requireNonNull(metadataOptions, "metadataOptions");
+        derivedPowSalts = metadataOptions.derivedPowSalts();
+        compactMetadata = metadataOptions.compactEncoding();
         this.rswMinter = rswMinter;
         this.instrumentationOptions =
                 Objects.requireNonNull(instrumentationOptions, "instrumentationOptions");
         this.clock = Objects.requireNonNull(clock, "clock");
         this.random = Objects.requireNonNull(random, "random");
+        this.partExecutor = partExecutor;
         jwt = new JwtCodec(secret);
         encryptedMetadata = new EncryptedMetadataCodec(secret, random);
         instrumentationGenerator = new InstrumentationGenerator(random, clock);
@@ -99,35 +215,111 @@ public final class Format2Protocol {
     /** 按配置顺序生成 Format 2 challenge，并仅在认证加密元数据中保存预期解答。 */
     public ChallengeResponse.Format2 generate(ChallengeOptions options) {
         Objects.requireNonNull(options, "options");
-        long issuedAt = clock.millis();
-        long expires = Math.addExact(issuedAt, options.ttl().toMillis());
+        return generate(options, prepare());
+    }
+
+    /**
+     * 生成与单次调用无关的 challenge 材料：PoW salt、RSW 铸造结果与 instrumentation 脚本。
+     *
+     * <p>材料可由后台线程预先生成；每份材料只能交给 {@link #generate(ChallengeOptions, Material)} 使用一次。
+     */
+    public Material prepare() {
         List<ChallengeResponse.ProtocolChallenge> challenges = new ArrayList<>();
-        List<Map<String, @Nullable Object>> expected = new ArrayList<>();
-
-        for (CapProtocol protocol : protocols) {
-            switch (protocol) {
-                case SHA256_POW -> generatePow(challenges, expected);
-                case RSW -> generateRsw(challenges, expected);
-                case INSTRUMENTATION ->
-                        generateInstrumentation(challenges, expected, options, expires);
+        List<ExpectedEntry> expected = new ArrayList<>();
+        if (partExecutor == null || protocols.size() < 2) {
+            for (CapProtocol protocol : protocols) {
+                generatePart(protocol, challenges, expected);
             }
+        } else {
+            generatePartsConcurrently(partExecutor, challenges, expected);
+        }
+        return new Material(List.copyOf(challenges), List.copyOf(expected));
+    }
+
+    private void generatePart(
+            CapProtocol protocol,
+            List<ChallengeResponse.ProtocolChallenge> challenges,
+            List<ExpectedEntry> expected) {
+        switch (protocol) {
+            case SHA256_POW -> generatePow(challenges, expected);
+            case RSW -> generateRsw(challenges, expected);
+            case INSTRUMENTATION -> generateInstrumentation(challenges, expected);
+        }
+    }
+
+    /** 第一个协议在调用线程生成，其余协议在 executor 上生成；按配置顺序拼装并报告第一个失败。 */
+    private void generatePartsConcurrently(
+            Executor executor,
+            List<ChallengeResponse.ProtocolChallenge> challenges,
+            List<ExpectedEntry> expected) {
+        List<FutureTask<Part>> tasks = new ArrayList<>(protocols.size() - 1);
+        try {
+            for (int index = 1; index < protocols.size(); index++) {
+                CapProtocol protocol = protocols.get(index);
+                FutureTask<Part> task =
+                        new FutureTask<>(
+                                () -> {
+                                    Part part = new Part(new ArrayList<>(), new ArrayList<>());
+                                    generatePart(protocol, part.challenges(), part.expected());
+                                    return part;
+                                });
+                tasks.add(task);
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException exception) {
+                    task.run();
+                }
+            }
+            generatePart(protocols.get(0), challenges, expected);
+            for (FutureTask<Part> task : tasks) {
+                Part part = task.get();
+                challenges.addAll(part.challenges());
+                expected.addAll(part.expected());
+            }
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("challenge generation failed", cause);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("challenge generation interrupted", exception);
+        } finally {
+            // 成功路径上任务均已完成，取消无效果；失败时中止尚未完成的部分。
+            for (FutureTask<Part> task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /** 在预生成材料上写入本次调用的有效期、scope 与 extra，再加密预期解答并签名。 */
+    public ChallengeResponse.Format2 generate(ChallengeOptions options, Material material) {
+        Objects.requireNonNull(options, "options");
+        Objects.requireNonNull(material, "material");
+        long issuedAt = clock.millis();
+        long expires = Math.addExact(issuedAt, options.ttl().toMillis());
+        List<ExpectedEntry> expected = new ArrayList<>(material.expected.size());
+        for (ExpectedEntry entry : material.expected) {
+            expected.add(withExpires(entry, expires));
         }
 
-        Map<String, @Nullable Object> metadata = new LinkedHashMap<>();
-        metadata.put("expected", expected);
         Map<String, @Nullable Object> payload = new LinkedHashMap<>();
         payload.put("f", 2);
         payload.put("n", randomHex(16));
         payload.put("exp", expires);
         payload.put("iat", issuedAt);
-        payload.put("ev", encryptedMetadata.encryptFormat2(metadata));
+        payload.put("ev", encryptExpected(expected));
         if (options.scope() != null && !options.scope().isEmpty()) {
             payload.put("sk", options.scope());
         }
         if (!options.extra().isEmpty()) {
             payload.put("x", options.extra());
         }
-        return new ChallengeResponse.Format2(2, challenges, jwt.sign(payload), expires);
+        return new ChallengeResponse.Format2(2, material.challenges, jwt.sign(payload), expires);
     }
 
     /** 验证一个 Format 2 兑换请求，成功结果留给统一 replay 与 token 签发流程处理。 */
@@ -136,80 +328,149 @@ public final class Format2Protocol {
         if (request == null) {
             return failure("invalid_body");
         }
-        Map<String, @Nullable Object> payload = jwt.verify(request.token()).orElse(null);
-        if (payload == null) {
+        return validate(request, jwt.verifyClaims(request.token()).orElse(null), expectedScope);
+    }
+
+    /**
+     * 使用调用方已由同一 secret 验证的 claims 验证请求，避免再次计算 MAC 与解析 payload。
+     *
+     * @param claims {@link JwtCodec#verifyClaims(String)} 的结果；为 {@code null} 表示 token 未通过验证
+     */
+    public ValidationResult validate(
+            RedeemRequest request,
+            @Nullable ChallengeClaims claims,
+            @Nullable String expectedScope) {
+        Objects.requireNonNull(request, "request");
+        if (claims == null) {
             return failure("invalid_token");
         }
         if (expectedScope != null
                 && !expectedScope.isEmpty()
-                && !expectedScope.equals(payload.get("sk"))) {
+                && !expectedScope.equals(claims.scope())) {
             return failure("scope_mismatch");
         }
 
-        @Nullable Long expires = protocolInteger(payload.get("exp"));
-        if (payload.get("exp") == null
-                || expires != null && (expires == 0 || expires < clock.millis())) {
+        // 缺失的 exp 视为过期；存在但不是整数时按 token 结构错误处理。
+        long expires = claims.expires();
+        if (!claims.expiresMalformed() && (expires == 0 || expires < clock.millis())) {
             return failure("expired");
         }
-        @Nullable Long format = protocolInteger(payload.get("f"));
-        @Nullable Long issuedAt = protocolInteger(payload.get("iat"));
-        @Nullable Object nonce = payload.get("n");
-        @Nullable Object encrypted = payload.get("ev");
-        @Nullable Object scopeValue = payload.get("sk");
-        if (format == null
-                || format != 2
-                || expires == null
-                || issuedAt == null
-                || !(nonce instanceof String)
-                || !(encrypted instanceof String encryptedValue)
-                || scopeValue != null && !(scopeValue instanceof String)) {
+        if (!(claims instanceof Format2Claims payload) || !payload.wellFormed()) {
+            return failure("invalid_token");
+        }
+        @Nullable String encrypted = payload.encryptedExpected();
+        if (encrypted == null) {
             return failure("invalid_token");
         }
 
-        Map<String, @Nullable Object> metadata =
-                encryptedMetadata.decryptFormat2(encryptedValue).orElse(null);
-        if (metadata == null
-                || metadata.size() > MAX_PROTOCOL_MAP_ENTRIES
-                || !(metadata.get("expected") instanceof List<?> expected)) {
+        @Nullable List<ExpectedEntry> expected = decryptExpected(encrypted);
+        if (expected == null) {
             return failure("invalid_token");
         }
         List<@Nullable Object> solutions = request.solutions();
-        if (solutions.size() != expected.size()) {
+        long expectedSolutions = 0;
+        for (ExpectedEntry entry : expected) {
+            expectedSolutions += entry.solutionCount();
+        }
+        if (solutions.size() != expectedSolutions) {
             return failure("invalid_solutions");
         }
-        for (int index = 0; index < expected.size(); index++) {
-            @Nullable ProtocolFailure protocolFailure =
-                    validateExpected(expected.get(index), solutions.get(index));
-            if (protocolFailure != null) {
-                return protocolFailure;
+        int cursor = 0;
+        try (PowVerifier pow = new PowVerifier()) {
+            for (ExpectedEntry entry : expected) {
+                @Nullable ProtocolFailure protocolFailure =
+                        entry instanceof ExpectedEntry.DerivedPow derived
+                                ? validateDerivedPow(pow, derived, solutions, cursor)
+                                : validateEntry(pow, entry, solutions.get(cursor));
+                if (protocolFailure != null) {
+                    return protocolFailure;
+                }
+                cursor += entry.solutionCount();
             }
         }
-        @Nullable String scope = scopeValue instanceof String value ? value : null;
         return new Validated(
-                scope, issuedAt, expires, Format1Protocol.signatureHex(request.token()));
+                payload.scope(),
+                payload.issuedAt(),
+                expires,
+                Format1Protocol.signature(request.token()));
+    }
+
+    private String encryptExpected(List<ExpectedEntry> expected) {
+        if (compactMetadata) {
+            return encryptedMetadata.encryptFormat2(ExpectedMetadataCodec.encode(expected));
+        }
+        List<Map<String, @Nullable Object>> entries = new ArrayList<>(expected.size());
+        for (ExpectedEntry entry : expected) {
+            entries.add(ExpectedEntry.toJson(entry));
+        }
+        Map<String, @Nullable Object> metadata = new LinkedHashMap<>();
+        metadata.put("expected", entries);
+        return encryptedMetadata.encryptFormat2(metadata);
+    }
+
+    /** 按首字节区分二进制与上游 JSON 布局；解密或解码失败返回 {@code null}。 */
+    private @Nullable List<ExpectedEntry> decryptExpected(String encrypted) {
+        byte @Nullable [] plaintext = encryptedMetadata.decryptFormat2Bytes(encrypted).orElse(null);
+        if (plaintext == null) {
+            return null;
+        }
+        if (ExpectedMetadataCodec.isBinary(plaintext)) {
+            return ExpectedMetadataCodec.decode(plaintext);
+        }
+        Map<String, @Nullable Object> metadata;
+        try {
+            metadata = jsonCodec.readObject(plaintext);
+        } catch (IllegalArgumentException exception) {
+            return null;
+        }
+        if (metadata.size() > MAX_PROTOCOL_MAP_ENTRIES
+                || !(metadata.get("expected") instanceof List<?> values)) {
+            return null;
+        }
+        List<ExpectedEntry> expected = new ArrayList<>(values.size());
+        for (@Nullable Object value : values) {
+            expected.add(ExpectedEntry.fromJson(value));
+        }
+        return expected;
     }
 
     private void generatePow(
-            List<ChallengeResponse.ProtocolChallenge> challenges,
-            List<Map<String, @Nullable Object>> expected) {
+            List<ChallengeResponse.ProtocolChallenge> challenges, List<ExpectedEntry> expected) {
         String target = "0".repeat(difficulty);
+        if (derivedPowSalts) {
+            generateDerivedPow(challenges, expected, target);
+            return;
+        }
         for (int index = 0; index < count; index++) {
             String salt = randomHex(size);
             Map<String, @Nullable Object> challengePayload = new LinkedHashMap<>();
             challengePayload.put("salt", salt);
             challengePayload.put("target", target);
             challenges.add(new ChallengeResponse.ProtocolChallenge("sha256-pow", challengePayload));
-            Map<String, @Nullable Object> expectedEntry = new LinkedHashMap<>();
-            expectedEntry.put("protocol", "sha256-pow");
-            expectedEntry.put("salt", salt);
-            expectedEntry.put("target", target);
-            expected.add(expectedEntry);
+            expected.add(new ExpectedEntry.Pow(salt, target));
         }
     }
 
-    private void generateRsw(
+    private void generateDerivedPow(
             List<ChallengeResponse.ProtocolChallenge> challenges,
-            List<Map<String, @Nullable Object>> expected) {
+            List<ExpectedEntry> expected,
+            String target) {
+        byte[] seed = new byte[PowSaltStream.SEED_BYTES];
+        random.nextBytes(seed);
+        try (PowSaltStream salts = new PowSaltStream(seed)) {
+            for (int index = 0; index < count; index++) {
+                Map<String, @Nullable Object> challengePayload = new LinkedHashMap<>();
+                challengePayload.put("salt", salts.next(size));
+                challengePayload.put("target", target);
+                challenges.add(
+                        new ChallengeResponse.ProtocolChallenge("sha256-pow", challengePayload));
+            }
+        }
+        expected.add(new ExpectedEntry.DerivedPow(seed, count, size, target));
+    }
+
+    private void generateRsw(
+            List<ChallengeResponse.ProtocolChallenge> challenges, List<ExpectedEntry> expected) {
         RswSupport.RswMinter minter = Objects.requireNonNull(rswMinter, "rswMinter");
         MintedChallenge minted = minter.mint();
         Map<String, @Nullable Object> challengePayload = new LinkedHashMap<>();
@@ -217,98 +478,79 @@ public final class Format2Protocol {
         challengePayload.put("x", minted.x());
         challengePayload.put("t", minted.t());
         challenges.add(new ChallengeResponse.ProtocolChallenge("rsw", challengePayload));
-        Map<String, @Nullable Object> expectedEntry = new LinkedHashMap<>();
-        expectedEntry.put("protocol", "rsw");
-        expectedEntry.put("y", minted.y());
-        expected.add(expectedEntry);
+        expected.add(new ExpectedEntry.Rsw(minted.y()));
     }
 
     private void generateInstrumentation(
-            List<ChallengeResponse.ProtocolChallenge> challenges,
-            List<Map<String, @Nullable Object>> expected,
-            ChallengeOptions options,
-            long expires) {
+            List<ChallengeResponse.ProtocolChallenge> challenges, List<ExpectedEntry> expected) {
         GeneratedInstrumentation generated =
-                instrumentationGenerator.generate(instrumentationOptions, options.ttl());
+                instrumentationGenerator.generate(instrumentationOptions);
         challenges.add(
                 new ChallengeResponse.ProtocolChallenge(
                         "instrumentation", Map.of("blob", generated.instrumentation())));
-        Map<String, @Nullable Object> meta = new LinkedHashMap<>();
-        meta.put("id", generated.id());
-        meta.put("expectedVals", generated.expectedVals());
-        meta.put("vars", generated.vars());
-        meta.put("blockAutomatedBrowsers", generated.blockAutomatedBrowsers());
-        meta.put("expires", expires);
-        Map<String, @Nullable Object> entry = new LinkedHashMap<>();
-        entry.put("protocol", "instrumentation");
-        entry.put("instrMeta", meta);
-        expected.add(entry);
-    }
-
-    private @Nullable ProtocolFailure validateExpected(
-            @Nullable Object expectedValue, @Nullable Object solutionValue) {
-        if (!(expectedValue instanceof Map<?, ?> expected)
-                || !(solutionValue instanceof Map<?, ?> solution)
-                || expected.size() > MAX_PROTOCOL_MAP_ENTRIES
-                || solution.size() > MAX_PROTOCOL_MAP_ENTRIES
-                || !(expected.get("protocol") instanceof String protocol)) {
-            return failure("invalid_solution");
-        }
-        return switch (protocol) {
-            case "sha256-pow" -> validatePow(expected, solution);
-            case "rsw" -> validateRsw(expected, solution);
-            case "instrumentation" -> validateInstrumentation(expected, solution);
-            default -> failure("invalid_solution");
-        };
+        expected.add(ExpectedEntry.Instrumentation.of(generated));
     }
 
-    private static @Nullable ProtocolFailure validatePow(Map<?, ?> expected, Map<?, ?> solution) {
-        if (!(expected.get("salt") instanceof String salt)
-                || !(expected.get("target") instanceof String target)) {
+    /** instrumentation 元数据的过期时间与 token 一致，签名时才确定。 */
+    private static ExpectedEntry withExpires(ExpectedEntry entry, long expires) {
+        return entry instanceof ExpectedEntry.Instrumentation instrumentation
+                ? instrumentation.withExpires(expires)
+                : entry;
+    }
+
+    private @Nullable ProtocolFailure validateEntry(
+            PowVerifier pow, ExpectedEntry entry, @Nullable Object solutionValue) {
+        if (!(solutionValue instanceof Map<?, ?> solution)
+                || solution.size() > MAX_PROTOCOL_MAP_ENTRIES) {
             return failure("invalid_solution");
         }
-        @Nullable String nonce = nonceText(solution.get("nonce"));
-        if (nonce == null || !matchesHexPrefix(Format1Protocol.sha256Bytes(salt + nonce), target)) {
-            return failure("invalid_solution");
+        if (entry instanceof ExpectedEntry.Pow expectedPow) {
+            @Nullable String nonce = nonceText(solution.get("nonce"));
+            return nonce != null && pow.verify(expectedPow.salt(), nonce, expectedPow.target())
+                    ? null
+                    : failure("invalid_solution");
         }
-        return null;
-    }
-
-    private static boolean matchesHexPrefix(byte[] hash, String target) {
-        if (target.length() > hash.length * 2) {
-            return false;
+        if (entry instanceof ExpectedEntry.Rsw rsw) {
+            return validateRsw(rsw.y(), solution);
         }
-        int fullBytes = target.length() / 2;
-        for (int index = 0; index < fullBytes; index++) {
-            int high = asciiHexNibble(target.charAt(index * 2));
-            int low = asciiHexNibble(target.charAt(index * 2 + 1));
-            if (high < 0 || low < 0 || (hash[index] & 0xff) != (high << 4 | low)) {
-                return false;
-            }
+        if (entry instanceof ExpectedEntry.Instrumentation instrumentation) {
+            return validateInstrumentation(instrumentation, solution);
         }
-        if (target.length() % 2 != 0) {
-            int nibble = asciiHexNibble(target.charAt(target.length() - 1));
-            return nibble >= 0 && (hash[fullBytes] & 0xff) >>> 4 == nibble;
+        if (entry instanceof ExpectedEntry.CorruptedInstrumentation) {
+            return validateInstrumentation(null, solution);
         }
-        return true;
+        return failure("invalid_solution");
     }
 
-    private static int asciiHexNibble(char value) {
-        if (value >= '0' && value <= '9') {
-            return value - '0';
-        }
-        if (value >= 'a' && value <= 'f') {
-            return value - 'a' + 10;
-        }
-        if (value >= 'A' && value <= 'F') {
-            return value - 'A' + 10;
+    private static @Nullable ProtocolFailure validateDerivedPow(
+            PowVerifier pow,
+            ExpectedEntry.DerivedPow derived,
+            List<@Nullable Object> solutions,
+            int offset) {
+        int saltLength = derived.size() * 2;
+        byte[] salt = pow.saltBuffer(saltLength);
+        byte[] target = derived.target().getBytes(StandardCharsets.ISO_8859_1);
+        try (PowSaltStream salts = new PowSaltStream(derived.seed())) {
+            for (int index = 0; index < derived.count(); index++) {
+                if (!(solutions.get(offset + index) instanceof Map<?, ?> solution)
+                        || solution.size() > MAX_PROTOCOL_MAP_ENTRIES) {
+                    return failure("invalid_solution");
+                }
+                @Nullable String nonce = nonceText(solution.get("nonce"));
+                if (nonce == null) {
+                    return failure("invalid_solution");
+                }
+                salts.next(derived.size(), salt);
+                if (!pow.verify(saltLength, nonce, target, target.length)) {
+                    return failure("invalid_solution");
+                }
+            }
         }
-        return -1;
+        return null;
     }
 
-    private static @Nullable ProtocolFailure validateRsw(Map<?, ?> expected, Map<?, ?> solution) {
-        if (!(expected.get("y") instanceof String expectedY)
-                || !(solution.get("y") instanceof String claimedY)
+    private static @Nullable ProtocolFailure validateRsw(String expectedY, Map<?, ?> solution) {
+        if (!(solution.get("y") instanceof String claimedY)
                 || !RswSupport.verifySolution(expectedY, claimedY)) {
             return failure("invalid_solution");
         }
@@ -316,9 +558,7 @@ public final class Format2Protocol {
     }
 
     private @Nullable ProtocolFailure validateInstrumentation(
-            Map<?, ?> expected, Map<?, ?> solution) {
-        @Nullable GeneratedInstrumentation metadata =
-                instrumentationMetadata(expected.get("instrMeta"));
+            ExpectedEntry.@Nullable Instrumentation metadata, Map<?, ?> solution) {
         if (metadata == null) {
             return instrumentationFailure("instr_corrupted");
         }
@@ -352,60 +592,18 @@ public final class Format2Protocol {
         }
         @Nullable Map<String, @Nullable Object> state = stringMap(stateValue);
         InstrumentationVerifier.VerificationResult result =
-                instrumentationVerifier.verify(metadata, output.get("i"), state);
+                instrumentationVerifier.verify(
+                        metadata.id(),
+                        metadata.vars(),
+                        metadata.expectedVals(),
+                        output.get("i"),
+                        state);
         return result.valid()
                 ? null
                 : instrumentationFailure(
                         result.reason() == null ? "instr_failed" : result.reason());
     }
 
-    private static @Nullable GeneratedInstrumentation instrumentationMetadata(
-            @Nullable Object value) {
-        if (!(value instanceof Map<?, ?> metadata)
-                || metadata.size() > MAX_PROTOCOL_MAP_ENTRIES
-                || !(metadata.get("id") instanceof String id)
-                || !(metadata.get("blockAutomatedBrowsers") instanceof Boolean blocked)) {
-            return null;
-        }
-        @Nullable Long expires = protocolInteger(metadata.get("expires"));
-        @Nullable List<Integer> expected = integerList(metadata.get("expectedVals"));
-        @Nullable List<String> variables = stringList(metadata.get("vars"));
-        if (expires == null || expected == null || variables == null) {
-            return null;
-        }
-        return new GeneratedInstrumentation(
-                id, expires, expected, variables, blocked, "metadata-only");
-    }
-
-    private static @Nullable List<Integer> integerList(@Nullable Object value) {
-        if (!(value instanceof List<?> values) || values.size() > MAX_PROTOCOL_MAP_ENTRIES) {
-            return null;
-        }
-        List<Integer> result = new ArrayList<>(values.size());
-        for (@Nullable Object element : values) {
-            @Nullable Long integer = protocolInteger(element);
-            if (integer == null || integer < Integer.MIN_VALUE || integer > Integer.MAX_VALUE) {
-                return null;
-            }
-            result.add(integer.intValue());
-        }
-        return List.copyOf(result);
-    }
-
-    private static @Nullable List<String> stringList(@Nullable Object value) {
-        if (!(value instanceof List<?> values) || values.size() > MAX_PROTOCOL_MAP_ENTRIES) {
-            return null;
-        }
-        List<String> result = new ArrayList<>(values.size());
-        for (@Nullable Object element : values) {
-            if (!(element instanceof String string)) {
-                return null;
-            }
-            result.add(string);
-        }
-        return List.copyOf(result);
-    }
-
     private static @Nullable Map<String, @Nullable Object> stringMap(@Nullable Object value) {
         if (!(value instanceof Map<?, ?> values) || values.size() > MAX_PROTOCOL_MAP_ENTRIES) {
             return null;
@@ -428,81 +626,18 @@ public final class Format2Protocol {
     }
 
     static String jsNumberToString(Number number) {
-        double value = number.doubleValue();
-        if (Double.isNaN(value)) {
-            return "NaN";
-        }
-        if (value == Double.POSITIVE_INFINITY) {
-            return "Infinity";
-        }
-        if (value == Double.NEGATIVE_INFINITY) {
-            return "-Infinity";
-        }
-        if (value == 0.0) {
-            return "0";
-        }
-        double absolute = Math.abs(value);
-        BigDecimal shortest = shortestDecimal(value);
-        if (absolute >= 1e-6 && absolute < 1e21) {
-            return shortest.toPlainString();
-        }
-        BigDecimal magnitude = shortest.abs();
-        String digits = magnitude.unscaledValue().abs().toString();
-        int exponent = digits.length() - magnitude.scale() - 1;
-        StringBuilder scientific = new StringBuilder();
-        if (value < 0) {
-            scientific.append('-');
-        }
-        scientific.append(digits.charAt(0));
-        if (digits.length() > 1) {
-            scientific.append('.').append(digits, 1, digits.length());
-        }
-        scientific.append('e');
-        if (exponent >= 0) {
-            scientific.append('+');
-        }
-        return scientific.append(exponent).toString();
-    }
-
-    private static BigDecimal shortestDecimal(double value) {
-        boolean negative = value < 0;
-        double absolute = Math.abs(value);
-        BigDecimal exact = new BigDecimal(absolute);
-        int decimalExponent = exact.precision() - exact.scale() - 1;
-        for (int precision = 1; precision <= 17; precision++) {
-            int power = decimalExponent - precision + 1;
-            BigDecimal scaled = exact.scaleByPowerOfTen(-power);
-            BigInteger nearest = scaled.setScale(0, RoundingMode.HALF_EVEN).toBigIntegerExact();
-            @Nullable BigDecimal best = null;
-            @Nullable BigDecimal bestDistance = null;
-            @Nullable BigInteger bestSignificand = null;
-            for (int offset = -2; offset <= 2; offset++) {
-                BigInteger significand = nearest.add(BigInteger.valueOf(offset));
-                if (significand.signum() <= 0) {
-                    continue;
-                }
-                BigDecimal candidate = new BigDecimal(significand).scaleByPowerOfTen(power);
-                if (Double.doubleToRawLongBits(candidate.doubleValue())
-                        != Double.doubleToRawLongBits(absolute)) {
-                    continue;
-                }
-                BigDecimal distance = candidate.subtract(exact).abs();
-                if (bestDistance == null
-                        || distance.compareTo(bestDistance) < 0
-                        || distance.compareTo(bestDistance) == 0
-                                && bestSignificand != null
-                                && bestSignificand.testBit(0)
-                                && !significand.testBit(0)) {
-                    best = candidate;
-                    bestDistance = distance;
-                    bestSignificand = significand;
-                }
-            }
-            if (best != null) {
-                return (negative ? best.negate() : best).stripTrailingZeros();
+        // 解答 nonce 几乎总是安全整数，直接十进制输出，不经过浮点最短表示。
+        if (number instanceof Long
+                || number instanceof Integer
+                || number instanceof Short
+                || number instanceof Byte) {
+            long integral = number.longValue();
+            if (integral >= -JsNumberText.MAX_SAFE_INTEGER
+                    && integral <= JsNumberText.MAX_SAFE_INTEGER) {
+                return Long.toString(integral);
             }
         }
-        throw new IllegalStateException("无法生成 JavaScript Number 字符串");
+        return JsNumberText.toString(number.doubleValue());
     }
 
     static boolean jsTruthy(@Nullable Object value) {
@@ -519,7 +654,7 @@ public final class Format2Protocol {
         return true;
     }
 
-    private static @Nullable Long protocolInteger(@Nullable Object value) {
+    static @Nullable Long protocolInteger(@Nullable Object value) {
         if (value instanceof Byte number) {
             return number.longValue();
         }
@@ -584,11 +719,56 @@ public final class Format2Protocol {
         return new ProtocolFailure(reason, true, null);
     }
 
+    /** 单个协议生成的 challenge 与预期解答，由并发生成路径按配置顺序拼装。 */
+    private record Part(
+            List<ChallengeResponse.ProtocolChallenge> challenges, List<ExpectedEntry> expected) {}
+
+    /** 预生成的 challenge 材料；预期解答只在本包内可见，不会随材料泄露给调用方。 */
+    public static final class Material {
+
+        private final List<ChallengeResponse.ProtocolChallenge> challenges;
+        private final List<ExpectedEntry> expected;
+
+        private Material(
+                List<ChallengeResponse.ProtocolChallenge> challenges,
+                List<ExpectedEntry> expected) {
+            this.challenges = challenges;
+            this.expected = expected;
+        }
+    }
+
+    /**
+     * 服务端专用的加密元数据布局选项；任一选项启用后，签发的 token 只能由本库兑换，上游 capjs-core 无法兑换。
+     *
+     * @param derivedPowSalts sha256-pow salt 由元数据中的单个种子展开，元数据大小与 challenge 数量无关
+     * @param compactEncoding 元数据使用 {@link ExpectedMetadataCodec} 的二进制布局而非 JSON
+     */
+    public record MetadataOptions(boolean derivedPowSalts, boolean compactEncoding) {
+
+        /** 与上游 capjs-core 互通的 JSON 布局。 */
+        public static final MetadataOptions DEFAULT = new MetadataOptions(false, false);
+    }
+
     /** 验证结果仅供后续统一 replay 与 token 签发流程使用。 */
     public sealed interface ValidationResult permits Validated, ProtocolFailure {}
 
     /** 已验证且可进入统一兑换后处理的数据。 */
-    public record Validated(
-            @Nullable String scope, long issuedAt, long expires, String signatureHex)
-            implements ValidationResult {}
+    public record Validated(@Nullable String scope, long issuedAt, long expires, byte[] signature)
+            implements ValidationResult {
+
+        /** 签名按内容比较。 */
+        @Override
+        public boolean equals(@Nullable Object other) {
+            return other instanceof Validated that
+                    && Objects.equals(scope, that.scope)
+                    && issuedAt == that.issuedAt
+                    && expires == that.expires
+                    && Arrays.equals(signature, that.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(scope, issuedAt, expires, Arrays.hashCode(signature));
+        }
+    }
 }
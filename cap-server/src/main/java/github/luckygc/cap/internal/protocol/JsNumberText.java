@@ -0,0 +1,188 @@
+package github.luckygc.cap.internal.protocol;
+
+import java.math.BigInteger;
+
+/**
+ * 与 JavaScript {@code Number.prototype.toString()} 逐字符一致的 binary64 文本化。
+ *
+ * <p>安全整数直接按十进制输出；其余数值使用 Schubfach 算法求最短且最接近的十进制有效数字，再按 ECMAScript Number::toString
+ * 的规则选择普通或科学计数法。10 的幂近似表在类初始化时用 {@link BigInteger} 精确计算，请求路径只做 64 位整数运算。
+ */
+final class JsNumberText {
+
+    static final long MAX_SAFE_INTEGER = (1L << 53) - 1;
+
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << 52;
+    private static final long T_MASK = C_MIN - 1;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final long MASK_63 = Long.MAX_VALUE;
+    private static final long[] G = powerTable();
+
+    private JsNumberText() {}
+
+    static String toString(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (value == Double.POSITIVE_INFINITY) {
+            return "Infinity";
+        }
+        if (value == Double.NEGATIVE_INFINITY) {
+            return "-Infinity";
+        }
+        if (value == 0.0) {
+            return "0";
+        }
+        long bits = Double.doubleToRawLongBits(value);
+        boolean negative = bits < 0;
+        long fraction = bits & T_MASK;
+        int biasedExponent = (int) (bits >>> 52) & 0x7ff;
+        if (biasedExponent != 0) {
+            int shift = 1075 - biasedExponent;
+            long significand = C_MIN | fraction;
+            if (shift > 0 && shift < P) {
+                long integral = significand >> shift;
+                if (integral << shift == significand) {
+                    return Long.toString(negative ? -integral : integral);
+                }
+            }
+            return toDecimal(negative, -shift, significand);
+        }
+        // JavaScript 不要求至少两位有效数字，因此次正规数无需像 Java 那样放大极小的有效数字。
+        return toDecimal(negative, Q_MIN, fraction);
+    }
+
+    private static String toDecimal(boolean negative, int q, long c) {
+        long out = c & 1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // 2 的整数次幂下方区间只有上方的一半。
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+        int index = (k - K_MIN) * 2;
+        long g1 = G[index];
+        long g0 = G[index + 1];
+
+        long vb = roundOdd(g1, g0, cb << h);
+        long vbl = roundOdd(g1, g0, cbl << h);
+        long vbr = roundOdd(g1, g0, cbr << h);
+        long s = vb >> 2;
+        if (s >= 10) {
+            // 先尝试少一位有效数字：sp10 为不大于 s 的最大 10 的倍数。Java 为保留两位有效数字只在 s >= 100 时尝试，
+            // JavaScript 允许一位有效数字，次正规数因此也要检查。
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return format(negative, upin ? sp10 : tp10, k);
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return format(negative, uin ? s : t, k);
+        }
+        long cmp = vb - ((s + t) << 1);
+        return format(negative, cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k);
+    }
+
+    /** 计算 {@code g * cp / 2^127} 的向奇数舍入结果，{@code g = g1 * 2^63 + g0}。 */
+    private static long roundOdd(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    /** 按 ECMAScript Number::toString 输出 {@code significand * 10^exponent}。 */
+    private static String format(boolean negative, long significand, int exponent) {
+        long digits = significand;
+        int scale = exponent;
+        while (digits % 10 == 0) {
+            digits /= 10;
+            scale++;
+        }
+        String text = Long.toString(digits);
+        int length = text.length();
+        // point 为 ECMAScript 规范中的 n：十进制小数点相对首位数字的位置。
+        int point = length + scale;
+        StringBuilder result = new StringBuilder(length + 8);
+        if (negative) {
+            result.append('-');
+        }
+        if (length <= point && point <= 21) {
+            result.append(text);
+            for (int index = length; index < point; index++) {
+                result.append('0');
+            }
+        } else if (0 < point && point <= 21) {
+            result.append(text, 0, point).append('.').append(text, point, length);
+        } else if (-6 < point && point <= 0) {
+            result.append("0.");
+            for (int index = point; index < 0; index++) {
+                result.append('0');
+            }
+            result.append(text);
+        } else {
+            result.append(text.charAt(0));
+            if (length > 1) {
+                result.append('.').append(text, 1, length);
+            }
+            int decimalExponent = point - 1;
+            result.append('e').append(decimalExponent < 0 ? '-' : '+');
+            result.append(Math.abs(decimalExponent));
+        }
+        return result.toString();
+    }
+
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41);
+    }
+
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    /**
+     * 对每个 k 记录 {@code g = floor(10^-k * 2^-r) + 1}，其中 r 使 {@code 2^125 <= 10^-k * 2^-r < 2^126}。
+     */
+    private static long[] powerTable() {
+        long[] table = new long[(K_MAX - K_MIN + 1) * 2];
+        BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int e = -k;
+            int r = flog2pow10(e) - 125;
+            BigInteger g;
+            if (e >= 0) {
+                BigInteger power = BigInteger.TEN.pow(e);
+                g = r >= 0 ? power.shiftRight(r) : power.shiftLeft(-r);
+            } else {
+                g = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(-e));
+            }
+            g = g.add(BigInteger.ONE);
+            int index = (k - K_MIN) * 2;
+            table[index] = g.shiftRight(63).longValueExact();
+            table[index + 1] = g.and(mask).longValue();
+        }
+        return table;
+    }
+}
@@ -0,0 +1,88 @@
+package github.luckygc.cap.internal.protocol;
+
+import github.luckygc.cap.internal.crypto.PrimitivePool;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 由单个 256 位种子按序展开 sha256-pow salt。
+ *
+ * <p>以种子为密钥的 AES-256-CTR 密钥流作为 PRF 输出：第 i 个 salt 取密钥流中紧随前 i 个 salt 之后的 {@code size} 字节，再按小写 hex
+ * 输出，与随机 salt 的线上格式一致。每个种子只用于一个 challenge，因此固定零 IV 不会造成密钥流复用。
+ *
+ * <p>{@link Cipher} 从池中借出后以种子重新 {@code init}，请求路径不再执行 provider 查找；实例不是线程安全的，用完后必须 {@link #close()}
+ * 归还。
+ */
+final class PowSaltStream implements AutoCloseable {
+
+    static final int SEED_BYTES = 32;
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ZERO_IV = new byte[16];
+    private static final PrimitivePool<Cipher> CIPHERS =
+            new PrimitivePool<>(PowSaltStream::newCipher);
+
+    private final Cipher cipher;
+    private byte[] zeros = new byte[0];
+    private byte[] keystream = new byte[0];
+
+    PowSaltStream(byte[] seed) {
+        if (seed.length != SEED_BYTES) {
+            throw new IllegalArgumentException("seed must be 32 bytes");
+        }
+        cipher = CIPHERS.acquire();
+        try {
+            cipher.init(
+                    Cipher.ENCRYPT_MODE,
+                    new SecretKeySpec(seed, "AES"),
+                    new IvParameterSpec(ZERO_IV));
+        } catch (GeneralSecurityException exception) {
+            CIPHERS.release(cipher);
+            throw new IllegalStateException("AES-CTR 初始化失败", exception);
+        }
+    }
+
+    /** 返回下一个 {@code size} 字节 salt 的 hex 形式。 */
+    String next(int size) {
+        if (zeros.length != size) {
+            zeros = new byte[size];
+        }
+        return HEX.formatHex(cipher.update(zeros));
+    }
+
+    /** 将下一个 {@code size} 字节 salt 的小写 hex 以 ASCII 写入 {@code target} 开头，共 {@code size * 2} 字节。 */
+    void next(int size, byte[] target) {
+        if (zeros.length != size) {
+            zeros = new byte[size];
+            keystream = new byte[size];
+        }
+        try {
+            cipher.update(zeros, 0, size, keystream, 0);
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("AES-CTR 密钥流输出失败", exception);
+        }
+        for (int index = 0; index < size; index++) {
+            target[index * 2] = HEX_DIGITS[(keystream[index] & 0xff) >>> 4];
+            target[index * 2 + 1] = HEX_DIGITS[keystream[index] & 0xf];
+        }
+    }
+
+    /** 归还借出的 {@link Cipher}；下一个借用方总会以自己的种子重新 {@code init}。 */
+    @Override
+    public void close() {
+        CIPHERS.release(cipher);
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance("AES/CTR/NoPadding");
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("运行环境不支持 AES-CTR", exception);
+        }
+    }
+}
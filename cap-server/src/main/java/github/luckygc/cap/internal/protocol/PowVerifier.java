@@ -0,0 +1,132 @@
+package github.luckygc.cap.internal.protocol;
+
+import github.luckygc.cap.internal.crypto.Sha256;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * Format 1 与 Format 2 共用的字节级 sha256-pow 验证器。
+ *
+ * <p>一次兑换只借出一个摘要实例，并复用 salt 缓冲区与 32 字节摘要输出；salt 与 nonce 以字节直接送入摘要，target 前缀按原始摘要半字节比较，不构造任何 hex
+ * 字符串。实例不是线程安全的，用完后必须 {@link #close()} 归还摘要。
+ */
+final class PowVerifier implements AutoCloseable {
+
+    private static final int HASH_BYTES = 32;
+
+    private final MessageDigest digest = Sha256.acquire();
+    private final byte[] hash = new byte[HASH_BYTES];
+    private byte[] salt = new byte[64];
+    private byte[] nonce = new byte[32];
+
+    /** 返回至少 {@code length} 字节的复用 salt 缓冲区；调用方写入 ASCII salt 后调用 {@code verify(int, ...)}。 */
+    byte[] saltBuffer(int length) {
+        if (salt.length < length) {
+            salt = new byte[Math.max(length, salt.length * 2)];
+        }
+        return salt;
+    }
+
+    /** 验证 salt 缓冲区前 {@code saltLength} 字节与 nonce 的摘要是否以 ASCII hex {@code target} 开头。 */
+    boolean verify(int saltLength, String nonceText, byte[] target, int targetLength) {
+        if (targetLength > HASH_BYTES * 2) {
+            return false;
+        }
+        digest.update(salt, 0, saltLength);
+        if (!updateAscii(nonceText)) {
+            // 非 ASCII nonce 必须与 salt 拼接后整体 UTF-8 编码，才能与字符串拼接的结果逐字节一致。
+            digest.reset();
+            String text = new String(salt, 0, saltLength, StandardCharsets.US_ASCII) + nonceText;
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+        }
+        finish();
+        for (int index = 0; index < targetLength; index++) {
+            if (asciiHexNibble(target[index]) != nibble(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 验证 {@code salt + nonce} 的摘要是否以 hex {@code target} 开头，target 不区分大小写。 */
+    boolean verify(String saltText, String nonceText, String target) {
+        if (target.length() > HASH_BYTES * 2) {
+            return false;
+        }
+        if (isAscii(saltText) && isAscii(nonceText)) {
+            int length = saltText.length();
+            byte[] buffer = saltBuffer(length);
+            for (int index = 0; index < length; index++) {
+                buffer[index] = (byte) saltText.charAt(index);
+            }
+            digest.update(buffer, 0, length);
+            updateAscii(nonceText);
+        } else {
+            digest.update((saltText + nonceText).getBytes(StandardCharsets.UTF_8));
+        }
+        finish();
+        for (int index = 0; index < target.length(); index++) {
+            if (asciiHexNibble(target.charAt(index)) != nibble(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        Sha256.release(digest);
+    }
+
+    private boolean updateAscii(String text) {
+        int length = text.length();
+        if (nonce.length < length) {
+            nonce = new byte[Math.max(length, nonce.length * 2)];
+        }
+        for (int index = 0; index < length; index++) {
+            char value = text.charAt(index);
+            if (value > 0x7f) {
+                return false;
+            }
+            nonce[index] = (byte) value;
+        }
+        digest.update(nonce, 0, length);
+        return true;
+    }
+
+    private void finish() {
+        try {
+            digest.digest(hash, 0, HASH_BYTES);
+        } catch (DigestException exception) {
+            throw new IllegalStateException("SHA-256 摘要输出失败", exception);
+        }
+    }
+
+    private int nibble(int index) {
+        int value = hash[index >> 1] & 0xff;
+        return (index & 1) == 0 ? value >>> 4 : value & 0xf;
+    }
+
+    private static boolean isAscii(String value) {
+        for (int index = 0; index < value.length(); index++) {
+            if (value.charAt(index) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int asciiHexNibble(int value) {
+        if (value >= '0' && value <= '9') {
+            return value - '0';
+        }
+        if (value >= 'a' && value <= 'f') {
+            return value - 'a' + 10;
+        }
+        if (value >= 'A' && value <= 'F') {
+            return value - 'A' + 10;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,92 @@
+package github.luckygc.cap.internal.rsw;
+
+import java.math.BigInteger;
+
+/**
+ * 奇素数模数下固定底数的模幂预计算表。
+ *
+ * <p>指数按 {@value #WINDOW_BITS} 位窗口切分，表中以 {@link MontgomeryField} 的 Montgomery 形式保存 {@code base^(d *
+ * 2^(WINDOW_BITS * i))}（{@code d} 为 1 到 15）。一次模幂只需对每个非零窗口做一次 Montgomery 乘法，不再有平方；256 位指数最多 64
+ * 次乘法。表在构造后只读，可被多线程共享。
+ */
+final class FixedBaseTable {
+
+    static final int WINDOW_BITS = 4;
+    private static final int DIGITS = (1 << WINDOW_BITS) - 1;
+
+    private final MontgomeryField field;
+    private final int exponentBytes;
+    private final int[][] powers;
+
+    /** 为 {@code base mod m} 构建覆盖 {@code exponentBytes} 字节大端指数的表。 */
+    FixedBaseTable(BigInteger base, MontgomeryField field, int exponentBytes) {
+        if (exponentBytes < 1) {
+            throw new IllegalArgumentException("fixed-base table parameters are invalid");
+        }
+        this.field = field;
+        this.exponentBytes = exponentBytes;
+        int windows = exponentBytes * Byte.SIZE / WINDOW_BITS;
+        powers = new int[windows * DIGITS][];
+        int[] scratch = field.scratch();
+        int[] windowBase = field.toMontgomery(base);
+        for (int window = 0; window < windows; window++) {
+            int offset = window * DIGITS;
+            powers[offset] = windowBase.clone();
+            for (int digit = 1; digit < DIGITS; digit++) {
+                int[] power = field.newElement();
+                field.multiply(powers[offset + digit - 1], windowBase, power, scratch);
+                powers[offset + digit] = power;
+            }
+            field.multiply(powers[offset + DIGITS - 1], windowBase, windowBase, scratch);
+        }
+    }
+
+    /**
+     * 计算 {@code base^exponent}，以 Montgomery 形式写入 {@code out}。
+     *
+     * @param exponent 恰好 {@code exponentBytes} 字节的大端无符号指数
+     */
+    void pow(byte[] exponent, int[] out, int[] scratch) {
+        if (exponent.length != exponentBytes) {
+            throw new IllegalArgumentException("exponent exceeds fixed-base table");
+        }
+        boolean empty = true;
+        int last = exponentBytes - 1;
+        for (int index = 0; index < exponentBytes; index++) {
+            int value = exponent[last - index] & 0xff;
+            // 每个字节恰好包含两个 4 位窗口，低半字节在前。
+            for (int half = 0; half < 2; half++) {
+                int digit = (value >>> (half * WINDOW_BITS)) & DIGITS;
+                if (digit == 0) {
+                    continue;
+                }
+                int[] power = powers[(index * 2 + half) * DIGITS + digit - 1];
+                if (empty) {
+                    System.arraycopy(power, 0, out, 0, field.limbs);
+                    empty = false;
+                } else {
+                    field.multiply(out, power, out, scratch);
+                }
+            }
+        }
+        if (empty) {
+            field.one(out);
+        }
+    }
+
+    /** 计算 {@code base^exponent mod m} 的普通形式；分配结果对象，只用于构造期与测试。 */
+    BigInteger pow(BigInteger exponent) {
+        if (exponent.signum() < 0 || exponent.bitLength() > exponentBytes * Byte.SIZE) {
+            throw new IllegalArgumentException("exponent exceeds fixed-base table");
+        }
+        byte[] bytes = new byte[exponentBytes];
+        byte[] raw = exponent.toByteArray();
+        int copied = Math.min(raw.length, exponentBytes);
+        System.arraycopy(raw, raw.length - copied, bytes, exponentBytes - copied, copied);
+        int[] result = field.newElement();
+        int[] scratch = field.scratch();
+        pow(bytes, result, scratch);
+        field.reduce(result, result, scratch);
+        return MontgomeryField.toBigInteger(result, field.limbs);
+    }
+}
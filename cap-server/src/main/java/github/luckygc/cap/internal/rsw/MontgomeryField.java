@@ -0,0 +1,197 @@
+package github.luckygc.cap.internal.rsw;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * 奇模数下的定宽 Montgomery 运算。
+ *
+ * <p>元素为 {@link #limbs} 个 32 位小端 limb 的 {@code int[]}，{@code R = 2^(32 * limbs)}。乘法使用 CIOS
+ * 交错约减，结果写入调用方提供的数组，中间值只使用调用方传入的 {@link #scratch()} 缓冲区，请求路径不分配对象。构造后只读，可被多线程共享；元素与 scratch
+ * 缓冲区由调用方独占。
+ */
+final class MontgomeryField {
+
+    private static final long MASK = 0xffff_ffffL;
+
+    final int limbs;
+    private final BigInteger value;
+    private final int[] modulus;
+    private final int inverse;
+    private final int[] rSquared;
+    private final int[] one;
+
+    /** 为大于 1 的奇数模数构建运算核心。 */
+    MontgomeryField(BigInteger modulus) {
+        if (modulus.compareTo(BigInteger.ONE) <= 0 || !modulus.testBit(0)) {
+            throw new IllegalArgumentException("Montgomery modulus must be odd and greater than 1");
+        }
+        value = modulus;
+        limbs = (modulus.bitLength() + 31) >>> 5;
+        this.modulus = toLimbs(modulus, limbs);
+        // -m^-1 mod 2^32：牛顿迭代每轮使正确位数翻倍，奇数 m 的初值 m 已对低 3 位正确。
+        int m0 = this.modulus[0];
+        int estimate = m0;
+        for (int round = 0; round < 4; round++) {
+            estimate *= 2 - m0 * estimate;
+        }
+        inverse = -estimate;
+        BigInteger r = BigInteger.ONE.shiftLeft(32 * limbs);
+        rSquared = toLimbs(r.multiply(r).mod(modulus), limbs);
+        one = toLimbs(r.mod(modulus), limbs);
+    }
+
+    BigInteger modulus() {
+        return value;
+    }
+
+    int[] newElement() {
+        return new int[limbs];
+    }
+
+    /** {@link #multiply} 与 {@link #reduce} 所需的 scratch 缓冲区。 */
+    int[] scratch() {
+        return new int[limbs + 2];
+    }
+
+    /** 将 {@code value mod m} 转为 Montgomery 形式；只在构造期调用。 */
+    int[] toMontgomery(BigInteger number) {
+        int[] element = toLimbs(number.mod(value), limbs);
+        multiply(element, rSquared, element, scratch());
+        return element;
+    }
+
+    /** 将最多 {@link #limbs} 个 limb 的普通整数转为 Montgomery 形式；输入可以不小于 m，只要小于 R。 */
+    void toMontgomery(int[] number, int length, int[] out, int[] scratch) {
+        for (int index = 0; index < limbs; index++) {
+            out[index] = index < length ? number[index] : 0;
+        }
+        multiply(out, rSquared, out, scratch);
+    }
+
+    /** 写入 Montgomery 形式的 1。 */
+    void one(int[] out) {
+        System.arraycopy(one, 0, out, 0, limbs);
+    }
+
+    /**
+     * Montgomery 乘法 {@code out = a * b / R mod m}；{@code out} 可与输入相同。
+     *
+     * <p>要求 {@code a * b < m * R}；两个输入都小于 m，或一个小于 R 另一个小于 m 时均满足。
+     */
+    void multiply(int[] a, int[] b, int[] out, int[] t) {
+        int n = limbs;
+        Arrays.fill(t, 0, n + 2, 0);
+        for (int i = 0; i < n; i++) {
+            long ai = a[i] & MASK;
+            long carry = 0;
+            for (int j = 0; j < n; j++) {
+                long sum = (t[j] & MASK) + ai * (b[j] & MASK) + carry;
+                t[j] = (int) sum;
+                carry = sum >>> 32;
+            }
+            long sum = (t[n] & MASK) + carry;
+            t[n] = (int) sum;
+            t[n + 1] = (int) (sum >>> 32);
+            reduceStep(t);
+        }
+        finish(t, out);
+    }
+
+    /** 从 Montgomery 形式转回普通形式 {@code out = a / R mod m}；{@code out} 可与输入相同。 */
+    void reduce(int[] a, int[] out, int[] t) {
+        int n = limbs;
+        System.arraycopy(a, 0, t, 0, n);
+        t[n] = 0;
+        t[n + 1] = 0;
+        for (int i = 0; i < n; i++) {
+            reduceStep(t);
+        }
+        finish(t, out);
+    }
+
+    /** 模减 {@code out = (a - b) mod m}，两个输入都必须小于 m；{@code out} 可与输入相同。 */
+    void subtract(int[] a, int[] b, int[] out) {
+        long borrow = 0;
+        for (int index = 0; index < limbs; index++) {
+            long difference = (a[index] & MASK) - (b[index] & MASK) - borrow;
+            out[index] = (int) difference;
+            borrow = difference >>> 63;
+        }
+        if (borrow != 0) {
+            long carry = 0;
+            for (int index = 0; index < limbs; index++) {
+                long sum = (out[index] & MASK) + (modulus[index] & MASK) + carry;
+                out[index] = (int) sum;
+                carry = sum >>> 32;
+            }
+        }
+    }
+
+    /** 一轮约减：加上 {@code u * m} 使最低 limb 归零，再整体右移一个 limb。 */
+    private void reduceStep(int[] t) {
+        int n = limbs;
+        long u = (t[0] * inverse) & MASK;
+        long sum = (t[0] & MASK) + u * (modulus[0] & MASK);
+        long carry = sum >>> 32;
+        for (int j = 1; j < n; j++) {
+            sum = (t[j] & MASK) + u * (modulus[j] & MASK) + carry;
+            t[j - 1] = (int) sum;
+            carry = sum >>> 32;
+        }
+        sum = (t[n] & MASK) + carry;
+        t[n - 1] = (int) sum;
+        t[n] = t[n + 1] + (int) (sum >>> 32);
+        t[n + 1] = 0;
+    }
+
+    /** CIOS 结果小于 2m，必要时减一次 m。 */
+    private void finish(int[] t, int[] out) {
+        int n = limbs;
+        if (t[n] == 0 && compare(t, modulus, n) < 0) {
+            System.arraycopy(t, 0, out, 0, n);
+            return;
+        }
+        long borrow = 0;
+        for (int index = 0; index < n; index++) {
+            long difference = (t[index] & MASK) - (modulus[index] & MASK) - borrow;
+            out[index] = (int) difference;
+            borrow = difference >>> 63;
+        }
+    }
+
+    private static int compare(int[] left, int[] right, int length) {
+        for (int index = length - 1; index >= 0; index--) {
+            if (left[index] != right[index]) {
+                return Integer.compareUnsigned(left[index], right[index]);
+            }
+        }
+        return 0;
+    }
+
+    /** 非负整数转为定长小端 limb。 */
+    static int[] toLimbs(BigInteger number, int length) {
+        if (number.signum() < 0 || number.bitLength() > 32 * length) {
+            throw new IllegalArgumentException("value does not fit in limbs");
+        }
+        int[] result = new int[length];
+        for (int index = 0; index < length; index++) {
+            result[index] = number.shiftRight(32 * index).intValue();
+        }
+        return result;
+    }
+
+    /** 小端 limb 转为非负整数；只用于构造期与测试。 */
+    static BigInteger toBigInteger(int[] number, int length) {
+        byte[] bytes = new byte[length * 4 + 1];
+        for (int index = 0; index < length; index++) {
+            int offset = bytes.length - 4 * index;
+            int limb = number[index];
+            bytes[offset - 1] = (byte) limb;
+            bytes[offset - 2] = (byte) (limb >>> 8);
+            bytes[offset - 3] = (byte) (limb >>> 16);
+            bytes[offset - 4] = (byte) (limb >>> 24);
+        }
+        return new BigInteger(bytes);
+    }
+}
@@ -1,10 +1,13 @@
 package github.luckygc.cap.internal.rsw;
 
 import github.luckygc.cap.RswKeyPair;
+import github.luckygc.cap.internal.crypto.PrimitivePool;
+import github.luckygc.cap.internal.crypto.RswKeyCodec;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Objects;
 import org.jspecify.annotations.Nullable;
@@ -17,6 +20,8 @@ public final class RswSupport {
     private static final BigInteger TWO = BigInteger.TWO;
     private static final int R_BYTES = 32;
     private static final int MAX_FIXED_HEX_LENGTH = 8192 / 4;
+    private static final long LIMB_MASK = 0xffff_ffffL;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
 
     private RswSupport() {}
 
@@ -32,16 +37,32 @@ public final class RswSupport {
 
     /** 使用调用方随机源构建 minter，供内部协议组合器和确定性互操作测试注入。 */
     public static RswMinter createMinter(RswKeyPair keyPair, int t, SecureRandom random) {
+        return createMinter(key(keyPair), t, random);
+    }
+
+    /** 取出已通过素性测试的 {@link RswKeyPair} 的素因子。 */
+    public static RswKeyCodec.Decoded key(RswKeyPair keyPair) {
         Objects.requireNonNull(keyPair, "keyPair");
+        return new RswKeyCodec.Decoded(
+                keyPair.bits(), new BigInteger(keyPair.primeP()), new BigInteger(keyPair.primeQ()));
+    }
+
+    /** 直接由已确认的素因子构建 minter，不经过 {@link RswKeyPair} 的素性测试。 */
+    public static RswMinter createMinter(RswKeyCodec.Decoded key, int t) {
+        return createMinter(key, t, new SecureRandom());
+    }
+
+    private static RswMinter createMinter(RswKeyCodec.Decoded key, int t, SecureRandom random) {
+        Objects.requireNonNull(key, "key");
         Objects.requireNonNull(random, "random");
         validateT(t);
-        BigInteger modulus = new BigInteger(keyPair.modulus());
-        int modulusBytes = (keyPair.bits() + 7) / 8;
+        BigInteger modulus = key.modulus();
+        int modulusBytes = (key.bits() + 7) / 8;
         BigInteger generator =
                 unsignedRandom(random, modulusBytes)
                         .mod(modulus.subtract(BigInteger.valueOf(3)))
                         .add(TWO);
-        return new RswMinter(keyPair, t, generator, random);
+        return new RswMinter(key, t, generator, random);
     }
 
     /** 比较 expected y 与客户端声明值，忽略合法十六进制的大小写和前导零。 */
@@ -116,58 +137,79 @@ public final class RswSupport {
     /** 一次 RSW challenge；y 只应保存到服务端加密元数据中。 */
     public record MintedChallenge(String modulus, String x, String y, int t) {}
 
-    /** 针对一个密钥与连续平方次数预计算完成的线程安全 minter。 */
+    /**
+     * 针对一个密钥与连续平方次数预计算完成的线程安全 minter。
+     *
+     * <p>四个固定底数各有一张 {@link FixedBaseTable}，模幂与 CRT 重组都在 {@link MontgomeryField} 的定宽 limb
+     * 上进行；每次铸造借用池中的 {@link MintWorkspace}，除输出 hex 字符串外不分配对象。
+     */
     public static final class RswMinter {
 
-        private final BigInteger modulus;
-        private final BigInteger primeP;
-        private final BigInteger primeQ;
-        private final BigInteger pMinusOne;
-        private final BigInteger qMinusOne;
         private final int t;
         private final int modulusBytes;
+        private final String modulusHex;
         private final BigInteger generator;
         private final BigInteger exponentP;
         private final BigInteger exponentQ;
-        private final BigInteger hP;
-        private final BigInteger hQ;
         private final BigInteger h;
-        private final BigInteger qInverseModP;
+        private final CrtHalf outer;
+        private final CrtHalf inner;
+        private final int[] innerPrime;
+        private final int[] innerInverse;
+        private final PrimitivePool<MintWorkspace> workspaces;
         private final SecureRandom random;
 
-        private RswMinter(RswKeyPair keyPair, int t, BigInteger generator, SecureRandom random) {
-            modulus = new BigInteger(keyPair.modulus());
-            primeP = new BigInteger(keyPair.primeP());
-            primeQ = new BigInteger(keyPair.primeQ());
-            pMinusOne = primeP.subtract(BigInteger.ONE);
-            qMinusOne = primeQ.subtract(BigInteger.ONE);
+        private RswMinter(
+                RswKeyCodec.Decoded key, int t, BigInteger generator, SecureRandom random) {
+            BigInteger modulus = key.modulus();
+            BigInteger primeP = key.primeP();
+            BigInteger primeQ = key.primeQ();
             this.t = t;
-            modulusBytes = (keyPair.bits() + 7) / 8;
+            modulusBytes = (key.bits() + 7) / 8;
+            modulusHex = fixedHex(modulus, modulusBytes);
             this.generator = generator;
-            exponentP = TWO.modPow(BigInteger.valueOf(t), pMinusOne);
-            exponentQ = TWO.modPow(BigInteger.valueOf(t), qMinusOne);
-            hP = generator.mod(primeP).modPow(exponentP, primeP);
-            hQ = generator.mod(primeQ).modPow(exponentQ, primeQ);
-            qInverseModP = primeQ.mod(primeP).modInverse(primeP);
-            h = crtCombine(hP, hQ);
+            exponentP = TWO.modPow(BigInteger.valueOf(t), primeP.subtract(BigInteger.ONE));
+            exponentQ = TWO.modPow(BigInteger.valueOf(t), primeQ.subtract(BigInteger.ONE));
+            BigInteger hP = generator.mod(primeP).modPow(exponentP, primeP);
+            BigInteger hQ = generator.mod(primeQ).modPow(exponentQ, primeQ);
+            BigInteger qInverseModP = primeQ.mod(primeP).modInverse(primeP);
+            h = hQ.add(primeQ.multiply(hP.subtract(hQ).multiply(qInverseModP).mod(primeP)));
+            // Garner 重组要求较短的素因子能直接转入较长素因子的 Montgomery 域，因此按 limb 数选择外层素因子；CRT 结果唯一，顺序不影响输出。
+            CrtHalf halfP = new CrtHalf(primeP, generator, hP);
+            CrtHalf halfQ = new CrtHalf(primeQ, generator, hQ);
+            boolean pOuter = halfP.field.limbs >= halfQ.field.limbs;
+            outer = pOuter ? halfP : halfQ;
+            inner = pOuter ? halfQ : halfP;
+            innerPrime = MontgomeryField.toLimbs(inner.prime, inner.field.limbs);
+            innerInverse =
+                    MontgomeryField.toLimbs(
+                            inner.prime.mod(outer.prime).modInverse(outer.prime),
+                            outer.field.limbs);
+            workspaces =
+                    new PrimitivePool<>(
+                            () ->
+                                    new MintWorkspace(
+                                            outer.field.limbs, inner.field.limbs, modulusBytes));
             this.random = random;
         }
 
         /** 采样一个 256 位无符号 r 并生成 challenge 与预期解答。 */
         public MintedChallenge mint() {
-            BigInteger r = unsignedRandom(random, R_BYTES);
-            BigInteger rP = r.mod(pMinusOne);
-            BigInteger rQ = r.mod(qMinusOne);
-            BigInteger x =
-                    crtCombine(
-                            generator.mod(primeP).modPow(rP, primeP),
-                            generator.mod(primeQ).modPow(rQ, primeQ));
-            BigInteger y = crtCombine(hP.modPow(rP, primeP), hQ.modPow(rQ, primeQ));
-            return new MintedChallenge(
-                    fixedHex(modulus, modulusBytes),
-                    fixedHex(x, modulusBytes),
-                    fixedHex(y, modulusBytes),
-                    t);
+            MintWorkspace work = workspaces.acquire();
+            try {
+                random.nextBytes(work.r);
+                byte[] outerExponent = outer.exponent(work.r, work.outerExponent);
+                byte[] innerExponent = inner.exponent(work.r, work.innerExponent);
+                outer.generatorTable.pow(outerExponent, work.xOuter, work.scratch);
+                outer.hTable.pow(outerExponent, work.yOuter, work.scratch);
+                inner.generatorTable.pow(innerExponent, work.xInner, work.scratch);
+                inner.hTable.pow(innerExponent, work.yInner, work.scratch);
+                String x = combine(work, work.xOuter, work.xInner);
+                String y = combine(work, work.yOuter, work.yInner);
+                return new MintedChallenge(modulusHex, x, y, t);
+            } finally {
+                workspaces.release(work);
+            }
         }
 
         /** 返回该 minter 的连续平方次数。 */
@@ -191,10 +233,107 @@ public final class RswSupport {
             return h;
         }
 
-        private BigInteger crtCombine(BigInteger residueP, BigInteger residueQ) {
-            BigInteger difference = residueP.subtract(residueQ).mod(primeP);
-            BigInteger coefficient = difference.multiply(qInverseModP).mod(primeP);
-            return residueQ.add(primeQ.multiply(coefficient));
+        /**
+         * Garner 重组：{@code x = xI + I * ((xO - xI) * I^-1 mod O)}，输入为两个素因子下的 Montgomery 形式余数，输出固定宽度
+         * hex。
+         */
+        private String combine(MintWorkspace work, int[] residueOuter, int[] residueInner) {
+            MontgomeryField outerField = outer.field;
+            MontgomeryField innerField = inner.field;
+            innerField.reduce(residueInner, work.innerPlain, work.scratch);
+            outerField.toMontgomery(
+                    work.innerPlain, innerField.limbs, work.coefficient, work.scratch);
+            outerField.subtract(residueOuter, work.coefficient, work.coefficient);
+            // Montgomery 形式的差乘以普通形式的逆元，结果直接是普通形式。
+            outerField.multiply(work.coefficient, innerInverse, work.coefficient, work.scratch);
+            int[] wide = work.wide;
+            Arrays.fill(wide, 0);
+            System.arraycopy(work.innerPlain, 0, wide, 0, innerField.limbs);
+            for (int i = 0; i < innerField.limbs; i++) {
+                long prime = innerPrime[i] & LIMB_MASK;
+                long carry = 0;
+                for (int j = 0; j < outerField.limbs; j++) {
+                    long sum =
+                            (wide[i + j] & LIMB_MASK)
+                                    + prime * (work.coefficient[j] & LIMB_MASK)
+                                    + carry;
+                    wide[i + j] = (int) sum;
+                    carry = sum >>> 32;
+                }
+                for (int k = i + outerField.limbs; carry != 0; k++) {
+                    long sum = (wide[k] & LIMB_MASK) + carry;
+                    wide[k] = (int) sum;
+                    carry = sum >>> 32;
+                }
+            }
+            byte[] hex = work.hex;
+            for (int index = 0; index < modulusBytes; index++) {
+                int position = modulusBytes - 1 - index;
+                int value = wide[position >>> 2] >>> ((position & 3) * Byte.SIZE);
+                hex[index * 2] = HEX_DIGITS[(value >>> 4) & 0xf];
+                hex[index * 2 + 1] = HEX_DIGITS[value & 0xf];
+            }
+            return new String(hex, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /** 一个素因子上的固定底数表与指数约减信息。 */
+    private static final class CrtHalf {
+
+        private final BigInteger prime;
+        private final BigInteger primeMinusOne;
+        private final MontgomeryField field;
+        private final FixedBaseTable generatorTable;
+        private final FixedBaseTable hTable;
+
+        private CrtHalf(BigInteger prime, BigInteger generator, BigInteger h) {
+            this.prime = prime;
+            primeMinusOne = prime.subtract(BigInteger.ONE);
+            field = new MontgomeryField(prime);
+            // 两个底数在 minter 生命周期内不变，r 固定为 256 位，因此每次铸造只需查表模乘。
+            generatorTable = new FixedBaseTable(generator, field, R_BYTES);
+            hTable = new FixedBaseTable(h, field, R_BYTES);
+        }
+
+        /** 返回 {@code r mod (prime - 1)} 的定长大端字节；素因子超过 256 位时 r 本身即为余数，不做任何运算。 */
+        private byte[] exponent(byte[] r, byte[] target) {
+            if (primeMinusOne.bitLength() > R_BYTES * Byte.SIZE) {
+                return r;
+            }
+            byte[] reduced = new BigInteger(1, r).mod(primeMinusOne).toByteArray();
+            Arrays.fill(target, (byte) 0);
+            int copied = Math.min(reduced.length, R_BYTES);
+            System.arraycopy(reduced, reduced.length - copied, target, R_BYTES - copied, copied);
+            return target;
+        }
+    }
+
+    /** 单次铸造独占的缓冲区，由 {@link PrimitivePool} 复用。 */
+    private static final class MintWorkspace {
+
+        private final byte[] r = new byte[R_BYTES];
+        private final byte[] outerExponent = new byte[R_BYTES];
+        private final byte[] innerExponent = new byte[R_BYTES];
+        private final int[] scratch;
+        private final int[] xOuter;
+        private final int[] yOuter;
+        private final int[] xInner;
+        private final int[] yInner;
+        private final int[] innerPlain;
+        private final int[] coefficient;
+        private final int[] wide;
+        private final byte[] hex;
+
+        private MintWorkspace(int outerLimbs, int innerLimbs, int modulusBytes) {
+            scratch = new int[Math.max(outerLimbs, innerLimbs) + 2];
+            xOuter = new int[outerLimbs];
+            yOuter = new int[outerLimbs];
+            xInner = new int[innerLimbs];
+            yInner = new int[innerLimbs];
+            innerPlain = new int[innerLimbs];
+            coefficient = new int[outerLimbs];
+            wide = new int[Math.max(outerLimbs + innerLimbs, (modulusBytes + 3) / 4)];
+            hex = new byte[modulusBytes * 2];
         }
     }
 }
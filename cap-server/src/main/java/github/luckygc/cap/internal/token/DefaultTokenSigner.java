@@ -1,8 +1,7 @@
 package github.luckygc.cap.internal.token;
 
+import github.luckygc.cap.internal.crypto.Sha256;
 import java.nio.charset.StandardCharsets;
-import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.HexFormat;
 import java.util.Objects;
@@ -39,12 +38,7 @@ public final class DefaultTokenSigner {
     }
 
     private static byte[] sha256(String value) {
-        try {
-            return MessageDigest.getInstance("SHA-256")
-                    .digest(value.getBytes(StandardCharsets.UTF_8));
-        } catch (GeneralSecurityException exception) {
-            throw new IllegalStateException("运行环境缺少 SHA-256", exception);
-        }
+        return Sha256.digest(value.getBytes(StandardCharsets.UTF_8));
     }
 
     public record SignedToken(String token, String tokenKey) {
@@ -1,21 +1,29 @@
 package github.luckygc.cap.replay;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.Expiry;
-import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.github.benmanes.caffeine.cache.Ticker;
-import github.luckygc.cap.NonceConsumer;
+import github.luckygc.cap.BinaryNonceConsumer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.time.Duration;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.HexFormat;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jspecify.annotations.Nullable;
 
 /**
- * 使用本机 Caffeine 缓存原子消费 JWT 签名，仅保证单 JVM 内的防重放。缓存采用硬容量，签名在 TTL 内不会提前淘汰；容量耗尽时抛出异常。默认容量为 100000，可配置范围为
+ * 在本机内存中原子消费 JWT 签名，仅保证单 JVM 内的防重放。缓存采用硬容量，签名在 TTL 内不会提前淘汰；容量耗尽时抛出异常。默认容量为 100000，可配置范围为
  * 1..10000000。
+ *
+ * <p>签名只在分段并发哈希表中保存一份，准入不持有全局锁。到期条目按截止时间挂入时间轮桶，消费时顺带回收已经整体过期的桶，每个条目只被回收一次，因此单次消费的摊还成本与当前占用量无关。
+ * 类名沿用早期基于 Caffeine 的实现，时间源仍使用 Caffeine {@link Ticker}。
+ *
+ * <p>32 字节原始签名与 64 位十六进制签名都按四个 long 保存为同一个 key，不再为每个签名保留 64 字符字符串；其他字符串按原值作为 key。
  */
-public final class CaffeineNonceConsumer implements NonceConsumer {
+public final class CaffeineNonceConsumer implements BinaryNonceConsumer {
 
     public static final long DEFAULT_MAXIMUM_SIZE = 100_000;
 
@@ -24,11 +32,25 @@ public final class CaffeineNonceConsumer implements NonceConsumer {
     private static final Duration MAXIMUM_TTL = Duration.ofHours(24);
     private static final long MINIMUM_TTL_NANOS = 1;
     private static final long MAXIMUM_TTL_NANOS = MAXIMUM_TTL.toNanos();
+    // 每个桶覆盖 2^32 ns（约 4.3 秒）；32768 个桶覆盖约 39 小时，大于最大 TTL，一圈内同一桶不会混入两轮截止时间。
+    private static final int TICK_SHIFT = 32;
+    private static final int WHEEL_SLOTS = 1 << 15;
+    private static final int WHEEL_MASK = WHEEL_SLOTS - 1;
+    private static final int SIGNATURE_LENGTH = 32;
+    private static final int SIGNATURE_HEX_LENGTH = 64;
+    private static final VarHandle SIGNATURE_LONG =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final HexFormat HEX = HexFormat.of();
 
-    private final Cache<String, Long> cache;
-    private final Map<String, Long> deadlines = new LinkedHashMap<>();
+    private final ConcurrentHashMap<Object, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<@Nullable Entry> wheel =
+            new AtomicReferenceArray<>(WHEEL_SLOTS);
+    private final AtomicLong size = new AtomicLong();
+    private final ReentrantLock sweepLock = new ReentrantLock();
     private final long maximumSize;
     private final Ticker ticker;
+    // 已整体回收的最后一个 tick，仅在 sweepLock 内写入，schedule 无锁读取。
+    private volatile long sweptTick;
 
     /** 创建默认容量为 100000 的单 JVM 消费者。缓存采用硬容量，签名在 TTL 内不会提前淘汰，容量耗尽时抛出异常；可配置容量范围为 1..10000000。 */
     public CaffeineNonceConsumer() {
@@ -46,45 +68,187 @@ public final class CaffeineNonceConsumer implements NonceConsumer {
         }
         this.ticker = Objects.requireNonNull(ticker, "ticker");
         this.maximumSize = maximumSize;
-        cache =
-                Caffeine.newBuilder()
-                        .executor(Runnable::run)
-                        .ticker(ticker)
-                        .expireAfter(new PerEntryExpiry())
-                        .removalListener(this::onRemoval)
-                        .build();
+        sweptTick = tick(ticker.read()) - 1;
     }
 
     @Override
-    public synchronized boolean consume(String signatureHex, Duration ttl) {
+    public boolean consume(String signatureHex, Duration ttl) {
         Objects.requireNonNull(signatureHex, "signatureHex");
         Objects.requireNonNull(ttl, "ttl");
+        return claim(key(signatureHex), ttl);
+    }
+
+    @Override
+    public boolean consume(byte[] signature, Duration ttl) {
+        Objects.requireNonNull(signature, "signature");
+        Objects.requireNonNull(ttl, "ttl");
+        if (signature.length != SIGNATURE_LENGTH) {
+            throw new IllegalArgumentException("signature 必须是 32 字节");
+        }
+        return claim(
+                new SignatureKey(
+                        (long) SIGNATURE_LONG.get(signature, 0),
+                        (long) SIGNATURE_LONG.get(signature, 8),
+                        (long) SIGNATURE_LONG.get(signature, 16),
+                        (long) SIGNATURE_LONG.get(signature, 24)),
+                ttl);
+    }
+
+    private boolean claim(Object key, Duration ttl) {
         long ttlNanos = clampTtl(ttl);
         long now = ticker.read();
-        cache.cleanUp();
-        deadlines.entrySet().removeIf(entry -> entry.getValue() - now <= 0);
-        if (deadlines.containsKey(signatureHex)) {
-            return false;
-        }
-        if (deadlines.size() >= maximumSize) {
-            throw new IllegalStateException("nonce cache capacity exhausted");
+        if (sweepLock.tryLock()) {
+            try {
+                sweepElapsed(now);
+            } finally {
+                sweepLock.unlock();
+            }
         }
         long deadline = now + ttlNanos;
-        deadlines.put(signatureHex, deadline);
-        cache.put(signatureHex, deadline);
-        return true;
+        while (true) {
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                if (existing.deadline - now > 0) {
+                    return false;
+                }
+                // 已过期但尚未回收：原地替换，复用表中已有的 key 实例，占用量不变。
+                Entry replacement = new Entry(existing.key, deadline);
+                if (entries.replace(key, existing, replacement)) {
+                    schedule(replacement);
+                    return true;
+                }
+                continue;
+            }
+            reserve(now);
+            Entry created = new Entry(key, deadline);
+            if (entries.putIfAbsent(key, created) == null) {
+                schedule(created);
+                return true;
+            }
+            size.decrementAndGet();
+        }
     }
 
-    synchronized long estimatedSize() {
-        return deadlines.size();
+    long estimatedSize() {
+        return size.get();
     }
 
     void cleanUp() {
-        cache.cleanUp();
+        long now = ticker.read();
+        sweepLock.lock();
+        try {
+            sweepElapsed(now);
+            sweepSlot(tick(now), now);
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    private void reserve(long now) {
+        if (tryReserve()) {
+            return;
+        }
+        // 容量压力下还需回收当前 tick 内已到期的条目，保证硬容量按精确截止时间释放。
+        sweepLock.lock();
+        try {
+            sweepElapsed(now);
+            sweepSlot(tick(now), now);
+        } finally {
+            sweepLock.unlock();
+        }
+        if (!tryReserve()) {
+            throw new IllegalStateException("nonce cache capacity exhausted");
+        }
+    }
+
+    private boolean tryReserve() {
+        while (true) {
+            long current = size.get();
+            if (current >= maximumSize) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 把条目挂到截止 tick 的桶；调用方读钟后其他线程可能已扫过该 tick，此时改挂到下一个未扫描的 tick，否则条目要等时间轮转满一圈才回收。挂入期间扫描越过目标 tick
+     * 时在锁内重扫该桶。
+     */
+    private void schedule(Entry entry) {
+        long tick = Math.max(tick(entry.deadline), sweptTick + 1);
+        int slot = (int) (tick & WHEEL_MASK);
+        while (true) {
+            Entry head = wheel.get(slot);
+            entry.next = head;
+            if (wheel.compareAndSet(slot, head, entry)) {
+                break;
+            }
+        }
+        if (sweptTick >= tick) {
+            sweepLock.lock();
+            try {
+                sweepSlot(tick, ticker.read());
+            } finally {
+                sweepLock.unlock();
+            }
+        }
+    }
+
+    /** 回收截止到上一个完整 tick 的所有桶；时钟长时间停滞后最多转一圈。先发布 sweptTick 再扫描，并发挂入的条目由 schedule 复查。 */
+    private void sweepElapsed(long now) {
+        long lastCompleteTick = tick(now) - 1;
+        long pending = lastCompleteTick - sweptTick;
+        if (pending <= 0) {
+            return;
+        }
+        long first = pending > WHEEL_SLOTS ? lastCompleteTick - WHEEL_SLOTS + 1 : sweptTick + 1;
+        sweptTick = lastCompleteTick;
+        for (long tick = first; tick <= lastCompleteTick; tick++) {
+            sweepSlot(tick, now);
+        }
+    }
+
+    /** 摘下整个桶，删除已到期条目，未到期条目重新挂回原桶。 */
+    private void sweepSlot(long tick, long now) {
+        int slot = (int) (tick & WHEEL_MASK);
+        Entry entry = wheel.getAndSet(slot, null);
+        while (entry != null) {
+            Entry next = entry.next;
+            entry.next = null;
+            if (entry.deadline - now <= 0) {
+                // 条目可能已被同 key 的新截止时间替换；只删除仍指向本节点的映射。
+                if (entries.remove(entry.key, entry)) {
+                    size.decrementAndGet();
+                }
+            } else if (entries.get(entry.key) == entry) {
+                schedule(entry);
+            }
+            entry = next;
+        }
+    }
+
+    /** 十六进制签名与原始签名映射到同一个 key；其他字符串原样使用。 */
+    private static Object key(String signatureHex) {
+        if (signatureHex.length() != SIGNATURE_HEX_LENGTH) {
+            return signatureHex;
+        }
+        for (int index = 0; index < SIGNATURE_HEX_LENGTH; index++) {
+            if (!HexFormat.isHexDigit(signatureHex.charAt(index))) {
+                return signatureHex;
+            }
+        }
+        return new SignatureKey(
+                HEX.fromHexDigitsToLong(signatureHex, 0, 16),
+                HEX.fromHexDigitsToLong(signatureHex, 16, 32),
+                HEX.fromHexDigitsToLong(signatureHex, 32, 48),
+                HEX.fromHexDigitsToLong(signatureHex, 48, 64));
     }
 
-    private synchronized void onRemoval(String key, Long deadlineNanos, RemovalCause cause) {
-        deadlines.remove(key, deadlineNanos);
+    private static long tick(long nanos) {
+        return nanos >> TICK_SHIFT;
     }
 
     private static long clampTtl(Duration ttl) {
@@ -97,23 +261,19 @@ public final class CaffeineNonceConsumer implements NonceConsumer {
         return Math.max(MINIMUM_TTL_NANOS, ttl.toNanos());
     }
 
-    private static final class PerEntryExpiry implements Expiry<String, Long> {
+    /** 表值兼时间轮节点；key 引用与表键为同一实例。 */
+    private static final class Entry {
 
-        @Override
-        public long expireAfterCreate(String key, Long deadlineNanos, long currentTime) {
-            return Math.max(0, deadlineNanos - currentTime);
-        }
+        private final Object key;
+        private final long deadline;
+        private @Nullable Entry next;
 
-        @Override
-        public long expireAfterUpdate(
-                String key, Long ttlNanos, long currentTime, long currentDuration) {
-            return currentDuration;
-        }
-
-        @Override
-        public long expireAfterRead(
-                String key, Long ttlNanos, long currentTime, long currentDuration) {
-            return currentDuration;
+        private Entry(Object key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
         }
     }
+
+    /** 32 字节签名按大端拆成的四个 long。 */
+    private record SignatureKey(long first, long second, long third, long fourth) {}
 }
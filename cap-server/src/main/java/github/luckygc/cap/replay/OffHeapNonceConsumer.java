@@ -0,0 +1,224 @@
+package github.luckygc.cap.replay;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import github.luckygc.cap.BinaryNonceConsumer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 在堆外固定内存的开放寻址表中原子消费 JWT 签名，仅保证单 JVM 内的防重放，适合千万级签名。默认容量为 1000000，可配置范围为 1..25000000。
+ *
+ * <p>每个槽位 36 字节：4 字节到期 tick（约 1.07 秒一格）加 32 字节原始签名；槽位数为不小于 4/3 倍容量的 2 的幂，构造时一次性分配为 direct
+ * buffer，之后不随占用量增长，也不参与 GC 扫描。分配受 {@code -XX:MaxDirectMemorySize} 约束，consumer 不可达后由 GC 释放。
+ *
+ * <p>同一签名的消费经同一把分段锁串行化，槽位用 CAS 占用后写入签名、再发布到期 tick，已到期的槽位原地复用。写入不设探测窗口，一直探测到第一个空闲或到期槽位，
+ * 因此未到期签名不超过容量时写入总会成功；只有所有槽位都被未到期签名占用时才抛出异常，TTL 内的签名不会被淘汰。到期槽位不会回到空闲状态，查找因此不能以空闲槽位为终点：每 16 个起始槽位另用
+ * 4 字节堆内存记录写入过的最大探测距离，查找只扫描到该距离为止。到期时间向上取整到 tick，签名最多比 TTL 多保留约 2 秒。签名必须是 64 位十六进制（库生成的 HMAC-SHA256
+ * 签名），否则抛出 {@link IllegalArgumentException}。
+ */
+public final class OffHeapNonceConsumer implements BinaryNonceConsumer {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1_000_000;
+
+    private static final long MINIMUM_MAXIMUM_SIZE = 1;
+    private static final long MAXIMUM_MAXIMUM_SIZE = 25_000_000;
+    private static final int SIGNATURE_LENGTH = 32;
+    private static final int SIGNATURE_HEX_LENGTH = 64;
+    private static final int KEY_OFFSET = 4;
+    private static final int SLOT_BYTES = KEY_OFFSET + 32;
+    private static final int GROUP_SHIFT = 4;
+    private static final int STRIPES = 256;
+    // 到期 tick 从 1 起算；0 表示从未使用，-1 表示正在写入。
+    private static final int EMPTY = 0;
+    private static final int BUSY = -1;
+    private static final int TICK_SHIFT = 30;
+    private static final long MAXIMUM_TTL_NANOS = Duration.ofHours(24).toNanos();
+    private static final VarHandle EXPIRY =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle REACH = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle SIGNATURE_LONG =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final ByteBuffer table;
+    private final int mask;
+    // 每组起始槽位写入过的最大探测距离，只增不减。
+    private final int[] reaches;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Ticker ticker;
+    private final long origin;
+
+    /** 创建默认容量为 1000000 的单 JVM 消费者，约占 72 MiB 堆外内存。 */
+    public OffHeapNonceConsumer() {
+        this(DEFAULT_MAXIMUM_SIZE, Ticker.systemTicker());
+    }
+
+    /** 创建指定容量的单 JVM 消费者；容量允许范围为 1..25000000，堆外内存为槽位数乘 36 字节。 */
+    public OffHeapNonceConsumer(long maximumSize) {
+        this(maximumSize, Ticker.systemTicker());
+    }
+
+    OffHeapNonceConsumer(long maximumSize, Ticker ticker) {
+        if (maximumSize < MINIMUM_MAXIMUM_SIZE || maximumSize > MAXIMUM_MAXIMUM_SIZE) {
+            throw new IllegalArgumentException("maximumSize 必须在 1 到 25000000 之间");
+        }
+        this.ticker = Objects.requireNonNull(ticker, "ticker");
+        int slots = slotCount(maximumSize);
+        table = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+        mask = slots - 1;
+        reaches = new int[Math.max(1, slots >>> GROUP_SHIFT)];
+        for (int index = 0; index < STRIPES; index++) {
+            stripes[index] = new ReentrantLock();
+        }
+        origin = ticker.read();
+    }
+
+    @Override
+    public boolean consume(String signatureHex, Duration ttl) {
+        Objects.requireNonNull(signatureHex, "signatureHex");
+        Objects.requireNonNull(ttl, "ttl");
+        if (signatureHex.length() != SIGNATURE_HEX_LENGTH) {
+            throw new IllegalArgumentException("signatureHex 必须是 64 位十六进制");
+        }
+        return claim(
+                HEX.fromHexDigitsToLong(signatureHex, 0, 16),
+                HEX.fromHexDigitsToLong(signatureHex, 16, 32),
+                HEX.fromHexDigitsToLong(signatureHex, 32, 48),
+                HEX.fromHexDigitsToLong(signatureHex, 48, 64),
+                ttl);
+    }
+
+    @Override
+    public boolean consume(byte[] signature, Duration ttl) {
+        Objects.requireNonNull(signature, "signature");
+        Objects.requireNonNull(ttl, "ttl");
+        if (signature.length != SIGNATURE_LENGTH) {
+            throw new IllegalArgumentException("signature 必须是 32 字节");
+        }
+        return claim(
+                (long) SIGNATURE_LONG.get(signature, 0),
+                (long) SIGNATURE_LONG.get(signature, 8),
+                (long) SIGNATURE_LONG.get(signature, 16),
+                (long) SIGNATURE_LONG.get(signature, 24),
+                ttl);
+    }
+
+    /** 当前表的堆外字节数。 */
+    long capacityBytes() {
+        return table.capacity();
+    }
+
+    private boolean claim(long key0, long key1, long key2, long key3, Duration ttl) {
+        // 签名是 HMAC 输出，低位直接作为起始槽位，另一段位选分段锁。
+        int home = (int) key0 & mask;
+        int group = home >>> GROUP_SHIFT;
+        ReentrantLock lock = stripes[(int) key1 & (STRIPES - 1)];
+        lock.lock();
+        try {
+            while (true) {
+                int now = now();
+                // 同一签名的先前写入与本次查找持有同一把分段锁，写入时抬高的探测距离在此必然可见。
+                int reach = (int) REACH.getAcquire(reaches, group);
+                int reusable = -1;
+                int reusableExpiry = EMPTY;
+                for (int probe = 0; probe <= mask; probe++) {
+                    if (reusable >= 0 && probe > reach) {
+                        // 同一签名不可能写在记录的探测距离之外。
+                        break;
+                    }
+                    int slot = (home + probe) & mask;
+                    int offset = slot * SLOT_BYTES;
+                    int expiry = (int) EXPIRY.getAcquire(table, offset);
+                    if (expiry == EMPTY) {
+                        // 槽位不会回到 EMPTY，同一签名先前只可能写在它之前。
+                        if (reusable < 0) {
+                            reusable = slot;
+                            reusableExpiry = EMPTY;
+                        }
+                        break;
+                    }
+                    if (expiry == BUSY) {
+                        // 同一签名已由分段锁串行化，正在写入的只能是其他签名。
+                        continue;
+                    }
+                    if (expiry - now > 0) {
+                        if (probe <= reach && matches(offset, key0, key1, key2, key3, expiry)) {
+                            return false;
+                        }
+                    } else if (reusable < 0) {
+                        reusable = slot;
+                        reusableExpiry = expiry;
+                    }
+                }
+                if (reusable < 0) {
+                    throw new IllegalStateException("nonce table full");
+                }
+                int offset = reusable * SLOT_BYTES;
+                if (!EXPIRY.compareAndSet(table, offset, reusableExpiry, BUSY)) {
+                    // 其他分段抢先占用了该槽位，重新扫描窗口。
+                    continue;
+                }
+                table.putLong(offset + KEY_OFFSET, key0);
+                table.putLong(offset + KEY_OFFSET + 8, key1);
+                table.putLong(offset + KEY_OFFSET + 16, key2);
+                table.putLong(offset + KEY_OFFSET + 24, key3);
+                raiseReach(group, (reusable - home) & mask);
+                EXPIRY.setRelease(table, offset, expiryTick(now, ttl));
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void raiseReach(int group, int distance) {
+        int reach = (int) REACH.getAcquire(reaches, group);
+        while (reach < distance) {
+            int witness = (int) REACH.compareAndExchangeRelease(reaches, group, reach, distance);
+            if (witness == reach) {
+                return;
+            }
+            reach = witness;
+        }
+    }
+
+    /** 读取签名后复查到期 tick；槽位在读取期间被复用时新 tick 必然不同，不会把拼接出的旧新签名当作命中。 */
+    private boolean matches(int offset, long key0, long key1, long key2, long key3, int expiry) {
+        boolean equal =
+                table.getLong(offset + KEY_OFFSET) == key0
+                        && table.getLong(offset + KEY_OFFSET + 8) == key1
+                        && table.getLong(offset + KEY_OFFSET + 16) == key2
+                        && table.getLong(offset + KEY_OFFSET + 24) == key3;
+        VarHandle.acquireFence();
+        return equal && (int) EXPIRY.getAcquire(table, offset) == expiry;
+    }
+
+    private int now() {
+        return (int) (((ticker.read() - origin) >> TICK_SHIFT) + 1);
+    }
+
+    /** 向上取整到 tick 并多留一格，保证签名在整个 TTL 内都被视为已消费。 */
+    private static int expiryTick(int now, Duration ttl) {
+        long nanos;
+        if (ttl.isZero() || ttl.isNegative()) {
+            nanos = 1;
+        } else if (ttl.compareTo(Duration.ofNanos(MAXIMUM_TTL_NANOS)) >= 0) {
+            nanos = MAXIMUM_TTL_NANOS;
+        } else {
+            nanos = ttl.toNanos();
+        }
+        return now + (int) ((nanos + (1L << TICK_SHIFT) - 1) >> TICK_SHIFT) + 1;
+    }
+
+    /** 不小于 4/3 倍容量的 2 的幂，负载因子不超过 0.75。 */
+    private static int slotCount(long maximumSize) {
+        long minimum = (maximumSize * 4 + 2) / 3;
+        return (int) Math.max(2, Long.highestOneBit(minimum - 1) << 1);
+    }
+}
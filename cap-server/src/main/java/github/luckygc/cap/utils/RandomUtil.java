@@ -17,12 +17,14 @@
 
 package github.luckygc.cap.utils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /** 与 capjs-core 线格式一致的 FNV-1a 与 xorshift32 工具。 */
 public final class RandomUtil {
 
     private static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
 
     private RandomUtil() {}
 
@@ -50,18 +52,51 @@ public final class RandomUtil {
         return hash;
     }
 
+    /** 从已有 FNV-1a 状态继续处理非负整数的十进制文本，结果与传入 {@code Integer.toString(value)} 相同但不分配字符串。 */
+    public static int fnv1aResume(int state, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("数值不能为负数");
+        }
+        int divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        int hash = state;
+        for (; divisor > 0; divisor /= 10) {
+            hash ^= '0' + value / divisor % 10;
+            hash += (hash << 1) + (hash << 4) + (hash << 7) + (hash << 8) + (hash << 24);
+        }
+        return hash;
+    }
+
     /** 从已有 32 位状态生成指定长度的十六进制字符串。 */
     public static String prngFromHash(int initialHash, int length) {
         if (length <= 0) {
             throw new IllegalArgumentException("长度必须大于0");
         }
+        byte[] result = new byte[length];
+        prngFromHash(initialHash, result, 0, length);
+        return new String(result, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 将 {@link #prngFromHash(int, int)} 的结果以 ASCII 小写十六进制写入 {@code target[offset, offset +
+     * length)}。
+     *
+     * <p>不分配任何对象，调用方可复用同一缓冲区并直接交给摘要计算。
+     */
+    public static void prngFromHash(int initialHash, byte[] target, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, target.length);
         int state = initialHash;
-        StringBuilder result = new StringBuilder(length + 7);
-        while (result.length() < length) {
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
             state = next(state);
-            result.append("%08x".formatted(state));
+            // 每个状态按大端顺序输出 8 个 hex 字符，末尾不足 8 个时截断，与 "%08x" 拼接后截取一致。
+            for (int shift = 28; shift >= 0 && position < end; shift -= 4) {
+                target[position++] = HEX_DIGITS[state >>> shift & 0xf];
+            }
         }
-        return result.substring(0, length);
     }
 
     private static int next(int state) {
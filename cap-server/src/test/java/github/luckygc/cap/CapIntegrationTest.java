@@ -277,6 +277,42 @@ class CapIntegrationTest {
         assertThat(calls).hasValue(2);
     }
 
+    @Test
+    @DisplayName("二进制 nonce consumer 直接收到 32 字节原始签名")
+    void binaryNonceConsumerReceivesRawSignature() {
+        List<byte[]> signatures = new ArrayList<>();
+        Cap cap =
+                Cap.builder(SECRET)
+                        .format1(1, 4, 1)
+                        .nonceConsumer(
+                                new BinaryNonceConsumer() {
+                                    @Override
+                                    public boolean consume(byte[] signature, Duration ttl) {
+                                        signatures.add(signature);
+                                        return signatures.size() == 1;
+                                    }
+                                })
+                        .build();
+        ChallengeResponse.Format1 challenge = (ChallengeResponse.Format1) cap.createChallenge();
+        RedeemRequest request = solve(challenge);
+
+        assertThat(cap.redeem(request)).isInstanceOf(RedeemResult.Success.class);
+        assertFailure(cap.redeem(request), "already_redeemed");
+        String token = challenge.token();
+        assertThat(signatures)
+                .hasSize(2)
+                .allSatisfy(
+                        signature ->
+                                assertThat(signature)
+                                        .hasSize(32)
+                                        .isEqualTo(
+                                                Base64.getUrlDecoder()
+                                                        .decode(
+                                                                token.substring(
+                                                                        token.lastIndexOf('.')
+                                                                                + 1))));
+    }
+
     @Test
     @DisplayName("listener 异常被隔离且成功失败事件各计数一次")
     void isolatesListenerAndCountsEvents() {
@@ -395,6 +431,104 @@ class CapIntegrationTest {
         assertThat(result).isInstanceOf(RedeemResult.Success.class);
     }
 
+    @Test
+    @DisplayName("STRICT 预生成池签发的 challenge 写入本次有效期与 scope 且可兑换")
+    void strictChallengePoolStampsPerCallOptions() {
+        List<CapEventListener.ChallengePoolEvent> refills = new ArrayList<>();
+        Cap cap =
+                Cap.builder(SECRET)
+                        .profile(CapProfile.STRICT)
+                        .rswKeyPair(RswKeyPair.generate(1024))
+                        .rswIterations(1)
+                        .challengePool(2, 0, Runnable::run)
+                        .eventListener(
+                                new CapEventListener() {
+                                    @Override
+                                    public void challengePoolRefilled(ChallengePoolEvent event) {
+                                        refills.add(event);
+                                    }
+                                })
+                        .build();
+        ChallengeOptions options =
+                ChallengeOptions.builder().ttl(Duration.ofMinutes(2)).scope("login").build();
+        long before = System.currentTimeMillis();
+        ChallengeResponse.Format2 first = (ChallengeResponse.Format2) cap.createChallenge(options);
+        ChallengeResponse.Format2 second = (ChallengeResponse.Format2) cap.createChallenge();
+
+        Map<String, Object> instrMeta = format2InstrumentationMetadata(first.token());
+        assertThat(first.expires())
+                .isBetween(before + 120_000, System.currentTimeMillis() + 120_000);
+        assertThat(((Number) instrMeta.get("expires")).longValue()).isEqualTo(first.expires());
+        assertThat(first.challenges().get(0).payload().get("x"))
+                .isNotEqualTo(second.challenges().get(0).payload().get("x"));
+        Map<String, Object> rsw = first.challenges().get(0).payload();
+        String y =
+                new BigInteger((String) rsw.get("x"), 16)
+                        .modPow(BigInteger.TWO, new BigInteger((String) rsw.get("N"), 16))
+                        .toString(16);
+        RedeemResult result =
+                cap.redeem(
+                        new RedeemRequest(
+                                first.token(),
+                                List.of(
+                                        Map.of("y", y),
+                                        format2InstrumentationSolution(first.token())),
+                                null,
+                                false,
+                                false),
+                        RedeemOptions.builder().expectedScope("login").build());
+
+        assertThat(result).isInstanceOf(RedeemResult.Success.class);
+        assertThat(refills)
+                .containsExactly(
+                        new CapEventListener.ChallengePoolEvent(2, 2, 0, 0, 2, 0),
+                        new CapEventListener.ChallengePoolEvent(2, 2, 2, 0, 4, 0));
+    }
+
+    @Test
+    @DisplayName("STRICT 后台生成 RSW 密钥前以 sha256-pow 代替 RSW，就绪后切换且旧 challenge 仍可兑换")
+    void strictBackgroundRswKeyGenerationServesInterimProtocols() {
+        List<Runnable> tasks = new ArrayList<>();
+        List<RswKeyPair> generated = new ArrayList<>();
+        Cap cap =
+                Cap.builder(SECRET)
+                        .profile(CapProfile.STRICT)
+                        .format1(1, 4, 1)
+                        .rswIterations(1)
+                        .backgroundRswKeyGeneration(tasks::add, generated::add)
+                        .build();
+
+        ChallengeResponse.Format2 interim = (ChallengeResponse.Format2) cap.createChallenge();
+        assertThat(interim.challenges())
+                .extracting(ChallengeResponse.ProtocolChallenge::protocol)
+                .containsExactly("sha256-pow", "instrumentation");
+        assertThat(tasks).hasSize(1);
+
+        tasks.get(0).run();
+        ChallengeResponse.Format2 full = (ChallengeResponse.Format2) cap.createChallenge();
+
+        assertThat(generated).singleElement().extracting(RswKeyPair::bits).isEqualTo(2048);
+        assertThat(full.challenges())
+                .extracting(ChallengeResponse.ProtocolChallenge::protocol)
+                .containsExactly("rsw", "instrumentation");
+        assertThat(full.challenges().get(0).payload().get("N"))
+                .isEqualTo(new BigInteger(generated.get(0).modulus()).toString(16));
+        Map<String, Object> pow = interim.challenges().get(0).payload();
+        long nonce = solvePow((String) pow.get("salt"), (String) pow.get("target"));
+        RedeemResult result =
+                cap.redeem(
+                        new RedeemRequest(
+                                interim.token(),
+                                List.of(
+                                        Map.of("nonce", nonce),
+                                        format2InstrumentationSolution(interim.token())),
+                                null,
+                                false,
+                                false));
+
+        assertThat(result).isInstanceOf(RedeemResult.Success.class);
+    }
+
     @Test
     @DisplayName("STRICT 精确使用 2048 bits、t=75000、level=3 与自动化拦截")
     void strictUsesExactSecurityDefaults() throws IOException {
@@ -512,6 +646,41 @@ class CapIntegrationTest {
                 .hasMessageNotContaining("sensitive-transformer-message");
     }
 
+    @Test
+    @DisplayName("受限 transformer 超时或并发已满时回退内置 transformer 并上报计数")
+    void slowInstrumentationTransformerFallsBackToBuiltIn() {
+        List<Runnable> tasks = new ArrayList<>();
+        List<CapEventListener.TransformerEvent> events = new ArrayList<>();
+        Cap cap =
+                Cap.builder(SECRET)
+                        .format1(1, 4, 1)
+                        .instrumentation(
+                                InstrumentationOptions.builder()
+                                        .transformer((script, level) -> "custom")
+                                        .build())
+                        .transformerExecution(tasks::add, 1, Duration.ofMillis(1), 1)
+                        .eventListener(
+                                new CapEventListener() {
+                                    @Override
+                                    public void instrumentationTransformed(TransformerEvent event) {
+                                        events.add(event);
+                                    }
+                                })
+                        .build();
+
+        ChallengeResponse.Format1 first = (ChallengeResponse.Format1) cap.createChallenge();
+        ChallengeResponse.Format1 second = (ChallengeResponse.Format1) cap.createChallenge();
+
+        assertThat(first.instrumentation()).isNotNull();
+        assertThat(second.instrumentation()).isNotNull();
+        assertThat(tasks).hasSize(1);
+        assertThat(events)
+                .extracting(CapEventListener.TransformerEvent::outcome)
+                .containsExactly(
+                        CapEventListener.TransformerOutcome.TIMED_OUT,
+                        CapEventListener.TransformerOutcome.SATURATED);
+    }
+
     @Test
     @DisplayName("nonce TTL 为 challenge 剩余时间且业务 token TTL 从兑换时计算")
     void usesRemainingNonceTtlAndRedeemTimeTokenTtl() {
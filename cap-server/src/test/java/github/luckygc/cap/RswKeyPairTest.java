@@ -4,6 +4,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 import static org.assertj.core.api.Assertions.assertThatNullPointerException;
 
+import github.luckygc.cap.internal.crypto.RswKeyCodec;
+import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.SplittableRandom;
 import org.junit.jupiter.api.DisplayName;
@@ -16,6 +18,7 @@ class RswKeyPairTest {
             "10205806259106035084377733293751571221634735407569037626604267995729452116937228627283539979168064533928037302797902948501155720031179330069960893973885513";
     private static final String Q =
             "10845464008756549268190555743979032034274036693428991709208796705469030851618683070577460536493687572459333035321711534755267580660241588700371851381830067";
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
     private static final String N =
             "110686704463476821019825213696084061631122038578773520214764097348026028038263427036367632926659401989612436691479529501092690042328247421761368664760264261838558998566846860941584253683441579544363196073466607148146474251177495731808807464348333652254559011736542375235851606763258133047869235323164679119371";
 
@@ -77,6 +80,80 @@ class RswKeyPairTest {
         assertThat(new java.math.BigInteger(keyPair.modulus()).bitLength()).isEqualTo(1024);
     }
 
+    @Test
+    @DisplayName("PEM 导出可由同一 secret 经 CapBuilder 导入并用于 RSW")
+    void pemLoadsThroughBuilderWithSameSecret() {
+        RswKeyPair keyPair = new RswKeyPair(1024, N, P, Q);
+
+        String pem = keyPair.toPem(SECRET);
+
+        assertThat(pem)
+                .startsWith("-----BEGIN CAP RSW KEY PAIR-----\n")
+                .endsWith("-----END CAP RSW KEY PAIR-----\n");
+        assertThat(pem.lines())
+                .allSatisfy(line -> assertThat(line.length()).isLessThanOrEqualTo(64));
+        assertThat(rswModulus(pem)).isEqualTo(new BigInteger(N));
+        assertThat(rswModulus(pem.replace("\n", "\r\n"))).isEqualTo(new BigInteger(N));
+    }
+
+    @Test
+    @DisplayName("完整性标签通过的 PEM 不再重复素性测试，公开构造器始终测试")
+    void pemSkipsPrimalityTestButConstructorDoesNot() {
+        BigInteger compositeP = BigInteger.ONE.shiftLeft(511).add(BigInteger.ONE);
+        BigInteger compositeQ = BigInteger.ONE.shiftLeft(512).add(BigInteger.ONE);
+        String pem = RswKeyCodec.encode(1024, compositeP, compositeQ, SECRET);
+
+        assertThat(rswModulus(pem)).isEqualTo(compositeP.multiply(compositeQ));
+        assertThatIllegalArgumentException()
+                .isThrownBy(
+                        () ->
+                                new RswKeyPair(
+                                        1024,
+                                        compositeP.multiply(compositeQ).toString(),
+                                        compositeP.toString(),
+                                        compositeQ.toString()))
+                .withMessage("primeP and primeQ must be probable primes");
+    }
+
+    @Test
+    @DisplayName("PEM 导入拒绝错误 secret、篡改内容与畸形文本")
+    void pemRejectsWrongSecretAndTampering() {
+        String pem = new RswKeyPair(1024, N, P, Q).toPem(SECRET);
+        String[] lines = pem.split("\n");
+        char[] body = lines[1].toCharArray();
+        body[10] = body[10] == 'A' ? 'B' : 'A';
+        lines[1] = new String(body);
+        String tampered = String.join("\n", lines);
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> strictBuilder("fedcba9876543210fedcba9876543210", pem).build())
+                .withMessageContaining("integrity");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> strictBuilder(SECRET, tampered).build())
+                .withMessageContaining("integrity");
+        assertThatIllegalArgumentException()
+                .isThrownBy(
+                        () -> strictBuilder(SECRET, "-----BEGIN CAP RSW KEY PAIR-----").build());
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> strictBuilder(SECRET, pem.replace("BEGIN CAP", "BEGIN")).build());
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new RswKeyPair(1024, N, P, Q).toPem("short"));
+    }
+
+    private static CapBuilder strictBuilder(String secret, String pem) {
+        return Cap.builder(secret)
+                .profile(CapProfile.STRICT)
+                .protocols(CapProtocol.RSW)
+                .rswIterations(1)
+                .rswKeyPem(pem);
+    }
+
+    private static BigInteger rswModulus(String pem) {
+        ChallengeResponse.Format2 challenge =
+                (ChallengeResponse.Format2) strictBuilder(SECRET, pem).build().createChallenge();
+        return new BigInteger((String) challenge.challenges().get(0).payload().get("N"), 16);
+    }
+
     private static RswKeyPair keyPairWithModulusBits(int modulusBits) {
         int factorBit = modulusBits == 1023 ? 511 : 512;
         java.math.BigInteger base = java.math.BigInteger.ONE.shiftLeft(factorBit);
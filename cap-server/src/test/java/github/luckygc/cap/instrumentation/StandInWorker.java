@@ -0,0 +1,76 @@
+package github.luckygc.cap.instrumentation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 测试用 worker 进程：每个请求在独立线程处理，因此响应可以乱序返回。
+ *
+ * <p>脚本以 {@code crash} 开头时退出进程，以 {@code hang} 开头时不响应，以 {@code fail} 开头时返回失败状态，以 {@code slow} 开头时延迟
+ * 200 毫秒，以 {@code deaf} 开头时照常响应后不再读取 stdin；其余返回大写脚本加 level。
+ */
+final class StandInWorker {
+
+    private StandInWorker() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(System.out));
+        while (true) {
+            int length;
+            try {
+                length = input.readInt();
+            } catch (EOFException exception) {
+                return;
+            }
+            int id = input.readInt();
+            byte operation = input.readByte();
+            int level = input.readUnsignedByte();
+            byte[] body = input.readNBytes(length - 6);
+            String script = new String(body, StandardCharsets.UTF_8);
+            if (script.startsWith("crash")) {
+                System.exit(3);
+            }
+            if (script.startsWith("deaf")) {
+                respond(output, id, operation, level, script);
+                Thread.sleep(Long.MAX_VALUE);
+            }
+            new Thread(() -> respond(output, id, operation, level, script)).start();
+        }
+    }
+
+    private static void respond(
+            DataOutputStream output, int id, byte operation, int level, String script) {
+        if (script.startsWith("hang")) {
+            return;
+        }
+        if (script.startsWith("slow")) {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int status = script.startsWith("fail") ? 1 : 0;
+        byte[] result =
+                (operation == 'P' ? "" : script.toUpperCase(Locale.ROOT) + level)
+                        .getBytes(StandardCharsets.UTF_8);
+        synchronized (output) {
+            try {
+                output.writeInt(5 + result.length);
+                output.writeInt(id);
+                output.writeByte(status);
+                output.write(result);
+                output.flush();
+            } catch (IOException exception) {
+                System.exit(4);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package github.luckygc.cap.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("常驻 worker 进程 transformer 测试")
+class WorkerProcessTransformerTest {
+
+    @Test
+    @DisplayName("同一 worker 并发处理多个请求，乱序响应按 id 分发")
+    void pipelinesRequestsOnLongLivedWorker() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try (WorkerProcessTransformer transformer =
+                builder().workers(1).maxInFlightPerWorker(4).build()) {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(callers.submit(() -> transformer.transform("slow-a", 1)));
+            for (int index = 0; index < 3; index++) {
+                String script = "fast-" + index;
+                results.add(callers.submit(() -> transformer.transform(script, 2)));
+            }
+
+            assertThat(results.get(0).get()).isEqualTo("SLOW-A1");
+            for (int index = 0; index < 3; index++) {
+                assertThat(results.get(index + 1).get()).isEqualTo("FAST-" + index + "2");
+            }
+            assertThat(transformer.checkHealth()).isEqualTo(1);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("worker 崩溃时失败当前请求并在下次调用时重启")
+    void restartsCrashedWorker() {
+        try (WorkerProcessTransformer transformer =
+                builder().workers(1).restartBackoff(Duration.ZERO).build()) {
+            assertThat(transformer.transform("before", 0)).isEqualTo("BEFORE0");
+
+            assertThatIllegalStateException().isThrownBy(() -> transformer.transform("crash", 0));
+
+            assertThat(transformer.transform("after", 3)).isEqualTo("AFTER3");
+        }
+    }
+
+    @Test
+    @DisplayName("崩溃 worker 处于重启退避期时由其余 worker 承接调用")
+    void skipsRestartingWorkerDuringBackoff() {
+        try (WorkerProcessTransformer transformer =
+                builder()
+                        .workers(2)
+                        .timeout(Duration.ofSeconds(5))
+                        .restartBackoff(Duration.ofMinutes(1))
+                        .build()) {
+            assertThatIllegalStateException().isThrownBy(() -> transformer.transform("crash", 0));
+
+            for (int index = 0; index < 6; index++) {
+                assertThat(transformer.transform("during-" + index, 1))
+                        .isEqualTo("DURING-" + index + "1");
+            }
+            assertThat(transformer.checkHealth()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("全部 worker 都在重启退避期内时等到截止时间后失败")
+    void failsAfterDeadlineWhenAllWorkersRestarting() {
+        try (WorkerProcessTransformer transformer =
+                builder()
+                        .workers(1)
+                        .timeout(Duration.ofMillis(200))
+                        .restartBackoff(Duration.ofMinutes(1))
+                        .build()) {
+            assertThatIllegalStateException().isThrownBy(() -> transformer.transform("crash", 0));
+            long started = System.nanoTime();
+
+            assertThatIllegalStateException()
+                    .isThrownBy(() -> transformer.transform("next", 0))
+                    .withMessage("instrumentation worker restarting");
+            assertThat(Duration.ofNanos(System.nanoTime() - started))
+                    .isGreaterThanOrEqualTo(Duration.ofMillis(150));
+        }
+    }
+
+    @Test
+    @DisplayName("无响应的 worker 超时后被终止，失败状态照常上报")
+    void failsOnTimeoutAndReportedFailure() {
+        try (WorkerProcessTransformer transformer =
+                builder()
+                        .workers(1)
+                        .timeout(Duration.ofMillis(500))
+                        .restartBackoff(Duration.ZERO)
+                        .build()) {
+            assertThatIllegalStateException()
+                    .isThrownBy(() -> transformer.transform("fail", 0))
+                    .withMessage("instrumentation worker failed");
+            assertThatIllegalStateException()
+                    .isThrownBy(() -> transformer.transform("hang", 0))
+                    .withMessage("instrumentation worker timed out");
+
+            assertThat(transformer.transform("ok", 1)).isEqualTo("OK1");
+        }
+    }
+
+    @Test
+    @DisplayName("worker 停止读取请求时写入按截止时间失败，不阻塞健康检查")
+    void failsWhenWorkerStopsReading() throws Exception {
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try (WorkerProcessTransformer transformer =
+                builder()
+                        .workers(1)
+                        .timeout(Duration.ofMillis(500))
+                        .restartBackoff(Duration.ZERO)
+                        .build()) {
+            assertThat(transformer.transform("deaf", 0)).isEqualTo("DEAF0");
+            // 远大于管道缓冲区，写线程必然阻塞在管道上。
+            String oversized = "x".repeat(4 << 20);
+            Future<String> blocked = callers.submit(() -> transformer.transform(oversized, 0));
+
+            assertThatThrownBy(() -> blocked.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(IllegalStateException.class);
+            assertThat(transformer.checkHealth()).isEqualTo(1);
+            assertThat(transformer.transform("ok", 1)).isEqualTo("OK1");
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("全部 worker 满载时调用方等待空位而不是继续向 worker 堆积请求")
+    void appliesBackPressureWhenSaturated() throws Exception {
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try (WorkerProcessTransformer transformer =
+                builder().workers(1).maxInFlightPerWorker(1).build()) {
+            transformer.checkHealth();
+            Future<String> slow = callers.submit(() -> transformer.transform("slow", 0));
+            Thread.sleep(50);
+            long started = System.nanoTime();
+
+            assertThat(transformer.transform("next", 1)).isEqualTo("NEXT1");
+            assertThat(Duration.ofNanos(System.nanoTime() - started))
+                    .isGreaterThan(Duration.ofMillis(100));
+            assertThat(slow.get()).isEqualTo("SLOW0");
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("关闭后拒绝调用，配置必须在受支持范围内")
+    void rejectsUseAfterCloseAndInvalidSettings() {
+        WorkerProcessTransformer transformer = builder().build();
+        transformer.close();
+
+        assertThatIllegalStateException().isThrownBy(() -> transformer.transform("x", 0));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> WorkerProcessTransformer.builder(List.of()));
+        assertThatIllegalArgumentException().isThrownBy(() -> builder().workers(0));
+        assertThatIllegalArgumentException().isThrownBy(() -> builder().maxInFlightPerWorker(0));
+        assertThatIllegalArgumentException().isThrownBy(() -> builder().timeout(Duration.ZERO));
+    }
+
+    private static WorkerProcessTransformer.Builder builder() {
+        return WorkerProcessTransformer.builder(command());
+    }
+
+    private static List<String> command() {
+        return List.of(
+                ProcessHandle.current().info().command().orElse("java"),
+                "-cp",
+                System.getProperty("java.class.path"),
+                StandInWorker.class.getName());
+    }
+}
@@ -54,6 +54,9 @@ class CapEventsTest {
                 .containsExactly("format", "protocols", "duration");
         assertThat(componentNames(CapEventListener.FailureEvent.class))
                 .containsExactly("format", "protocols", "reason", "duration");
+        assertThat(componentNames(CapEventListener.ChallengePoolEvent.class))
+                .containsExactly(
+                        "available", "capacity", "hits", "misses", "generated", "failures");
     }
 
     @Test
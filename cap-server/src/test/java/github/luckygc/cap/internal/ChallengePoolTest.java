@@ -0,0 +1,169 @@
+package github.luckygc.cap.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import github.luckygc.cap.CapEventListener;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("challenge 预生成池测试")
+class ChallengePoolTest {
+
+    @Test
+    @DisplayName("池空时返回 null 由调用方内联生成，补充后按低水位触发下一轮")
+    void fallsBackWhenEmptyAndRefillsAtLowWatermark() {
+        ManualExecutor executor = new ManualExecutor();
+        AtomicInteger sequence = new AtomicInteger();
+        List<CapEventListener.ChallengePoolEvent> refills = new ArrayList<>();
+        ChallengePool<Integer> pool =
+                new ChallengePool<>(
+                        new ChallengePool.Settings(3, 1, executor),
+                        sequence::incrementAndGet,
+                        events(refills));
+
+        assertThat(pool.poll()).isNull();
+        assertThat(executor.pending()).isEqualTo(1);
+        executor.runAll();
+
+        assertThat(pool.poll()).isEqualTo(1);
+        assertThat(executor.pending()).isZero();
+        assertThat(pool.poll()).isEqualTo(2);
+        assertThat(executor.pending()).isEqualTo(1);
+        assertThat(pool.poll()).isEqualTo(3);
+        assertThat(executor.pending()).isEqualTo(1);
+        executor.runAll();
+
+        assertThat(refills)
+                .containsExactly(
+                        new CapEventListener.ChallengePoolEvent(3, 3, 0, 1, 3, 0),
+                        new CapEventListener.ChallengePoolEvent(3, 3, 3, 1, 6, 0));
+    }
+
+    @Test
+    @DisplayName("生成失败只计数并在下一次低水位 poll 时重试")
+    void countsFactoryFailuresAndRetries() {
+        ManualExecutor executor = new ManualExecutor();
+        AtomicInteger calls = new AtomicInteger();
+        List<CapEventListener.ChallengePoolEvent> refills = new ArrayList<>();
+        ChallengePool<Integer> pool =
+                new ChallengePool<>(
+                        new ChallengePool.Settings(2, 0, executor),
+                        () -> {
+                            if (calls.incrementAndGet() == 2) {
+                                throw new IllegalStateException("mint failed");
+                            }
+                            return calls.get();
+                        },
+                        events(refills));
+
+        executor.runAll();
+        assertThat(refills.get(0))
+                .isEqualTo(new CapEventListener.ChallengePoolEvent(1, 2, 0, 0, 1, 1));
+        assertThat(pool.poll()).isEqualTo(1);
+        executor.runAll();
+
+        assertThat(pool.snapshot())
+                .isEqualTo(new CapEventListener.ChallengePoolEvent(2, 2, 1, 0, 3, 1));
+    }
+
+    @Test
+    @DisplayName("executor 拒绝任务时回退为内联生成而不抛出")
+    void toleratesRejectedExecutor() {
+        Executor rejecting =
+                command -> {
+                    throw new RejectedExecutionException("shutdown");
+                };
+        ChallengePool<Integer> pool =
+                new ChallengePool<>(
+                        new ChallengePool.Settings(1, 0, rejecting),
+                        () -> 1,
+                        new CapEvents(new CapEventListener() {}));
+
+        assertThat(pool.poll()).isNull();
+        assertThat(pool.snapshot())
+                .isEqualTo(new CapEventListener.ChallengePoolEvent(0, 1, 0, 1, 0, 2));
+    }
+
+    @Test
+    @DisplayName("停止后丢弃剩余材料，运行中的补充任务退出且不再提交新任务")
+    void stopsRefillingAndDrains() {
+        ManualExecutor executor = new ManualExecutor();
+        List<CapEventListener.ChallengePoolEvent> refills = new ArrayList<>();
+        AtomicInteger sequence = new AtomicInteger();
+        AtomicReference<ChallengePool<Integer>> pool = new AtomicReference<>();
+        pool.set(
+                new ChallengePool<>(
+                        new ChallengePool.Settings(5, 1, executor),
+                        () -> {
+                            if (sequence.incrementAndGet() == 2) {
+                                pool.get().stop();
+                            }
+                            return sequence.get();
+                        },
+                        events(refills)));
+
+        executor.runAll();
+
+        assertThat(sequence).hasValue(2);
+        assertThat(refills).isEmpty();
+        assertThat(pool.get().poll()).isNull();
+        assertThat(executor.pending()).isZero();
+        assertThat(pool.get().snapshot().available()).isZero();
+    }
+
+    @Test
+    @DisplayName("容量与低水位必须在受支持范围内")
+    void validatesSettings() {
+        Executor executor = Runnable::run;
+
+        assertThatThrownBy(() -> new ChallengePool.Settings(0, 0, executor))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ChallengePool.Settings(10_001, 0, executor))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ChallengePool.Settings(4, 4, executor))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ChallengePool.Settings(4, -1, executor))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ChallengePool.Settings(4, 1, null))
+                .isInstanceOf(NullPointerException.class);
+    }
+
+    private static CapEvents events(List<CapEventListener.ChallengePoolEvent> refills) {
+        return new CapEvents(
+                new CapEventListener() {
+                    @Override
+                    public void challengePoolRefilled(ChallengePoolEvent event) {
+                        refills.add(event);
+                    }
+                });
+    }
+
+    private static final class ManualExecutor implements Executor {
+
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        int pending() {
+            return tasks.size();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package github.luckygc.cap.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import github.luckygc.cap.CapEventListener;
+import github.luckygc.cap.CapEventListener.TransformerOutcome;
+import github.luckygc.cap.InstrumentationTransformer;
+import github.luckygc.cap.internal.instrumentation.InstrumentationGenerator;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("受限 instrumentation transformer 测试")
+class GuardedTransformerTest {
+
+    private static final String SCRIPT = "a='x';\n  b='x'";
+
+    @Test
+    @DisplayName("截止时间内完成时返回自定义结果")
+    void returnsCustomResultWithinDeadline() {
+        List<CapEventListener.TransformerEvent> events = new ArrayList<>();
+        GuardedTransformer transformer =
+                new GuardedTransformer(
+                        (script, level) -> script + level,
+                        new GuardedTransformer.Settings(Runnable::run, 1, Duration.ofSeconds(5), 0),
+                        events(events));
+
+        assertThat(transformer.transform(SCRIPT, 3)).isEqualTo(SCRIPT + 3);
+        assertThat(events)
+                .singleElement()
+                .satisfies(
+                        event -> {
+                            assertThat(event.outcome()).isEqualTo(TransformerOutcome.COMPLETED);
+                            assertThat(event.completed()).isEqualTo(1);
+                        });
+    }
+
+    @Test
+    @DisplayName("超时后中断任务并按回退 level 使用内置 transformer")
+    void fallsBackAndInterruptsOnTimeout() throws InterruptedException {
+        List<CapEventListener.TransformerEvent> events = new ArrayList<>();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            GuardedTransformer transformer =
+                    new GuardedTransformer(
+                            (script, level) -> {
+                                try {
+                                    Thread.sleep(60_000);
+                                } catch (InterruptedException exception) {
+                                    interrupted.countDown();
+                                }
+                                return script;
+                            },
+                            new GuardedTransformer.Settings(executor, 1, Duration.ofMillis(20), 2),
+                            events(events));
+
+            assertThat(transformer.transform(SCRIPT, 3))
+                    .isEqualTo(InstrumentationGenerator.builtInTransformer().transform(SCRIPT, 2));
+            assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(events)
+                .singleElement()
+                .satisfies(
+                        event -> {
+                            assertThat(event.outcome()).isEqualTo(TransformerOutcome.TIMED_OUT);
+                            assertThat(event.timedOut()).isEqualTo(1);
+                        });
+    }
+
+    @Test
+    @DisplayName("未结束的调用占用并发额度，额度耗尽时直接回退")
+    void fallsBackWhenSaturatedUntilAbandonedCallsFinish() {
+        List<CapEventListener.TransformerEvent> events = new ArrayList<>();
+        ManualExecutor executor = new ManualExecutor();
+        GuardedTransformer transformer =
+                new GuardedTransformer(
+                        (script, level) -> script,
+                        new GuardedTransformer.Settings(executor, 1, Duration.ofMillis(1), 0),
+                        events(events));
+
+        assertThat(transformer.transform(SCRIPT, 3)).isEqualTo(SCRIPT);
+        assertThat(transformer.transform(SCRIPT, 3)).isEqualTo(SCRIPT);
+        assertThat(executor.pending()).isEqualTo(1);
+        executor.runAll();
+        transformer.transform(SCRIPT, 3);
+
+        assertThat(events)
+                .extracting(CapEventListener.TransformerEvent::outcome)
+                .containsExactly(
+                        TransformerOutcome.TIMED_OUT,
+                        TransformerOutcome.SATURATED,
+                        TransformerOutcome.TIMED_OUT);
+        assertThat(events.get(2))
+                .extracting(
+                        CapEventListener.TransformerEvent::timedOut,
+                        CapEventListener.TransformerEvent::saturated)
+                .containsExactly(2L, 1L);
+    }
+
+    @Test
+    @DisplayName("executor 拒绝任务时回退且归还额度")
+    void fallsBackWhenExecutorRejects() {
+        List<CapEventListener.TransformerEvent> events = new ArrayList<>();
+        Executor rejecting =
+                command -> {
+                    throw new RejectedExecutionException("shutdown");
+                };
+        GuardedTransformer transformer =
+                new GuardedTransformer(
+                        (script, level) -> script + level,
+                        new GuardedTransformer.Settings(rejecting, 1, Duration.ofSeconds(5), 1),
+                        events(events));
+
+        transformer.transform(SCRIPT, 3);
+        assertThat(transformer.transform(SCRIPT, 3))
+                .isEqualTo(InstrumentationGenerator.builtInTransformer().transform(SCRIPT, 1));
+        assertThat(events)
+                .extracting(CapEventListener.TransformerEvent::outcome)
+                .containsExactly(TransformerOutcome.REJECTED, TransformerOutcome.REJECTED);
+    }
+
+    @Test
+    @DisplayName("自定义 transformer 的异常照常传播并计数")
+    void propagatesTransformerFailures() {
+        List<CapEventListener.TransformerEvent> events = new ArrayList<>();
+        InstrumentationTransformer failing =
+                (script, level) -> {
+                    throw new IllegalStateException("broken");
+                };
+        GuardedTransformer transformer =
+                new GuardedTransformer(
+                        failing,
+                        new GuardedTransformer.Settings(Runnable::run, 1, Duration.ofSeconds(5), 0),
+                        events(events));
+
+        assertThatThrownBy(() -> transformer.transform(SCRIPT, 3))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("broken");
+        assertThat(events)
+                .singleElement()
+                .extracting(CapEventListener.TransformerEvent::failed)
+                .isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("并发上限、超时与回退 level 必须在受支持范围内")
+    void validatesSettings() {
+        Executor executor = Runnable::run;
+        Duration timeout = Duration.ofMillis(100);
+
+        assertThatThrownBy(() -> new GuardedTransformer.Settings(executor, 0, timeout, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GuardedTransformer.Settings(executor, 1, Duration.ZERO, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GuardedTransformer.Settings(executor, 1, timeout, 4))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GuardedTransformer.Settings(null, 1, timeout, 0))
+                .isInstanceOf(NullPointerException.class);
+    }
+
+    private static CapEvents events(List<CapEventListener.TransformerEvent> events) {
+        return new CapEvents(
+                new CapEventListener() {
+                    @Override
+                    public void instrumentationTransformed(TransformerEvent event) {
+                        events.add(event);
+                    }
+                });
+    }
+
+    private static final class ManualExecutor implements Executor {
+
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        int pending() {
+            return tasks.size();
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+}
@@ -54,6 +54,13 @@ class JwtCodecTest {
                 .isEmpty();
     }
 
+    @Test
+    @DisplayName("非规范但语义相同的 header 仍按字段判定")
+    void acceptsEquivalentNonCanonicalHeader() {
+        assertThat(jwt.verify(signWithHeader("{\"typ\":\"JWT\",\"alg\":\"HS256\"}")))
+                .hasValue(Map.of("exp", 123L));
+    }
+
     @Test
     @DisplayName("拒绝非 32 字节签名")
     void rejectsWrongSignatureLengths() {
@@ -0,0 +1,89 @@
+package github.luckygc.cap.internal.crypto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("JCA 实例池测试")
+class PrimitivePoolTest {
+
+    private static final byte[] KEY =
+            "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    @DisplayName("归还的实例被复用，保留量不超过容量且池满时报告未入池")
+    void reusesReleasedInstancesWithinCapacity() {
+        AtomicInteger created = new AtomicInteger();
+        PrimitivePool<Object> pool = new PrimitivePool<>(() -> created.incrementAndGet(), 2);
+
+        Object first = pool.acquire();
+        Object second = pool.acquire();
+        Object third = pool.acquire();
+        assertThat(pool.release(first)).isTrue();
+        assertThat(pool.release(second)).isTrue();
+        assertThat(pool.release(third)).isFalse();
+
+        assertThat(created).hasValue(3);
+        assertThat(pool.idle()).isEqualTo(2);
+        assertThat(List.of(pool.acquire(), pool.acquire())).containsAnyOf(first, second, third);
+        assertThat(created).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("预绑定密钥的 HMAC 与逐次初始化结果一致")
+    void preKeyedHmacMatchesOneShotHmac() {
+        HmacSha256 hmac = new HmacSha256(KEY);
+        byte[] value = "header.payload".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(hmac.mac(value)).isEqualTo(CryptoSupport.hmacSha256(KEY, value));
+        assertThat(hmac.mac(value)).isEqualTo(CryptoSupport.hmacSha256(KEY, value));
+        assertThat(hmac.mac(value, 7, 7))
+                .isEqualTo(
+                        CryptoSupport.hmacSha256(
+                                KEY, "payload".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    @DisplayName("并发调用互不串扰摘要状态")
+    void concurrentCallsDoNotShareState() throws Exception {
+        HmacSha256 hmac = new HmacSha256(KEY);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int task = 0; task < 64; task++) {
+                byte[] value = ("value-" + task).getBytes(StandardCharsets.US_ASCII);
+                results.add(
+                        executor.submit(
+                                () -> {
+                                    for (int round = 0; round < 200; round++) {
+                                        if (!Arrays.equals(
+                                                        hmac.mac(value),
+                                                        CryptoSupport.hmacSha256(KEY, value))
+                                                || !Arrays.equals(
+                                                        Sha256.digest(value),
+                                                        MessageDigest.getInstance("SHA-256")
+                                                                .digest(value))) {
+                                            return false;
+                                        }
+                                    }
+                                    return true;
+                                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package github.luckygc.cap.internal.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import github.luckygc.cap.InstrumentationOptions;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("内置 instrumentation transformer 测试")
+class BuiltinInstrumentationTransformerTest {
+
+    private static final BuiltinInstrumentationTransformer TRANSFORMER =
+            BuiltinInstrumentationTransformer.INSTANCE;
+
+    @Test
+    @DisplayName("单次扫描结果与正则加 Map 的参考实现逐字符一致")
+    void matchesRegexReferenceOnEdgeCases() {
+        List<String> samples =
+                List.of(
+                        "",
+                        "no literals here",
+                        "a\n  b\n\n\t c\r\n d",
+                        "x='a';y=\"a\";z='a';w='b'",
+                        "o={k:'v', 'q' \n : 1};o['q']",
+                        "s='line\n   continued';t=\"e\\\"q\\\\\";u='\\''",
+                        "v=1;\n   'lead'\n\t;'lead'",
+                        "'\n  '\n  '\n  '",
+                        "k={'a':'a','b' :'a'}\n");
+        for (String sample : samples) {
+            for (int level = 0; level <= 3; level++) {
+                assertThat(TRANSFORMER.transform(sample, level))
+                        .as("level %d: %s", level, sample)
+                        .isEqualTo(reference(sample, level));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("随机片段与生成脚本上与参考实现一致，缓冲区复用不串扰")
+    void matchesRegexReferenceOnRandomAndGeneratedScripts() {
+        SplittableRandom random = new SplittableRandom(0x5eed);
+        String[] pieces = {
+            "a", "b", ":", " ", "\n", "\t", "\r", "'x'", "\"x\"", "'y\n z'", "\\\\", ";"
+        };
+        for (int round = 0; round < 500; round++) {
+            StringBuilder sample = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int index = 0; index < length; index++) {
+                sample.append(pieces[random.nextInt(pieces.length)]);
+            }
+            int level = 1 + random.nextInt(3);
+            assertThat(TRANSFORMER.transform(sample.toString(), level))
+                    .isEqualTo(reference(sample.toString(), level));
+        }
+        for (boolean blockAutomatedBrowsers : new boolean[] {false, true}) {
+            String[] captured = new String[1];
+            new InstrumentationGenerator()
+                    .generate(
+                            InstrumentationOptions.builder()
+                                    .level(0)
+                                    .blockAutomatedBrowsers(blockAutomatedBrowsers)
+                                    .transformer(
+                                            (script, level) -> {
+                                                captured[0] = script;
+                                                return script;
+                                            })
+                                    .build());
+            for (int level = 1; level <= 3; level++) {
+                assertThat(TRANSFORMER.transform(captured[0], level))
+                        .isEqualTo(reference(captured[0], level));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("未结束字符串安全失败且不影响后续转换")
+    void rejectsUnterminatedStrings() {
+        assertThatIllegalStateException().isThrownBy(() -> TRANSFORMER.transform("a='b", 2));
+        assertThatIllegalStateException().isThrownBy(() -> TRANSFORMER.transform("'a'+\"b\\\"", 3));
+
+        assertThat(TRANSFORMER.transform("x='a'", 2)).isEqualTo(reference("x='a'", 2));
+    }
+
+    /** 单次扫描实现之前的正则与 Map 版本，作为逐字符对照。 */
+    private static String reference(String script, int level) {
+        if (level == 0) {
+            return script;
+        }
+        if (level == 1) {
+            return script.replaceAll("\\n\\s*", "");
+        }
+        String tabled = referenceTable(script);
+        return level == 2 ? tabled : tabled.replaceAll("\\n\\s*", "");
+    }
+
+    private static String referenceTable(String script) {
+        Map<String, Integer> indices = new LinkedHashMap<>();
+        List<int[]> literals = new ArrayList<>();
+        for (int index = 0; index < script.length(); index++) {
+            char character = script.charAt(index);
+            if (character != '\'' && character != '"') {
+                continue;
+            }
+            int end = index + 1;
+            boolean escaped = false;
+            while (escaped || script.charAt(end) != character) {
+                escaped = !escaped && script.charAt(end) == '\\';
+                end++;
+            }
+            indices.putIfAbsent(script.substring(index, end + 1), indices.size());
+            literals.add(new int[] {index, end + 1});
+            index = end;
+        }
+        if (literals.isEmpty()) {
+            return script;
+        }
+        String table = "_T" + Integer.toUnsignedString(script.hashCode(), 36);
+        StringBuilder transformed =
+                new StringBuilder("var ")
+                        .append(table)
+                        .append("=[")
+                        .append(String.join(",", indices.keySet()))
+                        .append("];");
+        int cursor = 0;
+        for (int[] literal : literals) {
+            transformed.append(script, cursor, literal[0]);
+            String rest = script.substring(literal[1]).strip();
+            boolean objectKey = rest.startsWith(":");
+            String reference =
+                    table + "[" + indices.get(script.substring(literal[0], literal[1])) + "]";
+            transformed.append(objectKey ? "[" + reference + "]" : reference);
+            cursor = literal[1];
+        }
+        return transformed.append(script, cursor, script.length()).toString();
+    }
+}
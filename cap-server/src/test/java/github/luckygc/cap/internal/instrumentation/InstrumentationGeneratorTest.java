@@ -10,12 +10,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.Base64;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -237,6 +239,34 @@ class InstrumentationGeneratorTest {
                                         InstrumentationOptions.defaults(), Duration.ofNanos(1)));
     }
 
+    @Test
+    @DisplayName("相同随机输入生成的 blob 逐字节稳定")
+    void generationIsByteStableForFixedRandomness() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (long seed = 1; seed <= 6; seed++) {
+            for (int level = 0; level <= 3; level++) {
+                for (boolean block : new boolean[] {false, true}) {
+                    InstrumentationGenerator.GeneratedInstrumentation generated =
+                            generator(seed)
+                                    .generate(
+                                            InstrumentationOptions.builder()
+                                                    .level(level)
+                                                    .blockAutomatedBrowsers(block)
+                                                    .build());
+                    digest.update(generated.instrumentation().getBytes(StandardCharsets.US_ASCII));
+                    digest.update(
+                            generated
+                                    .expectedVals()
+                                    .toString()
+                                    .getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+        }
+
+        assertThat(HexFormat.of().formatHex(digest.digest()))
+                .isEqualTo("67ba836f4dd52e38ea0c0ce67b13e7974817944d4a2590ef95c121fd0ba87d2f");
+    }
+
     private static InstrumentationGenerator generator(long seed) {
         return new InstrumentationGenerator(
                 new DeterministicSecureRandom(seed), Clock.fixed(NOW, ZoneOffset.UTC));
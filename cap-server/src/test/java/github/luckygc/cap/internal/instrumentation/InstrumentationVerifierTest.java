@@ -93,6 +93,26 @@ class InstrumentationVerifierTest {
         }
     }
 
+    @Test
+    @DisplayName("int[] 预期值按原始类型逐个比较")
+    void verifiesPrimitiveExpectedValues() {
+        int[] expected = {100_001, 200_002, 300_003, 400_004};
+
+        assertThat(VERIFIER.verify(META.id(), META.vars(), expected, META.id(), validState()))
+                .isEqualTo(InstrumentationVerifier.VerificationResult.success());
+
+        Map<String, Object> mismatched = new LinkedHashMap<>(validState());
+        mismatched.put("dddddddddddd", 400_005);
+        assertThat(
+                        VERIFIER.verify(META.id(), META.vars(), expected, META.id(), mismatched)
+                                .reason())
+                .isEqualTo("failed_challenge");
+        assertThat(
+                        VERIFIER.verify(META.id(), META.vars(), new int[3], META.id(), validState())
+                                .reason())
+                .isEqualTo("invalid_meta");
+    }
+
     @Test
     @DisplayName("额外 state 字段按上游 every 语义忽略")
     void acceptsAdditionalStateKeys() {
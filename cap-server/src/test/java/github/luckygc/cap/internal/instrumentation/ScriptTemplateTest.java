@@ -0,0 +1,40 @@
+package github.luckygc.cap.internal.instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("脚本模板测试")
+class ScriptTemplateTest {
+
+    @Test
+    @DisplayName("与 String.formatted 输出一致，支持重复槽位、%% 与 long")
+    void matchesStringFormatted() {
+        String pattern = "%1$s=((%1$s^%2$d)&0x7FFFFFFF)%%900000+%3$d;%4$s";
+        ScriptTemplate template = ScriptTemplate.compile(pattern);
+        StringBuilder output = new StringBuilder("prefix;");
+
+        template.append(output, "abc", -17, 4_294_967_294L, new StringBuilder("tail"));
+
+        assertThat(output.toString())
+                .isEqualTo("prefix;" + pattern.formatted("abc", -17, 4_294_967_294L, "tail"));
+        assertThat(template.format("x", 1, 2L, "")).isEqualTo(pattern.formatted("x", 1, 2L, ""));
+        assertThat(ScriptTemplate.compile("no slots").format()).isEqualTo("no slots");
+    }
+
+    @Test
+    @DisplayName("拒绝不支持的占位符、参数个数与类型不匹配")
+    void rejectsUnsupportedPlaceholdersAndArguments() {
+        assertThatIllegalArgumentException().isThrownBy(() -> ScriptTemplate.compile("%s"));
+        assertThatIllegalArgumentException().isThrownBy(() -> ScriptTemplate.compile("%1$x"));
+        assertThatIllegalArgumentException().isThrownBy(() -> ScriptTemplate.compile("%0$s"));
+        assertThatIllegalArgumentException().isThrownBy(() -> ScriptTemplate.compile("tail %"));
+
+        ScriptTemplate template = ScriptTemplate.compile("%1$s:%2$d");
+        assertThatIllegalArgumentException().isThrownBy(() -> template.format("a"));
+        assertThatIllegalArgumentException().isThrownBy(() -> template.format("a", "1"));
+        assertThatIllegalArgumentException().isThrownBy(() -> template.format(1, 1));
+    }
+}
@@ -0,0 +1,98 @@
+package github.luckygc.cap.internal.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("challenge claims 流式解码测试")
+class ClaimsDecoderTest {
+
+    private final ClaimsDecoder decoder = new ClaimsDecoder();
+
+    @Test
+    @DisplayName("Format 1 claims 解码为基本类型字段")
+    void decodesFormat1Claims() {
+        ChallengeClaims claims =
+                decode(
+                        "{\"n\":\"ab\",\"c\":50,\"s\":32,\"d\":4,\"exp\":2000,\"iat\":1000,"
+                                + "\"sk\":\"login\",\"x\":{\"a\":[1,2.5,null,{\"b\":true}]},"
+                                + "\"ei\":\"cipher\"}");
+
+        assertThat(claims)
+                .isEqualTo(
+                        new Format1Claims(
+                                2000, false, 1000, 50, 32, 4, "login", "cipher", false, true));
+    }
+
+    @Test
+    @DisplayName("f 为 2 时解码为 Format 2 claims")
+    void decodesFormat2Claims() {
+        assertThat(decode("{\"f\":2,\"n\":\"ab\",\"exp\":2000,\"iat\":1000,\"ev\":\"cipher\"}"))
+                .isEqualTo(new Format2Claims(2000, false, 1000, null, "cipher", true));
+    }
+
+    @Test
+    @DisplayName("类型错误保留在标志中而不是拒绝")
+    void recordsMalformedFieldTypes() {
+        Format1Claims format1 =
+                (Format1Claims)
+                        decode(
+                                "{\"c\":1.0,\"s\":4,\"d\":1,\"exp\":\"x\",\"iat\":1,\"sk\":1,"
+                                        + "\"ei\":[]}");
+        Format2Claims format2 =
+                (Format2Claims) decode("{\"f\":2,\"n\":\"n\",\"exp\":1.5,\"iat\":1,\"ev\":\"x\"}");
+        Format2Claims missingExpires =
+                (Format2Claims) decode("{\"f\":2,\"n\":\"n\",\"exp\":null,\"iat\":1,\"ev\":\"x\"}");
+
+        assertThat(format1.wellFormed()).isFalse();
+        assertThat(format1.expires()).isZero();
+        assertThat(format1.expiresMalformed()).isTrue();
+        assertThat(format1.scope()).isNull();
+        assertThat(format1.instrumentationMalformed()).isTrue();
+        assertThat(format2.wellFormed()).isFalse();
+        assertThat(format2.expiresMalformed()).isTrue();
+        assertThat(missingExpires.expiresMalformed()).isFalse();
+        assertThat(missingExpires.expires()).isZero();
+    }
+
+    @Test
+    @DisplayName("未知、重复或不属于所选格式的字段被拒绝")
+    void rejectsUnknownAndDuplicateFields() {
+        assertRejected("{\"exp\":1,\"unknown\":1}");
+        assertRejected("{\"exp\":1,\"exp\":2}");
+        assertRejected("{\"exp\":1,\"x\":{\"a\":1,\"a\":2}}");
+        assertRejected("{\"exp\":1,\"ev\":\"x\"}");
+        assertRejected("{\"f\":2,\"c\":1}");
+        assertRejected("{\"f\":1,\"exp\":1}");
+        assertRejected("{\"f\":\"2\",\"exp\":1}");
+        assertRejected("[]");
+        assertRejected("{\"exp\":1} {}");
+    }
+
+    @Test
+    @DisplayName("沿用协议 JSON 的深度、节点与字符串限制")
+    void enforcesProtocolLimits() {
+        String deep = "[".repeat(32) + "]".repeat(32);
+        String wide = "0,".repeat(10_000) + "0";
+        String longString = "a".repeat(16_385);
+
+        assertThat(decode("{\"x\":" + "[".repeat(31) + "]".repeat(31) + "}")).isNotNull();
+        assertRejected("{\"x\":" + deep + "}");
+        assertRejected("{\"x\":[" + wide + "]}");
+        assertRejected("{\"x\":\"" + longString + "\"}");
+        assertRejected("{\"sk\":\"" + longString + "\"}");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> decoder.decode(new byte[ProtocolJsonCodec.MAX_INPUT_BYTES + 1]));
+    }
+
+    private ChallengeClaims decode(String json) {
+        return decoder.decode(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void assertRejected(String json) {
+        assertThatIllegalArgumentException().isThrownBy(() -> decode(json));
+    }
+}
@@ -0,0 +1,63 @@
+package github.luckygc.cap.internal.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Format 2 二进制 expected 元数据测试")
+class ExpectedMetadataCodecTest {
+
+    @Test
+    @DisplayName("各类条目往返后字段逐一相同")
+    void roundTripsEveryEntryKind() {
+        byte[] seed = new byte[PowSaltStream.SEED_BYTES];
+        Arrays.fill(seed, (byte) 7);
+        int[] expectedVals = {0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+        List<ExpectedEntry> decoded =
+                ExpectedMetadataCodec.decode(
+                        ExpectedMetadataCodec.encode(
+                                List.of(
+                                        new ExpectedEntry.Pow("00ff", "000"),
+                                        new ExpectedEntry.DerivedPow(seed, 1000, 256, "0"),
+                                        new ExpectedEntry.Rsw("000aff"),
+                                        new ExpectedEntry.Instrumentation(
+                                                "id-1",
+                                                1_700_000_600_000L,
+                                                expectedVals,
+                                                List.of("a", "变量"),
+                                                true))));
+
+        assertThat(decoded).hasSize(4);
+        assertThat(decoded.get(0)).isEqualTo(new ExpectedEntry.Pow("00ff", "000"));
+        ExpectedEntry.DerivedPow derived = (ExpectedEntry.DerivedPow) decoded.get(1);
+        assertThat(derived.seed()).isEqualTo(seed);
+        assertThat(derived.count()).isEqualTo(1000);
+        assertThat(derived.size()).isEqualTo(256);
+        assertThat(decoded.get(2)).isEqualTo(new ExpectedEntry.Rsw("000aff"));
+        ExpectedEntry.Instrumentation instrumentation =
+                (ExpectedEntry.Instrumentation) decoded.get(3);
+        assertThat(instrumentation.id()).isEqualTo("id-1");
+        assertThat(instrumentation.expires()).isEqualTo(1_700_000_600_000L);
+        assertThat(instrumentation.expectedVals()).containsExactly(expectedVals);
+        assertThat(instrumentation.vars()).containsExactly("a", "变量");
+        assertThat(instrumentation.blockAutomatedBrowsers()).isTrue();
+    }
+
+    @Test
+    @DisplayName("截断、多余字节、未知标签与 JSON 明文均被拒绝")
+    void rejectsMalformedInput() {
+        byte[] encoded = ExpectedMetadataCodec.encode(List.of(new ExpectedEntry.Rsw("0a0b0c0d")));
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+
+        assertThat(ExpectedMetadataCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)))
+                .isNull();
+        assertThat(ExpectedMetadataCodec.decode(trailing)).isNull();
+        assertThat(ExpectedMetadataCodec.decode(new byte[] {ExpectedMetadataCodec.VERSION, 1, 9}))
+                .isNull();
+        assertThat(ExpectedMetadataCodec.decode("{\"expected\":[]}".getBytes())).isNull();
+    }
+}
@@ -7,6 +7,7 @@ import github.luckygc.cap.ChallengeOptions;
 import github.luckygc.cap.ChallengeResponse;
 import github.luckygc.cap.RedeemRequest;
 import github.luckygc.cap.internal.crypto.JwtCodec;
+import github.luckygc.cap.internal.json.ChallengeClaims;
 import github.luckygc.cap.internal.json.ProtocolJsonCodec;
 import github.luckygc.cap.utils.RandomUtil;
 import java.io.IOException;
@@ -18,6 +19,7 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import org.jspecify.annotations.Nullable;
@@ -50,7 +52,27 @@ class Format1ProtocolTest {
                                 null,
                                 1_735_689_600_000L,
                                 4_102_444_800_000L,
-                                (String) fixture.get("signatureHex")));
+                                HexFormat.of().parseHex((String) fixture.get("signatureHex"))));
+    }
+
+    @Test
+    @DisplayName("复用调用方已验证的 claims 且未验证 token 保留原失败码")
+    void validatesWithPreVerifiedClaims() throws IOException {
+        Map<String, @Nullable Object> fixture = fixture();
+        @SuppressWarnings("unchecked")
+        List<@Nullable Object> solutions = (List<@Nullable Object>) fixture.get("solutions");
+        String token = (String) fixture.get("token");
+        RedeemRequest request = new RedeemRequest(token, solutions, null, false, false);
+        Format1Protocol protocol =
+                new Format1Protocol(SECRET, 2, 8, 2, CLOCK, new FixedSecureRandom());
+        ChallengeClaims claims = new JwtCodec(SECRET).verifyClaims(token).orElseThrow();
+
+        assertThat(protocol.validate(request, claims, null))
+                .isEqualTo(protocol.validate(request, null));
+        assertFailure(protocol.validate(request, null, null), "invalid_token");
+        assertFailure(
+                protocol.validate(new RedeemRequest("", solutions, null, false, false), null, null),
+                "missing_token");
     }
 
     @Test
@@ -234,7 +256,7 @@ class Format1ProtocolTest {
                                 null,
                                 1_735_689_600_000L,
                                 4_102_444_800_000L,
-                                (String) fixture.get("signatureHex")));
+                                HexFormat.of().parseHex((String) fixture.get("signatureHex"))));
     }
 
     @Test
@@ -296,7 +318,7 @@ class Format1ProtocolTest {
                                 null,
                                 (Long) boundary.get("iat"),
                                 (Long) boundary.get("exp"),
-                                (String) boundary.get("signatureHex")));
+                                HexFormat.of().parseHex((String) boundary.get("signatureHex"))));
     }
 
     @Test
@@ -349,7 +371,7 @@ class Format1ProtocolTest {
         String target = target(token, difficulty);
         for (long integer = 0; integer < 1_000_000; integer++) {
             BigDecimal candidate = new BigDecimal(integer + ".5");
-            if (Format1Protocol.sha256Hex(salt + candidate).startsWith(target)) {
+            if (PowHashes.sha256Hex(salt + candidate).startsWith(target)) {
                 return candidate;
             }
         }
@@ -363,7 +385,7 @@ class Format1ProtocolTest {
         for (long offset = 1; offset < 1_000_000; offset += 2) {
             BigInteger candidate = base.add(BigInteger.valueOf(offset));
             String jsText = Format2Protocol.jsNumberToString(candidate);
-            if (Format1Protocol.sha256Hex(salt + jsText).startsWith(target)) {
+            if (PowHashes.sha256Hex(salt + jsText).startsWith(target)) {
                 return candidate;
             }
         }
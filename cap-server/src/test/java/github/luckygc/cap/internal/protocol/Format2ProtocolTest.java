@@ -2,6 +2,8 @@ package github.luckygc.cap.internal.protocol;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
 
 import github.luckygc.cap.CapProtocol;
 import github.luckygc.cap.ChallengeOptions;
@@ -23,9 +25,16 @@ import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -49,7 +58,7 @@ class Format2ProtocolTest {
                                 "login",
                                 1_700_000_000_000L,
                                 1_700_000_600_000L,
-                                (String) fixture.get("signatureHex")));
+                                HexFormat.of().parseHex((String) fixture.get("signatureHex"))));
     }
 
     @Test
@@ -150,6 +159,100 @@ class Format2ProtocolTest {
                 .withMessageContaining("RSW");
     }
 
+    @Test
+    @DisplayName("并发生成各协议部分时按配置顺序拼装 challenge 与 expected")
+    void concurrentPartGenerationKeepsConfiguredOrder() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (List<CapProtocol> protocols :
+                    List.of(
+                            List.of(
+                                    CapProtocol.SHA256_POW,
+                                    CapProtocol.RSW,
+                                    CapProtocol.INSTRUMENTATION),
+                            List.of(
+                                    CapProtocol.INSTRUMENTATION,
+                                    CapProtocol.SHA256_POW,
+                                    CapProtocol.RSW))) {
+                List<String> names = new ArrayList<>();
+                for (CapProtocol protocol : protocols) {
+                    String name = protocol.name().toLowerCase(Locale.ROOT).replace('_', '-');
+                    names.addAll(
+                            Collections.nCopies(protocol == CapProtocol.SHA256_POW ? 2 : 1, name));
+                }
+                for (int round = 0; round < 20; round++) {
+                    ChallengeResponse.Format2 response =
+                            concurrentProtocol(
+                                            protocols, InstrumentationOptions.defaults(), executor)
+                                    .generate(ChallengeOptions.defaults());
+                    Map<String, @Nullable Object> payload =
+                            new JwtCodec(SECRET).verify(response.token()).orElseThrow();
+                    List<?> expected =
+                            (List<?>)
+                                    new EncryptedMetadataCodec(SECRET)
+                                            .decryptFormat2((String) payload.get("ev"))
+                                            .orElseThrow()
+                                            .get("expected");
+
+                    assertThat(response.challenges())
+                            .extracting(ChallengeResponse.ProtocolChallenge::protocol)
+                            .isEqualTo(names);
+                    assertThat(expected)
+                            .extracting(entry -> ((Map<?, ?>) entry).get("protocol"))
+                            .isEqualTo(names);
+                }
+            }
+            ChallengeResponse.Format2 rejected =
+                    concurrentProtocol(
+                                    List.of(CapProtocol.RSW, CapProtocol.SHA256_POW),
+                                    InstrumentationOptions.defaults(),
+                                    command -> {
+                                        throw new RejectedExecutionException("shutdown");
+                                    })
+                            .generate(ChallengeOptions.defaults());
+            assertThat(rejected.challenges())
+                    .extracting(ChallengeResponse.ProtocolChallenge::protocol)
+                    .containsExactly("rsw", "sha256-pow", "sha256-pow");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("并发生成时按配置顺序抛出第一个失败部分的原始异常")
+    void concurrentPartGenerationPropagatesFirstFailureInOrder() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        InstrumentationOptions failing =
+                InstrumentationOptions.builder()
+                        .transformer(
+                                (script, level) -> {
+                                    throw new IllegalStateException("transformer down");
+                                })
+                        .build();
+        try {
+            for (List<CapProtocol> protocols :
+                    List.of(
+                            List.of(CapProtocol.RSW, CapProtocol.INSTRUMENTATION),
+                            List.of(CapProtocol.INSTRUMENTATION, CapProtocol.RSW))) {
+                IllegalStateException sequential =
+                        catchThrowableOfType(
+                                IllegalStateException.class,
+                                () ->
+                                        concurrentProtocol(protocols, failing, null)
+                                                .generate(ChallengeOptions.defaults()));
+
+                assertThatIllegalStateException()
+                        .isThrownBy(
+                                () ->
+                                        concurrentProtocol(protocols, failing, executor)
+                                                .generate(ChallengeOptions.defaults()))
+                        .withMessage(sequential.getMessage());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     @DisplayName("合法空 expected 与空 solutions 按上游返回完整成功上下文")
     void acceptsEmptyExpectedAndSolutions() {
@@ -158,7 +261,7 @@ class Format2ProtocolTest {
         assertThat(protocol().validate(request(token, List.of()), "login"))
                 .isEqualTo(
                         new Format2Protocol.Validated(
-                                "login", now(), future(), Format1Protocol.signatureHex(token)));
+                                "login", now(), future(), Format1Protocol.signature(token)));
     }
 
     @Test
@@ -299,6 +402,100 @@ class Format2ProtocolTest {
                 "invalid_solution");
     }
 
+    @Test
+    @DisplayName("派生 salt 模式下元数据只保存种子且兑换时重新展开")
+    void validatesDerivedPowSalts() {
+        Format2Protocol protocol =
+                new Format2Protocol(
+                        SECRET,
+                        List.of(CapProtocol.SHA256_POW),
+                        3,
+                        16,
+                        1,
+                        new Format2Protocol.MetadataOptions(true, false),
+                        null,
+                        InstrumentationOptions.defaults(),
+                        CLOCK,
+                        new FixedSecureRandom());
+        ChallengeResponse.Format2 response = protocol.generate(ChallengeOptions.defaults());
+        Map<String, @Nullable Object> payload =
+                new JwtCodec(SECRET).verify(response.token()).orElseThrow();
+        Map<String, @Nullable Object> metadata =
+                new EncryptedMetadataCodec(SECRET)
+                        .decryptFormat2((String) payload.get("ev"))
+                        .orElseThrow();
+        List<@Nullable Object> solutions = new ArrayList<>();
+        for (ChallengeResponse.ProtocolChallenge challenge : response.challenges()) {
+            assertThat(challenge.payload()).containsOnlyKeys("salt", "target");
+            assertThat((String) challenge.payload().get("salt")).matches("[0-9a-f]{32}");
+            solutions.add(
+                    Map.of(
+                            "nonce",
+                            solve(
+                                    (String) challenge.payload().get("salt"),
+                                    (String) challenge.payload().get("target"))));
+        }
+
+        assertThat(response.challenges()).hasSize(3);
+        List<?> expected = (List<?>) metadata.get("expected");
+        assertThat(expected).hasSize(1);
+        @SuppressWarnings("unchecked")
+        Map<String, @Nullable Object> powEntry = (Map<String, @Nullable Object>) expected.get(0);
+        assertThat(powEntry).containsOnlyKeys("protocol", "seed", "count", "size", "target");
+        assertThat(protocol.validate(request(response.token(), solutions), null))
+                .isInstanceOf(Format2Protocol.Validated.class);
+        List<@Nullable Object> tampered = new ArrayList<>(solutions);
+        tampered.set(1, Map.of("nonce", -1));
+        assertFailure(
+                protocol.validate(request(response.token(), tampered), null), "invalid_solution");
+        assertFailure(
+                protocol.validate(request(response.token(), solutions.subList(0, 2)), null),
+                "invalid_solutions");
+    }
+
+    @Test
+    @DisplayName("紧凑二进制元数据可完整兑换且 token 短于 JSON 布局")
+    void validatesCompactBinaryMetadata() {
+        ChallengeResponse.Format2 jsonResponse =
+                metadataProtocol(Format2Protocol.MetadataOptions.DEFAULT)
+                        .generate(ChallengeOptions.defaults());
+        Format2Protocol protocol =
+                metadataProtocol(new Format2Protocol.MetadataOptions(false, true));
+        ChallengeResponse.Format2 response = protocol.generate(ChallengeOptions.defaults());
+        Map<String, @Nullable Object> payload =
+                new JwtCodec(SECRET).verify(response.token()).orElseThrow();
+        byte[] plaintext =
+                new EncryptedMetadataCodec(SECRET)
+                        .decryptFormat2Bytes((String) payload.get("ev"))
+                        .orElseThrow();
+        List<ExpectedEntry> expected = ExpectedMetadataCodec.decode(plaintext);
+        assertThat(expected).isNotNull();
+        List<@Nullable Object> solutions = new ArrayList<>();
+        for (ExpectedEntry entry : expected) {
+            if (entry instanceof ExpectedEntry.Pow pow) {
+                solutions.add(Map.of("nonce", solve(pow.salt(), pow.target())));
+            } else if (entry instanceof ExpectedEntry.Rsw rsw) {
+                solutions.add(Map.of("y", rsw.y()));
+            } else if (entry instanceof ExpectedEntry.Instrumentation meta) {
+                Map<String, @Nullable Object> state = new LinkedHashMap<>();
+                for (int index = 0; index < meta.vars().size(); index++) {
+                    state.put(meta.vars().get(index), meta.expectedVals()[index]);
+                }
+                solutions.add(
+                        Map.of("instr", Map.of("i", meta.id(), "state", state, "ts", now() + 1)));
+            }
+        }
+
+        assertThat(plaintext[0]).isEqualTo(ExpectedMetadataCodec.VERSION);
+        assertThat(response.token().length()).isLessThan(jsonResponse.token().length());
+        assertThat(protocol.validate(request(response.token(), solutions), null))
+                .isInstanceOf(Format2Protocol.Validated.class);
+        List<@Nullable Object> tampered = new ArrayList<>(solutions);
+        tampered.set(1, Map.of("y", "01"));
+        assertFailure(
+                protocol.validate(request(response.token(), tampered), null), "invalid_solution");
+    }
+
     @Test
     @DisplayName("NumberToString 精确匹配 JavaScript 边界语义")
     void formatsJavaNumbersLikeJavaScript() {
@@ -381,7 +578,7 @@ class Format2ProtocolTest {
                     "invalid_solution");
         }
 
-        String asciiNibble = Format1Protocol.sha256Hex("salt1").substring(0, 1);
+        String asciiNibble = PowHashes.sha256Hex("salt1").substring(0, 1);
         char ascii = asciiNibble.charAt(0);
         String fullWidth =
                 Character.toString(ascii <= '9' ? '\uff10' + ascii - '0' : '\uff41' + ascii - 'a');
@@ -649,6 +846,36 @@ class Format2ProtocolTest {
                 new FixedSecureRandom());
     }
 
+    private static Format2Protocol concurrentProtocol(
+            List<CapProtocol> protocols,
+            InstrumentationOptions instrumentation,
+            @Nullable Executor executor) {
+        return new Format2Protocol(
+                SECRET,
+                protocols,
+                2,
+                4,
+                1,
+                Format2Protocol.MetadataOptions.DEFAULT,
+                minter(),
+                instrumentation,
+                executor);
+    }
+
+    private static Format2Protocol metadataProtocol(Format2Protocol.MetadataOptions options) {
+        return new Format2Protocol(
+                SECRET,
+                List.of(CapProtocol.SHA256_POW, CapProtocol.RSW, CapProtocol.INSTRUMENTATION),
+                1,
+                4,
+                1,
+                options,
+                minter(),
+                InstrumentationOptions.defaults(),
+                CLOCK,
+                new FixedSecureRandom());
+    }
+
     private static RswSupport.RswMinter minter() {
         return RswSupport.createMinter(keyPair(), 8);
     }
@@ -769,7 +996,7 @@ class Format2ProtocolTest {
                         "scope", validated.scope(),
                         "iat", validated.issuedAt(),
                         "exp", validated.expires(),
-                        "signatureHex", validated.signatureHex()));
+                        "signatureHex", HexFormat.of().formatHex(validated.signature())));
         ProtocolJsonCodec codec = new ProtocolJsonCodec();
         return codec.readObject(codec.writeObject(oracle));
     }
@@ -0,0 +1,185 @@
+package github.luckygc.cap.internal.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("JavaScript Number 文本化差分测试")
+class JsNumberTextTest {
+
+    @Test
+    @DisplayName("随机 binary64 位模式与参考实现一致")
+    void matchesReferenceForRandomBitPatterns() {
+        long state = 0x9e3779b97f4a7c15L;
+        for (int index = 0; index < 20_000; index++) {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            double value = Double.longBitsToDouble(state);
+            assertMatchesReference(value);
+        }
+    }
+
+    @Test
+    @DisplayName("边界、2 与 10 的幂、次正规数与短十进制与参考实现一致")
+    void matchesReferenceForStructuredCorpus() {
+        for (int exponent = -1074; exponent <= 1023; exponent++) {
+            double power = Math.scalb(1.0, exponent);
+            assertMatchesReference(power);
+            assertMatchesReference(Math.nextUp(power));
+            assertMatchesReference(Math.nextDown(power));
+        }
+        for (int exponent = -330; exponent <= 310; exponent++) {
+            double power = Double.parseDouble("1e" + exponent);
+            assertMatchesReference(power);
+            assertMatchesReference(-power);
+            assertMatchesReference(Math.nextUp(power));
+            assertMatchesReference(Math.nextDown(power));
+        }
+        for (long bits = 1; bits <= 1_000; bits++) {
+            assertMatchesReference(Double.longBitsToDouble(bits));
+        }
+        long state = 0x2545f4914f6cdd1dL;
+        for (int index = 0; index < 5_000; index++) {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            long digits = Math.floorMod(state, 100_000_000L);
+            int exponent = (int) Math.floorMod(state >>> 40, 60L) - 30;
+            assertMatchesReference(Double.parseDouble(digits + "e" + exponent));
+        }
+        double[] boundaries = {
+            Double.MAX_VALUE,
+            Double.MIN_VALUE,
+            Double.MIN_NORMAL,
+            1e21,
+            1e-6,
+            1e-7,
+            9007199254740991.0,
+            9007199254740992.0,
+            9007199254740993.0,
+            0.1,
+            0.3,
+            123e-20,
+            5e-324
+        };
+        for (double boundary : boundaries) {
+            assertMatchesReference(boundary);
+            assertMatchesReference(-boundary);
+        }
+    }
+
+    @Test
+    @DisplayName("整数快速路径与双精度语义一致")
+    void integralFastPathMatchesDoubleSemantics() {
+        long state = 0x853c49e6748fea9bL;
+        for (int index = 0; index < 20_000; index++) {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            long value = state >> (index % 64);
+            assertThat(Format2Protocol.jsNumberToString(value))
+                    .as("%d", value)
+                    .isEqualTo(reference((double) value));
+            assertThat(Format2Protocol.jsNumberToString((double) value))
+                    .isEqualTo(reference((double) value));
+        }
+        assertThat(Format2Protocol.jsNumberToString(0)).isEqualTo("0");
+        assertThat(Format2Protocol.jsNumberToString(-0.0)).isEqualTo("0");
+        assertThat(Format2Protocol.jsNumberToString(1L << 60)).isEqualTo("1152921504606847000");
+        assertThat(Format2Protocol.jsNumberToString(JsNumberText.MAX_SAFE_INTEGER))
+                .isEqualTo("9007199254740991");
+        assertThat(Format2Protocol.jsNumberToString(Double.NaN)).isEqualTo("NaN");
+        assertThat(Format2Protocol.jsNumberToString(Double.NEGATIVE_INFINITY))
+                .isEqualTo("-Infinity");
+    }
+
+    private static void assertMatchesReference(double value) {
+        assertThat(JsNumberText.toString(value))
+                .as("bits %016x", Double.doubleToRawLongBits(value))
+                .isEqualTo(reference(value));
+    }
+
+    /** 基于 BigDecimal 逐精度搜索的参考实现，已由 Node binary64 oracle 验证。 */
+    private static String reference(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (value == Double.POSITIVE_INFINITY) {
+            return "Infinity";
+        }
+        if (value == Double.NEGATIVE_INFINITY) {
+            return "-Infinity";
+        }
+        if (value == 0.0) {
+            return "0";
+        }
+        double absolute = Math.abs(value);
+        BigDecimal shortest = shortestDecimal(value);
+        if (absolute >= 1e-6 && absolute < 1e21) {
+            return shortest.toPlainString();
+        }
+        BigDecimal magnitude = shortest.abs();
+        String digits = magnitude.unscaledValue().abs().toString();
+        int exponent = digits.length() - magnitude.scale() - 1;
+        StringBuilder scientific = new StringBuilder();
+        if (value < 0) {
+            scientific.append('-');
+        }
+        scientific.append(digits.charAt(0));
+        if (digits.length() > 1) {
+            scientific.append('.').append(digits, 1, digits.length());
+        }
+        scientific.append('e');
+        if (exponent >= 0) {
+            scientific.append('+');
+        }
+        return scientific.append(exponent).toString();
+    }
+
+    private static BigDecimal shortestDecimal(double value) {
+        boolean negative = value < 0;
+        double absolute = Math.abs(value);
+        BigDecimal exact = new BigDecimal(absolute);
+        int decimalExponent = exact.precision() - exact.scale() - 1;
+        for (int precision = 1; precision <= 17; precision++) {
+            int power = decimalExponent - precision + 1;
+            BigDecimal scaled = exact.scaleByPowerOfTen(-power);
+            BigInteger nearest = scaled.setScale(0, RoundingMode.HALF_EVEN).toBigIntegerExact();
+            @Nullable BigDecimal best = null;
+            @Nullable BigDecimal bestDistance = null;
+            @Nullable BigInteger bestSignificand = null;
+            for (int offset = -2; offset <= 2; offset++) {
+                BigInteger significand = nearest.add(BigInteger.valueOf(offset));
+                if (significand.signum() <= 0) {
+                    continue;
+                }
+                BigDecimal candidate = new BigDecimal(significand).scaleByPowerOfTen(power);
+                if (Double.doubleToRawLongBits(candidate.doubleValue())
+                        != Double.doubleToRawLongBits(absolute)) {
+                    continue;
+                }
+                BigDecimal distance = candidate.subtract(exact).abs();
+                if (bestDistance == null
+                        || distance.compareTo(bestDistance) < 0
+                        || distance.compareTo(bestDistance) == 0
+                                && bestSignificand != null
+                                && bestSignificand.testBit(0)
+                                && !significand.testBit(0)) {
+                    best = candidate;
+                    bestDistance = distance;
+                    bestSignificand = significand;
+                }
+            }
+            if (best != null) {
+                return (negative ? best.negate() : best).stripTrailingZeros();
+            }
+        }
+        throw new IllegalStateException("无法生成 JavaScript Number 字符串");
+    }
+}
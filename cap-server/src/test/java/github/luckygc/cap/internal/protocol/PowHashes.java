@@ -0,0 +1,15 @@
+package github.luckygc.cap.internal.protocol;
+
+import github.luckygc.cap.internal.crypto.Sha256;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+/** 测试用 PoW 哈希：按客户端口径对 UTF-8 字符串求 SHA-256 并输出小写 hex。 */
+final class PowHashes {
+
+    private PowHashes() {}
+
+    static String sha256Hex(String value) {
+        return HexFormat.of().formatHex(Sha256.digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,53 @@
+package github.luckygc.cap.internal.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("派生 salt 流测试")
+class PowSaltStreamTest {
+
+    @Test
+    @DisplayName("归还后复用的 cipher 以新种子从密钥流起点重新展开")
+    void restartsKeystreamForEachBorrowedCipher() {
+        byte[] first = seed(1);
+        byte[] second = seed(2);
+
+        String[] expected = salts(first);
+        try (PowSaltStream other = new PowSaltStream(second)) {
+            other.next(16);
+        }
+
+        assertThat(salts(first)).containsExactly(expected);
+        assertThat(salts(second)).doesNotContain(expected);
+    }
+
+    @Test
+    @DisplayName("字节输出与 hex 字符串输出一致")
+    void writesSameSaltAsHexText() {
+        byte[] target = new byte[32];
+        try (PowSaltStream text = new PowSaltStream(seed(3));
+                PowSaltStream bytes = new PowSaltStream(seed(3))) {
+            for (int index = 0; index < 4; index++) {
+                String salt = text.next(16);
+                bytes.next(16, target);
+                assertThat(new String(target, StandardCharsets.US_ASCII)).isEqualTo(salt);
+            }
+        }
+    }
+
+    private static String[] salts(byte[] seed) {
+        try (PowSaltStream salts = new PowSaltStream(seed)) {
+            return new String[] {salts.next(16), salts.next(16), salts.next(16)};
+        }
+    }
+
+    private static byte[] seed(int value) {
+        byte[] seed = new byte[PowSaltStream.SEED_BYTES];
+        Arrays.fill(seed, (byte) value);
+        return seed;
+    }
+}
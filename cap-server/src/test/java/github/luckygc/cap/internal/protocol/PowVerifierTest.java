@@ -0,0 +1,41 @@
+package github.luckygc.cap.internal.protocol;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("字节级 sha256-pow 验证器测试")
+class PowVerifierTest {
+
+    @Test
+    @DisplayName("字节缓冲区验证与字符串拼接 hex 前缀比较一致")
+    void matchesStringPrefixComparison() {
+        String[] nonces = {"0", "17", "123456789", "1.5e+300", "-0.25", "非ASCII", "😀"};
+        try (PowVerifier pow = new PowVerifier()) {
+            for (String salt : new String[] {"0724415e", "a".repeat(200)}) {
+                for (String nonce : nonces) {
+                    String hash = PowHashes.sha256Hex(salt + nonce);
+                    for (int length = 0; length <= 64; length += 7) {
+                        String target = hash.substring(0, length);
+                        byte[] buffer = pow.saltBuffer(salt.length());
+                        byte[] saltBytes = salt.getBytes(StandardCharsets.US_ASCII);
+                        System.arraycopy(saltBytes, 0, buffer, 0, saltBytes.length);
+                        byte[] targetBytes = target.getBytes(StandardCharsets.US_ASCII);
+
+                        assertThat(pow.verify(salt.length(), nonce, targetBytes, length)).isTrue();
+                        assertThat(pow.verify(salt, nonce, target)).isTrue();
+                        assertThat(pow.verify(salt, nonce, target.toUpperCase(Locale.ROOT)))
+                                .isTrue();
+                    }
+                    String wrong = (hash.charAt(0) == '0' ? "1" : "0") + hash.substring(1, 4);
+                    assertThat(pow.verify(salt, nonce, wrong)).isFalse();
+                    assertThat(pow.verify(salt, nonce, hash + "0")).isFalse();
+                    assertThat(pow.verify(salt, nonce, "g")).isFalse();
+                }
+            }
+        }
+    }
+}
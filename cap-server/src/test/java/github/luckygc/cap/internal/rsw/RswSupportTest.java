@@ -64,6 +64,109 @@ class RswSupportTest {
         assertThat(minted.y()).hasSize(256).endsWith("01").matches("[0-9a-f]+$");
     }
 
+    @Test
+    @DisplayName("固定底数预计算表与 modPow 结果一致")
+    void fixedBaseTableMatchesModPow() throws IOException {
+        Map<String, @Nullable Object> fixture = fixture();
+        BigInteger prime = new BigInteger((String) fixture.get("p"));
+        BigInteger base = new BigInteger((String) fixture.get("g"));
+        FixedBaseTable table = new FixedBaseTable(base, new MontgomeryField(prime), 32);
+        SecureRandom random = new SecureRandom();
+
+        assertThat(table.pow(BigInteger.ZERO)).isEqualTo(BigInteger.ONE);
+        assertThat(table.pow(BigInteger.ONE)).isEqualTo(base.mod(prime));
+        BigInteger maximum = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+        assertThat(table.pow(maximum)).isEqualTo(base.modPow(maximum, prime));
+        for (int index = 0; index < 200; index++) {
+            BigInteger exponent = new BigInteger(1 + random.nextInt(256), random);
+            assertThat(table.pow(exponent)).isEqualTo(base.modPow(exponent, prime));
+        }
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> table.pow(BigInteger.ONE.shiftLeft(256)));
+        assertThatIllegalArgumentException().isThrownBy(() -> table.pow(BigInteger.ONE.negate()));
+    }
+
+    @Test
+    @DisplayName("定宽 Montgomery 运算与 BigInteger 结果一致")
+    void montgomeryFieldMatchesBigInteger() {
+        SecureRandom random = new SecureRandom();
+        for (int bits : new int[] {2, 31, 32, 33, 64, 65, 257, 512, 1031, 2048}) {
+            for (int round = 0; round < 20; round++) {
+                BigInteger modulus = new BigInteger(bits, random).setBit(bits - 1).setBit(0);
+                if (round == 0) {
+                    // 全 1 模数让每个 limb 的进位都达到上限。
+                    modulus = BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.ONE);
+                }
+                MontgomeryField field = new MontgomeryField(modulus);
+                BigInteger left = new BigInteger(bits + 8, random).mod(modulus);
+                BigInteger right = new BigInteger(bits + 8, random).mod(modulus);
+                int[] scratch = field.scratch();
+                int[] product = field.toMontgomery(left);
+                field.multiply(product, field.toMontgomery(right), product, scratch);
+                field.reduce(product, product, scratch);
+                int[] difference = field.toMontgomery(left);
+                field.subtract(difference, field.toMontgomery(right), difference);
+                field.reduce(difference, difference, scratch);
+                BigInteger wide = new BigInteger(32 * field.limbs, random);
+                int[] converted = field.newElement();
+                field.toMontgomery(
+                        MontgomeryField.toLimbs(wide, field.limbs),
+                        field.limbs,
+                        converted,
+                        scratch);
+                field.reduce(converted, converted, scratch);
+
+                assertThat(MontgomeryField.toBigInteger(product, field.limbs))
+                        .isEqualTo(left.multiply(right).mod(modulus));
+                assertThat(MontgomeryField.toBigInteger(difference, field.limbs))
+                        .isEqualTo(left.subtract(right).mod(modulus));
+                assertThat(MontgomeryField.toBigInteger(converted, field.limbs))
+                        .isEqualTo(wide.mod(modulus));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("limb 铸造与 BigInteger CRT 参考实现逐字符一致，含不等长与短素因子")
+    void mintMatchesBigIntegerReference() {
+        SecureRandom primes = new SecureRandom();
+        for (int primeBits : new int[] {512, 300, 724, 200}) {
+            BigInteger primeP;
+            BigInteger primeQ;
+            do {
+                primeP = BigInteger.probablePrime(primeBits, primes);
+                primeQ = BigInteger.probablePrime(1024 - primeBits, primes);
+            } while (primeP.multiply(primeQ).bitLength() != 1024);
+            BigInteger modulus = primeP.multiply(primeQ);
+            RswKeyPair keyPair =
+                    new RswKeyPair(1024, modulus.toString(), primeP.toString(), primeQ.toString());
+            RecordingSecureRandom random = new RecordingSecureRandom();
+            RswSupport.RswMinter minter = RswSupport.createMinter(keyPair, 7, random);
+
+            for (int round = 0; round < 20; round++) {
+                RswSupport.MintedChallenge minted = minter.mint();
+                BigInteger r = new BigInteger(1, random.last());
+                BigInteger rP = r.mod(primeP.subtract(BigInteger.ONE));
+                BigInteger rQ = r.mod(primeQ.subtract(BigInteger.ONE));
+                BigInteger generator = minter.generator();
+                BigInteger hP = generator.mod(primeP).modPow(minter.exponentP(), primeP);
+                BigInteger hQ = generator.mod(primeQ).modPow(minter.exponentQ(), primeQ);
+                BigInteger x =
+                        crt(
+                                generator.modPow(rP, primeP),
+                                generator.modPow(rQ, primeQ),
+                                primeP,
+                                primeQ);
+                BigInteger y = crt(hP.modPow(rP, primeP), hQ.modPow(rQ, primeQ), primeP, primeQ);
+
+                assertThat(minted.modulus()).isEqualTo(RswSupport.fixedHex(modulus, 128));
+                assertThat(minted.x()).isEqualTo(RswSupport.fixedHex(x, 128));
+                assertThat(minted.y()).isEqualTo(RswSupport.fixedHex(y, 128));
+                assertThat(x.modPow(BigInteger.TWO.pow(7), modulus)).isEqualTo(y);
+            }
+        }
+    }
+
     @Test
     @DisplayName("拒绝超过 modulus 固定宽度的值")
     void rejectsValuesWiderThanModulus() {
@@ -107,6 +210,13 @@ class RswSupportTest {
         assertThat(RswSupport.verifySolution(expected, "0".repeat(10_000) + expected)).isFalse();
     }
 
+    private static BigInteger crt(
+            BigInteger residueP, BigInteger residueQ, BigInteger primeP, BigInteger primeQ) {
+        BigInteger coefficient =
+                residueP.subtract(residueQ).multiply(primeQ.modInverse(primeP)).mod(primeP);
+        return residueQ.add(primeQ.multiply(coefficient));
+    }
+
     private static RswKeyPair keyPair(Map<String, @Nullable Object> fixture) {
         return new RswKeyPair(
                 ((Long) fixture.get("bits")).intValue(),
@@ -133,6 +243,21 @@ class RswSupportTest {
         }
     }
 
+    private static final class RecordingSecureRandom extends SecureRandom {
+
+        private byte[] last = new byte[0];
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            super.nextBytes(bytes);
+            last = bytes.clone();
+        }
+
+        byte[] last() {
+            return last;
+        }
+    }
+
     private static final class ZeroSecureRandom extends SecureRandom {
 
         @Override
@@ -7,13 +7,16 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import com.github.benmanes.caffeine.cache.Ticker;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -116,6 +119,47 @@ class CaffeineNonceConsumerTest {
         assertThat(consumer.consume("new", Duration.ofHours(1))).isFalse();
     }
 
+    @Test
+    @DisplayName("到期条目随后续消费按时间轮回收且不影响未到期条目")
+    void reclaimsExpiredEntriesIncrementally() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        CaffeineNonceConsumer consumer = new CaffeineNonceConsumer(1_000, ticker);
+
+        for (int index = 0; index < 100; index++) {
+            assertThat(consumer.consume("short-" + index, Duration.ofSeconds(1))).isTrue();
+        }
+        assertThat(consumer.consume("long", Duration.ofHours(1))).isTrue();
+        ticker.advance(Duration.ofSeconds(30));
+
+        assertThat(consumer.consume("trigger", Duration.ofHours(1))).isTrue();
+        assertThat(consumer.estimatedSize()).isEqualTo(2);
+        assertThat(consumer.consume("long", Duration.ofHours(1))).isFalse();
+
+        ticker.advance(Duration.ofHours(2));
+        consumer.cleanUp();
+        assertThat(consumer.estimatedSize()).isZero();
+    }
+
+    @Test
+    @DisplayName("读钟后扫描已越过截止 tick 时条目仍在下一次扫描中回收")
+    void schedulesEntriesPastSweptTick() {
+        FakeTicker ticker = new FakeTicker();
+        CaffeineNonceConsumer consumer = new CaffeineNonceConsumer(10, ticker);
+        // 调用方读钟后被挂起，期间另一线程在 10 秒后完成扫描。
+        ticker.beforeNextRead =
+                () -> {
+                    ticker.advance(Duration.ofSeconds(10));
+                    consumer.cleanUp();
+                };
+
+        assertThat(consumer.consume("late", Duration.ofSeconds(1))).isTrue();
+        assertThat(consumer.estimatedSize()).isEqualTo(1);
+
+        ticker.advance(Duration.ofMinutes(1));
+        consumer.cleanUp();
+        assertThat(consumer.estimatedSize()).isZero();
+    }
+
     @Test
     @DisplayName("并发不同签名不得超过硬容量")
     void concurrentAdmissionsRespectHardCapacity() throws Exception {
@@ -169,6 +213,25 @@ class CaffeineNonceConsumerTest {
         assertThat(consumer.consume("huge", Duration.ofSeconds(Long.MAX_VALUE))).isTrue();
     }
 
+    @Test
+    @DisplayName("原始签名与十六进制签名共享同一份消费状态")
+    void sharesStateBetweenRawAndHexSignatures() throws Exception {
+        CaffeineNonceConsumer consumer = new CaffeineNonceConsumer(10, new FakeTicker());
+        byte[] signature = new byte[32];
+        for (int index = 0; index < signature.length; index++) {
+            signature[index] = (byte) (index * 7 + 1);
+        }
+        String hex = HexFormat.of().formatHex(signature);
+
+        assertThat(consumer.consume(signature, Duration.ofMinutes(1))).isTrue();
+        assertThat(consumer.consume(hex, Duration.ofMinutes(1))).isFalse();
+        assertThat(consumer.consume(hex.toUpperCase(Locale.ROOT), Duration.ofMinutes(1))).isFalse();
+        assertThat(consumer.consume(signature.clone(), Duration.ofMinutes(1))).isFalse();
+        assertThat(consumer.estimatedSize()).isOne();
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> consumer.consume(new byte[31], Duration.ofMinutes(1)));
+    }
+
     @Test
     @DisplayName("容量只允许 1 到 10000000")
     void validatesMaximumSizeRange() {
@@ -180,10 +243,18 @@ class CaffeineNonceConsumerTest {
     private static final class FakeTicker implements Ticker {
 
         private final AtomicLong nanos = new AtomicLong();
+        private @Nullable Runnable beforeNextRead;
 
+        /** 先取读数再执行一次性回调，模拟读钟与后续操作之间的并发。 */
         @Override
         public long read() {
-            return nanos.get();
+            long value = nanos.get();
+            Runnable callback = beforeNextRead;
+            if (callback != null) {
+                beforeNextRead = null;
+                callback.run();
+            }
+            return value;
         }
 
         void advance(Duration duration) {
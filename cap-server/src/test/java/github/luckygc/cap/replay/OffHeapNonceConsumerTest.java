@@ -0,0 +1,235 @@
+package github.luckygc.cap.replay;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("堆外防重放测试")
+class OffHeapNonceConsumerTest {
+
+    @Test
+    @DisplayName("32 个并发消费同一签名时恰好一个成功")
+    void claimsSameSignatureAtomically() throws Exception {
+        OffHeapNonceConsumer consumer = new OffHeapNonceConsumer(1_000);
+        String signature = signature(7);
+        CountDownLatch ready = new CountDownLatch(32);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int index = 0; index < 32; index++) {
+                results.add(
+                        executor.submit(
+                                () -> {
+                                    ready.countDown();
+                                    start.await();
+                                    return consumer.consume(signature, Duration.ofMinutes(1));
+                                }));
+            }
+
+            assertThat(ready.await(10, TimeUnit.SECONDS)).isTrue();
+            start.countDown();
+            long accepted = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    accepted++;
+                }
+            }
+            assertThat(accepted).isOne();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("并发消费不同签名时全部成功，重放全部被拒绝")
+    void claimsDistinctSignaturesConcurrently() throws Exception {
+        OffHeapNonceConsumer consumer = new OffHeapNonceConsumer(20_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int worker = 0; worker < 8; worker++) {
+                int first = worker * 2_000;
+                results.add(
+                        executor.submit(
+                                () -> {
+                                    long accepted = 0;
+                                    for (int index = first; index < first + 2_000; index++) {
+                                        if (consumer.consume(
+                                                signature(index), Duration.ofMinutes(5))) {
+                                            accepted++;
+                                        }
+                                    }
+                                    return accepted;
+                                }));
+            }
+            long accepted = 0;
+            for (Future<Long> result : results) {
+                accepted += result.get(30, TimeUnit.SECONDS);
+            }
+
+            assertThat(accepted).isEqualTo(16_000);
+            for (int index = 0; index < 16_000; index++) {
+                assertThat(consumer.consume(signature(index), Duration.ofMinutes(5))).isFalse();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("TTL 内始终拒绝重放，到期后允许再次消费")
+    void allowsConsumptionAfterEntryExpires() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        OffHeapNonceConsumer consumer = new OffHeapNonceConsumer(100, ticker);
+        String signature = signature(1);
+
+        assertThat(consumer.consume(signature, Duration.ofSeconds(2))).isTrue();
+        ticker.advance(Duration.ofSeconds(2));
+        assertThat(consumer.consume(signature, Duration.ofSeconds(2))).isFalse();
+
+        ticker.advance(Duration.ofSeconds(3));
+
+        assertThat(consumer.consume(signature, Duration.ofSeconds(2))).isTrue();
+    }
+
+    @Test
+    @DisplayName("表满时拒绝写入而不淘汰未到期签名，到期槽位原地复用")
+    void failsClosedWhenFullAndReusesExpiredSlots() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        OffHeapNonceConsumer consumer = new OffHeapNonceConsumer(3, ticker);
+
+        assertThat(consumer.capacityBytes()).isEqualTo(4 * 36);
+        for (int index = 0; index < 4; index++) {
+            assertThat(consumer.consume(signature(index), Duration.ofMinutes(1))).isTrue();
+        }
+        assertThatIllegalStateException()
+                .isThrownBy(() -> consumer.consume(signature(4), Duration.ofMinutes(1)));
+        for (int index = 0; index < 4; index++) {
+            assertThat(consumer.consume(signature(index), Duration.ofMinutes(1))).isFalse();
+        }
+
+        ticker.advance(Duration.ofMinutes(2));
+
+        assertThat(consumer.consume(signature(4), Duration.ofMinutes(1))).isTrue();
+        assertThat(consumer.consume(signature(4), Duration.ofMinutes(1))).isFalse();
+        assertThat(consumer.consume(signature(0), Duration.ofMinutes(1))).isTrue();
+    }
+
+    @Test
+    @DisplayName("随机签名写满额定容量时全部成功，到期后整表复用仍全部成功")
+    void acceptsRandomSignaturesUpToMaximumSize() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        // 786432 = 0.75 × 2^20，恰好达到最大负载因子。
+        int maximumSize = 786_432;
+        OffHeapNonceConsumer consumer = new OffHeapNonceConsumer(maximumSize, ticker);
+        SplittableRandom random = new SplittableRandom(20_260_715L);
+
+        for (int round = 0; round < 2; round++) {
+            byte[][] signatures = new byte[maximumSize][];
+            for (int index = 0; index < maximumSize; index++) {
+                signatures[index] = new byte[32];
+                random.nextBytes(signatures[index]);
+                assertThat(consumer.consume(signatures[index], Duration.ofMinutes(1))).isTrue();
+            }
+            for (byte[] signature : signatures) {
+                assertThat(consumer.consume(signature, Duration.ofMinutes(1))).isFalse();
+            }
+            ticker.advance(Duration.ofMinutes(2));
+        }
+    }
+
+    @Test
+    @DisplayName("非正 TTL 至少保留一格，超长 TTL 截断为 24 小时")
+    void clampsTtl() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        OffHeapNonceConsumer consumer = new OffHeapNonceConsumer(100, ticker);
+
+        assertThat(consumer.consume(signature(1), Duration.ZERO)).isTrue();
+        assertThat(consumer.consume(signature(1), Duration.ZERO)).isFalse();
+        assertThat(consumer.consume(signature(2), Duration.ofDays(365))).isTrue();
+
+        ticker.advance(Duration.ofHours(24).plusSeconds(3));
+
+        assertThat(consumer.consume(signature(1), Duration.ZERO)).isTrue();
+        assertThat(consumer.consume(signature(2), Duration.ofDays(365))).isTrue();
+    }
+
+    @Test
+    @DisplayName("原始签名与十六进制签名共享同一份消费状态")
+    void sharesStateBetweenRawAndHexSignatures() throws Exception {
+        OffHeapNonceConsumer consumer = new OffHeapNonceConsumer(10);
+        String hex = signature(3);
+        byte[] raw = HexFormat.of().parseHex(hex);
+
+        assertThat(consumer.consume(raw, Duration.ofMinutes(1))).isTrue();
+        assertThat(consumer.consume(hex, Duration.ofMinutes(1))).isFalse();
+        assertThat(consumer.consume(signature(4), Duration.ofMinutes(1))).isTrue();
+        assertThat(consumer.consume(HexFormat.of().parseHex(signature(4)), Duration.ofMinutes(1)))
+                .isFalse();
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> consumer.consume(new byte[33], Duration.ofMinutes(1)));
+    }
+
+    @Test
+    @DisplayName("拒绝非 64 位十六进制签名与越界容量")
+    void rejectsInvalidSignaturesAndSizes() {
+        OffHeapNonceConsumer consumer = new OffHeapNonceConsumer(10);
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> consumer.consume("signature", Duration.ofMinutes(1)));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> consumer.consume("z".repeat(64), Duration.ofMinutes(1)));
+        assertThatIllegalArgumentException().isThrownBy(() -> new OffHeapNonceConsumer(0));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new OffHeapNonceConsumer(25_000_001))
+                .withMessage("maximumSize 必须在 1 到 25000000 之间");
+    }
+
+    /** 测试签名：四段 64 位值由序号打散，模拟 HMAC 输出的均匀分布。 */
+    private static String signature(long index) {
+        StringBuilder signature = new StringBuilder(64);
+        long value = index;
+        for (int part = 0; part < 4; part++) {
+            value = mix(value + part + 1);
+            signature.append(HexFormat.of().toHexDigits(value));
+        }
+        return signature.toString();
+    }
+
+    private static long mix(long value) {
+        long mixed = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        mixed = (mixed ^ (mixed >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return mixed ^ (mixed >>> 33);
+    }
+
+    private static final class FakeTicker implements Ticker {
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(Duration duration) {
+            nanos.addAndGet(duration.toNanos());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package github.luckygc.cap.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("FNV-1a 与 xorshift32 工具测试")
+class RandomUtilTest {
+
+    @Test
+    @DisplayName("整数 FNV-1a 续算与十进制字符串续算一致")
+    void resumesDecimalIntegersWithoutStrings() {
+        int state = RandomUtil.fnv1a("header.payload.signature");
+        for (int value : new int[] {0, 1, 9, 10, 99, 100, 999, 1000, 65_535, Integer.MAX_VALUE}) {
+            assertThat(RandomUtil.fnv1aResume(state, value))
+                    .isEqualTo(RandomUtil.fnv1aResume(state, Integer.toString(value)));
+        }
+        assertThatIllegalArgumentException().isThrownBy(() -> RandomUtil.fnv1aResume(state, -1));
+    }
+
+    @Test
+    @DisplayName("字节缓冲区输出与逐状态 %08x 拼接逐位一致")
+    void writesPrngHexIntoBuffer() {
+        int seed = RandomUtil.fnv1a("seed");
+        for (int length = 1; length <= 40; length++) {
+            byte[] buffer = new byte[length + 2];
+            RandomUtil.prngFromHash(seed, buffer, 1, length);
+
+            assertThat(new String(buffer, 1, length, StandardCharsets.US_ASCII))
+                    .isEqualTo(reference(seed, length))
+                    .isEqualTo(RandomUtil.prngFromHash(seed, length));
+            assertThat(buffer[0]).isZero();
+            assertThat(buffer[length + 1]).isZero();
+        }
+    }
+
+    private static String reference(int seed, int length) {
+        int state = seed;
+        StringBuilder result = new StringBuilder();
+        while (result.length() < length) {
+            state ^= state << 13;
+            state ^= state >>> 17;
+            state ^= state << 5;
+            result.append("%08x".formatted(state));
+        }
+        return result.substring(0, length);
+    }
+}